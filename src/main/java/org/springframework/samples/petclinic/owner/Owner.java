@@ -15,8 +15,6 @@
  */
 package org.springframework.samples.petclinic.owner;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -29,10 +27,9 @@ import javax.persistence.Table;
 import javax.validation.constraints.Digits;
 import javax.validation.constraints.NotEmpty;
 
-import org.springframework.beans.support.MutableSortDefinition;
-import org.springframework.beans.support.PropertyComparator;
 import org.springframework.core.style.ToStringCreator;
 import org.springframework.samples.petclinic.model.Person;
+import org.springframework.samples.petclinic.utility.SortedIdentityMap;
 
 /**
  * Simple JavaBean domain object representing an owner.
@@ -59,9 +56,24 @@ public class Owner extends Person {
 	@Digits(fraction = 0, integer = 10)
 	private String telephone;
 
+	/**
+	 * The last name in lower case, generated by the database and indexed with the id, so
+	 * that owners are found and paged ignoring case by an index seek; only used in
+	 * queries, see {@link OwnerRepository#findIdsByLastName}.
+	 */
+	@Column(name = "last_name_lower", insertable = false, updatable = false)
+	private String lastNameLower;
+
 	@OneToMany(cascade = CascadeType.ALL, mappedBy = "owner")
 	private Set<Pet> pets;
 
+	/**
+	 * The pets ordered by name, built from {@link #pets} on first use and built again
+	 * after {@link #addPet(Pet)}, {@link #removePet(Pet)} and pet renames. Cached owners
+	 * are read by several requests at once, so a view is never modified once published.
+	 */
+	private transient volatile SortedIdentityMap<String, Pet> sortedPets;
+
 	public String getAddress() {
 		return this.address;
 	}
@@ -95,23 +107,56 @@ public class Owner extends Person {
 
 	protected void setPetsInternal(Set<Pet> pets) {
 		this.pets = pets;
+		this.sortedPets = null;
+	}
+
+	private SortedIdentityMap<String, Pet> getSortedPets() {
+		Set<Pet> pets = getPetsInternal();
+		SortedIdentityMap<String, Pet> sortedPets = this.sortedPets;
+		// the set is filled by JPA, possibly after the view was built
+		if (sortedPets == null || sortedPets.size() != pets.size()) {
+			sortedPets = new SortedIdentityMap<>(Pet::getName, String.CASE_INSENSITIVE_ORDER, pets);
+			// takes the snapshot before publishing, so readers never write to the view
+			sortedPets.asList();
+			this.sortedPets = sortedPets;
+		}
+		return sortedPets;
 	}
 
 	public List<Pet> getPets() {
-		List<Pet> sortedPets = new ArrayList<>(getPetsInternal());
-		PropertyComparator.sort(sortedPets, new MutableSortDefinition("name", true, true));
-		return Collections.unmodifiableList(sortedPets);
+		return getSortedPets().asList();
+	}
+
+	/**
+	 * @return the pets whose name starts with the given prefix, ignoring case, ordered by
+	 * name
+	 */
+	public List<Pet> getPetsByNamePrefix(String prefix) {
+		return getSortedPets().withPrefix(prefix);
 	}
 
 	public void addPet(Pet pet) {
 		if (pet.isNew()) {
 			getPetsInternal().add(pet);
+			this.sortedPets = null;
 		}
 		pet.setOwner(this);
 	}
 
 	public void removePet(Pet pet) {
 		getPetsInternal().remove(pet);
+		this.sortedPets = null;
+	}
+
+	/**
+	 * Orders the pets again once a pet of this owner changed its name.
+	 */
+	void petRenamed(Pet pet) {
+		// a pet bound from a form may share the id of the pet this owner holds
+		SortedIdentityMap<String, Pet> sortedPets = this.sortedPets;
+		if (sortedPets != null && (pet.isNew() ? sortedPets.contains(pet) : sortedPets.get(pet.getId()) == pet)) {
+			this.sortedPets = null;
+		}
 	}
 
 	/**
@@ -129,14 +174,9 @@ public class Owner extends Person {
 	 * @return true if pet name is already in use
 	 */
 	public Pet getPet(String name, boolean ignoreNew) {
-		name = name.toLowerCase();
-		for (Pet pet : getPetsInternal()) {
+		for (Pet pet : getSortedPets().range(name, true, name, true)) {
 			if (!ignoreNew || !pet.isNew()) {
-				String compName = pet.getName();
-				compName = compName.toLowerCase();
-				if (compName.equals(name)) {
-					return pet;
-				}
+				return pet;
 			}
 		}
 		return null;
@@ -15,7 +15,11 @@
  */
 package org.springframework.samples.petclinic.owner;
 
-import org.springframework.samples.petclinic.visit.VisitRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.samples.petclinic.utility.TimedCache;
+import org.springframework.samples.petclinic.utility.UnitOfWork;
+import org.springframework.samples.petclinic.visit.Visit;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
@@ -24,11 +28,20 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.InitBinder;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.servlet.ModelAndView;
 
 import javax.validation.Valid;
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * @author Juergen Hoeller
@@ -41,13 +54,34 @@ class OwnerController {
 
 	private static final String VIEWS_OWNER_CREATE_OR_UPDATE_FORM = "owners/createOrUpdateOwnerForm";
 
+	static final int DEFAULT_PAGE_SIZE = 20;
+
+	static final int MAX_PAGE_SIZE = 100;
+
 	private final OwnerRepository owners;
 
-	private VisitRepository visits;
+	private final TimedCache<Integer, Owner> ownerCache;
+
+	private final TimedCache<Integer, List<Visit>> visitCache;
+
+	private final UnitOfWork unitOfWork;
 
-	public OwnerController(OwnerRepository clinicService, VisitRepository visits) {
+	private final OwnerLastNameIndex lastNames;
+
+	private final OwnerSearch search;
+
+	private final int recentVisits;
+
+	public OwnerController(OwnerRepository clinicService, TimedCache<Integer, Owner> ownerCache,
+			TimedCache<Integer, List<Visit>> visitCache, UnitOfWork unitOfWork, OwnerLastNameIndex lastNames,
+			OwnerSearch search, @Value("${petclinic.visits.recent:5}") int recentVisits) {
 		this.owners = clinicService;
-		this.visits = visits;
+		this.ownerCache = ownerCache;
+		this.visitCache = visitCache;
+		this.unitOfWork = unitOfWork;
+		this.lastNames = lastNames;
+		this.search = search;
+		this.recentVisits = recentVisits;
 	}
 
 	@InitBinder
@@ -68,7 +102,11 @@ class OwnerController {
 			return VIEWS_OWNER_CREATE_OR_UPDATE_FORM;
 		}
 		else {
-			this.owners.save(owner);
+			this.unitOfWork.registerDirty(Owner.class, owner);
+			// commit right away, the redirect needs the generated id
+			this.unitOfWork.commit();
+			this.lastNames.saved(owner);
+			this.search.saved(owner);
 			return "redirect:/owners/" + owner.getId();
 		}
 	}
@@ -79,36 +117,121 @@ class OwnerController {
 		return "owners/findOwners";
 	}
 
+	/**
+	 * Lists the owners whose last name starts with the given one, one page at a time. Pages
+	 * are ordered by {@code (lower(last_name), id)}, as the index is, and addressed by the owner they start after or
+	 * end before, written {@code id-lastName}, so that any page is found by seeking the
+	 * index instead of skipping the owners before it. The page is found in the
+	 * {@link OwnerLastNameIndex}, then only its owners are loaded, with their pets.
+	 */
 	@GetMapping("/owners")
-	public String processFindForm(Owner owner, BindingResult result, Map<String, Object> model) {
+	public String processFindForm(Owner owner, BindingResult result, Map<String, Object> model,
+			@RequestParam(name = "size", defaultValue = "" + DEFAULT_PAGE_SIZE) int size,
+			@RequestParam(name = "after", required = false) String after,
+			@RequestParam(name = "before", required = false) String before) {
 
 		// allow parameterless GET request for /owners to return all records
 		if (owner.getLastName() == null) {
 			owner.setLastName(""); // empty string signifies broadest possible search
 		}
+		String lastName = owner.getLastName();
+		int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+		// one more than the page tells whether there is another page
+		int limit = pageSize + 1;
 
-		// find owners by last name
-		Collection<Owner> results = this.owners.findByLastName(owner.getLastName());
-		if (results.isEmpty()) {
+		List<Integer> ids;
+		boolean hasPrevious;
+		boolean hasNext;
+		if (before != null) {
+			Owner cursor = parseCursor(before);
+			ids = new ArrayList<>(this.lastNames.findIdsBefore(lastName, cursor.getLastName(), cursor.getId(), limit));
+			hasPrevious = ids.size() > pageSize;
+			hasNext = true;
+			ids = ids.subList(0, Math.min(ids.size(), pageSize));
+			Collections.reverse(ids);
+		}
+		else {
+			if (after != null) {
+				Owner cursor = parseCursor(after);
+				ids = this.lastNames.findIdsAfter(lastName, cursor.getLastName(), cursor.getId(), limit);
+			}
+			else {
+				ids = this.lastNames.findIds(lastName, limit);
+			}
+			hasPrevious = after != null;
+			hasNext = ids.size() > pageSize;
+			ids = ids.subList(0, Math.min(ids.size(), pageSize));
+		}
+
+		if (ids.isEmpty() && after == null && before == null) {
 			// no owners found
 			result.rejectValue("lastName", "notFound", "not found");
 			return "owners/findOwners";
 		}
-		else if (results.size() == 1) {
+		else if (ids.size() == 1 && !hasPrevious && !hasNext) {
 			// 1 owner found
-			owner = results.iterator().next();
-			return "redirect:/owners/" + owner.getId();
+			return "redirect:/owners/" + ids.get(0);
 		}
 		else {
 			// multiple owners found
-			model.put("selections", results);
+			// the cursors are taken from the first and last owners the index returned
+			List<Owner> selections = findAllWithPetsInOrder(ids);
+			model.put("selections", selections);
+			model.put("size", pageSize);
+			if (hasPrevious && !selections.isEmpty()) {
+				model.put("previousPage", cursor(selections.get(0)));
+			}
+			if (hasNext && !selections.isEmpty()) {
+				model.put("nextPage", cursor(selections.get(selections.size() - 1)));
+			}
 			return "owners/ownersList";
 		}
 	}
 
+	/**
+	 * Lists the owners best matching every word of the query, in any of their names,
+	 * address, city, telephone or the names of their pets, best first. Only the first page
+	 * is shown: further matches are found by refining the query.
+	 */
+	@GetMapping("/owners/search")
+	public String processSearch(@RequestParam("q") String query, Map<String, Object> model,
+			@RequestParam(name = "size", defaultValue = "" + DEFAULT_PAGE_SIZE) int size) {
+		List<Integer> ids = this.search.findIds(query, Math.max(1, Math.min(size, MAX_PAGE_SIZE)));
+		model.put("selections", findAllWithPetsInOrder(ids));
+		return "owners/ownersList";
+	}
+
+	/**
+	 * @return the owners with the given ids along with their pets, in the order of the ids
+	 * rather than the order of the query
+	 */
+	private List<Owner> findAllWithPetsInOrder(List<Integer> ids) {
+		List<Owner> selections = new ArrayList<>(
+				ids.isEmpty() ? Collections.emptyList() : this.owners.findAllWithPetsById(ids));
+		selections.sort(Comparator.comparingInt(selection -> ids.indexOf(selection.getId())));
+		return selections;
+	}
+
+	private static String cursor(Owner owner) {
+		return owner.getId() + "-" + owner.getLastName();
+	}
+
+	private static Owner parseCursor(String cursor) {
+		int separator = cursor.indexOf('-');
+		Owner owner = new Owner();
+		try {
+			owner.setId(Integer.valueOf(cursor.substring(0, Math.max(separator, 0))));
+		}
+		catch (NumberFormatException ex) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid page cursor " + cursor);
+		}
+		owner.setLastName(cursor.substring(separator + 1));
+		return owner;
+	}
+
 	@GetMapping("/owners/{ownerId}/edit")
 	public String initUpdateOwnerForm(@PathVariable("ownerId") int ownerId, Model model) {
-		Owner owner = this.owners.findById(ownerId);
+		Owner owner = this.unitOfWork.find(Owner.class, ownerId, this.ownerCache::get);
 		model.addAttribute(owner);
 		return VIEWS_OWNER_CREATE_OR_UPDATE_FORM;
 	}
@@ -121,24 +244,49 @@ class OwnerController {
 		}
 		else {
 			owner.setId(ownerId);
-			this.owners.save(owner);
+			this.unitOfWork.registerDirty(Owner.class, owner);
+			this.unitOfWork.afterCommit(() -> {
+				this.ownerCache.invalidate(ownerId);
+				this.lastNames.saved(owner);
+				this.search.saved(owner);
+			});
 			return "redirect:/owners/{ownerId}";
 		}
 	}
 
 	/**
-	 * Custom handler for displaying an owner.
+	 * Custom handler for displaying an owner with the {@code petclinic.visits.recent} most
+	 * recent visits of each pet, older ones being paged by the
+	 * {@link VisitHistoryController}. The owner and its pets come from the owner cache and
+	 * are shared between requests, so the visits are given to the view by pet id rather
+	 * than set on the pets. With warm owner and visit caches this does not hit the database
+	 * at all; otherwise the recent visits of all the pets the visit cache
+	 * misses are loaded with a single query, however many pets the owner has and however
+	 * many visits they had.
 	 * @param ownerId the ID of the owner to display
 	 * @return a ModelMap with the model attributes for the view
 	 */
 	@GetMapping("/owners/{ownerId}")
 	public ModelAndView showOwner(@PathVariable("ownerId") int ownerId) {
 		ModelAndView mav = new ModelAndView("owners/ownerDetails");
-		Owner owner = this.owners.findById(ownerId);
+		Owner owner = this.unitOfWork.find(Owner.class, ownerId, this.ownerCache::get);
+		List<Integer> petIds = owner.getPets().stream().map(Pet::getId).collect(Collectors.toList());
+		Map<Integer, List<Visit>> cached = this.visitCache.getAll(petIds);
+		Map<Integer, List<Visit>> visits = new HashMap<>();
+		Set<Integer> olderVisits = new HashSet<>();
 		for (Pet pet : owner.getPets()) {
-			pet.setVisitsInternal(visits.findByPetId(pet.getId()));
+			this.unitOfWork.register(Pet.class, pet);
+			// the cache holds one more visit than shown, telling whether there are older ones
+			List<Visit> recent = cached.getOrDefault(pet.getId(), Collections.emptyList());
+			if (recent.size() > this.recentVisits) {
+				olderVisits.add(pet.getId());
+				recent = recent.subList(0, this.recentVisits);
+			}
+			visits.put(pet.getId(), recent);
 		}
 		mav.addObject(owner);
+		mav.addObject("visits", visits);
+		mav.addObject("olderVisits", olderVisits);
 		return mav;
 	}
 
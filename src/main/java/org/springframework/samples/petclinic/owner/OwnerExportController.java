@@ -0,0 +1,42 @@
+package org.springframework.samples.petclinic.owner;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+
+/**
+ * Downloads of the whole clinic, written to the response as they are read.
+ */
+@Controller
+class OwnerExportController {
+
+	private final OwnerExporter exporter;
+
+	public OwnerExportController(OwnerExporter exporter) {
+		this.exporter = exporter;
+	}
+
+	@GetMapping("/owners/export.ndjson")
+	public void exportNdjson(HttpServletResponse response) throws IOException {
+		prepare(response, "application/x-ndjson", "owners.ndjson");
+		this.exporter.writeNdjson(response.getOutputStream());
+	}
+
+	@GetMapping("/owners/export.csv")
+	public void exportCsv(HttpServletResponse response) throws IOException {
+		prepare(response, "text/csv", "owners.csv");
+		this.exporter.writeCsv(response.getOutputStream());
+	}
+
+	private static void prepare(HttpServletResponse response, String contentType, String fileName) {
+		response.setContentType(contentType);
+		response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+		response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"");
+	}
+
+}
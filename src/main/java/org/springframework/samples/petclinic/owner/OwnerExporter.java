@@ -0,0 +1,237 @@
+package org.springframework.samples.petclinic.owner;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+
+import javax.sql.DataSource;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Writes every owner with their pets and the visits of the pets, as NDJSON or CSV.
+ * <p>
+ * Owners are read {@code petclinic.export.owners-per-query} at a time, in the order of
+ * their ids, each time seeking past the last one read. Every query is read forward only,
+ * {@code petclinic.export.fetch-size} rows at a time, and every row is written as soon as
+ * it is read. Neither the application nor the database holds more than a batch of owners,
+ * so the memory used does not depend on the size of the clinic: a single query ordered by
+ * owner, pet and visit would stream too, but only after the database sorted all the
+ * visits, which an embedded database does on the application's heap.
+ */
+@Component
+public class OwnerExporter {
+
+	private static final String QUERY = "SELECT o.id AS owner_id, o.first_name, o.last_name, o.address, o.city, "
+			+ "o.telephone, p.id AS pet_id, p.name AS pet_name, p.birth_date, t.name AS pet_type, v.id AS visit_id, "
+			+ "v.visit_date, v.description FROM owners o LEFT JOIN pets p ON p.owner_id = o.id "
+			+ "LEFT JOIN types t ON t.id = p.type_id LEFT JOIN visits v ON v.pet_id = p.id "
+			+ "WHERE o.id > ? AND o.id <= ? ORDER BY o.id, p.id, v.id";
+
+	private static final String LAST_OWNER_ID = "SELECT MAX(id) FROM (SELECT id FROM owners WHERE id > ? "
+			+ "ORDER BY id LIMIT ?) batch";
+
+	private static final String[] CSV_COLUMNS = { "owner_id", "first_name", "last_name", "address", "city",
+			"telephone", "pet_id", "pet_name", "birth_date", "pet_type", "visit_id", "visit_date", "description" };
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private final int ownersPerQuery;
+
+	private final JsonFactory jsonFactory = new JsonFactory();
+
+	public OwnerExporter(DataSource dataSource, @Value("${petclinic.export.fetch-size:1000}") int fetchSize,
+			@Value("${petclinic.export.owners-per-query:1000}") int ownersPerQuery) {
+		Assert.isTrue(ownersPerQuery > 0, "ownersPerQuery must be positive");
+		this.ownersPerQuery = ownersPerQuery;
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+		this.jdbcTemplate.setFetchSize(fetchSize);
+		this.jsonFactory.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+		// each owner ends with its own line break
+		this.jsonFactory.setRootValueSeparator(null);
+	}
+
+	/**
+	 * Writes one JSON object per line and owner, with their pets and the visits of each
+	 * pet nested in it. The stream is flushed but not closed.
+	 */
+	@Transactional(readOnly = true)
+	public void writeNdjson(OutputStream out) throws IOException {
+		try (JsonGenerator json = this.jsonFactory.createGenerator(out, JsonEncoding.UTF8)) {
+			NdjsonRows rows = new NdjsonRows(json);
+			query(rows);
+			rows.endOwner();
+		}
+		catch (UncheckedIOException ex) {
+			throw ex.getCause();
+		}
+	}
+
+	/**
+	 * Writes a header line, then one line per visit, per pet without visits and per owner
+	 * without pets, repeating the owner and pet columns. The stream is flushed but not
+	 * closed.
+	 */
+	@Transactional(readOnly = true)
+	public void writeCsv(OutputStream out) throws IOException {
+		Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+		try {
+			writer.write(String.join(",", CSV_COLUMNS));
+			writer.write("\r\n");
+			query(rs -> {
+				try {
+					for (int column = 1; column <= CSV_COLUMNS.length; column++) {
+						if (column > 1) {
+							writer.write(',');
+						}
+						writeCsvValue(writer, rs.getString(column));
+					}
+					writer.write("\r\n");
+				}
+				catch (IOException ex) {
+					throw new UncheckedIOException(ex);
+				}
+			});
+			writer.flush();
+		}
+		catch (UncheckedIOException ex) {
+			throw ex.getCause();
+		}
+	}
+
+	private void query(RowCallbackHandler rows) {
+		// owner ids start at 1
+		Integer after = 0;
+		Integer last;
+		while ((last = this.jdbcTemplate.queryForObject(LAST_OWNER_ID, Integer.class, after,
+				this.ownersPerQuery)) != null) {
+			this.jdbcTemplate.query(QUERY, rows, after, last);
+			after = last;
+		}
+	}
+
+	private static void writeCsvValue(Writer writer, String value) throws IOException {
+		if (value == null) {
+			return;
+		}
+		boolean quoted = value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0
+				|| value.indexOf('\r') >= 0;
+		if (!quoted) {
+			writer.write(value);
+			return;
+		}
+		writer.write('"');
+		writer.write(value.replace("\"", "\"\""));
+		writer.write('"');
+	}
+
+	/**
+	 * Opens an owner object when the owner id changes and a pet object when the pet id
+	 * changes, closing the ones before.
+	 */
+	private static final class NdjsonRows implements RowCallbackHandler {
+
+		private final JsonGenerator json;
+
+		private Integer ownerId;
+
+		private Integer petId;
+
+		NdjsonRows(JsonGenerator json) {
+			this.json = json;
+		}
+
+		@Override
+		public void processRow(ResultSet rs) throws SQLException {
+			try {
+				int ownerId = rs.getInt("owner_id");
+				Integer petId = rs.getObject("pet_id", Integer.class);
+				if (this.ownerId == null || this.ownerId != ownerId) {
+					endOwner();
+					startOwner(rs, ownerId);
+				}
+				if (petId != null && !petId.equals(this.petId)) {
+					endPet();
+					startPet(rs, petId);
+				}
+				Integer visitId = rs.getObject("visit_id", Integer.class);
+				if (visitId != null) {
+					this.json.writeStartObject();
+					this.json.writeNumberField("id", visitId);
+					writeDateField("date", rs.getObject("visit_date", LocalDate.class));
+					this.json.writeStringField("description", rs.getString("description"));
+					this.json.writeEndObject();
+				}
+			}
+			catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+		}
+
+		private void startOwner(ResultSet rs, int ownerId) throws SQLException, IOException {
+			this.ownerId = ownerId;
+			this.json.writeStartObject();
+			this.json.writeNumberField("id", ownerId);
+			this.json.writeStringField("firstName", rs.getString("first_name"));
+			this.json.writeStringField("lastName", rs.getString("last_name"));
+			this.json.writeStringField("address", rs.getString("address"));
+			this.json.writeStringField("city", rs.getString("city"));
+			this.json.writeStringField("telephone", rs.getString("telephone"));
+			this.json.writeArrayFieldStart("pets");
+		}
+
+		private void startPet(ResultSet rs, int petId) throws SQLException, IOException {
+			this.petId = petId;
+			this.json.writeStartObject();
+			this.json.writeNumberField("id", petId);
+			this.json.writeStringField("name", rs.getString("pet_name"));
+			writeDateField("birthDate", rs.getObject("birth_date", LocalDate.class));
+			this.json.writeStringField("type", rs.getString("pet_type"));
+			this.json.writeArrayFieldStart("visits");
+		}
+
+		private void endPet() throws IOException {
+			if (this.petId != null) {
+				this.json.writeEndArray();
+				this.json.writeEndObject();
+				this.petId = null;
+			}
+		}
+
+		void endOwner() throws IOException {
+			if (this.ownerId != null) {
+				endPet();
+				this.json.writeEndArray();
+				this.json.writeEndObject();
+				this.json.writeRaw('\n');
+				this.ownerId = null;
+			}
+		}
+
+		private void writeDateField(String name, LocalDate date) throws IOException {
+			if (date == null) {
+				this.json.writeNullField(name);
+			}
+			else {
+				this.json.writeStringField(name, date.toString());
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,130 @@
+package org.springframework.samples.petclinic.owner;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.samples.petclinic.utility.PrefixIndex;
+import org.springframework.stereotype.Component;
+
+/**
+ * Finds owners by the start of their last name in a {@link PrefixIndex} of all the owners,
+ * in the order of {@code (last_name, id)}, without querying the database.
+ * <p>
+ * The index is loaded once the application is ready and then kept up to date by
+ * {@link #saved(Owner)}. Until it is loaded, or if loading it failed, the lookups query
+ * the {@link OwnerRepository} instead, which matches and orders the names the same way,
+ * ignoring case.
+ */
+@Component
+public class OwnerLastNameIndex {
+
+	private static final Logger log = LoggerFactory.getLogger(OwnerLastNameIndex.class);
+
+	private final OwnerRepository owners;
+
+	private final PrefixIndex index = new PrefixIndex();
+
+	private volatile boolean loaded;
+
+	/** The owners saved while the index is loaded, guarded by this. */
+	private Map<Integer, String> savedWhileLoading;
+
+	public OwnerLastNameIndex(OwnerRepository owners) {
+		this.owners = owners;
+	}
+
+	/**
+	 * Loads the last names of all the owners into the index.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	public void load() {
+		synchronized (this) {
+			this.savedWhileLoading = new HashMap<>();
+		}
+		try {
+			Map<Integer, String> lastNames = new HashMap<>();
+			for (Object[] owner : this.owners.findAllLastNames()) {
+				lastNames.put((Integer) owner[0], (String) owner[1]);
+			}
+			synchronized (this) {
+				// the query may or may not have seen these
+				lastNames.putAll(this.savedWhileLoading);
+				this.index.replaceAll(lastNames);
+				this.loaded = true;
+			}
+			log.info("Indexed the last names of {} owners", lastNames.size());
+		}
+		catch (RuntimeException ex) {
+			log.warn("Could not index the last names of the owners, they will be searched in the database", ex);
+		}
+		finally {
+			synchronized (this) {
+				this.savedWhileLoading = null;
+			}
+		}
+	}
+
+	public boolean isLoaded() {
+		return this.loaded;
+	}
+
+	/**
+	 * Adds a new owner to the index, or moves a renamed one, once it has been committed.
+	 */
+	public synchronized void saved(Owner owner) {
+		if (this.savedWhileLoading != null) {
+			this.savedWhileLoading.put(owner.getId(), owner.getLastName());
+		}
+		else if (this.loaded) {
+			this.index.put(owner.getId(), owner.getLastName());
+		}
+	}
+
+	/**
+	 * @see OwnerRepository#findIdsByLastName(String, org.springframework.data.domain.Pageable)
+	 */
+	public List<Integer> findIds(String lastName, int limit) {
+		if (!this.loaded) {
+			return this.owners.findIdsByLastName(lastName, PageRequest.of(0, limit));
+		}
+		return list(this.index.startingWith(lastName, limit));
+	}
+
+	/**
+	 * @see OwnerRepository#findIdsByLastNameAfter(String, String, Integer,
+	 * org.springframework.data.domain.Pageable)
+	 */
+	public List<Integer> findIdsAfter(String lastName, String afterLastName, int afterId, int limit) {
+		if (!this.loaded) {
+			return this.owners.findIdsByLastNameAfter(lastName, afterLastName, afterId, PageRequest.of(0, limit));
+		}
+		return list(this.index.startingWithAfter(lastName, afterLastName, afterId, limit));
+	}
+
+	/**
+	 * @see OwnerRepository#findIdsByLastNameBefore(String, String, Integer,
+	 * org.springframework.data.domain.Pageable)
+	 */
+	public List<Integer> findIdsBefore(String lastName, String beforeLastName, int beforeId, int limit) {
+		if (!this.loaded) {
+			return this.owners.findIdsByLastNameBefore(lastName, beforeLastName, beforeId, PageRequest.of(0, limit));
+		}
+		return list(this.index.startingWithBefore(lastName, beforeLastName, beforeId, limit));
+	}
+
+	private static List<Integer> list(int[] ids) {
+		List<Integer> list = new ArrayList<>(ids.length);
+		for (int id : ids) {
+			list.add(id);
+		}
+		return list;
+	}
+
+}
@@ -16,7 +16,10 @@
 package org.springframework.samples.petclinic.owner;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.Repository;
 import org.springframework.data.repository.query.Param;
@@ -47,11 +50,141 @@ public interface OwnerRepository extends Repository<Owner, Integer> {
 	Collection<Owner> findByLastName(@Param("lastName") String lastName);
 
 	/**
-	 * Retrieve an {@link Owner} from the data store by id.
+	 * Retrieve the ids of the first owners whose last name starts with the given name,
+	 * ignoring case, in the order of {@code (lower(last_name), id)}, as
+	 * {@link OwnerLastNameIndex} does, seeking the {@code (last_name_lower, id)} index.
+	 * {@code %} and {@code _} in the name match themselves.
+	 * @param lastName Value to search for
+	 * @param limit how many ids to return, the page number must be 0
+	 * @return the ids
+	 */
+	default List<Integer> findIdsByLastName(String lastName, Pageable limit) {
+		return findIdsByLastNamePattern(lastNamePattern(lastName), limit);
+	}
+
+	/**
+	 * Retrieve the ids of the owners whose last name starts with the given name, ignoring
+	 * case, that come after the given owner in the order of {@code (lower(last_name), id)},
+	 * in that order.
+	 * @param lastName Value to search for
+	 * @param afterLastName the last name of the owner to start after
+	 * @param afterId the id of the owner to start after
+	 * @param limit how many ids to return, the page number must be 0
+	 * @return the ids
+	 */
+	default List<Integer> findIdsByLastNameAfter(String lastName, String afterLastName, Integer afterId,
+			Pageable limit) {
+		return findIdsByLastNamePatternAfter(lastNamePattern(lastName), lowerCase(afterLastName), afterId, limit);
+	}
+
+	/**
+	 * Retrieve the ids of the owners whose last name starts with the given name, ignoring
+	 * case, that come before the given owner in the order of
+	 * {@code (lower(last_name), id)}, closest first.
+	 * @param lastName Value to search for
+	 * @param beforeLastName the last name of the owner to end before
+	 * @param beforeId the id of the owner to end before
+	 * @param limit how many ids to return, the page number must be 0
+	 * @return the ids, in reverse order
+	 */
+	default List<Integer> findIdsByLastNameBefore(String lastName, String beforeLastName, Integer beforeId,
+			Pageable limit) {
+		return findIdsByLastNamePatternBefore(lastNamePattern(lastName), lowerCase(beforeLastName), beforeId, limit);
+	}
+
+	/**
+	 * @see #findIdsByLastName(String, Pageable)
+	 */
+	@Query("SELECT owner.id FROM Owner owner WHERE owner.lastNameLower LIKE :pattern ESCAPE '!' "
+			+ "ORDER BY owner.lastNameLower, owner.id")
+	@Transactional(readOnly = true)
+	List<Integer> findIdsByLastNamePattern(@Param("pattern") String pattern, Pageable limit);
+
+	/**
+	 * @see #findIdsByLastNameAfter(String, String, Integer, Pageable)
+	 */
+	@Query("SELECT owner.id FROM Owner owner WHERE owner.lastNameLower LIKE :pattern ESCAPE '!' "
+			+ "AND (owner.lastNameLower > :afterLastName "
+			+ "OR owner.lastNameLower = :afterLastName AND owner.id > :afterId) "
+			+ "ORDER BY owner.lastNameLower, owner.id")
+	@Transactional(readOnly = true)
+	List<Integer> findIdsByLastNamePatternAfter(@Param("pattern") String pattern,
+			@Param("afterLastName") String afterLastName, @Param("afterId") Integer afterId, Pageable limit);
+
+	/**
+	 * @see #findIdsByLastNameBefore(String, String, Integer, Pageable)
+	 */
+	@Query("SELECT owner.id FROM Owner owner WHERE owner.lastNameLower LIKE :pattern ESCAPE '!' "
+			+ "AND (owner.lastNameLower < :beforeLastName "
+			+ "OR owner.lastNameLower = :beforeLastName AND owner.id < :beforeId) "
+			+ "ORDER BY owner.lastNameLower DESC, owner.id DESC")
+	@Transactional(readOnly = true)
+	List<Integer> findIdsByLastNamePatternBefore(@Param("pattern") String pattern,
+			@Param("beforeLastName") String beforeLastName, @Param("beforeId") Integer beforeId, Pageable limit);
+
+	/**
+	 * @return a {@code LIKE} pattern, escaped with {@code !}, matching the lower case
+	 * names that start with the given one
+	 */
+	static String lastNamePattern(String lastName) {
+		return lowerCase(lastName).replace("!", "!!").replace("%", "!%").replace("_", "!_") + "%";
+	}
+
+	/**
+	 * Lower cases a name as the index of {@link OwnerLastNameIndex} does.
+	 */
+	static String lowerCase(String lastName) {
+		return lastName.toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * Retrieve the {@link Owner}s with the given ids along with their pets, in the order
+	 * of {@code (lower(last_name), id)}, as {@link OwnerLastNameIndex} orders them.
+	 * @param ids the ids, typically one page of them
+	 * @return the owners found
+	 */
+	@Query("SELECT DISTINCT owner FROM Owner owner left join fetch owner.pets pet left join fetch pet.type "
+			+ "WHERE owner.id IN :ids ORDER BY owner.lastNameLower, owner.id")
+	@Transactional(readOnly = true)
+	List<Owner> findAllWithPetsById(@Param("ids") Collection<Integer> ids);
+
+	/**
+	 * Retrieve the names and city of the {@link Owner}s with the given ids, with how many
+	 * pets each has, without loading the pets.
+	 * @param ids the ids, typically those of a few search results
+	 * @return the id, first name, last name, city and number of pets of each owner found,
+	 * in no particular order
+	 */
+	@Query("SELECT owner.id, owner.firstName, owner.lastName, owner.city, COUNT(pet) FROM Owner owner "
+			+ "LEFT JOIN owner.pets pet WHERE owner.id IN :ids "
+			+ "GROUP BY owner.id, owner.firstName, owner.lastName, owner.city")
+	@Transactional(readOnly = true)
+	List<Object[]> findSummariesById(@Param("ids") Collection<Integer> ids);
+
+	/**
+	 * Retrieve the id and last name of every {@link Owner}.
+	 * @return pairs of id and last name
+	 */
+	@Query("SELECT owner.id, owner.lastName FROM Owner owner")
+	@Transactional(readOnly = true)
+	List<Object[]> findAllLastNames();
+
+	/**
+	 * Retrieve the searchable fields of every {@link Owner}.
+	 * @return the id, first name, last name, address, city and telephone of each owner
+	 */
+	@Query("SELECT owner.id, owner.firstName, owner.lastName, owner.address, owner.city, owner.telephone "
+			+ "FROM Owner owner")
+	@Transactional(readOnly = true)
+	List<Object[]> findAllSearchFields();
+
+	/**
+	 * Retrieve an {@link Owner} from the data store by id, with its pets and their types
+	 * in a single query.
 	 * @param id the id to search for
 	 * @return the {@link Owner} if found
 	 */
-	@Query("SELECT owner FROM Owner owner left join fetch owner.pets WHERE owner.id =:id")
+	@Query("SELECT owner FROM Owner owner left join fetch owner.pets pet left join fetch pet.type WHERE owner.id =:id")
 	@Transactional(readOnly = true)
 	Owner findById(@Param("id") Integer id);
 
@@ -0,0 +1,179 @@
+package org.springframework.samples.petclinic.owner;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.samples.petclinic.utility.FullTextIndex;
+import org.springframework.stereotype.Component;
+
+/**
+ * Finds owners by any words of their names, address, city, telephone or the names of their
+ * pets, misspelled or not, best matches first, in a {@link FullTextIndex} of all the owners.
+ * <p>
+ * The index is loaded once the application is ready and then kept up to date by
+ * {@link #saved(Owner)} and {@link #savedPet(Owner, Pet)}. Until it is loaded, or if loading
+ * it failed, searches look the query up as the start of a last name in the
+ * {@link OwnerRepository} instead.
+ */
+@Component
+public class OwnerSearch {
+
+	private static final Logger log = LoggerFactory.getLogger(OwnerSearch.class);
+
+	// the fields of the index, a last name says more about an owner than a city
+	static final int LAST_NAME = 0;
+
+	static final int FIRST_NAME = 1;
+
+	static final int PETS = 2;
+
+	static final int CITY = 3;
+
+	static final int ADDRESS = 4;
+
+	static final int TELEPHONE = 5;
+
+	private final OwnerRepository owners;
+
+	private final PetRepository pets;
+
+	private final FullTextIndex index = new FullTextIndex(3, 2, 1.5, 1, 1, 1);
+
+	private volatile boolean loaded;
+
+	/** Counts the owners and pets saved, each once it can be found. */
+	private final AtomicLong changes = new AtomicLong();
+
+	/** The changes saved while the index is loaded, guarded by this. */
+	private List<Runnable> savedWhileLoading;
+
+	public OwnerSearch(OwnerRepository owners, PetRepository pets) {
+		this.owners = owners;
+		this.pets = pets;
+	}
+
+	/**
+	 * Loads all the owners and the names of their pets into the index.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	public void load() {
+		synchronized (this) {
+			this.savedWhileLoading = new ArrayList<>();
+		}
+		try {
+			Map<Integer, StringBuilder> petNames = new HashMap<>();
+			for (Object[] pet : this.pets.findAllOwnerIdsAndNames()) {
+				if (pet[0] != null && pet[1] != null) {
+					petNames.computeIfAbsent((Integer) pet[0], id -> new StringBuilder()).append(pet[1]).append(' ');
+				}
+			}
+			int count = 0;
+			for (Object[] owner : this.owners.findAllSearchFields()) {
+				StringBuilder names = petNames.get(owner[0]);
+				this.index.put((Integer) owner[0], text(owner[2]), text(owner[1]),
+						names == null ? "" : names.toString(), text(owner[4]), text(owner[3]), text(owner[5]));
+				count++;
+			}
+			synchronized (this) {
+				// the queries may or may not have seen these
+				this.savedWhileLoading.forEach(Runnable::run);
+				this.loaded = true;
+			}
+			log.info("Indexed {} owners for search", count);
+		}
+		catch (RuntimeException ex) {
+			log.warn("Could not index the owners, they will be searched by last name in the database", ex);
+		}
+		finally {
+			synchronized (this) {
+				this.savedWhileLoading = null;
+			}
+		}
+	}
+
+	public boolean isLoaded() {
+		return this.loaded;
+	}
+
+	/**
+	 * Indexes a new owner, or the new details of one, once it has been committed. The pets
+	 * of the owner are left as they were indexed.
+	 */
+	public void saved(Owner owner) {
+		int id = owner.getId();
+		String[] texts = new String[TELEPHONE + 1];
+		texts[LAST_NAME] = text(owner.getLastName());
+		texts[FIRST_NAME] = text(owner.getFirstName());
+		texts[CITY] = text(owner.getCity());
+		texts[ADDRESS] = text(owner.getAddress());
+		texts[TELEPHONE] = text(owner.getTelephone());
+		update(() -> this.index.put(id, texts));
+		this.changes.incrementAndGet();
+	}
+
+	/**
+	 * Indexes the name of a new or renamed pet once it has been committed.
+	 * @param owner the owner of the pet, with its other pets; it may still have the pet
+	 * with its previous name, or not have it at all yet
+	 * @param pet the saved pet
+	 */
+	public void savedPet(Owner owner, Pet pet) {
+		int id = owner.getId();
+		StringBuilder names = new StringBuilder();
+		for (Pet other : owner.getPets()) {
+			if (other != pet && (other.getId() == null || !other.getId().equals(pet.getId()))) {
+				names.append(text(other.getName())).append(' ');
+			}
+		}
+		names.append(text(pet.getName()));
+		String[] texts = new String[PETS + 1];
+		texts[PETS] = names.toString();
+		update(() -> this.index.put(id, texts));
+		this.changes.incrementAndGet();
+	}
+
+	/**
+	 * @return how many owners and pets were saved so far; a search that read a count can
+	 * only have missed the saves counted after it
+	 */
+	public long getChanges() {
+		return this.changes.get();
+	}
+
+	/**
+	 * @return the ids of the owners best matching every word of the query, best first, at
+	 * most {@code limit} of them
+	 */
+	public List<Integer> findIds(String query, int limit) {
+		if (!this.loaded) {
+			return this.owners.findIdsByLastName(query.trim(), PageRequest.of(0, limit));
+		}
+		List<Integer> ids = new ArrayList<>();
+		for (FullTextIndex.Hit hit : this.index.search(query, limit)) {
+			ids.add(hit.getId());
+		}
+		return ids;
+	}
+
+	private synchronized void update(Runnable change) {
+		if (this.savedWhileLoading != null) {
+			this.savedWhileLoading.add(change);
+		}
+		else if (this.loaded) {
+			change.run();
+		}
+	}
+
+	private static String text(Object value) {
+		return value == null ? "" : value.toString();
+	}
+
+}
@@ -0,0 +1,168 @@
+package org.springframework.samples.petclinic.owner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.PreDestroy;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.samples.petclinic.utility.CacheMaintenanceScheduler;
+import org.springframework.samples.petclinic.utility.CacheStats;
+import org.springframework.samples.petclinic.utility.FullTextIndex;
+import org.springframework.samples.petclinic.utility.TimedCache;
+import org.springframework.stereotype.Component;
+
+/**
+ * Suggests owners while a query is being typed: the best matches of the
+ * {@link OwnerSearch}, with just what a list of suggestions shows of each.
+ * <p>
+ * Typing sends the same few prefixes again and again, so the suggestions are cached by
+ * {@link FullTextIndex#normalize(String) normalized} query. A cached entry remembers the
+ * {@link OwnerSearch#getChanges() changes} of the search it was loaded after, and the
+ * first read after an owner or pet was saved drops the whole cache. A miss loads the
+ * owners found with one grouped query, never the {@code LIKE} search of
+ * {@link OwnerRepository#findByLastName(String)}. Until the search is loaded, its
+ * database fallback matches the whole query as the start of a last name, ignoring case,
+ * rather than word by word, so its suggestions are not cached.
+ */
+@Component
+public class OwnerTypeahead implements MeterBinder {
+
+	/** The most suggestions returned, and cached, for a query. */
+	static final int MAX_SIZE = 10;
+
+	private final OwnerSearch search;
+
+	private final OwnerRepository owners;
+
+	private final TimedCache<String, Suggestions> cache;
+
+	public OwnerTypeahead(OwnerSearch search, OwnerRepository owners, CacheMaintenanceScheduler scheduler,
+			@Value("${petclinic.cache.owner-typeahead.expiry-millis:5000}") long expiryInMillis,
+			@Value("${petclinic.cache.owner-typeahead.maximum-size:10000}") long maximumSize) {
+		this.search = search;
+		this.owners = owners;
+		this.cache = TimedCache.<String, Suggestions>builder("owner-typeahead", this::load)
+				.expireAfterWrite(expiryInMillis).maximumSize(maximumSize).maintainedBy(scheduler).build();
+	}
+
+	/**
+	 * @return the owners best matching every word of the query, best first, at most
+	 * {@code size} of them and never more than {@value #MAX_SIZE}
+	 */
+	public List<Suggestion> suggest(String query, int size) {
+		List<Suggestion> suggestions;
+		if (!this.search.isLoaded()) {
+			suggestions = load(query).suggestions;
+		}
+		else {
+			String normalized = FullTextIndex.normalize(query);
+			if (normalized.isEmpty()) {
+				return Collections.emptyList();
+			}
+			Suggestions cached = this.cache.get(normalized);
+			if (cached.changes != this.search.getChanges()) {
+				this.cache.invalidateAll();
+				cached = this.cache.get(normalized);
+			}
+			suggestions = cached.suggestions;
+		}
+		return suggestions.subList(0, Math.max(0, Math.min(size, suggestions.size())));
+	}
+
+	public CacheStats stats() {
+		return this.cache.stats();
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		this.cache.bindTo(registry);
+	}
+
+	@PreDestroy
+	public void close() {
+		this.cache.close();
+	}
+
+	private Suggestions load(String query) {
+		// read first, the search then sees at least these changes
+		long changes = this.search.getChanges();
+		List<Integer> ids = this.search.findIds(query, MAX_SIZE);
+		Map<Integer, Suggestion> byId = new HashMap<>();
+		if (!ids.isEmpty()) {
+			for (Object[] owner : this.owners.findSummariesById(ids)) {
+				Suggestion suggestion = new Suggestion((Integer) owner[0], owner[1] + " " + owner[2],
+						(String) owner[3], ((Number) owner[4]).intValue());
+				byId.put(suggestion.getId(), suggestion);
+			}
+		}
+		List<Suggestion> suggestions = new ArrayList<>(ids.size());
+		for (Integer id : ids) {
+			// the owner may have been indexed before it was committed
+			if (byId.containsKey(id)) {
+				suggestions.add(byId.get(id));
+			}
+		}
+		return new Suggestions(changes, Collections.unmodifiableList(suggestions));
+	}
+
+	private static final class Suggestions {
+
+		final long changes;
+
+		final List<Suggestion> suggestions;
+
+		Suggestions(long changes, List<Suggestion> suggestions) {
+			this.changes = changes;
+			this.suggestions = suggestions;
+		}
+
+	}
+
+	/**
+	 * An owner as suggested, serialized as JSON.
+	 */
+	public static final class Suggestion {
+
+		private final int id;
+
+		private final String name;
+
+		private final String city;
+
+		private final int petCount;
+
+		Suggestion(int id, String name, String city, int petCount) {
+			this.id = id;
+			this.name = name;
+			this.city = city;
+			this.petCount = petCount;
+		}
+
+		public int getId() {
+			return this.id;
+		}
+
+		/**
+		 * @return the first and last name
+		 */
+		public String getName() {
+			return this.name;
+		}
+
+		public String getCity() {
+			return this.city;
+		}
+
+		public int getPetCount() {
+			return this.petCount;
+		}
+
+	}
+
+}
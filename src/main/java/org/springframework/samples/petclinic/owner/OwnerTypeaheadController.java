@@ -0,0 +1,29 @@
+package org.springframework.samples.petclinic.owner;
+
+import java.util.List;
+
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+/**
+ * Owner suggestions as JSON, for a search box to call as its query is typed.
+ */
+@Controller
+class OwnerTypeaheadController {
+
+	private final OwnerTypeahead typeahead;
+
+	public OwnerTypeaheadController(OwnerTypeahead typeahead) {
+		this.typeahead = typeahead;
+	}
+
+	@GetMapping(path = "/owners/typeahead", produces = MediaType.APPLICATION_JSON_VALUE)
+	public @ResponseBody List<OwnerTypeahead.Suggestion> suggest(@RequestParam("q") String query,
+			@RequestParam(name = "size", defaultValue = "" + OwnerTypeahead.MAX_SIZE) int size) {
+		return this.typeahead.suggest(query, size);
+	}
+
+}
@@ -16,14 +16,10 @@
 package org.springframework.samples.petclinic.owner;
 
 import java.time.LocalDate;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashSet;
-import java.util.LinkedHashSet;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Set;
-import java.util.stream.Collectors;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
@@ -32,10 +28,9 @@ import javax.persistence.ManyToOne;
 import javax.persistence.Table;
 import javax.persistence.Transient;
 
-import org.springframework.beans.support.MutableSortDefinition;
-import org.springframework.beans.support.PropertyComparator;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.samples.petclinic.model.NamedEntity;
+import org.springframework.samples.petclinic.utility.SortedIdentityMap;
 import org.springframework.samples.petclinic.visit.Visit;
 
 /**
@@ -63,8 +58,9 @@ public class Pet extends NamedEntity {
 	@JoinColumn(name = "owner_id")
 	private Owner owner;
 
+	/** The visits, most recent first. */
 	@Transient
-	private Set<Visit> visits = new LinkedHashSet<>();
+	private SortedIdentityMap<LocalDate, Visit> visits;
 
 	public void setBirthDate(LocalDate birthDate) {
 		this.birthDate = birthDate;
@@ -90,38 +86,61 @@ public class Pet extends NamedEntity {
 		this.owner = owner;
 	}
 
-	private Set<Visit> getVisitsInternal() {
+	@Override
+	public void setName(String name) {
+		super.setName(name);
+		if (this.owner != null) {
+			this.owner.petRenamed(this);
+		}
+	}
+
+	private SortedIdentityMap<LocalDate, Visit> getVisitsInternal() {
 		if (this.visits == null) {
-			this.visits = new HashSet<>();
+			this.visits = new SortedIdentityMap<>(Visit::getDate, Comparator.reverseOrder());
 		}
 		return this.visits;
 	}
 
 	protected void setVisitsInternal(Collection<Visit> visits) {
-		this.visits = new LinkedHashSet<>(visits);
+		this.visits = new SortedIdentityMap<>(Visit::getDate, Comparator.reverseOrder(), visits);
 	}
 
 	public List<Visit> getVisits() {
-		List<Visit> sortedVisits = new ArrayList<>(getVisitsInternal());
-		PropertyComparator.sort(sortedVisits, new MutableSortDefinition("date", false, false));
-		return Collections.unmodifiableList(sortedVisits);
+		return getVisitsInternal().asList();
 	}
 
+	/**
+	 * @return the visits strictly after {@code start} and before {@code end}, most recent
+	 * first
+	 */
 	public List<Visit> getVisitsBetween(LocalDate start, LocalDate end) {
-		return getVisitsInternal().stream()
-			.filter(visit -> {
-				return visit.getDate().isAfter(start) &&
-					visit.getDate().isBefore(end);
-			})
-			.collect(Collectors.toList());
+		return getVisitsInternal().range(end, false, start, false);
 	}
 
+	/**
+	 * @return the visits before the pet reached the given age, most recent first; visits
+	 * dated before the birth of the pet count as before any age, and a pet without a birth
+	 * date has none
+	 */
 	public List<Visit> getVisitsUntilAge(int age) {
-		return getVisitsInternal().stream()
-			.filter(visit -> {
-				return getBirthDate().until(visit.getDate()).getYears() < age;
-			})
-			.collect(Collectors.toList());
+		LocalDate dateOfAge = getDateOfAge(age);
+		if (dateOfAge == null) {
+			return Collections.emptyList();
+		}
+		return getVisitsInternal().range(dateOfAge, false, LocalDate.MIN, true);
+	}
+
+	/**
+	 * @return the first day the pet is at least {@code age} years old, the visits until
+	 * that age being those strictly before it, or {@code null} without a birth date
+	 */
+	public LocalDate getDateOfAge(int age) {
+		if (getBirthDate() == null) {
+			return null;
+		}
+		LocalDate date = getBirthDate().plusYears(age);
+		// a pet born on February 29 comes of age on March 1 of other years
+		return getBirthDate().until(date).getYears() < age ? date.plusDays(1) : date;
 	}
 
 	public void removeVisit(Visit visit) {
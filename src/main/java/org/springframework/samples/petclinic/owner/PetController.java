@@ -36,21 +36,15 @@ class PetController {
 
 	private static final String VIEWS_PETS_CREATE_OR_UPDATE_FORM = "pets/createOrUpdatePetForm";
 
-	private final PetRepository pets;
-
-	private final OwnerRepository owners;
-
 	private final PetService petService;
 
-	public PetController(PetRepository pets, OwnerRepository owners, PetService petService) {
-		this.pets = pets;
-		this.owners = owners;
+	public PetController(PetService petService) {
 		this.petService = petService;
 	}
 
 	@ModelAttribute("types")
 	public Collection<PetType> populatePetTypes() {
-		return this.pets.findPetTypes();
+		return this.petService.findPetTypes();
 	}
 
 	@ModelAttribute("owner")
@@ -58,9 +52,13 @@ class PetController {
 		return this.petService.findOwner(ownerId);
 	}
 
+	/**
+	 * The owner comes from the owner cache and is shared between requests, so none of its
+	 * fields may be bound from the request.
+	 */
 	@InitBinder("owner")
 	public void initOwnerBinder(WebDataBinder dataBinder) {
-		dataBinder.setDisallowedFields("id");
+		dataBinder.setDisallowedFields("*");
 	}
 
 	@InitBinder("pet")
@@ -70,8 +68,7 @@ class PetController {
 
 	@GetMapping("/pets/new")
 	public String initCreationForm(Owner owner, ModelMap model) {
-		Pet pet = petService.newPet(owner);
-		model.put("pet", pet);
+		model.put("pet", this.petService.newPet(owner));
 		return VIEWS_PETS_CREATE_OR_UPDATE_FORM;
 	}
 
@@ -80,7 +77,7 @@ class PetController {
 		if (StringUtils.hasLength(pet.getName()) && pet.isNew() && owner.getPet(pet.getName(), true) != null) {
 			result.rejectValue("name", "duplicate", "already exists");
 		}
-		owner.addPet(pet);
+		pet.setOwner(owner);
 		if (result.hasErrors()) {
 			model.put("pet", pet);
 			return VIEWS_PETS_CREATE_OR_UPDATE_FORM;
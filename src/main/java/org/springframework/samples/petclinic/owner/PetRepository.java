@@ -15,10 +15,12 @@
  */
 package org.springframework.samples.petclinic.owner;
 
+import java.util.Collection;
 import java.util.List;
 
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.Repository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.transaction.annotation.Transactional;
 
 /**
@@ -50,10 +52,34 @@ public interface PetRepository extends Repository<Pet, Integer> {
 	@Transactional(readOnly = true)
 	Pet findById(Integer id);
 
+	/**
+	 * Retrieve the name of every {@link Pet} along with the id of its owner.
+	 * @return pairs of owner id and pet name
+	 */
+	@Query("SELECT pet.owner.id, pet.name FROM Pet pet")
+	@Transactional(readOnly = true)
+	List<Object[]> findAllOwnerIdsAndNames();
+
+	/**
+	 * Retrieve which of the given ids are those of a {@link Pet}.
+	 * @param ids the ids to look for
+	 * @return the ids found, in no particular order
+	 */
+	@Query("SELECT pet.id FROM Pet pet WHERE pet.id IN :ids")
+	@Transactional(readOnly = true)
+	List<Integer> findExistingIds(@Param("ids") Collection<Integer> ids);
+
 	/**
 	 * Save a {@link Pet} to the data store, either inserting or updating it.
 	 * @param pet the {@link Pet} to save
 	 */
 	void save(Pet pet);
 
+	/**
+	 * Save several {@link Pet}s to the data store in a single transaction, letting the
+	 * JDBC driver batch the statements.
+	 * @param pets the {@link Pet}s to save
+	 */
+	void saveAll(Iterable<Pet> pets);
+
 }
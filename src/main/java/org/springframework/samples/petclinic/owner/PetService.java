@@ -3,48 +3,112 @@ package org.springframework.samples.petclinic.owner;
 import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.samples.petclinic.utility.PetTimedCache;
+import org.springframework.samples.petclinic.utility.TimedCache;
+import org.springframework.samples.petclinic.utility.UnitOfWork;
 import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestContextHolder;
 
+import java.util.List;
+
+/**
+ * Within a web request, owners and pets are looked up once per request and saves are
+ * written when the request's {@link UnitOfWork} commits; elsewhere, e.g. in batch jobs,
+ * they are written right away.
+ */
 @Service
 public class PetService {
 
 	private final PetTimedCache pets;
 
-	private final OwnerRepository owners;
+	private final TimedCache<Integer, Owner> owners;
+
+	private final PetTypeRegistry petTypes;
+
+	private final UnitOfWork unitOfWork;
+
+	private final OwnerSearch search;
 
 	private final Logger log;
 
 	@Autowired
 	public PetService(
 		PetTimedCache pets,
-		OwnerRepository owners,
+		TimedCache<Integer, Owner> owners,
+		PetTypeRegistry petTypes,
+		UnitOfWork unitOfWork,
+		OwnerSearch search,
 		Logger criticalLogger) {
 		this.pets = pets;
 		this.owners = owners;
+		this.petTypes = petTypes;
+		this.unitOfWork = unitOfWork;
+		this.search = search;
 		this.log = criticalLogger;
 	}
 
+	/**
+	 * Returns the owner from the owner cache. The instance is shared between requests and
+	 * must not be modified.
+	 */
 	public Owner findOwner(int ownerId) {
 		log.info("find owner {}", ownerId);
-		return this.owners.findById(ownerId);
+		if (!inRequest()) {
+			return this.owners.get(ownerId);
+		}
+		return this.unitOfWork.find(Owner.class, ownerId, id -> {
+			Owner owner = this.owners.get(id);
+			if (owner != null) {
+				// the owner's pets come with it, there is no need to load them again
+				owner.getPets().forEach(pet -> this.unitOfWork.register(Pet.class, pet));
+			}
+			return owner;
+		});
 	}
 
+	public List<PetType> findPetTypes() {
+		return this.petTypes.findAll();
+	}
+
+	/**
+	 * Returns a new pet of the given owner. The owner itself only gets the pet once
+	 * {@link #savePet(Pet, Owner)} saved it, since it may be the cached instance.
+	 */
 	public Pet newPet(Owner owner) {
 		log.info("add pet for owner {}", owner.getId());
 		Pet pet = new Pet();
-		owner.addPet(pet);
+		pet.setOwner(owner);
 		return pet;
 	}
 
 	public Pet findPet(int petId) {
 		log.info("find pet by id {}", petId);
-		return this.pets.get(petId);
+		return inRequest() ? this.unitOfWork.find(Pet.class, petId, this.pets::get) : this.pets.get(petId);
 	}
 
+	/**
+	 * Saves a pet of the given owner. The owner itself is left untouched since it may be
+	 * the cached instance; it is evicted so that its next lookup shows the pet, and the
+	 * {@link OwnerSearch} indexes the name of the pet.
+	 */
 	public void savePet(Pet pet, Owner owner) {
 		log.info("save pet {}", pet.getId());
-		owner.addPet(pet);
-		this.pets.save(pet);
+		pet.setOwner(owner);
+		if (inRequest()) {
+			this.unitOfWork.registerDirty(Pet.class, pet);
+			this.unitOfWork.afterCommit(() -> {
+				this.owners.invalidate(owner.getId());
+				this.search.savedPet(owner, pet);
+			});
+		}
+		else {
+			this.pets.save(pet);
+			this.owners.invalidate(owner.getId());
+			this.search.savedPet(owner, pet);
+		}
+	}
+
+	private static boolean inRequest() {
+		return RequestContextHolder.getRequestAttributes() != null;
 	}
 
 }
@@ -15,9 +15,13 @@
  */
 package org.springframework.samples.petclinic.owner;
 
+import java.util.Collection;
+import java.util.Collections;
+
 import javax.persistence.Entity;
 import javax.persistence.Table;
 
+import org.springframework.data.domain.DomainEvents;
 import org.springframework.samples.petclinic.model.NamedEntity;
 
 /**
@@ -27,4 +31,13 @@ import org.springframework.samples.petclinic.model.NamedEntity;
 @Table(name = "types")
 public class PetType extends NamedEntity {
 
+	/**
+	 * Published by {@link PetTypeRepository#save(Object)}, for the {@link PetTypeRegistry}
+	 * to load the types again.
+	 */
+	@DomainEvents
+	Collection<PetType> saved() {
+		return Collections.singleton(this);
+	}
+
 }
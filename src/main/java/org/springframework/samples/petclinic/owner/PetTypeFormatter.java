@@ -16,7 +16,6 @@
 package org.springframework.samples.petclinic.owner;
 
 import java.text.ParseException;
-import java.util.Collection;
 import java.util.Locale;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -36,11 +35,11 @@ import org.springframework.stereotype.Component;
 @Component
 public class PetTypeFormatter implements Formatter<PetType> {
 
-	private final PetRepository pets;
+	private final PetTypeRegistry petTypes;
 
 	@Autowired
-	public PetTypeFormatter(PetRepository pets) {
-		this.pets = pets;
+	public PetTypeFormatter(PetTypeRegistry petTypes) {
+		this.petTypes = petTypes;
 	}
 
 	@Override
@@ -48,15 +47,28 @@ public class PetTypeFormatter implements Formatter<PetType> {
 		return petType.getName();
 	}
 
+	/**
+	 * Finds the pet type by name, or else by id, in the {@link PetTypeRegistry}.
+	 */
 	@Override
 	public PetType parse(String text, Locale locale) throws ParseException {
-		Collection<PetType> findPetTypes = this.pets.findPetTypes();
-		for (PetType type : findPetTypes) {
-			if (type.getName().equals(text)) {
-				return type;
-			}
+		PetType type = this.petTypes.findByName(text);
+		if (type == null) {
+			type = findById(text);
+		}
+		if (type == null) {
+			throw new ParseException("type not found: " + text, 0);
+		}
+		return type;
+	}
+
+	private PetType findById(String text) {
+		try {
+			return this.petTypes.findById(Integer.parseInt(text));
+		}
+		catch (NumberFormatException ex) {
+			return null;
 		}
-		throw new ParseException("type not found: " + text, 0);
 	}
 
 }
@@ -0,0 +1,113 @@
+package org.springframework.samples.petclinic.owner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * All the pet types, indexed by name and by id, so that binding a pet form or listing the
+ * types of the pet form does not query the database.
+ * <p>
+ * The types are loaded once the application is ready, or on first use if that comes
+ * first, and loaded again once a type saved through the {@link PetTypeRepository} is
+ * committed. Each load replaces the types and both indexes at once, so a lookup never
+ * sees a name without its id, and the instances are shared between requests: they must
+ * not be modified.
+ */
+@Component
+public class PetTypeRegistry {
+
+	private static final Logger log = LoggerFactory.getLogger(PetTypeRegistry.class);
+
+	private final PetRepository pets;
+
+	private volatile Types types;
+
+	public PetTypeRegistry(PetRepository pets) {
+		this.pets = pets;
+	}
+
+	/**
+	 * Loads all the pet types, replacing the ones loaded before.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	public synchronized void load() {
+		this.types = new Types(this.pets.findPetTypes());
+		log.info("Loaded {} pet types", this.types.all.size());
+	}
+
+	/**
+	 * Loads the types again once a type saved through the {@link PetTypeRepository} is
+	 * committed, or right away outside of a transaction.
+	 * @see PetType#saved()
+	 */
+	@TransactionalEventListener(fallbackExecution = true)
+	public void saved(PetType type) {
+		load();
+	}
+
+	/**
+	 * @return all the pet types, ordered by name
+	 */
+	public List<PetType> findAll() {
+		return types().all;
+	}
+
+	/**
+	 * @return the pet type with the given name, or {@code null} if there is none
+	 */
+	public PetType findByName(String name) {
+		return types().byName.get(name);
+	}
+
+	/**
+	 * @return the pet type with the given id, or {@code null} if there is none
+	 */
+	public PetType findById(int id) {
+		return types().byId.get(id);
+	}
+
+	private Types types() {
+		Types types = this.types;
+		if (types == null) {
+			synchronized (this) {
+				if (this.types == null) {
+					load();
+				}
+				types = this.types;
+			}
+		}
+		return types;
+	}
+
+	/**
+	 * The pet types of one load, never modified.
+	 */
+	private static final class Types {
+
+		private final List<PetType> all;
+
+		private final Map<String, PetType> byName = new HashMap<>();
+
+		private final Map<Integer, PetType> byId = new HashMap<>();
+
+		Types(List<PetType> all) {
+			this.all = Collections.unmodifiableList(new ArrayList<>(all));
+			for (PetType type : all) {
+				this.byName.put(type.getName(), type);
+				this.byId.put(type.getId(), type);
+			}
+		}
+
+	}
+
+}
@@ -15,12 +15,16 @@
  */
 package org.springframework.samples.petclinic.owner;
 
+import java.util.List;
 import java.util.Map;
 
 import javax.validation.Valid;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.samples.petclinic.utility.TimedCache;
+import org.springframework.samples.petclinic.utility.UnitOfWork;
 import org.springframework.samples.petclinic.visit.Visit;
-import org.springframework.samples.petclinic.visit.VisitRepository;
+import org.springframework.samples.petclinic.visit.VisitSummaries;
 import org.springframework.stereotype.Controller;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.WebDataBinder;
@@ -40,13 +44,23 @@ import org.springframework.web.bind.annotation.PostMapping;
 @Controller
 class VisitController {
 
-	private final VisitRepository visits;
-
 	private final PetRepository pets;
 
-	public VisitController(VisitRepository visits, PetRepository pets) {
-		this.visits = visits;
+	private final TimedCache<Integer, List<Visit>> visitCache;
+
+	private final UnitOfWork unitOfWork;
+
+	private final VisitSummaries summaries;
+
+	private final int recentVisits;
+
+	public VisitController(PetRepository pets, TimedCache<Integer, List<Visit>> visitCache, UnitOfWork unitOfWork,
+			VisitSummaries summaries, @Value("${petclinic.visits.recent:5}") int recentVisits) {
 		this.pets = pets;
+		this.visitCache = visitCache;
+		this.unitOfWork = unitOfWork;
+		this.summaries = summaries;
+		this.recentVisits = recentVisits;
 	}
 
 	@InitBinder
@@ -57,14 +71,20 @@ class VisitController {
 	/**
 	 * Called before each and every @RequestMapping annotated method. 2 goals: - Make sure
 	 * we always have fresh data - Since we do not use the session scope, make sure that
-	 * Pet object always has an id (Even though id is not part of the form fields)
+	 * Pet object always has an id (Even though id is not part of the form fields). The
+	 * {@code petclinic.visits.recent} most recent visits of the pet are listed as on the
+	 * owner page, older ones being paged by the {@link VisitHistoryController}.
 	 * @param petId
 	 * @return Pet
 	 */
 	@ModelAttribute("visit")
 	public Visit loadPetWithVisit(@PathVariable("petId") int petId, Map<String, Object> model) {
-		Pet pet = this.pets.findById(petId);
-		pet.setVisitsInternal(this.visits.findByPetId(petId));
+		// loaded from the repository rather than the pet cache since a visit is added to it
+		Pet pet = this.unitOfWork.find(Pet.class, petId, this.pets::findById);
+		// the cache holds one more visit than shown, telling whether there are older ones
+		List<Visit> previousVisits = this.visitCache.get(petId);
+		model.put("olderVisits", previousVisits.size() > this.recentVisits);
+		model.put("previousVisits", previousVisits.subList(0, Math.min(previousVisits.size(), this.recentVisits)));
 		model.put("pet", pet);
 		Visit visit = new Visit();
 		pet.addVisit(visit);
@@ -79,12 +99,16 @@ class VisitController {
 
 	// Spring MVC calls method loadPetWithVisit(...) before processNewVisitForm is called
 	@PostMapping("/owners/{ownerId}/pets/{petId}/visits/new")
-	public String processNewVisitForm(@Valid Visit visit, BindingResult result) {
+	public String processNewVisitForm(@PathVariable("petId") int petId, @Valid Visit visit, BindingResult result) {
 		if (result.hasErrors()) {
 			return "pets/createOrUpdateVisitForm";
 		}
 		else {
-			this.visits.save(visit);
+			this.unitOfWork.registerDirty(Visit.class, visit);
+			this.unitOfWork.afterCommit(() -> {
+				this.visitCache.invalidate(petId);
+				this.summaries.added(visit);
+			});
 			return "redirect:/owners/{ownerId}";
 		}
 	}
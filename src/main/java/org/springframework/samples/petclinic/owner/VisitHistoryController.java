@@ -0,0 +1,108 @@
+package org.springframework.samples.petclinic.owner;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.samples.petclinic.utility.PetTimedCache;
+import org.springframework.samples.petclinic.visit.Visit;
+import org.springframework.samples.petclinic.visit.VisitRepository;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * The visit history of a pet, one page at a time, for the visits older than the few the
+ * owner page shows. Pages are ordered by {@code (visit_date, id)}, most recent first, and
+ * addressed by the visit they start after or end before, written {@code id-date}, so
+ * that any page is read by seeking the {@code (pet_id, visit_date, id)} index instead of
+ * skipping the visits before it.
+ */
+@Controller
+class VisitHistoryController {
+
+	private final PetTimedCache pets;
+
+	private final VisitRepository visits;
+
+	public VisitHistoryController(PetTimedCache pets, VisitRepository visits) {
+		this.pets = pets;
+		this.visits = visits;
+	}
+
+	@GetMapping("/owners/{ownerId}/pets/{petId}/visits")
+	public String showVisitHistory(@PathVariable("ownerId") int ownerId, @PathVariable("petId") int petId,
+			Map<String, Object> model,
+			@RequestParam(name = "size", defaultValue = "" + OwnerController.DEFAULT_PAGE_SIZE) int size,
+			@RequestParam(name = "after", required = false) String after,
+			@RequestParam(name = "before", required = false) String before) {
+		Pet pet = this.pets.get(petId);
+		if (pet == null || (pet.getOwner() != null && pet.getOwner().getId() != ownerId)) {
+			throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No pet " + petId + " for owner " + ownerId);
+		}
+		int pageSize = Math.max(1, Math.min(size, OwnerController.MAX_PAGE_SIZE));
+		// one more than the page tells whether there is another page
+		PageRequest limit = PageRequest.of(0, pageSize + 1);
+
+		List<Visit> page;
+		boolean hasPrevious;
+		boolean hasNext;
+		if (before != null) {
+			Visit cursor = parseCursor(before);
+			page = new ArrayList<>(this.visits.findByPetIdNewerThan(petId, cursor.getDate(), cursor.getId(), limit));
+			hasPrevious = page.size() > pageSize;
+			hasNext = true;
+			page = page.subList(0, Math.min(page.size(), pageSize));
+			Collections.reverse(page);
+		}
+		else {
+			if (after != null) {
+				Visit cursor = parseCursor(after);
+				page = this.visits.findByPetIdOlderThan(petId, cursor.getDate(), cursor.getId(), limit);
+			}
+			else {
+				page = this.visits.findRecentByPetId(petId, limit);
+			}
+			hasPrevious = after != null;
+			hasNext = page.size() > pageSize;
+			page = page.subList(0, Math.min(page.size(), pageSize));
+		}
+
+		model.put("ownerId", ownerId);
+		model.put("pet", pet);
+		model.put("visits", page);
+		model.put("size", pageSize);
+		if (hasPrevious && !page.isEmpty()) {
+			model.put("previousPage", cursor(page.get(0)));
+		}
+		if (hasNext && !page.isEmpty()) {
+			model.put("nextPage", cursor(page.get(page.size() - 1)));
+		}
+		return "pets/visitHistory";
+	}
+
+	private static String cursor(Visit visit) {
+		return visit.getId() + "-" + visit.getDate();
+	}
+
+	private static Visit parseCursor(String cursor) {
+		int separator = cursor.indexOf('-');
+		Visit visit = new Visit();
+		try {
+			visit.setId(Integer.valueOf(cursor.substring(0, Math.max(separator, 0))));
+			visit.setDate(LocalDate.parse(cursor.substring(separator + 1)));
+		}
+		catch (NumberFormatException | DateTimeParseException ex) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid page cursor " + cursor);
+		}
+		return visit;
+	}
+
+}
@@ -0,0 +1,32 @@
+package org.springframework.samples.petclinic.owner;
+
+import java.util.List;
+
+import org.springframework.http.MediaType;
+import org.springframework.samples.petclinic.visit.Visit;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+/**
+ * Uploads of many visits at once, as a JSON array of {@code petId}, {@code date} and
+ * {@code description} objects, answered with the {@link VisitImporter.Report} of what was
+ * inserted.
+ */
+@Controller
+class VisitImportController {
+
+	private final VisitImporter importer;
+
+	public VisitImportController(VisitImporter importer) {
+		this.importer = importer;
+	}
+
+	@PostMapping(path = "/visits/import", consumes = MediaType.APPLICATION_JSON_VALUE,
+			produces = MediaType.APPLICATION_JSON_VALUE)
+	public @ResponseBody VisitImporter.Report importVisits(@RequestBody List<Visit> visits) {
+		return this.importer.importVisits(visits);
+	}
+
+}
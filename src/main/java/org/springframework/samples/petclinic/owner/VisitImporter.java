@@ -0,0 +1,296 @@
+package org.springframework.samples.petclinic.owner;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import javax.sql.DataSource;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.samples.petclinic.utility.TimedCache;
+import org.springframework.samples.petclinic.visit.Visit;
+import org.springframework.samples.petclinic.visit.VisitSummaries;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.Assert;
+
+/**
+ * Inserts many visits at once, e.g. a day of visits uploaded from a tablet.
+ * <p>
+ * Visits without a pet, a date or a description, or for a pet that does not exist, are
+ * rejected up front. The others are sorted by pet and date, then inserted
+ * {@code petclinic.visits.import.batch-size} at a time, each batch with a single JDBC
+ * batch statement in a transaction of its own, even when called within one. The visits
+ * are written with plain JDBC rather than through the
+ * {@link org.springframework.samples.petclinic.visit.VisitRepository}: Hibernate never
+ * batches the inserts of entities with identity ids, and the importer does not need the
+ * ids back. A batch that fails is rolled back and reported with the visits in it, the
+ * other batches are still inserted. The visits cached for the pets of each committed
+ * batch are evicted, and the visits counted in their {@link VisitSummaries}.
+ */
+@Component
+public class VisitImporter {
+
+	private static final Logger log = LoggerFactory.getLogger(VisitImporter.class);
+
+	private static final String INSERT = "INSERT INTO visits (pet_id, visit_date, description) VALUES (?, ?, ?)";
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private final TransactionTemplate transaction;
+
+	private final PetRepository pets;
+
+	private final Validator validator;
+
+	private final TimedCache<Integer, List<Visit>> visitCache;
+
+	private final VisitSummaries summaries;
+
+	private final int batchSize;
+
+	public VisitImporter(DataSource dataSource, PlatformTransactionManager transactionManager, PetRepository pets,
+			Validator validator, TimedCache<Integer, List<Visit>> visitCache, VisitSummaries summaries,
+			@Value("${petclinic.visits.import.batch-size:500}") int batchSize) {
+		Assert.isTrue(batchSize > 0, "batchSize must be positive");
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+		this.transaction = new TransactionTemplate(transactionManager);
+		this.transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		this.pets = pets;
+		this.validator = validator;
+		this.visitCache = visitCache;
+		this.summaries = summaries;
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Inserts the valid visits.
+	 * @param visits the visits, their ids are ignored
+	 * @return what was inserted and what was not, the visits being numbered by their index
+	 * in the given list
+	 */
+	public Report importVisits(List<Visit> visits) {
+		Report report = new Report(visits.size());
+		Set<Integer> existingPets = existingPets(visits);
+		List<Integer> valid = new ArrayList<>(visits.size());
+		for (int row = 0; row < visits.size(); row++) {
+			String problem = validate(visits.get(row), existingPets);
+			if (problem == null) {
+				valid.add(row);
+			}
+			else {
+				report.rejected.add(new Rejection(row, problem));
+			}
+		}
+		// the visits of a pet end up next to each other in the pet_id index
+		valid.sort(Comparator.comparing((Integer row) -> visits.get(row).getPetId())
+				.thenComparing(row -> visits.get(row).getDate()));
+		for (int start = 0; start < valid.size(); start += this.batchSize) {
+			List<Integer> rows = valid.subList(start, Math.min(start + this.batchSize, valid.size()));
+			report.batches.add(insert(visits, rows));
+		}
+		log.info("Imported {} of {} visits, {} rejected, {} in failed batches", report.getInserted(), visits.size(),
+				report.rejected.size(), report.getFailed());
+		return report;
+	}
+
+	private Batch insert(List<Visit> visits, List<Integer> rows) {
+		try {
+			this.transaction.executeWithoutResult(status -> this.jdbcTemplate.batchUpdate(INSERT,
+					new BatchPreparedStatementSetter() {
+
+						@Override
+						public void setValues(PreparedStatement ps, int i) throws SQLException {
+							Visit visit = visits.get(rows.get(i));
+							ps.setInt(1, visit.getPetId());
+							ps.setDate(2, Date.valueOf(visit.getDate()));
+							ps.setString(3, visit.getDescription());
+						}
+
+						@Override
+						public int getBatchSize() {
+							return rows.size();
+						}
+
+					}));
+		}
+		catch (DataAccessException ex) {
+			log.warn("Could not insert a batch of {} visits", rows.size(), ex);
+			return new Batch(rows.size(), 0, ex.getMostSpecificCause().getMessage(), new ArrayList<>(rows));
+		}
+		rows.stream().map(row -> visits.get(row).getPetId()).distinct().forEach(this.visitCache::invalidate);
+		rows.forEach(row -> this.summaries.added(visits.get(row)));
+		return new Batch(rows.size(), rows.size(), null, Collections.emptyList());
+	}
+
+	private Set<Integer> existingPets(List<Visit> visits) {
+		List<Integer> petIds = visits.stream().map(Visit::getPetId).filter(petId -> petId != null).distinct()
+				.collect(Collectors.toList());
+		Set<Integer> existing = new HashSet<>();
+		// keeps the IN lists short
+		for (int start = 0; start < petIds.size(); start += this.batchSize) {
+			existing.addAll(this.pets.findExistingIds(petIds.subList(start, Math.min(start + this.batchSize,
+					petIds.size()))));
+		}
+		return existing;
+	}
+
+	/**
+	 * @return why the visit cannot be inserted, {@code null} if it can
+	 */
+	private String validate(Visit visit, Set<Integer> existingPets) {
+		Set<String> problems = new LinkedHashSet<>();
+		for (ConstraintViolation<Visit> violation : this.validator.validate(visit)) {
+			problems.add(violation.getPropertyPath() + " " + violation.getMessage());
+		}
+		if (visit.getDate() == null) {
+			problems.add("date is required");
+		}
+		if (visit.getPetId() == null) {
+			problems.add("petId is required");
+		}
+		else if (!existingPets.contains(visit.getPetId())) {
+			problems.add("pet " + visit.getPetId() + " does not exist");
+		}
+		return problems.isEmpty() ? null : String.join(", ", problems);
+	}
+
+	/**
+	 * The outcome of an import.
+	 */
+	public static final class Report {
+
+		private final int received;
+
+		private final List<Rejection> rejected = new ArrayList<>();
+
+		private final List<Batch> batches = new ArrayList<>();
+
+		Report(int received) {
+			this.received = received;
+		}
+
+		public int getReceived() {
+			return this.received;
+		}
+
+		public int getInserted() {
+			return this.batches.stream().mapToInt(Batch::getInserted).sum();
+		}
+
+		/**
+		 * @return the number of valid visits that were not inserted, their batch failed
+		 */
+		public int getFailed() {
+			return this.batches.stream().mapToInt(batch -> batch.getSize() - batch.getInserted()).sum();
+		}
+
+		/**
+		 * @return the visits rejected before any insert, in the order they were given
+		 */
+		public List<Rejection> getRejected() {
+			return this.rejected;
+		}
+
+		/**
+		 * @return the batches the valid visits were inserted in, in the order they ran
+		 */
+		public List<Batch> getBatches() {
+			return this.batches;
+		}
+
+	}
+
+	/**
+	 * A visit that was not inserted because it is invalid.
+	 */
+	public static final class Rejection {
+
+		private final int row;
+
+		private final String message;
+
+		Rejection(int row, String message) {
+			this.row = row;
+			this.message = message;
+		}
+
+		/**
+		 * @return the index of the visit in the imported list
+		 */
+		public int getRow() {
+			return this.row;
+		}
+
+		public String getMessage() {
+			return this.message;
+		}
+
+	}
+
+	/**
+	 * One batch statement and its transaction.
+	 */
+	public static final class Batch {
+
+		private final int size;
+
+		private final int inserted;
+
+		private final String error;
+
+		private final List<Integer> failedRows;
+
+		Batch(int size, int inserted, String error, List<Integer> failedRows) {
+			this.size = size;
+			this.inserted = inserted;
+			this.error = error;
+			this.failedRows = failedRows;
+		}
+
+		public int getSize() {
+			return this.size;
+		}
+
+		/**
+		 * @return either all the visits of the batch or none
+		 */
+		public int getInserted() {
+			return this.inserted;
+		}
+
+		/**
+		 * @return why the batch was rolled back, {@code null} if it was committed
+		 */
+		public String getError() {
+			return this.error;
+		}
+
+		/**
+		 * @return the indexes of the visits of a failed batch in the imported list, empty
+		 * when it was committed
+		 */
+		public List<Integer> getFailedRows() {
+			return this.failedRows;
+		}
+
+	}
+
+}
@@ -0,0 +1,36 @@
+package org.springframework.samples.petclinic.owner;
+
+import java.util.List;
+
+import org.springframework.http.MediaType;
+import org.springframework.samples.petclinic.visit.VisitSummaries;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+/**
+ * The {@link VisitSummaries} of pets as JSON, for dashboards, and a way to rebuild them
+ * from the visits table, e.g. after visits were written by another application.
+ */
+@Controller
+class VisitSummaryController {
+
+	private final VisitSummaries summaries;
+
+	public VisitSummaryController(VisitSummaries summaries) {
+		this.summaries = summaries;
+	}
+
+	@GetMapping(path = "/visits/summaries", produces = MediaType.APPLICATION_JSON_VALUE)
+	public @ResponseBody List<VisitSummaries.Summary> findSummaries(@RequestParam("petId") List<Integer> petIds) {
+		return this.summaries.getAll(petIds);
+	}
+
+	@PostMapping(path = "/visits/summaries/rebuild", produces = MediaType.APPLICATION_JSON_VALUE)
+	public @ResponseBody boolean rebuild() {
+		return this.summaries.rebuild();
+	}
+
+}
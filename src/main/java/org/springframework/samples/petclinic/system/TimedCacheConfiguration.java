@@ -0,0 +1,61 @@
+package org.springframework.samples.petclinic.system;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.samples.petclinic.owner.Owner;
+import org.springframework.samples.petclinic.owner.OwnerRepository;
+import org.springframework.samples.petclinic.utility.CacheMaintenanceScheduler;
+import org.springframework.samples.petclinic.utility.TimedCache;
+import org.springframework.samples.petclinic.visit.Visit;
+import org.springframework.samples.petclinic.visit.VisitRepository;
+
+/**
+ * The {@link TimedCache}s in front of the owner and visit repositories (pets are cached
+ * by {@link org.springframework.samples.petclinic.utility.PetTimedCache}, pet types are
+ * held by the {@link org.springframework.samples.petclinic.owner.PetTypeRegistry}).
+ * <p>
+ * Cached values are shared between requests: they are only read by the views, and every
+ * save of an owner, pet or visit invalidates the entries it affects.
+ */
+@Configuration(proxyBeanMethods = false)
+public class TimedCacheConfiguration {
+
+	@Bean
+	public TimedCache<Integer, Owner> ownerCache(OwnerRepository owners, CacheMaintenanceScheduler scheduler,
+			@Value("${petclinic.cache.owners.expiry-millis:10000}") long expiryInMillis,
+			@Value("${petclinic.cache.owners.maximum-size:0}") long maximumSize) {
+		return TimedCache.<Integer, Owner>builder("owners", owners::findById).expireAfterWrite(expiryInMillis)
+				.maximumSize(maximumSize).maintainedBy(scheduler).build();
+	}
+
+	/**
+	 * Caches the most recent visits of each pet, by pet id, most recent first: one more
+	 * than {@code petclinic.visits.recent}, so that the owner page can tell whether a pet
+	 * has older visits without loading them. The visits of several pets are loaded with a
+	 * single query by {@link TimedCache#getAll(java.util.Collection)}.
+	 */
+	@Bean
+	public TimedCache<Integer, List<Visit>> visitCache(VisitRepository visits, CacheMaintenanceScheduler scheduler,
+			@Value("${petclinic.cache.visits.expiry-millis:10000}") long expiryInMillis,
+			@Value("${petclinic.cache.visits.maximum-size:0}") long maximumSize,
+			@Value("${petclinic.visits.recent:5}") int recent) {
+		int limit = recent + 1;
+		return TimedCache.<Integer, List<Visit>>builder("visits",
+				petId -> Collections.unmodifiableList(visits.findRecentByPetIdIn(Collections.singleton(petId), limit)))
+				.bulkLoader(petIds -> {
+					Map<Integer, List<Visit>> byPet = new HashMap<>();
+					petIds.forEach(petId -> byPet.put(petId, new ArrayList<>()));
+					visits.findRecentByPetIdIn(petIds, limit).forEach(visit -> byPet.get(visit.getPetId()).add(visit));
+					byPet.replaceAll((petId, petVisits) -> Collections.unmodifiableList(petVisits));
+					return byPet;
+				}).expireAfterWrite(expiryInMillis).maximumSize(maximumSize).maintainedBy(scheduler).build();
+	}
+
+}
@@ -0,0 +1,84 @@
+package org.springframework.samples.petclinic.system;
+
+import java.util.List;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.aop.scope.ScopedProxyUtils;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.samples.petclinic.owner.Owner;
+import org.springframework.samples.petclinic.owner.OwnerRepository;
+import org.springframework.samples.petclinic.owner.Pet;
+import org.springframework.samples.petclinic.owner.PetRepository;
+import org.springframework.samples.petclinic.utility.PetTimedCache;
+import org.springframework.samples.petclinic.utility.UnitOfWork;
+import org.springframework.samples.petclinic.visit.Visit;
+import org.springframework.samples.petclinic.visit.VisitRepository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.web.context.annotation.RequestScope;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Gives each web request its own {@link UnitOfWork} and commits it once the handler
+ * returned, before the view is rendered, so that a failed write still produces an error
+ * page and a redirect only happens once the changes are committed.
+ * <p>
+ * Owners are written before pets and pets before visits, so that new entities are
+ * inserted after the entities they refer to. Pets are saved to the repository within the
+ * transaction, whatever the write mode of the {@link PetTimedCache}, so that a rollback
+ * undoes them too; their cached copies are evicted once the transaction ended.
+ */
+@Configuration(proxyBeanMethods = false)
+public class UnitOfWorkConfiguration implements WebMvcConfigurer {
+
+	private static final String UNIT_OF_WORK_ATTRIBUTE = ScopedProxyUtils.getTargetBeanName("unitOfWork");
+
+	@Bean
+	@RequestScope
+	public UnitOfWork unitOfWork(PlatformTransactionManager transactionManager, OwnerRepository owners,
+			PetRepository pets, PetTimedCache petCache, VisitRepository visits) {
+		return UnitOfWork.builder(transactionManager)
+				.writer(Owner.class, batch -> batch.forEach(owners::save))
+				.writer(Pet.class, new UnitOfWork.Writer<Pet>() {
+
+					@Override
+					public void write(List<Pet> batch) {
+						batch.forEach(pets::save);
+					}
+
+					@Override
+					public void discard(List<Pet> batch) {
+						batch.stream().filter(pet -> !pet.isNew()).forEach(pet -> petCache.invalidate(pet.getId()));
+					}
+
+					@Override
+					public void committed(List<Pet> batch) {
+						batch.forEach(pet -> petCache.invalidate(pet.getId()));
+					}
+
+				}).writer(Visit.class, batch -> batch.forEach(visits::save)).build();
+	}
+
+	@Override
+	public void addInterceptors(InterceptorRegistry registry) {
+		registry.addInterceptor(new HandlerInterceptor() {
+
+			@Override
+			public void postHandle(HttpServletRequest request, HttpServletResponse response, Object handler,
+					ModelAndView modelAndView) {
+				// only requests that used their unit of work have one
+				Object unitOfWork = request.getAttribute(UNIT_OF_WORK_ATTRIBUTE);
+				if (unitOfWork instanceof UnitOfWork) {
+					((UnitOfWork) unitOfWork).commit();
+				}
+			}
+
+		});
+	}
+
+}
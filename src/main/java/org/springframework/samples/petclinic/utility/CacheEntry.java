@@ -0,0 +1,56 @@
+package org.springframework.samples.petclinic.utility;
+
+/**
+ * A cached value together with the instants that drive its life cycle:
+ * <ul>
+ * <li>{@code refreshAt}: from then on, reading the entry triggers a background reload;</li>
+ * <li>{@code expiresAt}: from then on, the value is stale;</li>
+ * <li>{@code deadline}: the entry is removed, a stale value is never served past it.</li>
+ * </ul>
+ * Without refresh-ahead or stale-while-revalidate all three instants are equal. Entries
+ * are immutable from the reader's point of view: replacing a value creates a new entry,
+ * so a reader that got hold of an entry always sees a consistent value and timestamps.
+ * <p>
+ * The {@code prev}/{@code next} links belong to the {@link TimerWheel} bucket the entry is
+ * scheduled in and are only touched while holding the wheel's lock.
+ */
+final class CacheEntry<K, V> {
+
+	final K key;
+
+	final V value;
+
+	final long refreshAt;
+
+	final long expiresAt;
+
+	final long deadline;
+
+	CacheEntry<K, V> prev;
+
+	CacheEntry<K, V> next;
+
+	CacheEntry(K key, V value, long deadline) {
+		this(key, value, deadline, deadline, deadline);
+	}
+
+	CacheEntry(K key, V value, long refreshAt, long expiresAt, long deadline) {
+		this.key = key;
+		this.value = value;
+		this.refreshAt = refreshAt;
+		this.expiresAt = expiresAt;
+		this.deadline = deadline;
+	}
+
+	boolean isExpired(long now) {
+		return now >= expiresAt;
+	}
+
+	boolean isDead(long now) {
+		return now >= deadline;
+	}
+
+	boolean isScheduled() {
+		return prev != null;
+	}
+}
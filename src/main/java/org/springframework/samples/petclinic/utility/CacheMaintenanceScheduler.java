@@ -0,0 +1,161 @@
+package org.springframework.samples.petclinic.utility;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Runs the periodic maintenance of every cache (expiring entries, flushing write-behind
+ * buffers) on a single shared daemon thread.
+ * <p>
+ * The thread is started and stopped with the application context: tasks registered
+ * before {@link #start()} are scheduled once it starts, and {@link #stop()} interrupts the
+ * running task and waits for the thread to terminate. Maintenance is best-effort, a task
+ * that throws is logged and runs again on its next period.
+ * <p>
+ * Each {@link Task} reports its {@link Task#lagMillis() lag}: how long it has been
+ * overdue, which grows when the thread is starved or another task runs for too long.
+ */
+@Component
+public class CacheMaintenanceScheduler implements SmartLifecycle {
+
+	private static final Logger log = LoggerFactory.getLogger(CacheMaintenanceScheduler.class);
+
+	static final String THREAD_NAME = "cache-maintenance";
+
+	private final Set<Task> tasks = new CopyOnWriteArraySet<>();
+
+	private final LongSupplier clock;
+
+	private ScheduledExecutorService executor;
+
+	public CacheMaintenanceScheduler() {
+		this(System::currentTimeMillis);
+	}
+
+	CacheMaintenanceScheduler(LongSupplier clock) {
+		this.clock = clock;
+	}
+
+	/**
+	 * Runs {@code maintenance} every {@code periodMillis}, with a fixed delay between the
+	 * end of a run and the start of the next one.
+	 */
+	public Task schedule(String name, Runnable maintenance, long periodMillis) {
+		Task task = new Task(name, maintenance, Math.max(1, periodMillis));
+		synchronized (this) {
+			tasks.add(task);
+			if (executor != null) {
+				task.start(executor);
+			}
+		}
+		return task;
+	}
+
+	@Override
+	public synchronized void start() {
+		if (executor != null) {
+			return;
+		}
+		ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+			Thread thread = new Thread(runnable, THREAD_NAME);
+			thread.setDaemon(true);
+			return thread;
+		});
+		executor.setRemoveOnCancelPolicy(true);
+		this.executor = executor;
+		tasks.forEach(task -> task.start(executor));
+	}
+
+	@Override
+	public void stop() {
+		ScheduledExecutorService stopped;
+		synchronized (this) {
+			stopped = executor;
+			executor = null;
+		}
+		if (stopped == null) {
+			return;
+		}
+		stopped.shutdownNow();
+		try {
+			if (!stopped.awaitTermination(5, TimeUnit.SECONDS)) {
+				log.warn("A cache maintenance task did not stop within 5 seconds");
+			}
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Override
+	public synchronized boolean isRunning() {
+		return executor != null;
+	}
+
+	/**
+	 * A periodic maintenance task, cancelled when its cache is closed.
+	 */
+	public final class Task {
+
+		private final String name;
+
+		private final Runnable maintenance;
+
+		private final long periodMillis;
+
+		private volatile long lastRunAt;
+
+		private ScheduledFuture<?> future;
+
+		Task(String name, Runnable maintenance, long periodMillis) {
+			this.name = name;
+			this.maintenance = maintenance;
+			this.periodMillis = periodMillis;
+			this.lastRunAt = clock.getAsLong();
+		}
+
+		private void start(ScheduledExecutorService executor) {
+			lastRunAt = clock.getAsLong();
+			future = executor.scheduleWithFixedDelay(this::run, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+		}
+
+		private void run() {
+			lastRunAt = clock.getAsLong();
+			try {
+				maintenance.run();
+			}
+			catch (RuntimeException ex) {
+				log.error("Maintenance of cache {} failed", name, ex);
+			}
+		}
+
+		/**
+		 * @return how long past its due time this task has not started running, {@code 0}
+		 * when it is on time
+		 */
+		public long lagMillis() {
+			return Math.max(0, clock.getAsLong() - lastRunAt - periodMillis);
+		}
+
+		public void cancel() {
+			synchronized (CacheMaintenanceScheduler.this) {
+				tasks.remove(this);
+				if (future != null) {
+					future.cancel(false);
+				}
+			}
+		}
+
+	}
+
+}
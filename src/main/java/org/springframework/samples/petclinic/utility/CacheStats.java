@@ -0,0 +1,97 @@
+package org.springframework.samples.petclinic.utility;
+
+import org.springframework.core.style.ToStringCreator;
+
+/**
+ * Point-in-time snapshot of a cache's counters.
+ */
+public final class CacheStats {
+
+	private final long hitCount;
+
+	private final long missCount;
+
+	private final long loadSuccessCount;
+
+	private final long loadFailureCount;
+
+	private final long totalLoadTime;
+
+	private final long evictionCount;
+
+	private final long admissionRejectionCount;
+
+	CacheStats(long hitCount, long missCount, long loadSuccessCount, long loadFailureCount, long totalLoadTime,
+			long evictionCount, long admissionRejectionCount) {
+		this.hitCount = hitCount;
+		this.missCount = missCount;
+		this.loadSuccessCount = loadSuccessCount;
+		this.loadFailureCount = loadFailureCount;
+		this.totalLoadTime = totalLoadTime;
+		this.evictionCount = evictionCount;
+		this.admissionRejectionCount = admissionRejectionCount;
+	}
+
+	public long getHitCount() {
+		return hitCount;
+	}
+
+	public long getMissCount() {
+		return missCount;
+	}
+
+	public long getRequestCount() {
+		return hitCount + missCount;
+	}
+
+	/**
+	 * @return the ratio of lookups served from the cache, {@code 1.0} when there were none
+	 */
+	public double getHitRatio() {
+		long requests = getRequestCount();
+		return requests == 0 ? 1.0 : (double) hitCount / requests;
+	}
+
+	/**
+	 * @return the number of repository loads that completed, including those that found
+	 * nothing
+	 */
+	public long getLoadSuccessCount() {
+		return loadSuccessCount;
+	}
+
+	public long getLoadFailureCount() {
+		return loadFailureCount;
+	}
+
+	/**
+	 * @return the time spent in repository loads, in nanoseconds
+	 */
+	public long getTotalLoadTime() {
+		return totalLoadTime;
+	}
+
+	/**
+	 * @return the number of entries removed because the cache exceeded its maximum size,
+	 * including rejected admissions
+	 */
+	public long getEvictionCount() {
+		return evictionCount;
+	}
+
+	/**
+	 * @return the number of newly loaded entries that were evicted instead of an existing
+	 * entry because they were used less frequently
+	 */
+	public long getAdmissionRejectionCount() {
+		return admissionRejectionCount;
+	}
+
+	@Override
+	public String toString() {
+		return new ToStringCreator(this).append("hits", hitCount).append("misses", missCount)
+				.append("loadSuccesses", loadSuccessCount).append("loadFailures", loadFailureCount)
+				.append("totalLoadTime", totalLoadTime).append("evictions", evictionCount)
+				.append("admissionRejections", admissionRejectionCount).toString();
+	}
+}
@@ -0,0 +1,293 @@
+package org.springframework.samples.petclinic.utility;
+
+import org.springframework.util.Assert;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The {@link SimpleDI} container.
+ * <p>
+ * Registrations copy the provider table and publish the copy through a volatile field, so
+ * {@link #getInstanceOf(Class)} takes no lock: it reads the table, then the provider's
+ * volatile instance. Only the first call for a type locks, on its provider alone, to
+ * create the instance exactly once. Constructors are turned into {@link MethodHandle}s
+ * when registered, so no reflection happens when instances are created.
+ * <p>
+ * {@link #start(ForkJoinPool)} chains one {@link CompletableFuture} per provider to the
+ * futures of its declared dependencies, so no pool thread waits for another provider.
+ */
+final class CompiledDI extends SimpleDI {
+
+	/** The providers being created by the current thread, innermost first. */
+	private static final ThreadLocal<Deque<Provider>> creating = ThreadLocal.withInitial(ArrayDeque::new);
+
+	/** Never modified once published. */
+	private volatile Map<Class<?>, Provider> providers = Collections.emptyMap();
+
+	@Override
+	public void provideByInstance(Class<?> typeClass, Object instanceOfType) {
+		Assert.isInstanceOf(typeClass, instanceOfType);
+		register(new Provider(typeClass, new Class<?>[0], dependencies -> instanceOfType));
+	}
+
+	@Override
+	public void provideByAConstructorFunction(Class<?> typeClass, Callable<Object> providerFunction,
+			Class<?>... dependencies) {
+		register(new Provider(typeClass, dependencies.clone(), resolved -> providerFunction.call()));
+	}
+
+	@Override
+	public void provideByConstructor(Class<?> typeClass, Class<?> implementationClass) {
+		Assert.isAssignable(typeClass, implementationClass);
+		Constructor<?>[] constructors = implementationClass.getConstructors();
+		Assert.isTrue(constructors.length == 1,
+				() -> implementationClass.getName() + " needs exactly one public constructor");
+		Constructor<?> constructor = constructors[0];
+		// the class itself, or one enclosing it, may not be public
+		constructor.setAccessible(true);
+		Class<?>[] parameterTypes = constructor.getParameterTypes();
+		MethodHandle handle;
+		try {
+			handle = MethodHandles.lookup().unreflectConstructor(constructor)
+				.asType(MethodType.methodType(Object.class, parameterTypes))
+				.asSpreader(Object[].class, parameterTypes.length);
+		}
+		catch (IllegalAccessException ex) {
+			throw new IllegalArgumentException(implementationClass.getName() + " cannot be instantiated", ex);
+		}
+		register(new Provider(typeClass, parameterTypes, dependencies -> (Object) handle.invokeExact(dependencies)));
+	}
+
+	@Override
+	public Object getInstanceOf(Class<?> requiredType) throws Exception {
+		Provider provider = this.providers.get(requiredType);
+		if (provider == null) {
+			throw new IllegalArgumentException("No provider for " + requiredType.getName());
+		}
+		return provider.get(this);
+	}
+
+	@Override
+	public StartupReport start(ForkJoinPool pool) throws Exception {
+		Map<Class<?>, Provider> providers = this.providers;
+		List<Provider> order = new ArrayList<>(providers.size());
+		Set<Provider> ordered = new HashSet<>();
+		for (Provider provider : providers.values()) {
+			order(provider, providers, ordered, order);
+		}
+		long started = System.nanoTime();
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		Map<Provider, CompletableFuture<Timing>> timings = new HashMap<>();
+		for (Provider provider : order) {
+			CompletableFuture<?>[] dependencies = Arrays.stream(provider.dependencies)
+				.map(type -> timings.get(providers.get(type)))
+				.toArray(CompletableFuture<?>[]::new);
+			timings.put(provider, CompletableFuture.allOf(dependencies)
+				.thenApplyAsync(created -> create(provider, started, failure), pool));
+		}
+		try {
+			CompletableFuture.allOf(timings.values().toArray(new CompletableFuture<?>[0])).join();
+		}
+		catch (CompletionException ex) {
+			Throwable cause = failure.get() != null ? failure.get() : ex.getCause();
+			if (cause instanceof Exception) {
+				throw (Exception) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new UndeclaredThrowableException(cause);
+		}
+		long elapsed = System.nanoTime() - started;
+		// walk back from the provider that finished last through its latest dependency
+		Comparator<Provider> byEnd = Comparator.comparingLong(provider -> timings.get(provider).join().getEndNanos());
+		List<Timing> criticalPath = new ArrayList<>();
+		Provider last = order.stream().max(byEnd).orElse(null);
+		while (last != null) {
+			criticalPath.add(0, timings.get(last).join());
+			last = Arrays.stream(last.dependencies).map(providers::get).max(byEnd).orElse(null);
+		}
+		List<Timing> all = new ArrayList<>();
+		timings.values().forEach(timing -> all.add(timing.join()));
+		return new StartupReport(elapsed, all, criticalPath);
+	}
+
+	/**
+	 * Adds a provider to {@code order} after its dependencies; there is no cycle to guard
+	 * against since {@link #register(Provider)} rejects them.
+	 */
+	private static void order(Provider provider, Map<Class<?>, Provider> providers, Set<Provider> ordered,
+			List<Provider> order) {
+		if (!ordered.add(provider)) {
+			return;
+		}
+		for (Class<?> type : provider.dependencies) {
+			Provider dependency = providers.get(type);
+			if (dependency == null) {
+				throw new IllegalStateException(
+						provider.type.getName() + " depends on " + type.getName() + ", which has no provider");
+			}
+			order(dependency, providers, ordered, order);
+		}
+		order.add(provider);
+	}
+
+	private Timing create(Provider provider, long started, AtomicReference<Throwable> failure) {
+		if (failure.get() != null) {
+			throw new CancellationException();
+		}
+		long start = System.nanoTime();
+		try {
+			provider.get(this);
+		}
+		catch (Throwable ex) {
+			failure.compareAndSet(null, ex);
+			throw new CompletionException(ex);
+		}
+		return new Timing(provider.type, start - started, System.nanoTime() - start,
+				Thread.currentThread().getName());
+	}
+
+	/**
+	 * Replaces the provider of a type, unless that would close a cycle of declared
+	 * dependencies. Instances the replaced provider created stay where they were injected.
+	 */
+	private synchronized void register(Provider provider) {
+		Map<Class<?>, Provider> providers = new HashMap<>(this.providers);
+		providers.put(provider.type, provider);
+		// the table had no cycle, so a new one goes through the new provider
+		Deque<Class<?>> path = new ArrayDeque<>();
+		path.add(provider.type);
+		if (reaches(provider.type, provider.type, providers, new HashSet<>(), path)) {
+			StringJoiner cycle = new StringJoiner(" -> ");
+			path.forEach(type -> cycle.add(type.getName()));
+			throw new IllegalArgumentException("Circular dependency: " + cycle);
+		}
+		this.providers = providers;
+	}
+
+	/**
+	 * Whether {@code target} is a transitive dependency of {@code from}, leaving the path
+	 * to it in {@code path} if so.
+	 */
+	private static boolean reaches(Class<?> from, Class<?> target, Map<Class<?>, Provider> providers,
+			Set<Class<?>> visited, Deque<Class<?>> path) {
+		Provider provider = providers.get(from);
+		if (provider == null) {
+			return false;
+		}
+		for (Class<?> dependency : provider.dependencies) {
+			path.addLast(dependency);
+			if (dependency == target
+					|| visited.add(dependency) && reaches(dependency, target, providers, visited, path)) {
+				return true;
+			}
+			path.removeLast();
+		}
+		return false;
+	}
+
+	@FunctionalInterface
+	private interface Factory {
+
+		Object create(Object[] dependencies) throws Throwable;
+
+	}
+
+	private static final class Provider {
+
+		final Class<?> type;
+
+		final Class<?>[] dependencies;
+
+		private final Factory factory;
+
+		private volatile Object instance;
+
+		Provider(Class<?> type, Class<?>[] dependencies, Factory factory) {
+			this.type = type;
+			this.dependencies = dependencies;
+			this.factory = factory;
+		}
+
+		Object get(CompiledDI container) throws Exception {
+			Object instance = this.instance;
+			if (instance == null) {
+				synchronized (this) {
+					instance = this.instance;
+					if (instance == null) {
+						instance = create(container);
+						this.instance = instance;
+					}
+				}
+			}
+			return instance;
+		}
+
+		private Object create(CompiledDI container) throws Exception {
+			Deque<Provider> creating = CompiledDI.creating.get();
+			if (creating.contains(this)) {
+				StringJoiner cycle = new StringJoiner(" -> ");
+				boolean inCycle = false;
+				for (Iterator<Provider> outer = creating.descendingIterator(); outer.hasNext();) {
+					Provider provider = outer.next();
+					inCycle |= provider == this;
+					if (inCycle) {
+						cycle.add(provider.type.getName());
+					}
+				}
+				throw new IllegalStateException("Circular dependency: " + cycle.add(this.type.getName()));
+			}
+			creating.push(this);
+			try {
+				Object[] resolved = new Object[this.dependencies.length];
+				for (int i = 0; i < resolved.length; i++) {
+					resolved[i] = container.getInstanceOf(this.dependencies[i]);
+				}
+				Object instance;
+				try {
+					instance = this.factory.create(resolved);
+				}
+				catch (Exception | Error ex) {
+					throw ex;
+				}
+				catch (Throwable ex) {
+					throw new UndeclaredThrowableException(ex);
+				}
+				if (!this.type.isInstance(instance)) {
+					throw new IllegalStateException(
+							"The provider of " + this.type.getName() + " returned " + instance);
+				}
+				return instance;
+			}
+			finally {
+				creating.pop();
+			}
+		}
+
+	}
+
+}
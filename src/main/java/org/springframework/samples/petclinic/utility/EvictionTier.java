@@ -0,0 +1,35 @@
+package org.springframework.samples.petclinic.utility;
+
+/**
+ * A lower tier of a {@link TimedCache}: it receives the entries the size bound evicts
+ * from the heap and gives them back on a later miss, with their original timestamps so
+ * that a demoted value never outlives its expiry.
+ * <p>
+ * Implementations are thread-safe.
+ */
+interface EvictionTier<K, V> {
+
+	/**
+	 * Keeps an evicted entry, replacing any entry of the same key. The tier may drop it,
+	 * or older entries, when it is full.
+	 */
+	void store(CacheEntry<K, V> entry);
+
+	/**
+	 * Removes the entry of a key and returns it, unless it is expired at {@code now}.
+	 * @return a new, unscheduled entry or {@code null}
+	 */
+	CacheEntry<K, V> take(K key, long now);
+
+	void remove(K key);
+
+	void clear();
+
+	int size();
+
+	/**
+	 * @return the memory the tier holds, whether used by live entries or not
+	 */
+	long allocatedBytes();
+
+}
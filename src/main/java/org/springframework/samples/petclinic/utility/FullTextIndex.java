@@ -0,0 +1,986 @@
+package org.springframework.samples.petclinic.utility;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An in-memory inverted index of documents made of a fixed number of weighted text fields,
+ * answering ranked searches where every word of the query must match a word of the
+ * document, in any field.
+ * <p>
+ * Texts are split into lower-case words of letters and digits. A query word matches the
+ * same word or, for words of at least {@value #MIN_FUZZY_LENGTH} characters with a letter,
+ * a word one edit away, two for words longer than {@value #MAX_ONE_EDIT_LENGTH}, an edit
+ * being an insertion, a deletion, a substitution or the swap of two adjacent letters. The
+ * last word of the query, the one being typed, also matches the words it starts. Each
+ * matching word scores its rarity, {@code ln(1 + documents / documents with the word)},
+ * times the sum of the weights of the fields it is in, times a discount for prefix and
+ * misspelled matches; a document scores the sum over the query words of its best matching
+ * word. A last word of one or two letters scores the rarity of the prefix instead.
+ * <p>
+ * Each word, and each prefix of one or two letters, has a sorted array of the ids of its
+ * documents, along with the fields of each. Misspelled words are found through the bigrams
+ * of the words by position: a word an edit away has all but three of the same bigrams, at
+ * most a letter off, so only the words having one of the four rarest are compared letter
+ * by letter. A search reads the matches of its
+ * rarest word and intersects them with those of the other words, or checks the words of
+ * each candidate when another word matches many more documents, so it visits about as many
+ * documents as its rarest word matches. Searches share a read lock, changes take the write
+ * lock.
+ */
+public final class FullTextIndex {
+
+	static final int MIN_FUZZY_LENGTH = 4;
+
+	static final int MAX_ONE_EDIT_LENGTH = 10;
+
+	/** The length of the prefixes having their own postings, as they start many words. */
+	static final int SHORT_PREFIX = 2;
+
+	private static final float EXACT = 1f;
+
+	private static final float PREFIX = 0.75f;
+
+	private static final float MISSPELLED = 0.5f;
+
+	/** A word matching this many times more documents than the candidates checks them. */
+	private static final int CHECK_RATIO = 8;
+
+	/** The weight of each set of fields. */
+	private final float[] weights;
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private final Map<String, Postings> postings = new HashMap<>();
+
+	private final NavigableMap<String, Postings> sortedPostings = new TreeMap<>();
+
+	/** The documents having words starting with each prefix of up to two letters. */
+	private final Map<String, Postings> shortPrefixes = new HashMap<>();
+
+	/**
+	 * The ids of the words having each bigram of their padded form, keyed by the bigram
+	 * followed by its position, for misspellings.
+	 */
+	private final Map<String, IntList> bigrams = new HashMap<>();
+
+	/** The words by id, {@code null} for the ids of removed words. */
+	private String[] words = new String[1024];
+
+	private final IntList freeWordIds = new IntList(16);
+
+	private int nextWordId;
+
+	private final Map<Integer, Document> documents = new HashMap<>();
+
+	/** Whether all the ids are between 0 and {@link #maxId}, to be used as indexes. */
+	private boolean smallIds = true;
+
+	private int maxId;
+
+	private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
+	/**
+	 * @param weights the weight of each field of the documents, in order
+	 */
+	public FullTextIndex(double... weights) {
+		if (weights.length == 0 || weights.length > 16) {
+			throw new IllegalArgumentException("Between 1 and 16 fields are supported");
+		}
+		this.weights = new float[1 << weights.length];
+		for (int fields = 1; fields < this.weights.length; fields++) {
+			int field = Integer.numberOfTrailingZeros(fields);
+			this.weights[fields] = this.weights[fields & (fields - 1)] + (float) weights[field];
+		}
+	}
+
+	public int size() {
+		this.lock.readLock().lock();
+		try {
+			return this.documents.size();
+		}
+		finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Adds a document, or changes some of its fields.
+	 * @param texts the text of each field, in order; {@code null} or missing texts leave the
+	 * field as it was, empty for a new document
+	 */
+	public void put(int id, String... texts) {
+		this.lock.writeLock().lock();
+		try {
+			Document previous = this.documents.get(id);
+			int fieldCount = Integer.numberOfTrailingZeros(this.weights.length);
+			List<Set<String>> fields = new ArrayList<>(fieldCount);
+			for (int field = 0; field < fieldCount; field++) {
+				if (field < texts.length && texts[field] != null) {
+					fields.add(new LinkedHashSet<>(tokenize(texts[field])));
+				}
+				else {
+					fields.add(previous == null ? Collections.emptySet() : previous.words(field));
+				}
+			}
+			Document document = new Document(fields);
+			if (previous != null) {
+				unindex(id, previous, document);
+			}
+			if (document.words.length == 0) {
+				this.documents.remove(id);
+			}
+			else {
+				this.documents.put(id, document);
+				index(id, document, previous);
+				this.smallIds &= id >= 0;
+				this.maxId = Math.max(this.maxId, id);
+			}
+		}
+		finally {
+			this.lock.writeLock().unlock();
+		}
+	}
+
+	public void remove(int id) {
+		this.lock.writeLock().lock();
+		try {
+			Document previous = this.documents.remove(id);
+			if (previous != null) {
+				unindex(id, previous, null);
+			}
+		}
+		finally {
+			this.lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * @return the documents matching every word of the query, best first and then by id,
+	 * at most {@code limit} of them
+	 */
+	public List<Hit> search(String query, int limit) {
+		List<String> texts = tokenize(query);
+		if (texts.isEmpty() || limit <= 0) {
+			return Collections.emptyList();
+		}
+		this.lock.readLock().lock();
+		try {
+			Scratch scratch = this.scratch.get();
+			List<Word> words = new ArrayList<>(texts.size());
+			for (int i = 0; i < texts.size(); i++) {
+				words.add(new Word(texts.get(i), i == texts.size() - 1, scratch));
+			}
+			// the rarest word first, the others checked against its matches
+			long cheapest = Long.MAX_VALUE;
+			for (Word word : words) {
+				cheapest = Math.min(cheapest,
+						word.cost(cheapest == Long.MAX_VALUE ? Long.MAX_VALUE : cheapest * CHECK_RATIO + 1));
+			}
+			words.sort((a, b) -> Long.compare(a.cost, b.cost));
+			Matches candidates = words.get(0).matches(scratch);
+			for (int i = 1; i < words.size() && candidates.size > 0; i++) {
+				Word word = words.get(i);
+				candidates = word.cost > (long) candidates.size * CHECK_RATIO ? check(candidates, word)
+						: candidates.intersect(word.matches(scratch));
+			}
+			return best(candidates, limit);
+		}
+		finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Indexes the words of the document that it did not have in the same fields before.
+	 */
+	private void index(int id, Document document, Document previous) {
+		for (int i = 0; i < document.words.length; i++) {
+			String word = document.words[i];
+			Postings postings = this.postings.get(word);
+			if (previous != null && previous.fields(word) == document.fields[i]) {
+				document.wordIds[i] = postings.wordId;
+				continue;
+			}
+			if (postings == null) {
+				postings = new Postings(wordId(word));
+				this.postings.put(word, postings);
+				this.sortedPostings.put(word, postings);
+				for (String bigram : bigrams(word)) {
+					this.bigrams.computeIfAbsent(bigram, key -> new IntList(2)).add(postings.wordId);
+				}
+			}
+			postings.put(id, document.fields[i]);
+			document.wordIds[i] = postings.wordId;
+		}
+		Map<String, Integer> previousPrefixes = previous == null ? Collections.emptyMap() : previous.prefixes();
+		document.prefixes().forEach((prefix, fields) -> {
+			if (!fields.equals(previousPrefixes.get(prefix))) {
+				this.shortPrefixes.computeIfAbsent(prefix, key -> new Postings(-1)).put(id, fields);
+			}
+		});
+	}
+
+	/**
+	 * Unindexes the words of the document that it no longer has, in any field.
+	 */
+	private void unindex(int id, Document document, Document next) {
+		for (String word : document.words) {
+			if (next != null && next.fields(word) != 0) {
+				continue;
+			}
+			Postings postings = this.postings.get(word);
+			postings.remove(id);
+			if (postings.size == 0) {
+				this.postings.remove(word);
+				this.sortedPostings.remove(word);
+				for (String bigram : bigrams(word)) {
+					IntList wordIds = this.bigrams.get(bigram);
+					wordIds.remove(postings.wordId);
+					if (wordIds.size == 0) {
+						this.bigrams.remove(bigram);
+					}
+				}
+				this.words[postings.wordId] = null;
+				this.freeWordIds.add(postings.wordId);
+			}
+		}
+		Map<String, Integer> nextPrefixes = next == null ? Collections.emptyMap() : next.prefixes();
+		for (String prefix : document.prefixes().keySet()) {
+			if (!nextPrefixes.containsKey(prefix)) {
+				Postings postings = this.shortPrefixes.get(prefix);
+				postings.remove(id);
+				if (postings.size == 0) {
+					this.shortPrefixes.remove(prefix);
+				}
+			}
+		}
+	}
+
+	private int wordId(String word) {
+		int wordId;
+		if (this.freeWordIds.size > 0) {
+			wordId = this.freeWordIds.ints[--this.freeWordIds.size];
+		}
+		else {
+			wordId = this.nextWordId++;
+			if (wordId == this.words.length) {
+				this.words = Arrays.copyOf(this.words, wordId * 2);
+			}
+		}
+		this.words[wordId] = word;
+		return wordId;
+	}
+
+	/**
+	 * @return the candidates having a word matching the given one, scored
+	 */
+	private Matches check(Matches candidates, Word word) {
+		Matches checked = new Matches(candidates.size);
+		Map<Integer, Float> scores = new HashMap<>();
+		for (int i = 0; i < candidates.size; i++) {
+			Document document = this.documents.get(candidates.ids[i]);
+			float best = 0;
+			for (int w = 0; w < document.words.length; w++) {
+				if (word.quality(document.heads[w], document.wordIds[w]) > 0) {
+					float score = scores.computeIfAbsent(document.wordIds[w],
+							matching -> word.score(this.words[matching], this.postings.get(this.words[matching])));
+					best = Math.max(best, score * this.weights[document.fields[w]]);
+				}
+			}
+			if (best > 0) {
+				checked.add(candidates.ids[i], candidates.scores[i] + best);
+			}
+		}
+		return checked;
+	}
+
+	private float idf(Postings postings) {
+		return (float) Math.log1p((double) this.documents.size() / postings.size);
+	}
+
+	private static List<Hit> best(Matches matches, int limit) {
+		PriorityQueue<Hit> worstFirst = new PriorityQueue<>(Math.min(limit, Math.max(1, matches.size)),
+				(a, b) -> a.score != b.score ? Float.compare(a.score, b.score) : Integer.compare(b.id, a.id));
+		for (int i = 0; i < matches.size; i++) {
+			if (worstFirst.size() < limit) {
+				worstFirst.add(new Hit(matches.ids[i], matches.scores[i]));
+			}
+			else if (matches.scores[i] > worstFirst.peek().score) {
+				// ids come in order, so an equal score does not replace an earlier id
+				worstFirst.poll();
+				worstFirst.add(new Hit(matches.ids[i], matches.scores[i]));
+			}
+		}
+		Hit[] hits = new Hit[worstFirst.size()];
+		for (int i = hits.length - 1; i >= 0; i--) {
+			hits[i] = worstFirst.poll();
+		}
+		return Arrays.asList(hits);
+	}
+
+	/**
+	 * @return the words of the query as searched, separated by single spaces, the same for
+	 * any two queries searching the same words
+	 */
+	public static String normalize(String query) {
+		return String.join(" ", tokenize(query));
+	}
+
+	static List<String> tokenize(String text) {
+		List<String> words = new ArrayList<>();
+		int start = -1;
+		for (int i = 0; i <= text.length(); i++) {
+			boolean inWord = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+			if (inWord && start < 0) {
+				start = i;
+			}
+			else if (!inWord && start >= 0) {
+				words.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+				start = -1;
+			}
+		}
+		return words;
+	}
+
+	/**
+	 * @return the bigrams of the word between {@code ^} and {@code $}, each followed by its
+	 * position, none for words that are not looked up when misspelled
+	 */
+	private static List<String> bigrams(String word) {
+		if (!fuzzy(word)) {
+			return Collections.emptyList();
+		}
+		String padded = '^' + word + '$';
+		List<String> bigrams = new ArrayList<>(padded.length() - 1);
+		for (int i = 0; i + 2 <= padded.length(); i++) {
+			bigrams.add(bigram(padded, i, i));
+		}
+		return bigrams;
+	}
+
+	private static String bigram(String padded, int start, int position) {
+		return new String(new char[] { padded.charAt(start), padded.charAt(start + 1), (char) position });
+	}
+
+	/**
+	 * @return whether the word may be misspelled, numbers are not
+	 */
+	private static boolean fuzzy(String word) {
+		if (word.length() < MIN_FUZZY_LENGTH) {
+			return false;
+		}
+		for (int i = 0; i < word.length(); i++) {
+			if (Character.isLetter(word.charAt(i))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the first two letters of the word in an int, to tell most words apart from
+	 * a query word without reading them
+	 */
+	private static int head(String word) {
+		return word.charAt(0) << 16 | (word.length() > 1 ? word.charAt(1) : 0);
+	}
+
+	private static int maxEdits(String word) {
+		return word.length() > MAX_ONE_EDIT_LENGTH ? 2 : 1;
+	}
+
+	/**
+	 * @return whether the words differ by exactly one edit, found in a single pass
+	 */
+	static boolean oneEditAway(String a, String b) {
+		if (a.length() > b.length()) {
+			return oneEditAway(b, a);
+		}
+		if (b.length() - a.length() > 1) {
+			return false;
+		}
+		int start = 0;
+		while (start < a.length() && a.charAt(start) == b.charAt(start)) {
+			start++;
+		}
+		if (a.length() < b.length()) {
+			// a letter inserted at start
+			return a.regionMatches(start, b, start + 1, a.length() - start);
+		}
+		if (start == a.length()) {
+			return false;
+		}
+		// a letter substituted at start, or swapped with the next
+		return a.regionMatches(start + 1, b, start + 1, a.length() - start - 1)
+				|| start + 1 < a.length() && a.charAt(start) == b.charAt(start + 1)
+						&& a.charAt(start + 1) == b.charAt(start)
+						&& a.regionMatches(start + 2, b, start + 2, a.length() - start - 2);
+	}
+
+	/**
+	 * @param rows room for three rows of the distance matrix, {@code 3 * (b.length() + 1)}
+	 * @return the optimal string alignment distance between the words, or {@code max + 1}
+	 * if it is more than {@code max}
+	 */
+	static int distance(String a, String b, int max, int[] rows) {
+		if (Math.abs(a.length() - b.length()) > max) {
+			return max + 1;
+		}
+		int width = b.length() + 1;
+		// the rows i - 2, i - 1 and i take turns at these offsets
+		int previous2 = 0;
+		int previous = width;
+		int current = 2 * width;
+		for (int j = 0; j < width; j++) {
+			rows[previous + j] = j;
+		}
+		for (int i = 1; i <= a.length(); i++) {
+			rows[current] = i;
+			int rowMin = i;
+			for (int j = 1; j < width; j++) {
+				int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+				int distance = Math.min(Math.min(rows[current + j - 1], rows[previous + j]) + 1,
+						rows[previous + j - 1] + cost);
+				if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+					distance = Math.min(distance, rows[previous2 + j - 2] + 1);
+				}
+				rows[current + j] = distance;
+				rowMin = Math.min(rowMin, distance);
+			}
+			if (rowMin > max) {
+				return max + 1;
+			}
+			int recycled = previous2;
+			previous2 = previous;
+			previous = current;
+			current = recycled;
+		}
+		return Math.min(rows[previous + width - 1], max + 1);
+	}
+
+	/**
+	 * A document of the search, with its id and score.
+	 */
+	public static final class Hit {
+
+		private final int id;
+
+		private final float score;
+
+		Hit(int id, float score) {
+			this.id = id;
+			this.score = score;
+		}
+
+		public int getId() {
+			return this.id;
+		}
+
+		public float getScore() {
+			return this.score;
+		}
+
+		@Override
+		public String toString() {
+			return this.id + ":" + this.score;
+		}
+
+	}
+
+	/**
+	 * A word of a query, with the words of the index it matches.
+	 */
+	private final class Word {
+
+		final String text;
+
+		final boolean prefix;
+
+		final int head;
+
+		final int maxEdits;
+
+		/** The words of the index but a few edits away from this one. */
+		final Set<String> misspellings = new HashSet<>();
+
+		/** The ids of the misspellings, sorted. */
+		final int[] misspellingIds;
+
+		/** Whether this is a prefix short enough to have its own postings. */
+		final boolean shortPrefix;
+
+		/** The number of documents of the matching words. */
+		long cost;
+
+		Word(String text, boolean prefix, Scratch scratch) {
+			this.text = text;
+			this.prefix = prefix;
+			this.head = head(text);
+			this.maxEdits = maxEdits(text);
+			this.misspellingIds = misspellings(scratch);
+			this.shortPrefix = prefix && text.length() <= SHORT_PREFIX;
+		}
+
+		/**
+		 * Counts the documents of the matching words, stopping past the given count.
+		 */
+		long cost(long max) {
+			if (this.shortPrefix) {
+				Postings postings = shortPrefixes.get(this.text);
+				this.cost = postings == null ? 0 : postings.size;
+				return this.cost;
+			}
+			long cost = 0;
+			for (String misspelling : this.misspellings) {
+				cost += postings.get(misspelling).size;
+			}
+			if (this.prefix) {
+				// includes the word itself
+				for (Postings postings : startingWith().values()) {
+					if (cost > max) {
+						break;
+					}
+					cost += postings.size;
+				}
+			}
+			else {
+				Postings exact = postings.get(this.text);
+				cost += exact == null ? 0 : exact.size;
+			}
+			this.cost = cost;
+			return cost;
+		}
+
+		float quality(String word) {
+			int extra = word.length() - this.text.length();
+			if (extra == 0 && word.equals(this.text)) {
+				return EXACT;
+			}
+			if (extra > 0 && this.prefix && word.startsWith(this.text)) {
+				return PREFIX;
+			}
+			return Math.abs(extra) <= this.maxEdits && !this.misspellings.isEmpty()
+					&& this.misspellings.contains(word) ? MISSPELLED : 0;
+		}
+
+		/**
+		 * @return the score of a matching word, before the weight of its fields
+		 */
+		float score(String word, Postings postings) {
+			float quality = quality(word);
+			return quality == PREFIX && this.shortPrefix ? PREFIX * idf(shortPrefixes.get(this.text))
+					: quality * idf(postings);
+		}
+
+		/**
+		 * @param head the {@link FullTextIndex#head(String) head} of the word
+		 */
+		float quality(int head, int wordId) {
+			if (this.text.length() == 1 ? head >>> 16 == this.head >>> 16 : head == this.head) {
+				return quality(words[wordId]);
+			}
+			return this.misspellingIds.length > 0 && Arrays.binarySearch(this.misspellingIds, wordId) >= 0
+					? MISSPELLED : 0;
+		}
+
+		Matches matches(Scratch scratch) {
+			List<Postings> matching = new ArrayList<>();
+			List<Float> matchingScores = new ArrayList<>();
+			if (this.shortPrefix) {
+				Postings postings = shortPrefixes.get(this.text);
+				if (postings != null) {
+					matching.add(postings);
+					matchingScores.add(PREFIX * idf(postings));
+				}
+			}
+			else if (this.prefix) {
+				startingWith().forEach((word, postings) -> {
+					matching.add(postings);
+					matchingScores.add(score(word, postings));
+				});
+			}
+			if (!this.prefix || this.shortPrefix) {
+				Postings postings = FullTextIndex.this.postings.get(this.text);
+				if (postings != null) {
+					matching.add(postings);
+					matchingScores.add(EXACT * idf(postings));
+				}
+			}
+			for (String misspelling : this.misspellings) {
+				if (!this.prefix || !misspelling.startsWith(this.text)) {
+					Postings postings = FullTextIndex.this.postings.get(misspelling);
+					matching.add(postings);
+					matchingScores.add(MISSPELLED * idf(postings));
+				}
+			}
+			int total = 0;
+			for (Postings postings : matching) {
+				total += postings.size;
+			}
+			if (matching.size() == 1) {
+				Postings postings = matching.get(0);
+				Matches matches = new Matches(total);
+				float score = matchingScores.get(0);
+				for (int i = 0; i < postings.size; i++) {
+					matches.add(postings.ids[i], score * weights[postings.fields[i]]);
+				}
+				return matches;
+			}
+			if (smallIds && maxId / Long.SIZE <= total * 4L) {
+				return accumulated(matching, matchingScores, total, scratch);
+			}
+			// sorted by id and then score, the best score of an id comes last
+			long[] packed = new long[total];
+			int next = 0;
+			for (int p = 0; p < matching.size(); p++) {
+				Postings postings = matching.get(p);
+				float score = matchingScores.get(p);
+				for (int i = 0; i < postings.size; i++) {
+					packed[next++] = (long) postings.ids[i] << 32
+							| Float.floatToIntBits(score * weights[postings.fields[i]]) & 0xffffffffL;
+				}
+			}
+			Arrays.sort(packed);
+			Matches matches = new Matches(total);
+			for (int i = 0; i < total; i++) {
+				if (i == total - 1 || (int) (packed[i] >>> 32) != (int) (packed[i + 1] >>> 32)) {
+					matches.add((int) (packed[i] >>> 32), Float.intBitsToFloat((int) packed[i]));
+				}
+			}
+			return matches;
+		}
+
+		/**
+		 * Merges the postings in a bit set of the ids and an array of the best scores by
+		 * id, read back in order, when the ids are few enough to be indexes.
+		 */
+		private Matches accumulated(List<Postings> matching, List<Float> matchingScores, int total,
+				Scratch scratch) {
+			scratch.ensureIds(maxId + 1);
+			long[] ids = scratch.ids;
+			float[] scores = scratch.scores;
+			int low = Integer.MAX_VALUE;
+			int high = 0;
+			for (int p = 0; p < matching.size(); p++) {
+				Postings postings = matching.get(p);
+				float score = matchingScores.get(p);
+				for (int i = 0; i < postings.size; i++) {
+					int id = postings.ids[i];
+					ids[id >>> 6] |= 1L << id;
+					scores[id] = Math.max(scores[id], score * weights[postings.fields[i]]);
+				}
+				low = Math.min(low, postings.ids[0]);
+				high = Math.max(high, postings.ids[postings.size - 1]);
+			}
+			Matches matches = new Matches(total);
+			for (int index = low >>> 6; index <= high >>> 6; index++) {
+				long bits = ids[index];
+				ids[index] = 0;
+				while (bits != 0) {
+					int id = index << 6 | Long.numberOfTrailingZeros(bits);
+					matches.add(id, scores[id]);
+					scores[id] = 0;
+					bits &= bits - 1;
+				}
+			}
+			return matches;
+		}
+
+		private NavigableMap<String, Postings> startingWith() {
+			return sortedPostings.subMap(this.text, true, this.text + Character.MAX_VALUE, false);
+		}
+
+		/**
+		 * Finds the misspellings of the word.
+		 * @return their ids, sorted
+		 */
+		private int[] misspellings(Scratch scratch) {
+			if (!fuzzy(this.text)) {
+				return new int[0];
+			}
+			String padded = '^' + this.text + '$';
+			int count = padded.length() - 1;
+			// an edit changes at most three bigrams, the swap of two letters, and moves the
+			// others by at most one position, so a misspelling has all but 3 * maxEdits of
+			// the bigrams and at least one of the 3 * maxEdits + 1 found in the fewest words
+			IntList[][] lists = new IntList[count][2 * this.maxEdits + 1];
+			long[] sizes = new long[count];
+			for (int i = 0; i < count; i++) {
+				long size = 0;
+				for (int position = Math.max(0, i - this.maxEdits); position <= i + this.maxEdits; position++) {
+					IntList wordIds = bigrams.get(bigram(padded, i, position));
+					lists[i][position - i + this.maxEdits] = wordIds;
+					size += wordIds == null ? 0 : wordIds.size;
+				}
+				sizes[i] = size << 32 | i;
+			}
+			Arrays.sort(sizes);
+			scratch.ensureWords(words.length);
+			int[] seen = scratch.seen;
+			IntList candidates = scratch.candidates;
+			for (int rarest = 0; rarest <= 3 * this.maxEdits && rarest < count; rarest++) {
+				for (IntList wordIds : lists[(int) sizes[rarest]]) {
+					for (int w = 0; wordIds != null && w < wordIds.size; w++) {
+						if (seen[wordIds.ints[w]]++ == 0) {
+							candidates.add(wordIds.ints[w]);
+						}
+					}
+				}
+			}
+			IntList misspellingIds = new IntList(16);
+			int[] rows = new int[3 * (this.text.length() + this.maxEdits + 1)];
+			for (int i = 0; i < candidates.size; i++) {
+				int wordId = candidates.ints[i];
+				String word = words[wordId];
+				if (this.maxEdits == 1 ? oneEditAway(this.text, word)
+						: !word.equals(this.text) && distance(this.text, word, this.maxEdits, rows) <= 2) {
+					this.misspellings.add(word);
+					misspellingIds.add(wordId);
+				}
+				seen[wordId] = 0;
+			}
+			candidates.size = 0;
+			int[] sorted = Arrays.copyOf(misspellingIds.ints, misspellingIds.size);
+			Arrays.sort(sorted);
+			return sorted;
+		}
+
+	}
+
+	/**
+	 * Ids in ascending order, with their scores.
+	 */
+	private static final class Matches {
+
+		final int[] ids;
+
+		final float[] scores;
+
+		int size;
+
+		Matches(int capacity) {
+			this.ids = new int[capacity];
+			this.scores = new float[capacity];
+		}
+
+		void add(int id, float score) {
+			this.ids[this.size] = id;
+			this.scores[this.size++] = score;
+		}
+
+		Matches intersect(Matches other) {
+			Matches both = new Matches(Math.min(this.size, other.size));
+			int i = 0;
+			int j = 0;
+			while (i < this.size && j < other.size) {
+				if (this.ids[i] < other.ids[j]) {
+					i++;
+				}
+				else if (this.ids[i] > other.ids[j]) {
+					j++;
+				}
+				else {
+					both.add(this.ids[i], this.scores[i++] + other.scores[j++]);
+				}
+			}
+			return both;
+		}
+
+	}
+
+	/**
+	 * The words of a document, each with the bit set of the fields it is in.
+	 */
+	private static final class Document {
+
+		final String[] words;
+
+		final int[] fields;
+
+		/** The {@link FullTextIndex#head(String) head} of each word. */
+		final int[] heads;
+
+		/** The id of each word, set as it is indexed. */
+		final int[] wordIds;
+
+		Document(List<Set<String>> texts) {
+			Map<String, Integer> fields = new LinkedHashMap<>();
+			for (int field = 0; field < texts.size(); field++) {
+				int bit = 1 << field;
+				for (String word : texts.get(field)) {
+					fields.merge(word, bit, (a, b) -> a | b);
+				}
+			}
+			this.words = fields.keySet().toArray(new String[0]);
+			this.fields = new int[this.words.length];
+			this.heads = new int[this.words.length];
+			this.wordIds = new int[this.words.length];
+			for (int i = 0; i < this.words.length; i++) {
+				this.fields[i] = fields.get(this.words[i]);
+				this.heads[i] = head(this.words[i]);
+			}
+
+		}
+
+		/**
+		 * @return the fields the word is in, {@code 0} for none
+		 */
+		int fields(String word) {
+			for (int i = 0; i < this.words.length; i++) {
+				if (this.words[i].equals(word)) {
+					return this.fields[i];
+				}
+			}
+			return 0;
+		}
+
+		/**
+		 * @return the prefixes of up to {@value FullTextIndex#SHORT_PREFIX} letters of
+		 * the words, with the fields having words starting with them
+		 */
+		Map<String, Integer> prefixes() {
+			Map<String, Integer> prefixes = new HashMap<>();
+			for (int i = 0; i < this.words.length; i++) {
+				for (int length = 1; length <= Math.min(SHORT_PREFIX, this.words[i].length()); length++) {
+					prefixes.merge(this.words[i].substring(0, length), this.fields[i], (a, b) -> a | b);
+				}
+			}
+			return prefixes;
+		}
+
+		Set<String> words(int field) {
+			Set<String> words = new LinkedHashSet<>();
+			for (int i = 0; i < this.words.length; i++) {
+				if ((this.fields[i] & (1 << field)) != 0) {
+					words.add(this.words[i]);
+				}
+			}
+			return words;
+		}
+
+	}
+
+	/**
+	 * The ids of the documents having a word in ascending order, each with the bit set of
+	 * the fields the word is in.
+	 */
+	private static final class Postings {
+
+		final int wordId;
+
+		int[] ids = new int[2];
+
+		int[] fields = new int[2];
+
+		int size;
+
+		Postings(int wordId) {
+			this.wordId = wordId;
+		}
+
+		void put(int id, int fields) {
+			int position = Arrays.binarySearch(this.ids, 0, this.size, id);
+			if (position >= 0) {
+				this.fields[position] = fields;
+				return;
+			}
+			position = -position - 1;
+			if (this.size == this.ids.length) {
+				this.ids = Arrays.copyOf(this.ids, this.size * 2);
+				this.fields = Arrays.copyOf(this.fields, this.size * 2);
+			}
+			System.arraycopy(this.ids, position, this.ids, position + 1, this.size - position);
+			System.arraycopy(this.fields, position, this.fields, position + 1, this.size - position);
+			this.ids[position] = id;
+			this.fields[position] = fields;
+			this.size++;
+		}
+
+		void remove(int id) {
+			int position = Arrays.binarySearch(this.ids, 0, this.size, id);
+			if (position >= 0) {
+				this.size--;
+				System.arraycopy(this.ids, position + 1, this.ids, position, this.size - position);
+				System.arraycopy(this.fields, position + 1, this.fields, position, this.size - position);
+			}
+		}
+
+	}
+
+	/**
+	 * An unordered list of ints in an array, growing as needed.
+	 */
+	private static final class IntList {
+
+		int[] ints;
+
+		int size;
+
+		IntList(int capacity) {
+			this.ints = new int[capacity];
+		}
+
+		void add(int value) {
+			if (this.size == this.ints.length) {
+				this.ints = Arrays.copyOf(this.ints, this.size * 2);
+			}
+			this.ints[this.size++] = value;
+		}
+
+		void remove(int value) {
+			for (int i = 0; i < this.size; i++) {
+				if (this.ints[i] == value) {
+					this.ints[i] = this.ints[--this.size];
+					return;
+				}
+			}
+		}
+
+	}
+
+	/**
+	 * The arrays a thread reuses from search to search, left zeroed after each.
+	 */
+	private static final class Scratch {
+
+		/** Marks the word ids already compared with a misspelled word. */
+		int[] seen = new int[0];
+
+		final IntList candidates = new IntList(1024);
+
+		/** The bit set of the ids matching a word, and their scores by id. */
+		long[] ids = new long[0];
+
+		float[] scores = new float[0];
+
+		void ensureWords(int words) {
+			if (this.seen.length < words) {
+				this.seen = new int[words];
+			}
+		}
+
+		void ensureIds(int ids) {
+			if (this.scores.length < ids) {
+				this.ids = new long[(ids + Long.SIZE - 1) / Long.SIZE];
+				this.scores = new float[ids];
+			}
+		}
+
+	}
+
+}
@@ -1,115 +1,217 @@
 package org.springframework.samples.petclinic.utility;
+
 import org.springframework.samples.petclinic.model.BaseEntity;
+import org.springframework.util.Assert;
 
-import java.util.*;
-import java.util.function.Supplier;
-import java.util.stream.Collector;
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 /**
- * This is a utility class to provide a sortable map
- * for more information see https://docs.oracle.com/javase/8/docs/api/java/util/Collection.html
+ * A collection holding at most one entity per id, in insertion order: adding an entity
+ * whose id is already present replaces the previous one in place.
+ * <p>
+ * Entities are kept in a dense array and indexed by an {@link IntLongHashMap} from id to
+ * slot, so {@code add}, {@code contains} and {@code remove} take constant time without
+ * boxing ids. Removed entities leave a gap that iteration skips; the array is compacted
+ * once gaps outnumber entities. Entities must have an id, and
+ * {@link Integer#MIN_VALUE} cannot be one.
+ * <p>
+ * Iterators are fail-fast and support {@link Iterator#remove()}. This class is not
+ * thread-safe.
  */
-public class IdentityMap<Entity extends BaseEntity> implements Collection<Entity> {
+public class IdentityMap<Entity extends BaseEntity> extends AbstractCollection<Entity> {
 
-	private ArrayList<Entity> entities = new ArrayList<>();
-	private Set<Integer> ids = new HashSet<>();
+	private final IntLongHashMap slots = new IntLongHashMap(16);
 
+	private Object[] entities = new Object[16];
 
-	@Override
-	public int size() {
-		return ids.size();
-	}
+	/** The first free slot; slots below it hold an entity or a gap. */
+	private int end;
 
-	@Override
-	public boolean isEmpty() {
-		return ids.isEmpty();
-	}
+	private int modCount;
 
 	@Override
-	public boolean contains(Object o) {
-		if(o instanceof BaseEntity) {
-			return ids.contains(((BaseEntity) o).getId());
-		} else {
-			return false;
-		}
-	}
-
-	@Override
-	public Iterator<Entity> iterator() {
-		throw new UnsupportedOperationException();
+	public int size() {
+		return slots.size();
 	}
 
 	@Override
-	public Object[] toArray() {
-		throw new UnsupportedOperationException();
+	public boolean contains(Object o) {
+		return o instanceof BaseEntity && get(((BaseEntity) o).getId()) != null;
 	}
 
-	@Override
-	public <T> T[] toArray(T[] ts) {
-		throw new UnsupportedOperationException();
+	/**
+	 * @return the entity with the given id, {@code null} if there is none
+	 */
+	@SuppressWarnings("unchecked")
+	public Entity get(Integer id) {
+		if (id == null) {
+			return null;
+		}
+		long slot = slots.get(id);
+		return slot == IntLongHashMap.MISSING ? null : (Entity) entities[(int) slot];
 	}
 
+	/**
+	 * Adds an entity, replacing the entity with the same id if there is one.
+	 * @return {@code false} if this very entity was already present
+	 */
 	@Override
 	public boolean add(Entity entity) {
-		if(!ids.contains(entity)) {
-			ids.add(entity.getId());
-			entities.add(entity);
-		} else {
-			entities.removeIf(entity::sameId);
-			this.add(entity);
+		Assert.notNull(entity.getId(), "Only entities with an id can be added");
+		int id = entity.getId();
+		if (end == entities.length) {
+			if (end - slots.size() > slots.size()) {
+				compact();
+			}
+			else {
+				entities = Arrays.copyOf(entities, entities.length * 2);
+			}
+		}
+		// a single probe for new ids; a replaced id gets its slot back
+		long slot = slots.put(id, end);
+		if (slot != IntLongHashMap.MISSING) {
+			slots.put(id, slot);
+			if (entities[(int) slot] == entity) {
+				return false;
+			}
+			entities[(int) slot] = entity;
+			modCount++;
+			return true;
 		}
+		entities[end++] = entity;
+		modCount++;
 		return true;
 	}
 
 	@Override
-	public boolean remove(Object object) {
-		if(object instanceof BaseEntity) {
-			if(ids.remove(((BaseEntity) object).getId())) {
-				return entities.removeIf(((BaseEntity) object)::sameId);
-			}
+	public boolean addAll(Collection<? extends Entity> collection) {
+		int capacity = end + collection.size();
+		if (capacity > entities.length) {
+			entities = Arrays.copyOf(entities, Math.max(capacity, entities.length * 2));
 		}
-		return false;
+		slots.ensureCapacity(slots.size() + collection.size());
+		return super.addAll(collection);
 	}
 
 	@Override
-	public boolean containsAll(Collection<?> collection) {
-		for(Object object: collection) {
-			if(!contains(object))
-				return false;
+	public boolean remove(Object o) {
+		if (!(o instanceof BaseEntity) || ((BaseEntity) o).getId() == null) {
+			return false;
 		}
+		long slot = slots.remove(((BaseEntity) o).getId());
+		if (slot == IntLongHashMap.MISSING) {
+			return false;
+		}
+		entities[(int) slot] = null;
+		modCount++;
 		return true;
 	}
 
 	@Override
-	public boolean addAll(Collection<? extends Entity> collection) {
-		boolean collectionChaged = false;
-		for(Entity entity: collection) {
-			collectionChaged |= add(entity);
-		}
-		return collectionChaged;
+	public void clear() {
+		slots.clear();
+		Arrays.fill(entities, 0, end, null);
+		end = 0;
+		modCount++;
 	}
 
-	@Override
-	public boolean removeAll(Collection<?> collection) {
-		boolean collectionChaged = false;
-		for(Object object: collection) {
-			collectionChaged |= remove(object);
+	/**
+	 * Sorts the entities, which then iterate in the given order until the next
+	 * {@code add} of a new id.
+	 */
+	@SuppressWarnings("unchecked")
+	public void sort(Comparator<? super Entity> comparator) {
+		compact();
+		Arrays.sort(entities, 0, end, (Comparator<Object>) comparator);
+		for (int slot = 0; slot < end; slot++) {
+			slots.put(((BaseEntity) entities[slot]).getId(), slot);
 		}
-		return collectionChaged;
+		modCount++;
 	}
 
 	@Override
-	public boolean retainAll(Collection<?> collection) {
-		throw new UnsupportedOperationException();
+	public Iterator<Entity> iterator() {
+		return new Itr();
 	}
 
-	@Override
-	public void clear() {
-		ids.clear();
-		entities.clear();
+	/**
+	 * Moves the entities down over the gaps left by removals, keeping their order.
+	 */
+	private void compact() {
+		int to = 0;
+		for (int from = 0; from < end; from++) {
+			Object entity = entities[from];
+			if (entity != null) {
+				if (to != from) {
+					entities[to] = entity;
+					slots.put(((BaseEntity) entity).getId(), to);
+				}
+				to++;
+			}
+		}
+		Arrays.fill(entities, to, end, null);
+		end = to;
 	}
 
-	public void sort(Comparator<Entity> comparator) {
-		entities.sort(comparator);
+	private class Itr implements Iterator<Entity> {
+
+		private int next;
+
+		private int last = -1;
+
+		private int expectedModCount = modCount;
+
+		Itr() {
+			skipGaps();
+		}
+
+		@Override
+		public boolean hasNext() {
+			return next < end;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public Entity next() {
+			checkForComodification();
+			if (next >= end) {
+				throw new NoSuchElementException();
+			}
+			last = next++;
+			skipGaps();
+			return (Entity) entities[last];
+		}
+
+		@Override
+		public void remove() {
+			if (last < 0) {
+				throw new IllegalStateException();
+			}
+			checkForComodification();
+			slots.remove(((BaseEntity) entities[last]).getId());
+			entities[last] = null;
+			last = -1;
+			expectedModCount = ++modCount;
+		}
+
+		private void skipGaps() {
+			while (next < end && entities[next] == null) {
+				next++;
+			}
+		}
+
+		private void checkForComodification() {
+			if (modCount != expectedModCount) {
+				throw new ConcurrentModificationException();
+			}
+		}
+
 	}
+
 }
@@ -0,0 +1,162 @@
+package org.springframework.samples.petclinic.utility;
+
+import java.util.Arrays;
+
+/**
+ * An open-addressing hash map from {@code int} to {@code long} on two primitive arrays,
+ * without any per-entry object. Collisions are resolved by linear probing and removals
+ * shift the following entries back, so there are no tombstones.
+ * <p>
+ * {@link Integer#MIN_VALUE} marks free slots and cannot be used as a key. This class is
+ * not thread-safe.
+ */
+final class IntLongHashMap {
+
+	static final long MISSING = -1;
+
+	private static final int FREE = Integer.MIN_VALUE;
+
+	private int[] keys;
+
+	private long[] values;
+
+	private int mask;
+
+	private int size;
+
+	IntLongHashMap(int expectedSize) {
+		allocate(tableSizeFor(expectedSize));
+	}
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @return the value of the key, {@link #MISSING} if there is none
+	 */
+	long get(int key) {
+		int slot = find(key);
+		return slot < 0 ? MISSING : values[slot];
+	}
+
+	/**
+	 * @return the previous value of the key, {@link #MISSING} if there was none
+	 */
+	long put(int key, long value) {
+		if (key == FREE) {
+			throw new IllegalArgumentException("Integer.MIN_VALUE cannot be used as a key");
+		}
+		int slot = slot(key);
+		while (keys[slot] != FREE) {
+			if (keys[slot] == key) {
+				long previous = values[slot];
+				values[slot] = value;
+				return previous;
+			}
+			slot = (slot + 1) & mask;
+		}
+		keys[slot] = key;
+		values[slot] = value;
+		if (++size > (mask + 1) * 3 / 4) {
+			resize();
+		}
+		return MISSING;
+	}
+
+	/**
+	 * @return the removed value, {@link #MISSING} if the key was absent
+	 */
+	long remove(int key) {
+		int slot = find(key);
+		if (slot < 0) {
+			return MISSING;
+		}
+		long removed = values[slot];
+		size--;
+		// shift back the entries that probed past the freed slot
+		int free = slot;
+		int next = (free + 1) & mask;
+		while (keys[next] != FREE) {
+			int home = slot(keys[next]);
+			if (((next - home) & mask) >= ((next - free) & mask)) {
+				keys[free] = keys[next];
+				values[free] = values[next];
+				free = next;
+			}
+			next = (next + 1) & mask;
+		}
+		keys[free] = FREE;
+		return removed;
+	}
+
+	/**
+	 * Grows the table so that it holds {@code expectedSize} keys without resizing.
+	 */
+	void ensureCapacity(int expectedSize) {
+		int capacity = tableSizeFor(expectedSize);
+		if (capacity > keys.length) {
+			rehash(capacity);
+		}
+	}
+
+	void clear() {
+		Arrays.fill(keys, FREE);
+		size = 0;
+	}
+
+	private int find(int key) {
+		if (key == FREE) {
+			return -1;
+		}
+		int slot = slot(key);
+		while (keys[slot] != FREE) {
+			if (keys[slot] == key) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	private int slot(int key) {
+		int hash = key * 0x9E3779B9;
+		return (hash ^ (hash >>> 16)) & mask;
+	}
+
+	private void resize() {
+		rehash(keys.length * 2);
+	}
+
+	private void rehash(int capacity) {
+		int[] oldKeys = keys;
+		long[] oldValues = values;
+		allocate(capacity);
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != FREE) {
+				int slot = slot(oldKeys[i]);
+				while (keys[slot] != FREE) {
+					slot = (slot + 1) & mask;
+				}
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+
+	private void allocate(int capacity) {
+		keys = new int[capacity];
+		values = new long[capacity];
+		mask = capacity - 1;
+		Arrays.fill(keys, FREE);
+	}
+
+	private static int tableSizeFor(int expectedSize) {
+		int capacity = 16;
+		while (capacity * 3 / 4 < expectedSize) {
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+
+}
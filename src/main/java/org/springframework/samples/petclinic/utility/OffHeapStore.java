@@ -0,0 +1,193 @@
+package org.springframework.samples.petclinic.utility;
+
+import org.springframework.util.Assert;
+
+import java.nio.ByteBuffer;
+
+/**
+ * An {@link EvictionTier} keeping encoded values outside the Java heap, in direct
+ * {@link ByteBuffer} slabs, so that millions of entries add neither to the old
+ * generation nor to the work of the garbage collector.
+ * <p>
+ * The slabs form a ring written like a log: each entry is appended to the current slab
+ * as a record {@code key, refreshAt, expiresAt, deadline, length, bytes} and indexed by
+ * an {@link IntLongHashMap} from key to {@code slab << 32 | offset}. Replaced, taken and
+ * removed records are left in place; when the ring is full the oldest slab is recycled
+ * and the entries still pointing into it are dropped, so space is reclaimed in FIFO
+ * order without any compaction.
+ * <p>
+ * All operations take the store's monitor; values are encoded and decoded outside of
+ * it.
+ */
+final class OffHeapStore<V> implements EvictionTier<Integer, V> {
+
+	/**
+	 * Turns values into bytes and back.
+	 */
+	interface Codec<V> {
+
+		byte[] encode(V value);
+
+		V decode(byte[] bytes);
+
+	}
+
+	private static final int HEADER_BYTES = 4 + 8 + 8 + 8 + 4;
+
+	private final Codec<V> codec;
+
+	private final int slabBytes;
+
+	private final ByteBuffer[] slabs;
+
+	/** The number of bytes written into each slab. */
+	private final int[] limits;
+
+	private final IntLongHashMap index = new IntLongHashMap(1024);
+
+	private int head;
+
+	private int tail;
+
+	private int slabsInUse;
+
+	private int position;
+
+	/**
+	 * @param maximumBytes the memory the store may allocate, rounded down to whole slabs
+	 * @param slabBytes the size of each slab, the largest record that can be stored
+	 */
+	OffHeapStore(Codec<V> codec, long maximumBytes, int slabBytes) {
+		Assert.isTrue(slabBytes > HEADER_BYTES, "slabBytes is too small");
+		Assert.isTrue(maximumBytes >= slabBytes, "maximumBytes must hold at least one slab");
+		this.codec = codec;
+		this.slabBytes = slabBytes;
+		int slabCount = (int) Math.min(Integer.MAX_VALUE, maximumBytes / slabBytes);
+		this.slabs = new ByteBuffer[slabCount];
+		this.limits = new int[slabCount];
+	}
+
+	@Override
+	public void store(CacheEntry<Integer, V> entry) {
+		if (entry.key == Integer.MIN_VALUE) {
+			return;
+		}
+		byte[] bytes = codec.encode(entry.value);
+		int recordBytes = HEADER_BYTES + bytes.length;
+		if (recordBytes > slabBytes) {
+			return;
+		}
+		synchronized (this) {
+			if (slabsInUse == 0) {
+				slabsInUse = 1;
+				slab(tail);
+			}
+			else if (position + recordBytes > slabBytes) {
+				advance();
+			}
+			ByteBuffer slab = slab(tail);
+			slab.position(position);
+			slab.putInt(entry.key).putLong(entry.refreshAt).putLong(entry.expiresAt).putLong(entry.deadline)
+					.putInt(bytes.length).put(bytes);
+			index.put(entry.key, (long) tail << 32 | position);
+			position += recordBytes;
+		}
+	}
+
+	@Override
+	public CacheEntry<Integer, V> take(Integer key, long now) {
+		long refreshAt;
+		long expiresAt;
+		long deadline;
+		byte[] bytes;
+		synchronized (this) {
+			long address = index.remove(key);
+			if (address == IntLongHashMap.MISSING) {
+				return null;
+			}
+			ByteBuffer slab = slabs[(int) (address >>> 32)];
+			int offset = (int) address + 4;
+			refreshAt = slab.getLong(offset);
+			expiresAt = slab.getLong(offset + 8);
+			deadline = slab.getLong(offset + 16);
+			if (now >= expiresAt) {
+				return null;
+			}
+			bytes = new byte[slab.getInt(offset + 24)];
+			ByteBuffer record = slab.duplicate();
+			record.position(offset + 28);
+			record.get(bytes);
+		}
+		return new CacheEntry<>(key, codec.decode(bytes), refreshAt, expiresAt, deadline);
+	}
+
+	@Override
+	public synchronized void remove(Integer key) {
+		index.remove(key);
+	}
+
+	@Override
+	public synchronized void clear() {
+		index.clear();
+		head = 0;
+		tail = 0;
+		slabsInUse = 0;
+		position = 0;
+	}
+
+	@Override
+	public synchronized int size() {
+		return index.size();
+	}
+
+	@Override
+	public synchronized long allocatedBytes() {
+		long allocated = 0;
+		for (ByteBuffer slab : slabs) {
+			if (slab != null) {
+				allocated += slab.capacity();
+			}
+		}
+		return allocated;
+	}
+
+	/**
+	 * Moves on to the next slab, recycling the oldest one when the ring is full.
+	 */
+	private void advance() {
+		limits[tail] = position;
+		tail = (tail + 1) % slabs.length;
+		if (slabsInUse == slabs.length) {
+			drop(head);
+			head = (head + 1) % slabs.length;
+		}
+		else {
+			slabsInUse++;
+		}
+		position = 0;
+	}
+
+	/**
+	 * Unindexes the entries whose latest record is in the given slab.
+	 */
+	private void drop(int slabIndex) {
+		ByteBuffer slab = slabs[slabIndex];
+		int offset = 0;
+		while (offset < limits[slabIndex]) {
+			int key = slab.getInt(offset);
+			if (index.get(key) == ((long) slabIndex << 32 | offset)) {
+				index.remove(key);
+			}
+			offset += HEADER_BYTES + slab.getInt(offset + 28);
+		}
+		limits[slabIndex] = 0;
+	}
+
+	private ByteBuffer slab(int slabIndex) {
+		if (slabs[slabIndex] == null) {
+			slabs[slabIndex] = ByteBuffer.allocateDirect(slabBytes);
+		}
+		return slabs[slabIndex];
+	}
+
+}
@@ -0,0 +1,130 @@
+package org.springframework.samples.petclinic.utility;
+
+import org.springframework.samples.petclinic.model.BaseEntity;
+import org.springframework.samples.petclinic.owner.Owner;
+import org.springframework.samples.petclinic.owner.Pet;
+import org.springframework.samples.petclinic.owner.PetType;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.util.function.IntFunction;
+
+/**
+ * Encodes a {@link Pet} into a compact binary form for the {@link OffHeapStore}: its own
+ * fields, its type, and the fields of its owner. The owner's other pets and the pet's
+ * visits, which are loaded separately, are not kept, nor are a type or an owner without
+ * an id; a decoded owner only lists the decoded pet. Pet types are only encoded by id and
+ * name: a decoded pet gets the current type with that id from the {@code types}, e.g. a
+ * {@link org.springframework.samples.petclinic.owner.PetTypeRegistry}, so that renamed
+ * types show up in the pets kept encoded, and the encoded type if there is none.
+ */
+final class PetCodec implements OffHeapStore.Codec<Pet> {
+
+	private static final int ABSENT = -1;
+
+	private final IntFunction<PetType> types;
+
+	/**
+	 * @param types returns the pet type with the given id, or {@code null} if there is none
+	 */
+	PetCodec(IntFunction<PetType> types) {
+		this.types = types;
+	}
+
+	@Override
+	public byte[] encode(Pet pet) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			writeId(out, pet);
+			writeString(out, pet.getName());
+			out.writeLong(pet.getBirthDate() == null ? Long.MIN_VALUE : pet.getBirthDate().toEpochDay());
+			PetType type = pet.getType();
+			writeId(out, type);
+			if (hasId(type)) {
+				writeString(out, type.getName());
+			}
+			Owner owner = pet.getOwner();
+			writeId(out, owner);
+			if (hasId(owner)) {
+				writeString(out, owner.getFirstName());
+				writeString(out, owner.getLastName());
+				writeString(out, owner.getAddress());
+				writeString(out, owner.getCity());
+				writeString(out, owner.getTelephone());
+			}
+		}
+		catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+		return bytes.toByteArray();
+	}
+
+	@Override
+	public Pet decode(byte[] bytes) {
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+			Pet pet = new Pet();
+			Integer petId = readId(in);
+			pet.setName(readString(in));
+			long birthDate = in.readLong();
+			pet.setBirthDate(birthDate == Long.MIN_VALUE ? null : LocalDate.ofEpochDay(birthDate));
+			Integer typeId = readId(in);
+			if (typeId != null) {
+				String typeName = readString(in);
+				PetType type = types.apply(typeId);
+				if (type == null) {
+					type = new PetType();
+					type.setId(typeId);
+					type.setName(typeName);
+				}
+				pet.setType(type);
+			}
+			Integer ownerId = readId(in);
+			if (ownerId != null) {
+				Owner owner = new Owner();
+				owner.setId(ownerId);
+				owner.setFirstName(readString(in));
+				owner.setLastName(readString(in));
+				owner.setAddress(readString(in));
+				owner.setCity(readString(in));
+				owner.setTelephone(readString(in));
+				// while the pet is still new, so that its owner lists it
+				owner.addPet(pet);
+			}
+			pet.setId(petId);
+			return pet;
+		}
+		catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+	}
+
+	private static boolean hasId(BaseEntity entity) {
+		return entity != null && entity.getId() != null;
+	}
+
+	private static void writeId(DataOutputStream out, BaseEntity entity) throws IOException {
+		out.writeInt(hasId(entity) ? entity.getId() : ABSENT);
+	}
+
+	private static Integer readId(DataInputStream in) throws IOException {
+		int id = in.readInt();
+		return id == ABSENT ? null : id;
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		out.writeBoolean(value != null);
+		if (value != null) {
+			out.writeUTF(value);
+		}
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+
+}
@@ -1,99 +1,197 @@
 package org.springframework.samples.petclinic.utility;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.samples.petclinic.owner.Pet;
 import org.springframework.samples.petclinic.owner.PetRepository;
+import org.springframework.samples.petclinic.owner.PetType;
+import org.springframework.samples.petclinic.owner.PetTypeRegistry;
 import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
 
-import java.text.SimpleDateFormat;
-	import java.util.Date;
-	import java.util.Map;
-	import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.PreDestroy;
+
+import java.util.concurrent.Executor;
+import java.util.function.IntFunction;
+import java.util.function.LongSupplier;
 
 /**
+ * Caches pets by id for {@code expiryInMillis} after they were loaded, on top of a
+ * {@link TimedCache} named {@code pets}; see there for expiry, load coalescing,
+ * refresh-ahead, stale-while-revalidate and the size bound.
+ * <p>
+ * Saves go through the cache, so readers never see a pet older than the last save; see
+ * {@link WriteMode} for the two ways of writing pets to the repository. In
+ * {@link WriteMode#WRITE_BEHIND} mode this holds as long as the saves are pending too: a
+ * pet that expires or is evicted before its save is flushed is reloaded from the
+ * write-behind buffer, not from the repository.
+ * <p>
+ * With {@code petclinic.cache.pets.off-heap-max-bytes} set, the pets evicted by the size
+ * bound are kept encoded in an {@link OffHeapStore} until they expire, so a large working
+ * set costs a little heap for the hottest pets instead of heap for all of them.
  *
  * @author Vivekananthan M
  */
 @Component
-public class PetTimedCache {
+public class PetTimedCache implements MeterBinder {
+
+	/**
+	 * How {@link #save(Pet)} writes pets to the repository.
+	 */
+	public enum WriteMode {
+
+		/** Save synchronously, then cache the saved pet. */
+		WRITE_THROUGH,
+
+		/** Cache right away and save updates in batches. */
+		WRITE_BEHIND
+
+	}
 
-	private final static Logger log = LoggerFactory.getLogger(PetTimedCache.class);
 	private final PetRepository repository;
 
-	private Map<Integer, Long> timeMap = new ConcurrentHashMap<Integer, Long>();
-	private Map<Integer, Pet> actualMap = new ConcurrentHashMap<Integer, Pet>();
+	/** The largest slab of the off-heap tier, the unit in which it grows. */
+	private static final int OFF_HEAP_SLAB_BYTES = 4 * 1024 * 1024;
 
-	private long expiryInMillis = 10000;
-	private static final SimpleDateFormat SIMPLE_DATE_FORMAT = new SimpleDateFormat("hh:mm:ss:SSS");
+	private final TimedCache<Integer, Pet> cache;
 
 	@Autowired
-	public PetTimedCache(PetRepository repository) {
+	public PetTimedCache(PetRepository repository, PetTypeRegistry petTypes, CacheMaintenanceScheduler scheduler,
+			@Value("${petclinic.cache.pets.expiry-millis:10000}") long expiryInMillis,
+			@Value("${petclinic.cache.pets.maximum-size:0}") long maximumSize,
+			@Value("${petclinic.cache.pets.refresh-ahead-fraction:0}") double refreshAheadFraction,
+			@Value("${petclinic.cache.pets.stale-while-revalidate-millis:0}") long staleWhileRevalidateMillis,
+			@Value("${petclinic.cache.pets.refresh-threads:2}") int refreshThreads,
+			@Value("${petclinic.cache.pets.write-mode:WRITE_THROUGH}") WriteMode writeMode,
+			@Value("${petclinic.cache.pets.write-behind-batch-size:50}") int writeBehindBatchSize,
+			@Value("${petclinic.cache.pets.write-behind-flush-millis:1000}") long writeBehindFlushMillis,
+			@Value("${petclinic.cache.pets.off-heap-max-bytes:0}") long offHeapMaximumBytes) {
+		TimedCache.Builder<Integer, Pet> builder = builder(expiryInMillis, maximumSize, refreshAheadFraction,
+				staleWhileRevalidateMillis, repository).refreshThreads(refreshThreads).maintainedBy(scheduler);
+		if (writeMode == WriteMode.WRITE_BEHIND) {
+			builder.writeBehind(repository::saveAll, writeBehindBatchSize, writeBehindFlushMillis);
+		}
+		if (offHeapMaximumBytes > 0) {
+			Assert.isTrue(maximumSize > 0, "An off-heap tier needs petclinic.cache.pets.maximum-size to be set");
+			builder.evictionTier(offHeapStore(offHeapMaximumBytes, petTypes::findById));
+		}
 		this.repository = repository;
-		initialize();
+		this.cache = builder.build();
+	}
+
+	public PetTimedCache(PetRepository repository) {
+		this(10000, repository);
 	}
 
 	public PetTimedCache(long expiryInMillis, PetRepository repository) {
-		this.expiryInMillis = expiryInMillis;
+		this(expiryInMillis, 0, 0, 0, repository, System::currentTimeMillis, null, null);
+	}
+
+	/**
+	 * @param maximumSize the maximum number of cached pets, {@code 0} for no bound
+	 * @param refreshAheadFraction the last fraction of {@code expiryInMillis} during which
+	 * a read triggers a background reload, {@code 0} to disable refresh-ahead
+	 * @param staleWhileRevalidateMillis how long past its expiry a pet is still served
+	 * while it is reloaded in the background, {@code 0} to disable
+	 * @param refreshExecutor runs background reloads, only used when one of the two modes
+	 * is enabled
+	 * @param writeBehind buffers the saves of existing pets, {@code null} to write through
+	 */
+	PetTimedCache(long expiryInMillis, long maximumSize, double refreshAheadFraction,
+			long staleWhileRevalidateMillis, PetRepository repository, LongSupplier clock, Executor refreshExecutor,
+			WriteBehindQueue<Integer, Pet> writeBehind) {
+		TimedCache.Builder<Integer, Pet> builder = builder(expiryInMillis, maximumSize, refreshAheadFraction,
+				staleWhileRevalidateMillis, repository).clock(clock).refreshExecutor(refreshExecutor);
+		if (writeBehind != null) {
+			builder.writeBehind(writeBehind, Long.MAX_VALUE);
+		}
 		this.repository = repository;
-		initialize();
+		this.cache = builder.build();
 	}
 
-	void initialize() {
-		new CleanerThread().start();
+	private static TimedCache.Builder<Integer, Pet> builder(long expiryInMillis, long maximumSize,
+			double refreshAheadFraction, long staleWhileRevalidateMillis, PetRepository repository) {
+		return TimedCache.builder("pets", repository::findById).expireAfterWrite(expiryInMillis)
+				.maximumSize(maximumSize).refreshAhead(refreshAheadFraction)
+				.staleWhileRevalidate(staleWhileRevalidateMillis).writer(repository::save);
 	}
 
-	private Pet put(Pet pet) {
-		Integer key = pet.getId();
-		Date date = new Date();
-		timeMap.put(key, date.getTime());
-		log.info("Inserting : " + SIMPLE_DATE_FORMAT.format(date) + " : " + key + " : " + pet);
-		Pet returnVal = actualMap.put(key, pet);
-		return returnVal;
+	/**
+	 * @param types returns the current pet type with the given id, for the decoded pets
+	 */
+	static OffHeapStore<Pet> offHeapStore(long maximumBytes, IntFunction<PetType> types) {
+		return new OffHeapStore<>(new PetCodec(types), maximumBytes,
+				(int) Math.min(maximumBytes, OFF_HEAP_SLAB_BYTES));
 	}
 
+	/**
+	 * Returns the cached pet, loading it from the repository on a miss.
+	 * @see TimedCache#get(Object)
+	 */
 	public Pet get(Integer key) {
-		if(actualMap.containsKey(key)) {
-			log.info("cache hit");
-			return actualMap.get(key);
-		} else {
-			log.info("cache miss");
-			Pet pet = repository.findById(key);
-			if(pet != null) {
-				put(pet);
-			}
-			return pet;
-		}
+		return cache.get(key);
 	}
 
+	/**
+	 * Saves a pet and caches it.
+	 * <p>
+	 * In {@link WriteMode#WRITE_THROUGH} mode the pet is cached once the repository saved
+	 * it. In {@link WriteMode#WRITE_BEHIND} mode a pet that already exists is cached right
+	 * away and saved later with other pets, see {@link WriteBehindQueue} for the
+	 * guarantees; new pets are always written through since they need their generated id.
+	 */
 	public void save(Pet pet) {
-		repository.save(pet);
-	}
-
-	class CleanerThread extends Thread {
-		@Override
-		public void run() {
-			log.info("Initiating Cleaner Thread...");
-			while (true) {
-				cleanMap();
-				try {
-					Thread.sleep(expiryInMillis / 2);
-				} catch (InterruptedException e) {
-					e.printStackTrace();
-				}
+		if (pet.isNew()) {
+			repository.save(pet);
+			if (!pet.isNew()) {
+				cache.put(pet.getId(), pet);
 			}
 		}
-
-		private void cleanMap() {
-			long currentTime = new Date().getTime();
-			for (Integer key : timeMap.keySet()) {
-				if (currentTime > (timeMap.get(key) + expiryInMillis)) {
-					Pet value = actualMap.remove(key);
-					timeMap.remove(key);
-					log.info("Removing : " + SIMPLE_DATE_FORMAT.format(new Date()) + " : " + key + " : " + value);
-				}
-			}
+		else {
+			cache.write(pet.getId(), pet);
 		}
 	}
+
+	/**
+	 * Evicts a pet, which is loaded again on its next read.
+	 */
+	public void invalidate(Integer key) {
+		cache.invalidate(key);
+	}
+
+	/**
+	 * Saves the pets waiting in the write-behind buffer.
+	 */
+	public void flush() {
+		cache.flush();
+	}
+
+	/**
+	 * Stops the periodic maintenance and the background reloads, then flushes the
+	 * write-behind buffer so that no acknowledged save is lost on a clean shutdown.
+	 */
+	@PreDestroy
+	public void close() {
+		cache.close();
+	}
+
+	public CacheStats stats() {
+		return cache.stats();
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		cache.bindTo(registry);
+	}
+
+	int size() {
+		return cache.size();
+	}
+
+	int cleanUp() {
+		return cache.cleanUp();
+	}
+
 }
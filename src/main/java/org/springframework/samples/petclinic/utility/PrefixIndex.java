@@ -0,0 +1,222 @@
+package org.springframework.samples.petclinic.utility;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * An index of ids by a string key, such as a name, answering prefix lookups in the order
+ * of {@code (key, id)}. Keys compare case-insensitively; ids without a key are left out,
+ * as {@code LIKE} leaves out {@code NULL}s.
+ * <p>
+ * The entries are kept in two sorted arrays, keys and ids, so a lookup is a binary search
+ * followed by a scan of the matching entries, without any per-entry object. Changes copy
+ * the arrays and publish the copy through a volatile field, so lookups take no lock and
+ * never see a change half made; a change costs a copy of the index, which suits an index
+ * read on every keystroke and changed on every save of a form.
+ */
+public final class PrefixIndex {
+
+	private static final Snapshot EMPTY = new Snapshot(new String[0], new int[0]);
+
+	private volatile Snapshot snapshot = EMPTY;
+
+	/** The key of each id, guarded by this. */
+	private final Map<Integer, String> keys = new HashMap<>();
+
+	/**
+	 * Replaces the entries of the index.
+	 */
+	public synchronized void replaceAll(Map<Integer, String> keysById) {
+		this.keys.clear();
+		keysById.forEach((id, key) -> {
+			if (key != null) {
+				this.keys.put(id, normalize(key));
+			}
+		});
+		Integer[] ids = this.keys.keySet().toArray(new Integer[0]);
+		Arrays.sort(ids, Comparator.<Integer, String>comparing(this.keys::get).thenComparing(id -> id));
+		String[] sortedKeys = new String[ids.length];
+		int[] sortedIds = new int[ids.length];
+		for (int i = 0; i < ids.length; i++) {
+			sortedKeys[i] = this.keys.get(ids[i]);
+			sortedIds[i] = ids[i];
+		}
+		this.snapshot = new Snapshot(sortedKeys, sortedIds);
+	}
+
+	/**
+	 * Adds an id, or moves it to its new key.
+	 */
+	public synchronized void put(int id, String key) {
+		if (key == null) {
+			remove(id);
+			return;
+		}
+		String normalized = normalize(key);
+		String previous = this.keys.put(id, normalized);
+		if (normalized.equals(previous)) {
+			return;
+		}
+		Snapshot snapshot = this.snapshot;
+		int position = snapshot.position(normalized, id, false);
+		this.snapshot = previous == null ? snapshot.with(position, normalized, id)
+				: snapshot.moved(snapshot.position(previous, id, false), position, normalized, id);
+	}
+
+	public synchronized void remove(int id) {
+		String previous = this.keys.remove(id);
+		if (previous != null) {
+			this.snapshot = this.snapshot.without(this.snapshot.position(previous, id, false));
+		}
+	}
+
+	public int size() {
+		return this.snapshot.ids.length;
+	}
+
+	/**
+	 * @return the first ids whose key starts with the prefix, at most {@code limit} of them
+	 */
+	public int[] startingWith(String prefix, int limit) {
+		Snapshot snapshot = this.snapshot;
+		String normalized = normalize(prefix);
+		int start = snapshot.position(normalized, Integer.MIN_VALUE, false);
+		return snapshot.ascending(start, snapshot.end(normalized, start), limit);
+	}
+
+	/**
+	 * @return the first ids whose key starts with the prefix that come after the given
+	 * entry in the order of {@code (key, id)}, at most {@code limit} of them
+	 */
+	public int[] startingWithAfter(String prefix, String key, int id, int limit) {
+		Snapshot snapshot = this.snapshot;
+		String normalized = normalize(prefix);
+		int start = snapshot.position(normalized, Integer.MIN_VALUE, false);
+		int from = Math.max(start, snapshot.position(normalize(key), id, true));
+		return snapshot.ascending(from, snapshot.end(normalized, start), limit);
+	}
+
+	/**
+	 * @return the ids whose key starts with the prefix that come before the given entry in
+	 * the order of {@code (key, id)}, closest first, at most {@code limit} of them
+	 */
+	public int[] startingWithBefore(String prefix, String key, int id, int limit) {
+		Snapshot snapshot = this.snapshot;
+		String normalized = normalize(prefix);
+		int start = snapshot.position(normalized, Integer.MIN_VALUE, false);
+		int to = Math.min(snapshot.end(normalized, start), snapshot.position(normalize(key), id, false));
+		int[] ids = new int[Math.max(0, Math.min(limit, to - start))];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = snapshot.ids[to - 1 - i];
+		}
+		return ids;
+	}
+
+	private static String normalize(String key) {
+		return key.toLowerCase(Locale.ROOT);
+	}
+
+	private static final class Snapshot {
+
+		final String[] keys;
+
+		final int[] ids;
+
+		Snapshot(String[] keys, int[] ids) {
+			this.keys = keys;
+			this.ids = ids;
+		}
+
+		/**
+		 * @return the position of the first entry after {@code (key, id)}, or not before it
+		 * unless {@code after}
+		 */
+		int position(String key, int id, boolean after) {
+			int low = 0;
+			int high = this.ids.length;
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				int comparison = this.keys[middle].compareTo(key);
+				if (comparison < 0 || comparison == 0 && (this.ids[middle] < id || after && this.ids[middle] == id)) {
+					low = middle + 1;
+				}
+				else {
+					high = middle;
+				}
+			}
+			return low;
+		}
+
+		/**
+		 * @return the position after the last entry whose key starts with the prefix, given
+		 * the position of the first one
+		 */
+		int end(String prefix, int start) {
+			int low = start;
+			int high = this.ids.length;
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (this.keys[middle].startsWith(prefix)) {
+					low = middle + 1;
+				}
+				else {
+					high = middle;
+				}
+			}
+			return low;
+		}
+
+		int[] ascending(int from, int to, int limit) {
+			return Arrays.copyOfRange(this.ids, from, Math.max(from, Math.min(to, from + Math.max(0, limit))));
+		}
+
+		Snapshot with(int position, String key, int id) {
+			String[] keys = new String[this.keys.length + 1];
+			int[] ids = new int[this.ids.length + 1];
+			System.arraycopy(this.keys, 0, keys, 0, position);
+			System.arraycopy(this.ids, 0, ids, 0, position);
+			keys[position] = key;
+			ids[position] = id;
+			System.arraycopy(this.keys, position, keys, position + 1, this.keys.length - position);
+			System.arraycopy(this.ids, position, ids, position + 1, this.ids.length - position);
+			return new Snapshot(keys, ids);
+		}
+
+		/**
+		 * @param from the position of the entry
+		 * @param to the position of its new key, in this snapshot
+		 */
+		Snapshot moved(int from, int to, String key, int id) {
+			String[] keys = this.keys.clone();
+			int[] ids = this.ids.clone();
+			if (to > from) {
+				// the entries in between move back
+				to--;
+				System.arraycopy(keys, from + 1, keys, from, to - from);
+				System.arraycopy(ids, from + 1, ids, from, to - from);
+			}
+			else {
+				System.arraycopy(keys, to, keys, to + 1, from - to);
+				System.arraycopy(ids, to, ids, to + 1, from - to);
+			}
+			keys[to] = key;
+			ids[to] = id;
+			return new Snapshot(keys, ids);
+		}
+
+		Snapshot without(int position) {
+			String[] keys = new String[this.keys.length - 1];
+			int[] ids = new int[this.ids.length - 1];
+			System.arraycopy(this.keys, 0, keys, 0, position);
+			System.arraycopy(this.ids, 0, ids, 0, position);
+			System.arraycopy(this.keys, position + 1, keys, position, keys.length - position);
+			System.arraycopy(this.ids, position + 1, ids, position, ids.length - position);
+			return new Snapshot(keys, ids);
+		}
+
+	}
+
+}
@@ -1,23 +1,195 @@
 package org.springframework.samples.petclinic.utility;
 
-import org.springframework.samples.petclinic.owner.PetRepository;
-
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.StringJoiner;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 
 /**
  * this simple class shows the main idea behind a Dependency Injection library
+ * <p>
+ * Each type is provided by a single provider: an instance, a function or a constructor.
+ * Providers are called once, on the first {@link #getInstanceOf(Class)} of their type,
+ * after the dependencies they declare have been provided; the instance is then returned
+ * to every caller. A registration that would close a cycle of declared dependencies is
+ * rejected; cycles through dependencies a function looks up without declaring them are
+ * reported when they are resolved.
+ * <p>
+ * {@link #start()} creates every instance up front instead, independent ones in parallel.
  */
 public abstract class SimpleDI {
 
-	public static SimpleDI getDIContainer() throws Exception {
-		// todo return the singleton instance of your implementation of dependency injection container
-		throw new Exception("not implemented");
+	/**
+	 * @return the container shared by the whole application
+	 */
+	public static SimpleDI getDIContainer() {
+		return SharedContainer.INSTANCE;
+	}
+
+	/**
+	 * @return a new, empty container
+	 */
+	public static SimpleDI newDIContainer() {
+		return new CompiledDI();
 	}
 
 	public abstract void provideByInstance(Class<?> typeClass, Object instanceOfType);
 
-	public abstract void provideByAConstructorFunction(Class<?> typeClass, Callable<Object> providerFunction);
+	public void provideByAConstructorFunction(Class<?> typeClass, Callable<Object> providerFunction) {
+		provideByAConstructorFunction(typeClass, providerFunction, new Class<?>[0]);
+	}
+
+	/**
+	 * Provides a type by calling a function once the given types have been provided.
+	 */
+	public abstract void provideByAConstructorFunction(Class<?> typeClass, Callable<Object> providerFunction,
+			Class<?>... dependencies);
+
+	/**
+	 * Provides a type by calling the single public constructor of an implementation, with
+	 * the instances of its parameter types.
+	 */
+	public abstract void provideByConstructor(Class<?> typeClass, Class<?> implementationClass);
 
 	public abstract Object getInstanceOf(Class<?> requiredType) throws Exception;
+
+	/**
+	 * Creates the instances of all provided types on a pool with one thread per processor.
+	 * @see #start(ForkJoinPool)
+	 */
+	public StartupReport start() throws Exception {
+		ForkJoinPool pool = new ForkJoinPool();
+		try {
+			return start(pool);
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Creates the instances of all provided types on the given pool, each as soon as its
+	 * declared dependencies exist, so that independent slow providers run in parallel.
+	 * Fails before creating anything if a declared dependency has no provider; once a
+	 * provider fails no further provider is started and its exception is thrown.
+	 * @return how long each provider took and which chain of them bounded the startup
+	 */
+	public abstract StartupReport start(ForkJoinPool pool) throws Exception;
+
+	/**
+	 * The outcome of {@link #start(ForkJoinPool)}.
+	 */
+	public static final class StartupReport {
+
+		private final long elapsedNanos;
+
+		private final List<Timing> timings;
+
+		private final List<Timing> criticalPath;
+
+		StartupReport(long elapsedNanos, List<Timing> timings, List<Timing> criticalPath) {
+			List<Timing> byStart = new ArrayList<>(timings);
+			byStart.sort(Comparator.comparingLong(Timing::getStartNanos));
+			this.elapsedNanos = elapsedNanos;
+			this.timings = Collections.unmodifiableList(byStart);
+			this.criticalPath = Collections.unmodifiableList(criticalPath);
+		}
+
+		public long getElapsedNanos() {
+			return this.elapsedNanos;
+		}
+
+		/**
+		 * @return the time each provider took, in the order they started
+		 */
+		public List<Timing> getTimings() {
+			return this.timings;
+		}
+
+		/**
+		 * @return the chain of dependencies that finished last, from the first provider to
+		 * the last; startup cannot take less than the sum of their durations
+		 */
+		public List<Timing> getCriticalPath() {
+			return this.criticalPath;
+		}
+
+		@Override
+		public String toString() {
+			StringJoiner path = new StringJoiner(" -> ");
+			this.criticalPath.forEach(timing -> path.add(timing.toString()));
+			StringBuilder report = new StringBuilder();
+			report.append("Started ").append(this.timings.size()).append(" providers in ")
+				.append(millis(this.elapsedNanos)).append(" ms, critical path: ").append(path);
+			this.timings.stream()
+				.sorted(Comparator.comparingLong(Timing::getDurationNanos).reversed())
+				.forEach(timing -> report.append(System.lineSeparator()).append("  ").append(timing)
+					.append(" from ").append(millis(timing.startNanos)).append(" ms on ").append(timing.thread));
+			return report.toString();
+		}
+
+	}
+
+	/**
+	 * When, relative to the start, and for how long a provider ran.
+	 */
+	public static final class Timing {
+
+		private final Class<?> type;
+
+		private final long startNanos;
+
+		private final long durationNanos;
+
+		private final String thread;
+
+		Timing(Class<?> type, long startNanos, long durationNanos, String thread) {
+			this.type = type;
+			this.startNanos = startNanos;
+			this.durationNanos = durationNanos;
+			this.thread = thread;
+		}
+
+		public Class<?> getType() {
+			return this.type;
+		}
+
+		public long getStartNanos() {
+			return this.startNanos;
+		}
+
+		public long getDurationNanos() {
+			return this.durationNanos;
+		}
+
+		public long getEndNanos() {
+			return this.startNanos + this.durationNanos;
+		}
+
+		public String getThread() {
+			return this.thread;
+		}
+
+		@Override
+		public String toString() {
+			return this.type.getSimpleName() + " (" + millis(this.durationNanos) + " ms)";
+		}
+
+	}
+
+	private static String millis(long nanos) {
+		return String.format(Locale.ROOT, "%.1f", nanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+	}
+
+	private static final class SharedContainer {
+
+		static final SimpleDI INSTANCE = new CompiledDI();
+
+	}
+
 }
@@ -0,0 +1,250 @@
+package org.springframework.samples.petclinic.utility;
+
+import org.springframework.samples.petclinic.model.BaseEntity;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+/**
+ * A collection holding at most one entity per id, kept in the order of a sort key, that
+ * answers ordered reads and range queries without sorting.
+ * <p>
+ * Entities are kept in a red-black tree of nodes holding the entity, its sort key and an
+ * insertion sequence number that orders entities with equal keys, and are indexed by id,
+ * so {@code add}, {@code remove} and {@code contains} take logarithmic or constant time
+ * and {@link #range} only visits the entities it returns. {@link #asList()} returns a
+ * sorted snapshot that is reused until the next change, so repeated reads of an
+ * unchanged collection, e.g. by a template, cost nothing.
+ * <p>
+ * The sort key of an entity is read when it is added; an entity whose key changes keeps
+ * its position until it is added again. Entities without an id are told apart by
+ * identity. Iterators support {@link Iterator#remove()}. This class is not thread-safe:
+ * a map shared between threads must not be modified once published, and should be
+ * published after a first {@link #asList()} so that readers share the same snapshot.
+ *
+ * @param <K> the sort key type
+ */
+public class SortedIdentityMap<K, Entity extends BaseEntity> extends AbstractCollection<Entity> {
+
+	private final Function<? super Entity, ? extends K> sortKey;
+
+	private final Comparator<? super K> keyOrder;
+
+	private final TreeSet<Node<K, Entity>> nodes;
+
+	/** The node of each entity, by id or, for entities without one, by the entity. */
+	private final Map<Object, Node<K, Entity>> index = new HashMap<>();
+
+	private long sequence;
+
+	private volatile List<Entity> snapshot;
+
+	/**
+	 * @param sortKey extracts the key entities are ordered by
+	 * @param keyOrder orders the keys; {@code null} keys come last
+	 */
+	public SortedIdentityMap(Function<? super Entity, ? extends K> sortKey, Comparator<? super K> keyOrder) {
+		this.sortKey = sortKey;
+		this.keyOrder = Comparator.nullsLast(keyOrder);
+		this.nodes = new TreeSet<>(
+				Comparator.<Node<K, Entity>, K>comparing(node -> node.key, this.keyOrder)
+						.thenComparingLong(node -> node.sequence));
+	}
+
+	public SortedIdentityMap(Function<? super Entity, ? extends K> sortKey, Comparator<? super K> keyOrder,
+			Collection<? extends Entity> entities) {
+		this(sortKey, keyOrder);
+		addAll(entities);
+	}
+
+	@Override
+	public int size() {
+		return nodes.size();
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return node(o) != null;
+	}
+
+	/**
+	 * @return the entity with the given id, {@code null} if there is none
+	 */
+	public Entity get(Integer id) {
+		Node<K, Entity> node = id == null ? null : index.get(id);
+		return node == null ? null : node.entity;
+	}
+
+	/**
+	 * Adds an entity at the position of its current sort key, replacing the entity with
+	 * the same id if there is one.
+	 * @return {@code false} if this very entity was already present with the same key
+	 */
+	@Override
+	public boolean add(Entity entity) {
+		Node<K, Entity> node = new Node<>(entity, sortKey.apply(entity), sequence++);
+		Node<K, Entity> previous = index.put(indexKey(entity), node);
+		if (previous == null && entity.getId() != null) {
+			// the entity may have been added before it got its id
+			previous = index.remove(entity);
+		}
+		if (previous != null) {
+			if (previous.entity == entity && keyOrder.compare(previous.key, node.key) == 0) {
+				index.put(indexKey(entity), previous);
+				return false;
+			}
+			nodes.remove(previous);
+		}
+		nodes.add(node);
+		snapshot = null;
+		return true;
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		Node<K, Entity> node = node(o);
+		if (node == null) {
+			return false;
+		}
+		unlink(node);
+		return true;
+	}
+
+	@Override
+	public void clear() {
+		nodes.clear();
+		index.clear();
+		snapshot = null;
+	}
+
+	@Override
+	public Iterator<Entity> iterator() {
+		Iterator<Node<K, Entity>> iterator = nodes.iterator();
+		return new Iterator<Entity>() {
+
+			private Node<K, Entity> last;
+
+			@Override
+			public boolean hasNext() {
+				return iterator.hasNext();
+			}
+
+			@Override
+			public Entity next() {
+				last = iterator.next();
+				return last.entity;
+			}
+
+			@Override
+			public void remove() {
+				iterator.remove();
+				unindex(last);
+			}
+
+		};
+	}
+
+	/**
+	 * @return the entities in order, as an unmodifiable list that stays the same until
+	 * the next change
+	 */
+	public List<Entity> asList() {
+		List<Entity> snapshot = this.snapshot;
+		if (snapshot == null) {
+			List<Entity> entities = new ArrayList<>(nodes.size());
+			nodes.forEach(node -> entities.add(node.entity));
+			snapshot = Collections.unmodifiableList(entities);
+			this.snapshot = snapshot;
+		}
+		return snapshot;
+	}
+
+	/**
+	 * @return the entities whose keys lie between {@code from} and {@code to} in key
+	 * order, in order
+	 */
+	public List<Entity> range(K from, boolean fromInclusive, K to, boolean toInclusive) {
+		int order = keyOrder.compare(from, to);
+		if (order > 0 || order == 0 && !(fromInclusive && toInclusive)) {
+			return Collections.emptyList();
+		}
+		NavigableSet<Node<K, Entity>> range = nodes.subSet(bound(from, fromInclusive), true,
+				bound(to, !toInclusive), false);
+		List<Entity> entities = new ArrayList<>(range.size());
+		range.forEach(node -> entities.add(node.entity));
+		return entities;
+	}
+
+	/**
+	 * @return the entities whose keys start with {@code prefix}, for string keys in
+	 * ascending order, case-sensitive or not
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Entity> withPrefix(String prefix) {
+		return range((K) prefix, true, (K) (prefix + Character.MAX_VALUE), false);
+	}
+
+	/**
+	 * Returns a node sorting before all entities with the given key, or after them.
+	 */
+	private Node<K, Entity> bound(K key, boolean before) {
+		return new Node<>(null, key, before ? Long.MIN_VALUE : Long.MAX_VALUE);
+	}
+
+	private Node<K, Entity> node(Object o) {
+		if (!(o instanceof BaseEntity)) {
+			return null;
+		}
+		BaseEntity entity = (BaseEntity) o;
+		Node<K, Entity> node = index.get(indexKey(entity));
+		if (node == null && entity.getId() != null) {
+			// the entity may have been added before it got its id
+			node = index.get(entity);
+		}
+		return node;
+	}
+
+	private void unlink(Node<K, Entity> node) {
+		nodes.remove(node);
+		unindex(node);
+	}
+
+	private void unindex(Node<K, Entity> node) {
+		if (!index.remove(indexKey(node.entity), node)) {
+			index.remove(node.entity, node);
+		}
+		snapshot = null;
+	}
+
+	private static Object indexKey(Object entity) {
+		Integer id = ((BaseEntity) entity).getId();
+		return id != null ? id : entity;
+	}
+
+	private static final class Node<K, Entity> {
+
+		final Entity entity;
+
+		final K key;
+
+		final long sequence;
+
+		Node(Entity entity, K key, long sequence) {
+			this.entity = entity;
+			this.key = key;
+			this.sequence = sequence;
+		}
+
+	}
+
+}
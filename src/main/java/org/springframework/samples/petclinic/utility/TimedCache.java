@@ -0,0 +1,911 @@
+package org.springframework.samples.petclinic.utility;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Caches the values of a {@code loader} for a fixed time after they were loaded or
+ * written. Instances are created with {@link #builder(String, Function)}.
+ * <p>
+ * Each cached value is kept in a single {@link CacheEntry} holding both the value and
+ * its deadline. Expired entries are never returned; they are removed by a
+ * {@link TimerWheel}, so a cleaning pass only touches the entries that actually expired.
+ * The wheel is advanced on every write and, when a {@link CacheMaintenanceScheduler} is
+ * given, periodically by its shared thread; the cache starts no thread of its own.
+ * <p>
+ * Loads are coalesced per key, so however many callers miss on the same key at once,
+ * only one of them calls the loader. {@code null} values are never cached. With a
+ * {@code bulkLoader}, {@link #getAll(Collection)} loads all the keys it misses in a single
+ * call.
+ * <p>
+ * Two optional modes hide the reload latency from readers: with <i>refresh-ahead</i>, a
+ * value read during the last {@code refreshAheadFraction} of its lifetime is reloaded in
+ * the background; with <i>stale-while-revalidate</i>, an expired value is still served
+ * for {@code staleWhileRevalidateMillis} while it is reloaded in the background.
+ * Background reloads share the per-key coalescing of regular loads.
+ * <p>
+ * With write-behind, a miss on a key whose write is still buffered, because its entry
+ * expired or was evicted before the write was flushed, is served the buffered value
+ * instead of the older one the loader would read.
+ * <p>
+ * When a {@code maximumSize} is set, the cache is also bounded by a
+ * {@link WindowTinyLfuPolicy}: values that are read repeatedly stay cached while values
+ * that are only loaded once (e.g. by a report walking every row) are the first to go.
+ * Evicted values can be demoted to an {@link EvictionTier}, e.g. an
+ * {@link OffHeapStore}, which a miss checks before calling the loader.
+ * <p>
+ * Hits, misses, loads, evictions and rejected admissions are counted with
+ * {@link LongAdder}s and published as {@code cache.*} metrics tagged with the cache name,
+ * with a latency histogram of the loads. Per-operation events are only logged at DEBUG.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public final class TimedCache<K, V> implements MeterBinder {
+
+	private static final Logger log = LoggerFactory.getLogger(TimedCache.class);
+
+	private final String name;
+
+	private final Function<K, V> loader;
+
+	private final Function<Set<K>, Map<K, V>> bulkLoader;
+
+	private final Consumer<V> writer;
+
+	private final ConcurrentHashMap<K, CacheEntry<K, V>> entries = new ConcurrentHashMap<>();
+
+	private final ConcurrentHashMap<K, CompletableFuture<V>> loads = new ConcurrentHashMap<>();
+
+	/**
+	 * The loads that were running when their key was invalidated, guarded by the eviction
+	 * lock: they may have read the value from before the invalidation, so they must not
+	 * cache it.
+	 */
+	private final Map<K, CompletableFuture<V>> invalidatedLoads = new HashMap<>();
+
+	private final TimerWheel<K, V> wheel;
+
+	private final WindowTinyLfuPolicy<K> policy;
+
+	private final ReentrantLock evictionLock = new ReentrantLock();
+
+	private final LongAdder hits = new LongAdder();
+
+	private final LongAdder misses = new LongAdder();
+
+	private final LongAdder evictions = new LongAdder();
+
+	private final LongAdder admissionRejections = new LongAdder();
+
+	private final LongAdder loadSuccesses = new LongAdder();
+
+	private final LongAdder loadFailures = new LongAdder();
+
+	private final LongAdder totalLoadTime = new LongAdder();
+
+	private final LongAdder promotions = new LongAdder();
+
+	private volatile Timer loadSuccessTimer;
+
+	private volatile Timer loadFailureTimer;
+
+	private final long expiryInMillis;
+
+	private final long refreshAheadMillis;
+
+	private final long staleWhileRevalidateMillis;
+
+	private final Executor refreshExecutor;
+
+	private final ExecutorService ownedRefreshExecutor;
+
+	private final WriteBehindQueue<K, V> writeBehind;
+
+	private final EvictionTier<K, V> evictionTier;
+
+	private final LongSupplier clock;
+
+	private final CacheMaintenanceScheduler.Task maintenance;
+
+	private TimedCache(Builder<K, V> builder) {
+		Assert.isTrue(builder.refreshAheadFraction >= 0 && builder.refreshAheadFraction < 1,
+				"refreshAheadFraction must be in [0, 1)");
+		this.name = builder.name;
+		this.loader = builder.loader;
+		this.bulkLoader = builder.bulkLoader;
+		this.writer = builder.writer;
+		this.expiryInMillis = builder.expiryInMillis;
+		this.refreshAheadMillis = (long) (builder.expiryInMillis * builder.refreshAheadFraction);
+		this.staleWhileRevalidateMillis = builder.staleWhileRevalidateMillis;
+		this.clock = builder.clock;
+		if (builder.refreshExecutor == null && (refreshAheadMillis > 0 || staleWhileRevalidateMillis > 0)) {
+			this.ownedRefreshExecutor = newRefreshExecutor(name, builder.refreshThreads);
+			this.refreshExecutor = ownedRefreshExecutor;
+		}
+		else {
+			this.ownedRefreshExecutor = null;
+			this.refreshExecutor = builder.refreshExecutor;
+		}
+		this.writeBehind = builder.writeBehind;
+		this.evictionTier = builder.evictionTier;
+		this.wheel = new TimerWheel<>(expiryInMillis + staleWhileRevalidateMillis, clock.getAsLong());
+		this.policy = builder.maximumSize > 0 ? new WindowTinyLfuPolicy<>(builder.maximumSize) : null;
+		if (builder.scheduler != null) {
+			long period = writeBehind == null ? wheel.tickMillis()
+					: Math.min(wheel.tickMillis(), builder.writeBehindFlushMillis);
+			this.maintenance = builder.scheduler.schedule(name, this::maintain, period);
+		}
+		else {
+			this.maintenance = null;
+		}
+	}
+
+	/**
+	 * @param name names the cache in metrics, logs and threads
+	 * @param loader loads the value of a key, or returns {@code null} when there is none
+	 */
+	public static <K, V> Builder<K, V> builder(String name, Function<K, V> loader) {
+		return new Builder<>(name, loader);
+	}
+
+	/**
+	 * Background reloads run on a few daemon threads with a bounded queue; reloads that do
+	 * not fit are dropped, the entry is then reloaded by a later read.
+	 */
+	private static ExecutorService newRefreshExecutor(String name, int threads) {
+		AtomicInteger count = new AtomicInteger();
+		return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(1024),
+				runnable -> {
+					Thread thread = new Thread(runnable, name + "-cache-refresh-" + count.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns the cached value, loading it on a miss. Concurrent misses for the same key
+	 * share a single load: the first caller loads the value while the others wait for its
+	 * result.
+	 * <p>
+	 * A value read during its refresh-ahead period, or while stale, is returned right away
+	 * and reloaded in the background.
+	 */
+	public V get(K key) {
+		CacheEntry<K, V> entry = entries.get(key);
+		long now = clock.getAsLong();
+		if (entry != null && !entry.isDead(now)) {
+			log.debug("Cache hit for {} {}", name, key);
+			hits.increment();
+			recordAccess(key);
+			if (now >= entry.refreshAt) {
+				refresh(key, entry);
+			}
+			return entry.value;
+		}
+		else {
+			log.debug("Cache miss for {} {}", name, key);
+			misses.increment();
+			return load(key);
+		}
+	}
+
+	/**
+	 * Returns the cached values of the given keys, loading the missing ones with a single
+	 * call of the bulk loader, or one by one with the loader when there is none. Keys
+	 * without a value are left out of the result; concurrent loads of a key are shared as
+	 * in {@link #get(Object)}.
+	 * @return the values by key, in the order of the keys
+	 */
+	public Map<K, V> getAll(Collection<K> keys) {
+		Map<K, V> values = new LinkedHashMap<>();
+		Set<K> missing = new LinkedHashSet<>();
+		long now = clock.getAsLong();
+		for (K key : keys) {
+			CacheEntry<K, V> entry = entries.get(key);
+			if (entry != null && !entry.isDead(now)) {
+				hits.increment();
+				recordAccess(key);
+				if (now >= entry.refreshAt) {
+					refresh(key, entry);
+				}
+				values.put(key, entry.value);
+			}
+			else if (missing.add(key)) {
+				misses.increment();
+			}
+		}
+		if (!missing.isEmpty()) {
+			log.debug("Cache misses for {} {}", name, missing);
+			Map<K, V> loaded;
+			if (bulkLoader != null) {
+				loaded = loadAll(missing);
+			}
+			else {
+				loaded = new LinkedHashMap<>();
+				missing.forEach(key -> loaded.put(key, load(key)));
+			}
+			Map<K, V> ordered = new LinkedHashMap<>();
+			for (K key : keys) {
+				V value = values.containsKey(key) ? values.get(key) : loaded.get(key);
+				if (value != null) {
+					ordered.put(key, value);
+				}
+			}
+			values = ordered;
+		}
+		return values;
+	}
+
+	/**
+	 * Caches a value that was just written to the backing store.
+	 */
+	public void put(K key, V value) {
+		put(key, value, Long.MAX_VALUE, null);
+	}
+
+	/**
+	 * Writes a value with the configured writer and caches it.
+	 * <p>
+	 * Without write-behind, the value is cached once the writer returned, and the key is
+	 * invalidated if the writer failed. With write-behind, the value is cached right away
+	 * and written later with other values, see {@link WriteBehindQueue} for the
+	 * guarantees.
+	 */
+	public void write(K key, V value) {
+		if (writeBehind != null) {
+			put(key, value);
+			writeBehind.enqueue(key, value, clock.getAsLong());
+			return;
+		}
+		Assert.state(writer != null, "Cache " + name + " has no writer");
+		try {
+			writer.accept(value);
+		}
+		catch (RuntimeException ex) {
+			invalidate(key);
+			throw ex;
+		}
+		put(key, value);
+	}
+
+	/**
+	 * Removes the cached value of a key. A load of the key that is running meanwhile
+	 * still returns its value to its callers but does not cache it, as it may have read
+	 * the value from before the invalidation.
+	 */
+	public void invalidate(K key) {
+		evictionLock.lock();
+		try {
+			CompletableFuture<V> load = loads.get(key);
+			if (load != null) {
+				invalidatedLoads.put(key, load);
+			}
+			if (evictionTier != null) {
+				evictionTier.remove(key);
+			}
+			CacheEntry<K, V> entry = entries.remove(key);
+			if (entry != null) {
+				wheel.deschedule(entry);
+				if (policy != null) {
+					policy.remove(key);
+				}
+			}
+		}
+		finally {
+			evictionLock.unlock();
+		}
+	}
+
+	public void invalidateAll() {
+		Set<K> keys = new HashSet<>(entries.keySet());
+		keys.addAll(loads.keySet());
+		keys.forEach(this::invalidate);
+		if (evictionTier != null) {
+			evictionTier.clear();
+		}
+	}
+
+	/**
+	 * Writes the values waiting in the write-behind buffer.
+	 */
+	public void flush() {
+		if (writeBehind != null) {
+			writeBehind.flush();
+		}
+	}
+
+	/**
+	 * Stops the periodic maintenance and the background reloads, then flushes the
+	 * write-behind buffer so that no acknowledged write is lost on a clean shutdown.
+	 */
+	public void close() {
+		if (maintenance != null) {
+			maintenance.cancel();
+		}
+		if (ownedRefreshExecutor != null) {
+			ownedRefreshExecutor.shutdownNow();
+		}
+		flush();
+		if (evictionTier != null) {
+			evictionTier.clear();
+		}
+	}
+
+	public CacheStats stats() {
+		return new CacheStats(hits.sum(), misses.sum(), loadSuccesses.sum(), loadFailures.sum(), totalLoadTime.sum(),
+				evictions.sum(), admissionRejections.sum());
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		FunctionCounter.builder("cache.gets", hits, LongAdder::sum).tags("cache", name, "result", "hit")
+				.description("The number of times cache lookup methods have returned a cached value.")
+				.register(registry);
+		FunctionCounter.builder("cache.gets", misses, LongAdder::sum).tags("cache", name, "result", "miss")
+				.description("The number of times cache lookup methods have not returned a cached value.")
+				.register(registry);
+		FunctionCounter.builder("cache.evictions", evictions, LongAdder::sum).tags("cache", name)
+				.description("The number of entries evicted because the cache exceeded its maximum size.")
+				.register(registry);
+		FunctionCounter.builder("cache.admission.rejections", admissionRejections, LongAdder::sum)
+				.tags("cache", name)
+				.description("The number of loaded entries rejected in favour of more frequently used ones.")
+				.register(registry);
+		loadSuccessTimer = Timer.builder("cache.load").tags("cache", name, "result", "success")
+				.description("The time spent loading entries.").publishPercentileHistogram().register(registry);
+		loadFailureTimer = Timer.builder("cache.load").tags("cache", name, "result", "failure")
+				.description("The time spent loading entries.").publishPercentileHistogram().register(registry);
+		Gauge.builder("cache.hit.ratio", this, cache -> cache.stats().getHitRatio()).tags("cache", name)
+				.register(registry);
+		Gauge.builder("cache.size", entries, ConcurrentHashMap::size).tags("cache", name)
+				.description("The number of entries in this cache.").register(registry);
+		if (maintenance != null) {
+			Gauge.builder("cache.maintenance.lag", maintenance, CacheMaintenanceScheduler.Task::lagMillis)
+					.tags("cache", name).baseUnit("milliseconds")
+					.description("How long the periodic expiry and flush of this cache is overdue.")
+					.register(registry);
+		}
+		if (evictionTier != null) {
+			FunctionCounter.builder("cache.tier.promotions", promotions, LongAdder::sum).tags("cache", name)
+					.description("The number of misses served from the lower tier instead of the loader.")
+					.register(registry);
+			Gauge.builder("cache.tier.size", evictionTier, EvictionTier::size).tags("cache", name)
+					.description("The number of entries in the lower tier.").register(registry);
+			Gauge.builder("cache.tier.allocated", evictionTier, EvictionTier::allocatedBytes).tags("cache", name)
+					.baseUnit("bytes").description("The memory held by the lower tier.").register(registry);
+		}
+	}
+
+	int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Removes every expired entry.
+	 * @return the number of removed entries
+	 */
+	int cleanUp() {
+		evictionLock.lock();
+		try {
+			return wheel.advance(clock.getAsLong(), this::expire);
+		}
+		finally {
+			evictionLock.unlock();
+		}
+	}
+
+	/**
+	 * Caches a value, unless the cache already holds a value written after
+	 * {@code loadStartedAt}, or the key was invalidated while {@code load} ran: a load that
+	 * raced with a write or an invalidation must not overwrite the written value with the
+	 * one it read before. Written values pass {@code Long.MAX_VALUE} and no load.
+	 */
+	private void put(K key, V value, long loadStartedAt, CompletableFuture<V> load) {
+		Assert.notNull(key, "key must not be null");
+		long expiresAt = clock.getAsLong() + expiryInMillis;
+		install(new CacheEntry<>(key, value, expiresAt - refreshAheadMillis, expiresAt,
+				expiresAt + staleWhileRevalidateMillis), loadStartedAt, load);
+	}
+
+	/**
+	 * Makes an entry, new or promoted from the eviction tier, the cached one, with the same
+	 * race protection as {@link #put(Object, Object, long, CompletableFuture)}.
+	 */
+	private void install(CacheEntry<K, V> entry, long loadStartedAt, CompletableFuture<V> load) {
+		K key = entry.key;
+		long now = clock.getAsLong();
+		log.debug("Caching {} {}", name, key);
+		evictionLock.lock();
+		try {
+			if (load != null && invalidatedLoads.get(key) == load) {
+				log.debug("Not caching {} {}, invalidated while loading", name, key);
+				return;
+			}
+			CacheEntry<K, V> previous = entries.get(key);
+			if (previous != null && previous.expiresAt - expiryInMillis >= loadStartedAt) {
+				return;
+			}
+			if (evictionTier != null) {
+				evictionTier.remove(key);
+			}
+			entries.put(key, entry);
+			if (previous != null) {
+				wheel.deschedule(previous);
+			}
+			wheel.advance(now, this::expire);
+			wheel.schedule(entry);
+			if (policy != null) {
+				policy.recordWrite(key, 1, this::evict);
+			}
+		}
+		finally {
+			evictionLock.unlock();
+		}
+	}
+
+	private V load(K key) {
+		CompletableFuture<V> load = new CompletableFuture<>();
+		CompletableFuture<V> inFlight = loads.putIfAbsent(key, load);
+		if (inFlight != null) {
+			return join(inFlight);
+		}
+		try {
+			// another loader may have completed between our lookup and registering the load
+			CacheEntry<K, V> entry = entries.get(key);
+			V value;
+			if (entry != null && !entry.isExpired(clock.getAsLong())) {
+				value = entry.value;
+			}
+			else {
+				long startedAt = clock.getAsLong();
+				CacheEntry<K, V> demoted = evictionTier != null ? evictionTier.take(key, startedAt) : null;
+				if (demoted != null) {
+					promotions.increment();
+					install(demoted, startedAt, load);
+					value = demoted.value;
+				}
+				else {
+					value = loadFromWriteBehindOrLoader(key);
+					if (value != null) {
+						put(key, value, startedAt, load);
+					}
+				}
+			}
+			load.complete(value);
+			return value;
+		}
+		catch (RuntimeException | Error ex) {
+			load.completeExceptionally(ex);
+			throw ex;
+		}
+		finally {
+			finishLoad(key, load);
+		}
+	}
+
+	/**
+	 * Loads the given keys with one call of the bulk loader, except those another caller
+	 * is already loading, whose loads are awaited, and those found in the eviction tier.
+	 */
+	private Map<K, V> loadAll(Set<K> keys) {
+		Map<K, CompletableFuture<V>> ours = new LinkedHashMap<>();
+		Map<K, CompletableFuture<V>> theirs = new LinkedHashMap<>();
+		for (K key : keys) {
+			CompletableFuture<V> load = new CompletableFuture<>();
+			CompletableFuture<V> inFlight = loads.putIfAbsent(key, load);
+			if (inFlight != null) {
+				theirs.put(key, inFlight);
+			}
+			else {
+				ours.put(key, load);
+			}
+		}
+		Map<K, V> values = new LinkedHashMap<>();
+		try {
+			long startedAt = clock.getAsLong();
+			Set<K> toLoad = new LinkedHashSet<>();
+			for (K key : ours.keySet()) {
+				// another loader may have completed between our lookup and registering the load
+				CacheEntry<K, V> entry = entries.get(key);
+				CacheEntry<K, V> demoted = null;
+				if (entry != null && !entry.isExpired(startedAt)) {
+					values.put(key, entry.value);
+				}
+				else if (evictionTier != null && (demoted = evictionTier.take(key, startedAt)) != null) {
+					promotions.increment();
+					install(demoted, startedAt, ours.get(key));
+					values.put(key, demoted.value);
+				}
+				else {
+					V written = pendingWrite(key);
+					if (written != null) {
+						put(key, written, startedAt, ours.get(key));
+						values.put(key, written);
+					}
+					else {
+						toLoad.add(key);
+					}
+				}
+			}
+			if (!toLoad.isEmpty()) {
+				Map<K, V> loaded = loadFromBulkLoader(toLoad);
+				for (K key : toLoad) {
+					V value = loaded.get(key);
+					if (value != null) {
+						put(key, value, startedAt, ours.get(key));
+						values.put(key, value);
+					}
+				}
+			}
+			ours.forEach((key, load) -> load.complete(values.get(key)));
+		}
+		catch (RuntimeException | Error ex) {
+			ours.values().forEach(load -> load.completeExceptionally(ex));
+			throw ex;
+		}
+		finally {
+			ours.forEach(this::finishLoad);
+		}
+		theirs.forEach((key, load) -> values.put(key, join(load)));
+		return values;
+	}
+
+	private Map<K, V> loadFromBulkLoader(Set<K> keys) {
+		long start = System.nanoTime();
+		try {
+			Map<K, V> values = bulkLoader.apply(keys);
+			recordLoad(loadSuccesses, loadSuccessTimer, System.nanoTime() - start);
+			return values;
+		}
+		catch (RuntimeException | Error ex) {
+			recordLoad(loadFailures, loadFailureTimer, System.nanoTime() - start);
+			throw ex;
+		}
+	}
+
+	private V loadFromWriteBehindOrLoader(K key) {
+		V written = pendingWrite(key);
+		return written != null ? written : loadFromLoader(key);
+	}
+
+	/**
+	 * @return the value of a write that has not reached the backing store yet, which the
+	 * loader would miss
+	 */
+	private V pendingWrite(K key) {
+		return writeBehind != null ? writeBehind.pendingValue(key) : null;
+	}
+
+	private V loadFromLoader(K key) {
+		long start = System.nanoTime();
+		try {
+			V value = loader.apply(key);
+			recordLoad(loadSuccesses, loadSuccessTimer, System.nanoTime() - start);
+			return value;
+		}
+		catch (RuntimeException | Error ex) {
+			recordLoad(loadFailures, loadFailureTimer, System.nanoTime() - start);
+			throw ex;
+		}
+	}
+
+	private void recordLoad(LongAdder counter, Timer timer, long nanos) {
+		counter.increment();
+		totalLoadTime.add(nanos);
+		if (timer != null) {
+			timer.record(nanos, TimeUnit.NANOSECONDS);
+		}
+	}
+
+	/**
+	 * Reloads a value on the refresh executor unless a load for it is already running.
+	 * Readers that miss meanwhile wait for the reload; if it fails they get the value that
+	 * was cached when it started, as the readers of the cached entry do.
+	 */
+	private void refresh(K key, CacheEntry<K, V> current) {
+		if (loads.containsKey(key)) {
+			return;
+		}
+		CompletableFuture<V> load = new CompletableFuture<>();
+		if (loads.putIfAbsent(key, load) != null) {
+			return;
+		}
+		try {
+			refreshExecutor.execute(() -> {
+				try {
+					long startedAt = clock.getAsLong();
+					V value = loadFromWriteBehindOrLoader(key);
+					if (value != null) {
+						put(key, value, startedAt, load);
+					}
+					else {
+						invalidate(key);
+					}
+					load.complete(value);
+				}
+				catch (RuntimeException | Error ex) {
+					log.warn("Refreshing {} {} failed, keeping the cached value", name, key, ex);
+					load.complete(current.value);
+				}
+				finally {
+					finishLoad(key, load);
+				}
+			});
+		}
+		catch (RejectedExecutionException ex) {
+			finishLoad(key, load);
+			load.complete(current.value);
+		}
+	}
+
+	/**
+	 * Unregisters a finished load, together with its invalidation if it had one.
+	 */
+	private void finishLoad(K key, CompletableFuture<V> load) {
+		evictionLock.lock();
+		try {
+			loads.remove(key, load);
+			invalidatedLoads.remove(key, load);
+		}
+		finally {
+			evictionLock.unlock();
+		}
+	}
+
+	private static <V> V join(CompletableFuture<V> load) {
+		try {
+			return load.join();
+		}
+		catch (CompletionException ex) {
+			if (ex.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) ex.getCause();
+			}
+			if (ex.getCause() instanceof Error) {
+				throw (Error) ex.getCause();
+			}
+			throw ex;
+		}
+	}
+
+	private void maintain() {
+		cleanUp();
+		if (writeBehind != null) {
+			try {
+				writeBehind.flushIfDue(clock.getAsLong());
+			}
+			catch (RuntimeException ex) {
+				// logged by the queue, the batch is retried on the next run
+			}
+		}
+	}
+
+	/**
+	 * Feeds a hit to the eviction policy. Hits are best-effort: when another thread holds
+	 * the eviction lock the access is not recorded rather than making the reader wait.
+	 */
+	private void recordAccess(K key) {
+		if (policy != null && evictionLock.tryLock()) {
+			try {
+				policy.recordAccess(key);
+			}
+			finally {
+				evictionLock.unlock();
+			}
+		}
+	}
+
+	private void expire(CacheEntry<K, V> entry) {
+		if (entries.remove(entry.key, entry)) {
+			if (policy != null) {
+				policy.remove(entry.key);
+			}
+			log.debug("Expired {} {}", name, entry.key);
+		}
+	}
+
+	private void evict(K key, boolean admissionRejected) {
+		CacheEntry<K, V> entry = entries.remove(key);
+		if (entry != null) {
+			wheel.deschedule(entry);
+			if (evictionTier != null) {
+				evictionTier.store(entry);
+			}
+		}
+		evictions.increment();
+		if (admissionRejected) {
+			admissionRejections.increment();
+		}
+	}
+
+	/**
+	 * Configures a {@link TimedCache}. Only the name and the loader are required; by
+	 * default values expire 10 seconds after they were cached, the size is unbounded and
+	 * expired entries are only removed by writes.
+	 */
+	public static final class Builder<K, V> {
+
+		private final String name;
+
+		private final Function<K, V> loader;
+
+		private Function<Set<K>, Map<K, V>> bulkLoader;
+
+		private long expiryInMillis = 10000;
+
+		private long maximumSize;
+
+		private double refreshAheadFraction;
+
+		private long staleWhileRevalidateMillis;
+
+		private Executor refreshExecutor;
+
+		private int refreshThreads = 2;
+
+		private Consumer<V> writer;
+
+		private WriteBehindQueue<K, V> writeBehind;
+
+		private long writeBehindFlushMillis = Long.MAX_VALUE;
+
+		private CacheMaintenanceScheduler scheduler;
+
+		private EvictionTier<K, V> evictionTier;
+
+		private LongSupplier clock = System::currentTimeMillis;
+
+		private Builder(String name, Function<K, V> loader) {
+			Assert.hasText(name, "name must not be empty");
+			Assert.notNull(loader, "loader must not be null");
+			this.name = name;
+			this.loader = loader;
+		}
+
+		public Builder<K, V> expireAfterWrite(long expiryInMillis) {
+			Assert.isTrue(expiryInMillis > 0, "expiryInMillis must be positive");
+			this.expiryInMillis = expiryInMillis;
+			return this;
+		}
+
+		/**
+		 * @param maximumSize the maximum number of cached values, {@code 0} for no bound
+		 */
+		public Builder<K, V> maximumSize(long maximumSize) {
+			this.maximumSize = maximumSize;
+			return this;
+		}
+
+		/**
+		 * @param refreshAheadFraction the last fraction of the expiry during which a read
+		 * triggers a background reload, {@code 0} to disable refresh-ahead
+		 */
+		public Builder<K, V> refreshAhead(double refreshAheadFraction) {
+			this.refreshAheadFraction = refreshAheadFraction;
+			return this;
+		}
+
+		/**
+		 * @param staleWhileRevalidateMillis how long past its expiry a value is still
+		 * served while it is reloaded in the background, {@code 0} to disable
+		 */
+		public Builder<K, V> staleWhileRevalidate(long staleWhileRevalidateMillis) {
+			this.staleWhileRevalidateMillis = staleWhileRevalidateMillis;
+			return this;
+		}
+
+		/**
+		 * Runs background reloads on the given executor instead of a pool owned by the
+		 * cache.
+		 */
+		public Builder<K, V> refreshExecutor(Executor refreshExecutor) {
+			this.refreshExecutor = refreshExecutor;
+			return this;
+		}
+
+		/**
+		 * @param refreshThreads the size of the pool created for background reloads when
+		 * no executor is given
+		 */
+		public Builder<K, V> refreshThreads(int refreshThreads) {
+			this.refreshThreads = refreshThreads;
+			return this;
+		}
+
+		/**
+		 * Makes {@link TimedCache#getAll(Collection)} load all the keys it misses with one
+		 * call of {@code bulkLoader}, which leaves out the keys without a value.
+		 */
+		public Builder<K, V> bulkLoader(Function<Set<K>, Map<K, V>> bulkLoader) {
+			this.bulkLoader = bulkLoader;
+			return this;
+		}
+
+		/**
+		 * Enables {@link TimedCache#write(Object, Object)}, which writes values with the
+		 * given writer before caching them.
+		 */
+		public Builder<K, V> writer(Consumer<V> writer) {
+			this.writer = writer;
+			return this;
+		}
+
+		/**
+		 * Makes {@link TimedCache#write(Object, Object)} buffer values and hand them to
+		 * {@code batchWriter} in batches.
+		 */
+		public Builder<K, V> writeBehind(Consumer<List<V>> batchWriter, int batchSize, long flushIntervalMillis) {
+			return writeBehind(new WriteBehindQueue<>(batchWriter, batchSize, flushIntervalMillis),
+					flushIntervalMillis);
+		}
+
+		Builder<K, V> writeBehind(WriteBehindQueue<K, V> writeBehind, long flushIntervalMillis) {
+			this.writeBehind = writeBehind;
+			this.writeBehindFlushMillis = flushIntervalMillis;
+			return this;
+		}
+
+		/**
+		 * Expires entries and flushes the write-behind buffer periodically on the
+		 * scheduler's shared thread.
+		 */
+		public Builder<K, V> maintainedBy(CacheMaintenanceScheduler scheduler) {
+			this.scheduler = scheduler;
+			return this;
+		}
+
+		/**
+		 * Demotes the values evicted by the size bound to the given tier instead of
+		 * dropping them.
+		 */
+		Builder<K, V> evictionTier(EvictionTier<K, V> evictionTier) {
+			this.evictionTier = evictionTier;
+			return this;
+		}
+
+		Builder<K, V> clock(LongSupplier clock) {
+			this.clock = clock;
+			return this;
+		}
+
+		public TimedCache<K, V> build() {
+			return new TimedCache<>(this);
+		}
+
+	}
+
+}
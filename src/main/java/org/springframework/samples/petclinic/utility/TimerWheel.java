@@ -0,0 +1,109 @@
+package org.springframework.samples.petclinic.utility;
+
+import java.util.function.Consumer;
+
+/**
+ * A bucketed-deadline timing wheel used to expire {@link CacheEntry cache entries}.
+ * <p>
+ * Time is cut into ticks of {@code tickMillis}; every entry is linked into the bucket of
+ * the tick its deadline falls in. Advancing the wheel only visits the buckets whose tick
+ * is entirely in the past, so the cost of expiring is proportional to the number of
+ * expired entries rather than to the number of cached ones. Buckets are reused every
+ * {@code buckets * tickMillis}; entries scheduled further away than one rotation simply
+ * stay in their bucket until their own rotation comes around.
+ * <p>
+ * This class is not thread-safe, callers guard it with a single lock.
+ */
+final class TimerWheel<K, V> {
+
+	private final long tickMillis;
+
+	private final CacheEntry<K, V>[] buckets;
+
+	private final int mask;
+
+	/** The last tick whose bucket has been fully processed. */
+	private long processedTick;
+
+	private int size;
+
+	/**
+	 * @param horizonMillis the longest delay entries are expected to be scheduled with
+	 * @param now the current time, in milliseconds
+	 */
+	@SuppressWarnings("unchecked")
+	TimerWheel(long horizonMillis, long now) {
+		int bucketCount = 64;
+		this.tickMillis = Math.max(1, (horizonMillis + bucketCount / 2 - 1) / (bucketCount / 2));
+		this.buckets = new CacheEntry[bucketCount];
+		this.mask = bucketCount - 1;
+		for (int i = 0; i < bucketCount; i++) {
+			CacheEntry<K, V> sentinel = new CacheEntry<>(null, null, Long.MAX_VALUE);
+			sentinel.prev = sentinel;
+			sentinel.next = sentinel;
+			buckets[i] = sentinel;
+		}
+		this.processedTick = now / tickMillis - 1;
+	}
+
+	long tickMillis() {
+		return tickMillis;
+	}
+
+	int size() {
+		return size;
+	}
+
+	void schedule(CacheEntry<K, V> entry) {
+		long tick = Math.max(entry.deadline / tickMillis, processedTick + 1);
+		CacheEntry<K, V> sentinel = buckets[(int) (tick & mask)];
+		entry.next = sentinel;
+		entry.prev = sentinel.prev;
+		sentinel.prev.next = entry;
+		sentinel.prev = entry;
+		size++;
+	}
+
+	void deschedule(CacheEntry<K, V> entry) {
+		if (entry.isScheduled()) {
+			unlink(entry);
+		}
+	}
+
+	/**
+	 * Removes every entry whose deadline is before {@code now} and hands it to
+	 * {@code expired}.
+	 * @return the number of expired entries
+	 */
+	int advance(long now, Consumer<CacheEntry<K, V>> expired) {
+		long lastCompleteTick = now / tickMillis - 1;
+		if (lastCompleteTick <= processedTick) {
+			return 0;
+		}
+		long first = Math.max(processedTick + 1, lastCompleteTick - mask);
+		int count = 0;
+		for (long tick = first; tick <= lastCompleteTick; tick++) {
+			CacheEntry<K, V> sentinel = buckets[(int) (tick & mask)];
+			CacheEntry<K, V> entry = sentinel.next;
+			while (entry != sentinel) {
+				CacheEntry<K, V> next = entry.next;
+				if (entry.isDead(now)) {
+					unlink(entry);
+					expired.accept(entry);
+					count++;
+				}
+				entry = next;
+			}
+		}
+		processedTick = lastCompleteTick;
+		return count;
+	}
+
+	private void unlink(CacheEntry<K, V> entry) {
+		entry.prev.next = entry.next;
+		entry.next.prev = entry.prev;
+		entry.prev = null;
+		entry.next = null;
+		size--;
+	}
+}
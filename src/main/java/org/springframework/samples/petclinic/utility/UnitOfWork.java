@@ -0,0 +1,213 @@
+package org.springframework.samples.petclinic.utility;
+
+import org.springframework.samples.petclinic.model.BaseEntity;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Tracks the entities read and changed during one piece of work, typically a web
+ * request, and writes the changes together at its end.
+ * <p>
+ * Entities found through {@link #find(Class, Integer, Function)} are kept in an
+ * {@link IdentityMap} per type, so each id is loaded at most once per unit of work and
+ * always resolves to the same instance. Entities registered with
+ * {@link #registerDirty(Class, BaseEntity)} are written by {@link #commit()}, one
+ * {@link Writer} call per type in the order the writers were configured, all in a single
+ * transaction; callbacks registered with {@link #afterCommit(Runnable)}, such as cache
+ * evictions, run once that transaction committed.
+ * <p>
+ * A unit of work is confined to one thread. Instances are created with
+ * {@link #builder(PlatformTransactionManager)}.
+ */
+public class UnitOfWork {
+
+	/**
+	 * Writes the changed entities of one type.
+	 */
+	public interface Writer<E extends BaseEntity> {
+
+		/**
+		 * Writes the entities, within the transaction of the unit of work.
+		 */
+		void write(List<E> entities);
+
+		/**
+		 * Called with the written entities when the transaction rolled back, e.g. to evict
+		 * values {@link #write(List)} put in a cache.
+		 */
+		default void discard(List<E> entities) {
+		}
+
+		/**
+		 * Called with the written entities once the transaction committed, e.g. to evict
+		 * their cached copies.
+		 */
+		default void committed(List<E> entities) {
+		}
+
+	}
+
+	private final TransactionTemplate transaction;
+
+	private final Map<Class<?>, Writer<?>> writers;
+
+	private final Map<Class<?>, IdentityMap<BaseEntity>> loaded = new HashMap<>();
+
+	private final Map<Class<?>, IdentityMap<BaseEntity>> dirty = new HashMap<>();
+
+	/** Dirty entities without an id yet, by type. */
+	private final Map<Class<?>, List<BaseEntity>> created = new HashMap<>();
+
+	private final List<Runnable> afterCommit = new ArrayList<>();
+
+	protected UnitOfWork(Builder builder) {
+		this.transaction = new TransactionTemplate(builder.transactionManager);
+		this.writers = builder.writers;
+	}
+
+	public static Builder builder(PlatformTransactionManager transactionManager) {
+		return new Builder(transactionManager);
+	}
+
+	/**
+	 * Returns the entity of the given type and id, calling the loader only if this unit of
+	 * work has not seen the entity yet.
+	 * @return the entity, {@code null} if the loader found none
+	 */
+	public <E extends BaseEntity> E find(Class<E> type, Integer id, Function<Integer, ? extends E> loader) {
+		E entity = type.cast(identityMap(loaded, type).get(id));
+		if (entity == null) {
+			entity = loader.apply(id);
+			if (entity != null) {
+				register(type, entity);
+			}
+		}
+		return entity;
+	}
+
+	/**
+	 * Makes an entity loaded by other means, e.g. along with its owner, known to
+	 * {@link #find(Class, Integer, Function)}.
+	 */
+	public <E extends BaseEntity> void register(Class<E> type, E entity) {
+		if (!entity.isNew()) {
+			identityMap(loaded, type).add(entity);
+		}
+	}
+
+	/**
+	 * Schedules a new or changed entity to be written by {@link #commit()}. Registering an
+	 * entity with the id of an already registered one replaces it.
+	 */
+	public <E extends BaseEntity> void registerDirty(Class<E> type, E entity) {
+		Assert.isTrue(writers.containsKey(type), () -> "No writer for " + type.getName());
+		if (entity.isNew()) {
+			List<BaseEntity> entities = created.computeIfAbsent(type, key -> new ArrayList<>());
+			if (entities.stream().noneMatch(registered -> registered == entity)) {
+				entities.add(entity);
+			}
+		}
+		else {
+			identityMap(dirty, type).add(entity);
+			register(type, entity);
+		}
+	}
+
+	/**
+	 * Runs the given callback once the next {@link #commit()} has succeeded.
+	 */
+	public void afterCommit(Runnable callback) {
+		afterCommit.add(callback);
+	}
+
+	public boolean isDirty() {
+		return !dirty.isEmpty() || !created.isEmpty() || !afterCommit.isEmpty();
+	}
+
+	/**
+	 * Writes the registered entities in a single transaction, then notifies the writers
+	 * and runs the after-commit callbacks. New entities have their generated ids afterwards. If writing fails, the
+	 * transaction is rolled back, the writers discard what they wrote and the entities
+	 * stay registered.
+	 */
+	public void commit() {
+		if (!isDirty()) {
+			return;
+		}
+		Map<Class<?>, List<BaseEntity>> batches = new LinkedHashMap<>();
+		for (Class<?> type : writers.keySet()) {
+			List<BaseEntity> batch = new ArrayList<>();
+			if (dirty.containsKey(type)) {
+				batch.addAll(dirty.get(type));
+			}
+			if (created.containsKey(type)) {
+				batch.addAll(created.get(type));
+			}
+			if (!batch.isEmpty()) {
+				batches.put(type, batch);
+			}
+		}
+		try {
+			transaction.executeWithoutResult(status -> batches.forEach((type, batch) -> writer(type).write(batch)));
+		}
+		catch (RuntimeException | Error ex) {
+			batches.forEach((type, batch) -> writer(type).discard(batch));
+			throw ex;
+		}
+		dirty.clear();
+		created.clear();
+		batches.forEach((type, batch) -> batch.stream().filter(entity -> !entity.isNew())
+				.forEach(entity -> identityMap(loaded, type).add(entity)));
+		batches.forEach((type, batch) -> writer(type).committed(batch));
+		List<Runnable> callbacks = new ArrayList<>(afterCommit);
+		afterCommit.clear();
+		callbacks.forEach(Runnable::run);
+	}
+
+	@SuppressWarnings("unchecked")
+	private Writer<BaseEntity> writer(Class<?> type) {
+		return (Writer<BaseEntity>) writers.get(type);
+	}
+
+	private static IdentityMap<BaseEntity> identityMap(Map<Class<?>, IdentityMap<BaseEntity>> maps, Class<?> type) {
+		return maps.computeIfAbsent(type, key -> new IdentityMap<>());
+	}
+
+	/**
+	 * Configures a {@link UnitOfWork}: a writer is needed for each type of entity that can
+	 * be registered as dirty.
+	 */
+	public static final class Builder {
+
+		private final PlatformTransactionManager transactionManager;
+
+		private final Map<Class<?>, Writer<?>> writers = new LinkedHashMap<>();
+
+		private Builder(PlatformTransactionManager transactionManager) {
+			this.transactionManager = transactionManager;
+		}
+
+		/**
+		 * Adds the writer of a type; types are written in the order of these calls, so
+		 * entities should come after the entities they refer to.
+		 */
+		public <E extends BaseEntity> Builder writer(Class<E> type, Writer<E> writer) {
+			writers.put(type, writer);
+			return this;
+		}
+
+		public UnitOfWork build() {
+			return new UnitOfWork(this);
+		}
+
+	}
+
+}
@@ -0,0 +1,246 @@
+package org.springframework.samples.petclinic.utility;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Size-bounded eviction policy following W-TinyLFU.
+ * <p>
+ * New keys enter a small LRU <i>window</i> (1% of the maximum weight). Keys leaving the
+ * window become candidates for the <i>main</i> space, a segmented LRU made of a
+ * probation and a protected (80%) segment. When the cache is over its maximum, a
+ * candidate is only admitted if the {@link FrequencySketch} saw it more often than the
+ * probation victim it would replace; otherwise the candidate itself is evicted. A one-off
+ * scan over many distinct keys therefore churns through the window without flushing the
+ * frequently used keys held in the main space.
+ * <p>
+ * This class is not thread-safe, callers guard it with the cache's eviction lock.
+ */
+final class WindowTinyLfuPolicy<K> {
+
+	/**
+	 * Receives the keys chosen for eviction; the caller removes them from the cache.
+	 */
+	interface EvictionListener<K> {
+
+		void onEviction(K key, boolean admissionRejected);
+
+	}
+
+	private final Map<K, Node<K>> nodes = new HashMap<>();
+
+	private final Node<K> window = Node.sentinel();
+
+	private final Node<K> probation = Node.sentinel();
+
+	private final Node<K> protectedSegment = Node.sentinel();
+
+	private final FrequencySketch sketch;
+
+	private final long maximum;
+
+	private final long windowMaximum;
+
+	private final long protectedMaximum;
+
+	private long windowWeight;
+
+	private long protectedWeight;
+
+	private long totalWeight;
+
+	WindowTinyLfuPolicy(long maximum) {
+		this.maximum = maximum;
+		this.windowMaximum = Math.max(1, maximum / 100);
+		this.protectedMaximum = (long) ((maximum - windowMaximum) * 0.8);
+		this.sketch = new FrequencySketch(maximum);
+	}
+
+	long weightedSize() {
+		return totalWeight;
+	}
+
+	/**
+	 * Records a read of a cached key.
+	 */
+	void recordAccess(K key) {
+		sketch.increment(key);
+		Node<K> node = nodes.get(key);
+		if (node != null) {
+			onHit(node);
+		}
+	}
+
+	/**
+	 * Records that {@code key} was inserted or replaced with a value of the given weight
+	 * and evicts keys until the cache fits its maximum again.
+	 */
+	void recordWrite(K key, int weight, EvictionListener<K> listener) {
+		sketch.increment(key);
+		Node<K> node = nodes.get(key);
+		if (node == null) {
+			node = new Node<>(key, weight, Node.WINDOW);
+			nodes.put(key, node);
+			node.linkLast(window);
+			windowWeight += weight;
+			totalWeight += weight;
+		}
+		else {
+			long delta = weight - node.weight;
+			node.weight = weight;
+			totalWeight += delta;
+			if (node.segment == Node.WINDOW) {
+				windowWeight += delta;
+			}
+			else if (node.segment == Node.PROTECTED) {
+				protectedWeight += delta;
+			}
+			onHit(node);
+		}
+		evict(listener);
+	}
+
+	/**
+	 * Forgets a key that left the cache for another reason than eviction.
+	 */
+	void remove(K key) {
+		Node<K> node = nodes.remove(key);
+		if (node != null) {
+			unlink(node);
+		}
+	}
+
+	private void onHit(Node<K> node) {
+		if (node.segment == Node.PROBATION) {
+			node.unlink();
+			node.segment = Node.PROTECTED;
+			node.linkLast(protectedSegment);
+			protectedWeight += node.weight;
+			demoteProtectedOverflow();
+		}
+		else {
+			node.moveToLast(node.segment == Node.WINDOW ? window : protectedSegment);
+		}
+	}
+
+	private void demoteProtectedOverflow() {
+		while (protectedWeight > protectedMaximum && protectedSegment.next != protectedSegment) {
+			Node<K> demoted = protectedSegment.next;
+			demoted.unlink();
+			protectedWeight -= demoted.weight;
+			demoted.segment = Node.PROBATION;
+			demoted.linkLast(probation);
+		}
+	}
+
+	private void evict(EvictionListener<K> listener) {
+		int candidates = 0;
+		while (windowWeight > windowMaximum && window.next != window) {
+			Node<K> candidate = window.next;
+			candidate.unlink();
+			windowWeight -= candidate.weight;
+			candidate.segment = Node.PROBATION;
+			candidate.candidate = true;
+			candidate.linkLast(probation);
+			candidates++;
+		}
+		while (totalWeight > maximum) {
+			Node<K> victim = firstOf(probation, protectedSegment, window);
+			Node<K> candidate = candidates > 0 ? probation.prev : null;
+			Node<K> evicted;
+			if (candidate == null || candidate == victim
+					|| sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+				evicted = victim;
+				evictNode(victim, false, listener);
+			}
+			else {
+				evicted = candidate;
+				evictNode(candidate, true, listener);
+			}
+			if (evicted.candidate) {
+				candidates--;
+			}
+		}
+		for (Node<K> node = probation.prev; candidates > 0; node = node.prev, candidates--) {
+			node.candidate = false;
+		}
+	}
+
+	private void evictNode(Node<K> node, boolean admissionRejected, EvictionListener<K> listener) {
+		nodes.remove(node.key);
+		unlink(node);
+		listener.onEviction(node.key, admissionRejected);
+	}
+
+	private void unlink(Node<K> node) {
+		node.unlink();
+		totalWeight -= node.weight;
+		if (node.segment == Node.WINDOW) {
+			windowWeight -= node.weight;
+		}
+		else if (node.segment == Node.PROTECTED) {
+			protectedWeight -= node.weight;
+		}
+	}
+
+	@SafeVarargs
+	private static <K> Node<K> firstOf(Node<K>... segments) {
+		for (Node<K> sentinel : segments) {
+			if (sentinel.next != sentinel) {
+				return sentinel.next;
+			}
+		}
+		throw new IllegalStateException("no entry left to evict");
+	}
+
+	private static final class Node<K> {
+
+		static final int WINDOW = 0;
+
+		static final int PROBATION = 1;
+
+		static final int PROTECTED = 2;
+
+		final K key;
+
+		int weight;
+
+		int segment;
+
+		/** Whether the node just left the window and awaits admission to the main space. */
+		boolean candidate;
+
+		Node<K> prev = this;
+
+		Node<K> next = this;
+
+		Node(K key, int weight, int segment) {
+			this.key = key;
+			this.weight = weight;
+			this.segment = segment;
+		}
+
+		static <K> Node<K> sentinel() {
+			return new Node<>(null, 0, -1);
+		}
+
+		void linkLast(Node<K> sentinel) {
+			next = sentinel;
+			prev = sentinel.prev;
+			sentinel.prev.next = this;
+			sentinel.prev = this;
+		}
+
+		void moveToLast(Node<K> sentinel) {
+			unlink();
+			linkLast(sentinel);
+		}
+
+		void unlink() {
+			prev.next = next;
+			next.prev = prev;
+			prev = this;
+			next = this;
+		}
+	}
+}
@@ -0,0 +1,163 @@
+package org.springframework.samples.petclinic.utility;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Buffers writes and hands them to a batch writer, either when {@code batchSize} writes
+ * are pending or when the oldest pending write is {@code flushIntervalMillis} old.
+ * <p>
+ * Durability guarantees:
+ * <ul>
+ * <li>a write is acknowledged once it is buffered, it is <b>not</b> durable until the
+ * batch holding it has been written; a crash loses at most the pending writes, i.e. at
+ * most {@code flushIntervalMillis} worth of writes;</li>
+ * <li>several writes of the same key before a flush are coalesced, only the latest value
+ * is written;</li>
+ * <li>a batch is written by a single writer call (one transaction), batches are written
+ * one at a time and in the order they were taken from the buffer;</li>
+ * <li>when a batch fails, its values are put back into the buffer, unless the same key
+ * was written again in the meantime, and are retried by the next flush;</li>
+ * <li>{@link #flush()} writes everything pending and should be called on shutdown;</li>
+ * <li>{@link #pendingValue(Object)} returns the value of a key that is buffered or being
+ * written, so that a reader of the backing store can tell it would read an older one.</li>
+ * </ul>
+ */
+final class WriteBehindQueue<K, V> {
+
+	private static final Logger log = LoggerFactory.getLogger(WriteBehindQueue.class);
+
+	private final Consumer<List<V>> batchWriter;
+
+	private final int batchSize;
+
+	private final long flushIntervalMillis;
+
+	private final Object bufferLock = new Object();
+
+	private final ReentrantLock flushLock = new ReentrantLock();
+
+	private Map<K, V> pending = new LinkedHashMap<>();
+
+	/** The batch being written, until it is written or put back, guarded by bufferLock. */
+	private Map<K, V> writing = Collections.emptyMap();
+
+	private long oldestPendingAt;
+
+	WriteBehindQueue(Consumer<List<V>> batchWriter, int batchSize, long flushIntervalMillis) {
+		this.batchWriter = batchWriter;
+		this.batchSize = batchSize;
+		this.flushIntervalMillis = flushIntervalMillis;
+	}
+
+	/**
+	 * Buffers a write, and writes the buffer right away when it reached the batch size.
+	 */
+	void enqueue(K key, V value, long now) {
+		boolean full;
+		synchronized (bufferLock) {
+			if (pending.isEmpty()) {
+				oldestPendingAt = now;
+			}
+			pending.remove(key);
+			pending.put(key, value);
+			full = pending.size() >= batchSize;
+		}
+		if (full) {
+			flush();
+		}
+	}
+
+	/**
+	 * Writes the buffer if its oldest write waited for the flush interval.
+	 */
+	void flushIfDue(long now) {
+		boolean due;
+		synchronized (bufferLock) {
+			due = !pending.isEmpty() && now - oldestPendingAt >= flushIntervalMillis;
+		}
+		if (due) {
+			flush();
+		}
+	}
+
+	/**
+	 * Writes every pending value, in batches of at most {@code batchSize}.
+	 * @throws RuntimeException the failure of the batch writer, the failed values stay
+	 * pending
+	 */
+	void flush() {
+		flushLock.lock();
+		try {
+			Map<K, V> batch;
+			synchronized (bufferLock) {
+				batch = pending;
+				pending = new LinkedHashMap<>();
+				writing = batch;
+			}
+			List<Map.Entry<K, V>> entries = new ArrayList<>(batch.entrySet());
+			try {
+				for (int start = 0; start < entries.size(); start += batchSize) {
+					List<Map.Entry<K, V>> chunk = entries.subList(start,
+							Math.min(entries.size(), start + batchSize));
+					try {
+						List<V> values = new ArrayList<>(chunk.size());
+						chunk.forEach(entry -> values.add(entry.getValue()));
+						batchWriter.accept(values);
+					}
+					catch (RuntimeException ex) {
+						log.error("Writing a batch of {} values failed, they will be retried", chunk.size(), ex);
+						requeue(entries.subList(start, entries.size()));
+						throw ex;
+					}
+				}
+			}
+			finally {
+				synchronized (bufferLock) {
+					writing = Collections.emptyMap();
+				}
+			}
+		}
+		finally {
+			flushLock.unlock();
+		}
+	}
+
+	/**
+	 * @return the latest value of a key that is buffered or being written, {@code null} if
+	 * the backing store holds the latest value
+	 */
+	V pendingValue(K key) {
+		synchronized (bufferLock) {
+			V value = pending.get(key);
+			return value != null ? value : writing.get(key);
+		}
+	}
+
+	int pendingCount() {
+		synchronized (bufferLock) {
+			return pending.size();
+		}
+	}
+
+	private void requeue(List<Map.Entry<K, V>> failed) {
+		synchronized (bufferLock) {
+			Map<K, V> requeued = new LinkedHashMap<>();
+			for (Map.Entry<K, V> entry : failed) {
+				if (!pending.containsKey(entry.getKey())) {
+					requeued.put(entry.getKey(), entry.getValue());
+				}
+			}
+			requeued.putAll(pending);
+			pending = requeued;
+		}
+	}
+}
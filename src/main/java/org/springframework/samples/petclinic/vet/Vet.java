@@ -15,8 +15,6 @@
  */
 package org.springframework.samples.petclinic.vet;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -29,9 +27,8 @@ import javax.persistence.ManyToMany;
 import javax.persistence.Table;
 import javax.xml.bind.annotation.XmlElement;
 
-import org.springframework.beans.support.MutableSortDefinition;
-import org.springframework.beans.support.PropertyComparator;
 import org.springframework.samples.petclinic.model.Person;
+import org.springframework.samples.petclinic.utility.SortedIdentityMap;
 
 /**
  * Simple JavaBean domain object representing a veterinarian.
@@ -50,6 +47,12 @@ public class Vet extends Person {
 			inverseJoinColumns = @JoinColumn(name = "specialty_id"))
 	private Set<Specialty> specialties;
 
+	/**
+	 * The specialties ordered by name, built from {@link #specialties} on first use and
+	 * never modified once published, as vets are read by several requests at once.
+	 */
+	private transient volatile SortedIdentityMap<String, Specialty> sortedSpecialties;
+
 	protected Set<Specialty> getSpecialtiesInternal() {
 		if (this.specialties == null) {
 			this.specialties = new HashSet<>();
@@ -59,13 +62,21 @@ public class Vet extends Person {
 
 	protected void setSpecialtiesInternal(Set<Specialty> specialties) {
 		this.specialties = specialties;
+		this.sortedSpecialties = null;
 	}
 
 	@XmlElement
 	public List<Specialty> getSpecialties() {
-		List<Specialty> sortedSpecs = new ArrayList<>(getSpecialtiesInternal());
-		PropertyComparator.sort(sortedSpecs, new MutableSortDefinition("name", true, true));
-		return Collections.unmodifiableList(sortedSpecs);
+		Set<Specialty> specialties = getSpecialtiesInternal();
+		SortedIdentityMap<String, Specialty> sortedSpecialties = this.sortedSpecialties;
+		if (sortedSpecialties == null || sortedSpecialties.size() != specialties.size()) {
+			sortedSpecialties = new SortedIdentityMap<>(Specialty::getName, String.CASE_INSENSITIVE_ORDER,
+					specialties);
+			// takes the snapshot before publishing, so readers never write to the view
+			sortedSpecialties.asList();
+			this.sortedSpecialties = sortedSpecialties;
+		}
+		return sortedSpecialties.asList();
 	}
 
 	public int getNrOfSpecialties() {
@@ -73,7 +84,9 @@ public class Vet extends Person {
 	}
 
 	public void addSpecialty(Specialty specialty) {
-		getSpecialtiesInternal().add(specialty);
+		if (getSpecialtiesInternal().add(specialty)) {
+			this.sortedSpecialties = null;
+		}
 	}
 
 }
@@ -0,0 +1,23 @@
+package org.springframework.samples.petclinic.visit;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Reads the most recent visits of several pets at once, which a JPQL query cannot limit
+ * per pet. Implemented by {@link RecentVisitRepositoryImpl} and part of the
+ * {@link VisitRepository}.
+ */
+public interface RecentVisitRepository {
+
+	/**
+	 * Retrieve the most recent visits of each of the given pets with a single query, each
+	 * pet's read through the {@code (pet_id, visit_date, id)} index and stopping after
+	 * {@code limit} visits, however many visits the pet has.
+	 * @param petIds the ids of the pets
+	 * @param limit how many visits to return at most per pet
+	 * @return the visits, those of each pet most recent first
+	 */
+	List<Visit> findRecentByPetIdIn(Collection<Integer> petIds, int limit);
+
+}
@@ -0,0 +1,55 @@
+package org.springframework.samples.petclinic.visit;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
+
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Unions one limited query per pet, so that each stops at the {@code limit} most recent
+ * visits of its pet in the index; a window function would do the same in one query, but
+ * not on every database the clinic supports.
+ */
+class RecentVisitRepositoryImpl implements RecentVisitRepository {
+
+	private static final Comparator<Visit> RECENT_FIRST = Comparator
+			.comparing(Visit::getDate, Comparator.nullsFirst(Comparator.naturalOrder())).thenComparing(Visit::getId)
+			.reversed();
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	@Override
+	@Transactional(readOnly = true)
+	@SuppressWarnings("unchecked")
+	public List<Visit> findRecentByPetIdIn(Collection<Integer> petIds, int limit) {
+		if (petIds.isEmpty()) {
+			return Collections.emptyList();
+		}
+		StringBuilder sql = new StringBuilder();
+		for (int i = 1; i <= petIds.size(); i++) {
+			if (i > 1) {
+				sql.append(" UNION ALL ");
+			}
+			sql.append("(SELECT id, pet_id, visit_date, description FROM visits WHERE pet_id = ?").append(i)
+					.append(" ORDER BY visit_date DESC, id DESC LIMIT ").append(limit).append(')');
+		}
+		Query query = this.entityManager.createNativeQuery(sql.toString(), Visit.class);
+		int position = 1;
+		for (Integer petId : petIds) {
+			query.setParameter(position++, petId);
+		}
+		List<Visit> visits = new ArrayList<>(query.getResultList());
+		// a union keeps no order of its own
+		visits.sort(RECENT_FIRST);
+		return visits;
+	}
+
+}
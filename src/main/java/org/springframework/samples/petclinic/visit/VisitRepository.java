@@ -15,10 +15,14 @@
  */
 package org.springframework.samples.petclinic.visit;
 
+import java.time.LocalDate;
 import java.util.List;
 
 import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.Repository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.samples.petclinic.model.BaseEntity;
 
 /**
@@ -32,7 +36,7 @@ import org.springframework.samples.petclinic.model.BaseEntity;
  * @author Sam Brannen
  * @author Michael Isvy
  */
-public interface VisitRepository extends Repository<Visit, Integer> {
+public interface VisitRepository extends Repository<Visit, Integer>, RecentVisitRepository {
 
 	/**
 	 * Save a <code>Visit</code> to the data store, either inserting or updating it.
@@ -43,4 +47,71 @@ public interface VisitRepository extends Repository<Visit, Integer> {
 
 	List<Visit> findByPetId(Integer petId);
 
+	/**
+	 * Retrieve the most recent visits of a pet, the first page of its history.
+	 * @param petId the id of the pet
+	 * @param page how many visits to return
+	 * @return the visits, most recent first
+	 */
+	@Query("SELECT visit FROM Visit visit WHERE visit.petId = :petId ORDER BY visit.date DESC, visit.id DESC")
+	List<Visit> findRecentByPetId(@Param("petId") Integer petId, Pageable page);
+
+	/**
+	 * Retrieve the visits of a pet older than a given one in the order of its history,
+	 * {@code (visit_date, id)} descending, seeking the index to the visit instead of
+	 * skipping the more recent ones.
+	 * @param petId the id of the pet
+	 * @param date the date of the visit
+	 * @param id the id of the visit
+	 * @param page how many visits to return
+	 * @return the visits, most recent first
+	 */
+	@Query("SELECT visit FROM Visit visit WHERE visit.petId = :petId AND visit.date <= :date "
+			+ "AND (visit.date < :date OR visit.id < :id) ORDER BY visit.date DESC, visit.id DESC")
+	List<Visit> findByPetIdOlderThan(@Param("petId") Integer petId, @Param("date") LocalDate date,
+			@Param("id") Integer id, Pageable page);
+
+	/**
+	 * Retrieve the visits of a pet more recent than a given one in the order of its
+	 * history, closest first.
+	 * @param petId the id of the pet
+	 * @param date the date of the visit
+	 * @param id the id of the visit
+	 * @param page how many visits to return
+	 * @return the visits, oldest first
+	 */
+	@Query("SELECT visit FROM Visit visit WHERE visit.petId = :petId AND visit.date >= :date "
+			+ "AND (visit.date > :date OR visit.id > :id) ORDER BY visit.date, visit.id")
+	List<Visit> findByPetIdNewerThan(@Param("petId") Integer petId, @Param("date") LocalDate date,
+			@Param("id") Integer id, Pageable page);
+
+	/**
+	 * @return the highest id of a pet with visits, or {@code null} if there are no visits
+	 */
+	@Query("SELECT MAX(visit.petId) FROM Visit visit")
+	Integer findMaxPetId();
+
+	/**
+	 * Count the visits of the pets in a range of ids, for {@link VisitSummaries}.
+	 * @param from the lowest pet id
+	 * @param to the highest pet id
+	 * @return the id, the number of visits and the last visit date of each pet with visits
+	 */
+	@Query("SELECT visit.petId, COUNT(visit), MAX(visit.date) FROM Visit visit "
+			+ "WHERE visit.petId BETWEEN :from AND :to GROUP BY visit.petId")
+	List<Object[]> countByPetIdRange(@Param("from") int from, @Param("to") int to);
+
+	/**
+	 * Retrieve the dates of the recent visits of the pets in a range of ids, for
+	 * {@link VisitSummaries}.
+	 * @param from the lowest pet id
+	 * @param to the highest pet id
+	 * @param since the date of the oldest visits to return
+	 * @return the pet id and the date of each visit
+	 */
+	@Query("SELECT visit.petId, visit.date FROM Visit visit "
+			+ "WHERE visit.petId BETWEEN :from AND :to AND visit.date >= :since")
+	List<Object[]> findDatesByPetIdRangeSince(@Param("from") int from, @Param("to") int to,
+			@Param("since") LocalDate since);
+
 }
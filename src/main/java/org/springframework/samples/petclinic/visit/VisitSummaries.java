@@ -0,0 +1,268 @@
+package org.springframework.samples.petclinic.visit;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * The number of visits, the last visit date and the number of visits in the last year of
+ * every pet, each read with a single hash lookup instead of loading all the visits of the
+ * pet.
+ * <p>
+ * The summaries are rebuilt from the visits table once the application is ready, by
+ * {@code rebuild-threads} threads each reading the visits of {@code rebuild-chunk-size}
+ * pets at a time, and then kept up to date by {@link #added(Visit)}. The pets given visits
+ * while a rebuild runs are read again once it is done. Until the summaries are built, or
+ * if building them failed, each summary is read from the
+ * {@code (pet_id, visit_date, id)} index instead.
+ */
+@Component
+public class VisitSummaries {
+
+	private static final Logger log = LoggerFactory.getLogger(VisitSummaries.class);
+
+	private final VisitRepository visits;
+
+	private final int chunkSize;
+
+	private final int threads;
+
+	private volatile Map<Integer, Summary> summaries;
+
+	/** The pets given visits while the summaries are rebuilt, guarded by this. */
+	private Set<Integer> addedWhileRebuilding;
+
+	public VisitSummaries(VisitRepository visits,
+			@Value("${petclinic.visits.summary.rebuild-chunk-size:1000}") int chunkSize,
+			@Value("${petclinic.visits.summary.rebuild-threads:4}") int threads) {
+		this.visits = visits;
+		this.chunkSize = chunkSize;
+		this.threads = threads;
+	}
+
+	/**
+	 * Rebuilds the summaries of all the pets from the visits table, replacing them at once.
+	 * @return whether the summaries were rebuilt
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	public boolean rebuild() {
+		synchronized (this) {
+			if (this.addedWhileRebuilding != null) {
+				log.info("The visit summaries are already being rebuilt");
+				return false;
+			}
+			this.addedWhileRebuilding = new HashSet<>();
+		}
+		AtomicInteger count = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(this.threads, runnable -> {
+			Thread thread = new Thread(runnable, "visit-summary-rebuild-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		try {
+			long started = System.nanoTime();
+			LocalDate since = yearAgo();
+			Integer maxPetId = this.visits.findMaxPetId();
+			List<Future<Map<Integer, Summary>>> chunks = new ArrayList<>();
+			for (int from = 0; maxPetId != null && from <= maxPetId; from += this.chunkSize) {
+				int to = Math.min(from + this.chunkSize - 1, maxPetId);
+				int chunkFrom = from;
+				chunks.add(executor.submit(() -> read(chunkFrom, to, since)));
+			}
+			Map<Integer, Summary> rebuilt = new ConcurrentHashMap<>();
+			for (Future<Map<Integer, Summary>> chunk : chunks) {
+				rebuilt.putAll(chunk.get());
+			}
+			synchronized (this) {
+				// the chunks may or may not have seen their new visits
+				for (Integer petId : this.addedWhileRebuilding) {
+					Summary summary = read(petId, petId, since).get(petId);
+					if (summary != null) {
+						rebuilt.put(petId, summary);
+					}
+				}
+				this.summaries = rebuilt;
+			}
+			log.info("Summarized the visits of {} pets in {} chunks in {} ms", rebuilt.size(), chunks.size(),
+					(System.nanoTime() - started) / 1_000_000);
+			return true;
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+		catch (ExecutionException | RuntimeException ex) {
+			log.warn("Could not summarize the visits, they will be summarized in the database", ex);
+			return false;
+		}
+		finally {
+			executor.shutdownNow();
+			synchronized (this) {
+				this.addedWhileRebuilding = null;
+			}
+		}
+	}
+
+	public boolean isLoaded() {
+		return this.summaries != null;
+	}
+
+	/**
+	 * Counts a new visit in the summary of its pet, once it has been committed.
+	 * <p>
+	 * The visit is counted under the same lock as the rebuild publishes its summaries, so
+	 * it is either counted in the summaries being replaced, and its pet read again by the
+	 * rebuild, or counted once in the rebuilt ones.
+	 */
+	public void added(Visit visit) {
+		LocalDate since = yearAgo();
+		synchronized (this) {
+			if (this.addedWhileRebuilding != null) {
+				this.addedWhileRebuilding.add(visit.getPetId());
+			}
+			Map<Integer, Summary> summaries = this.summaries;
+			if (summaries != null) {
+				summaries.compute(visit.getPetId(),
+						(petId, summary) -> (summary != null ? summary : Summary.none(petId)).added(visit, since));
+			}
+		}
+	}
+
+	/**
+	 * @return the summary of the visits of a pet, with no visits if it has none
+	 */
+	public Summary get(int petId) {
+		Map<Integer, Summary> summaries = this.summaries;
+		Summary summary = summaries != null ? summaries.get(petId) : read(petId, petId, yearAgo()).get(petId);
+		return summary != null ? summary : Summary.none(petId);
+	}
+
+	/**
+	 * @return the summaries of the visits of several pets, in the order of the given ids
+	 */
+	public List<Summary> getAll(Collection<Integer> petIds) {
+		List<Summary> all = new ArrayList<>(petIds.size());
+		petIds.forEach(petId -> all.add(get(petId)));
+		return all;
+	}
+
+	/**
+	 * Summarizes the visits of the pets with ids between {@code from} and {@code to}, with
+	 * one query for the counts and last dates and another for the dates of the last year.
+	 */
+	private Map<Integer, Summary> read(int from, int to, LocalDate since) {
+		Map<Integer, List<LocalDate>> recentDates = new HashMap<>();
+		for (Object[] visit : this.visits.findDatesByPetIdRangeSince(from, to, since)) {
+			recentDates.computeIfAbsent((Integer) visit[0], petId -> new ArrayList<>()).add((LocalDate) visit[1]);
+		}
+		Map<Integer, Summary> summaries = new HashMap<>();
+		for (Object[] pet : this.visits.countByPetIdRange(from, to)) {
+			Integer petId = (Integer) pet[0];
+			int[] recentDays = recentDates.getOrDefault(petId, new ArrayList<>()).stream()
+					.mapToInt(date -> (int) date.toEpochDay()).sorted().toArray();
+			summaries.put(petId, new Summary(petId, ((Number) pet[1]).intValue(), (LocalDate) pet[2], recentDays));
+		}
+		return summaries;
+	}
+
+	private static LocalDate yearAgo() {
+		return LocalDate.now().minusYears(1);
+	}
+
+	/**
+	 * The summary of the visits of a pet. Immutable: a new visit gives a new summary.
+	 */
+	public static class Summary {
+
+		private final int petId;
+
+		private final int visitCount;
+
+		private final LocalDate lastVisitDate;
+
+		/** The epoch days of the visits of the last year, in order. */
+		private final int[] recentDays;
+
+		Summary(int petId, int visitCount, LocalDate lastVisitDate, int[] recentDays) {
+			this.petId = petId;
+			this.visitCount = visitCount;
+			this.lastVisitDate = lastVisitDate;
+			this.recentDays = recentDays;
+		}
+
+		static Summary none(int petId) {
+			return new Summary(petId, 0, null, new int[0]);
+		}
+
+		public int getPetId() {
+			return this.petId;
+		}
+
+		public int getVisitCount() {
+			return this.visitCount;
+		}
+
+		public LocalDate getLastVisitDate() {
+			return this.lastVisitDate;
+		}
+
+		/**
+		 * @return the number of visits since the same day a year ago
+		 */
+		public int getVisitsInLastYear() {
+			return this.recentDays.length - firstIndexFrom(yearAgo());
+		}
+
+		Summary added(Visit visit, LocalDate since) {
+			LocalDate date = visit.getDate();
+			LocalDate last = this.lastVisitDate == null || (date != null && date.isAfter(this.lastVisitDate)) ? date
+					: this.lastVisitDate;
+			// drops the visits that are more than a year old on the way
+			int start = firstIndexFrom(since);
+			int[] recent = Arrays.copyOfRange(this.recentDays, start, this.recentDays.length);
+			if (date != null && !date.isBefore(since)) {
+				recent = Arrays.copyOf(recent, recent.length + 1);
+				recent[recent.length - 1] = (int) date.toEpochDay();
+				Arrays.sort(recent);
+			}
+			return new Summary(this.petId, this.visitCount + 1, last, recent);
+		}
+
+		private int firstIndexFrom(LocalDate since) {
+			int day = (int) since.toEpochDay();
+			int low = 0;
+			int high = this.recentDays.length;
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (this.recentDays[middle] < day) {
+					low = middle + 1;
+				}
+				else {
+					high = middle;
+				}
+			}
+			return low;
+		}
+
+	}
+
+}
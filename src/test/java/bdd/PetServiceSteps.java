@@ -71,9 +71,10 @@ public class PetServiceSteps {
 	@Then("The new pet is returned successfully")
 	public void newPetReturnedPetService() { assertNotNull(newPet); }
 
-	@Then("The new pet is saved in owners pets correctly")
-	public void newPetIsSaved() {
-		assertThat(owner.getPets()).contains(newPet);
+	@Then("The new pet belongs to the owner until it is saved")
+	public void newPetBelongsToOwner() {
+		assertThat(newPet.getOwner()).isSameAs(owner);
+		assertThat(owner.getPets()).doesNotContain(newPet);
 	}
 
 
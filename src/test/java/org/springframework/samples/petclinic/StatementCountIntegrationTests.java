@@ -0,0 +1,182 @@
+package org.springframework.samples.petclinic;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasProperty;
+import static org.hamcrest.Matchers.is;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.model;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.samples.petclinic.owner.Owner;
+import org.springframework.samples.petclinic.owner.OwnerLastNameIndex;
+import org.springframework.samples.petclinic.owner.OwnerSearch;
+import org.springframework.samples.petclinic.utility.PetTimedCache;
+import org.springframework.samples.petclinic.utility.TimedCache;
+import org.springframework.samples.petclinic.visit.Visit;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+
+/**
+ * Counts the SQL statements of the owner search, owner details and pet edit flows, with
+ * cold caches so that every lookup a request makes reaches the database. The pet types
+ * are not cached but held by the {@code PetTypeRegistry}, loaded once at startup.
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureMockMvc
+class StatementCountIntegrationTests {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private PetTimedCache petCache;
+
+	@Autowired
+	private OwnerLastNameIndex lastNames;
+
+	@Autowired
+	private OwnerSearch search;
+
+	@Autowired
+	private TimedCache<Integer, Owner> ownerCache;
+
+	@Autowired
+	private TimedCache<Integer, List<Visit>> visitCache;
+
+	private Statistics statistics;
+
+	@BeforeEach
+	void setup() {
+		statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+	}
+
+	private long statements(RequestBuilder request) throws Exception {
+		petCache.invalidate(1);
+		ownerCache.invalidateAll();
+		visitCache.invalidateAll();
+		statistics.clear();
+		mockMvc.perform(request).andExpect(result -> assertThat(result.getResponse().getStatus()).isLessThan(400));
+		return statistics.getPrepareStatementCount();
+	}
+
+	@Test
+	void testOwnerDetails() throws Exception {
+		// the owner with the pets and their types, then the visits of all the pets
+		assertThat(statements(get("/owners/{ownerId}", 6))).isEqualTo(2);
+	}
+
+	@Test
+	void testOwnerDetailsStatementsDoNotDependOnThePets() throws Exception {
+		long withOnePet = statements(get("/owners/{ownerId}", 1));
+		long withTwoPets = statements(get("/owners/{ownerId}", 6));
+		try {
+			for (int i = 0; i < 20; i++) {
+				jdbcTemplate.update("INSERT INTO pets (name, birth_date, type_id, owner_id) VALUES (?, ?, ?, ?)",
+						"Statement" + i, LocalDate.of(2015, 1, 1), i % 6 + 1, 9);
+				jdbcTemplate.update("INSERT INTO visits (pet_id, visit_date, description) "
+						+ "SELECT id, ?, 'check-up' FROM pets WHERE name = ?", LocalDate.of(2016, 1, 1),
+						"Statement" + i);
+			}
+			ownerCache.invalidate(9);
+
+			long withManyPets = statements(get("/owners/{ownerId}", 9));
+
+			assertThat(withOnePet).isEqualTo(withTwoPets).isEqualTo(withManyPets);
+		}
+		finally {
+			jdbcTemplate.update("DELETE FROM visits WHERE pet_id IN (SELECT id FROM pets WHERE name LIKE 'Statement%')");
+			jdbcTemplate.update("DELETE FROM pets WHERE name LIKE 'Statement%'");
+		}
+	}
+
+	@Test
+	void testOwnerSearchPagesTakeTheSameStatements() throws Exception {
+		// the ids of the page come from the last name index, then the owners of the page
+		// are loaded with their pets and types
+		assertThat(lastNames.isLoaded()).isTrue();
+		assertThat(statements(get("/owners").param("size", "3"))).isEqualTo(1);
+		assertThat(statements(get("/owners").param("size", "3").param("after", "4-Davis"))).isEqualTo(1);
+		assertThat(statements(get("/owners").param("size", "3").param("before", "8-Escobito"))).isEqualTo(1);
+
+		mockMvc.perform(get("/owners").param("size", "3").param("after", "4-Davis"))
+				.andExpect(model().attribute("selections", contains(hasProperty("lastName", is("Escobito")),
+						hasProperty("lastName", is("Estaban")), hasProperty("lastName", is("Franklin")))))
+				.andExpect(model().attribute("previousPage", "8-Escobito"))
+				.andExpect(model().attribute("nextPage", "1-Franklin"));
+		mockMvc.perform(get("/owners").param("size", "3").param("before", "8-Escobito"))
+				.andExpect(model().attribute("selections", contains(hasProperty("id", is(6)),
+						hasProperty("id", is(2)), hasProperty("id", is(4)))))
+				.andExpect(model().attribute("previousPage", "6-Coleman"))
+				.andExpect(model().attribute("nextPage", "4-Davis"));
+	}
+
+	@Test
+	void testOwnerFullTextSearchTakesOneStatement() throws Exception {
+		// the ids come from the search index, then the owners are loaded with their pets
+		assertThat(search.isLoaded()).isTrue();
+		assertThat(statements(get("/owners/search").param("q", "davis"))).isEqualTo(1);
+
+		mockMvc.perform(get("/owners/search").param("q", "colman samantha"))
+				.andExpect(model().attribute("selections", contains(hasProperty("id", is(6)))));
+	}
+
+	@Test
+	void testPetEditForm() throws Exception {
+		// the owner with the pets, which include the edited pet, and their types; the pet
+		// is not loaded again
+		assertThat(statements(get("/owners/{ownerId}/pets/{petId}/edit", 1, 1))).isEqualTo(1);
+		assertThat(petTypeQueries()).isZero();
+	}
+
+	@Test
+	void testPetEditSubmission() throws Exception {
+		// the owner with the pets and their types, then in a single transaction the merge
+		// of the pet (pet, owner, type) and its update
+		assertThat(statements(post("/owners/{ownerId}/pets/{petId}/edit", 1, 1).param("id", "1")
+				.param("name", "Leonardo").param("type", "cat").param("birthDate", "2010-09-07"))).isEqualTo(5);
+		assertThat(petTypeQueries()).isZero();
+	}
+
+	@Test
+	void testPetCreationDoesNotQueryThePetTypes() throws Exception {
+		statements(get("/owners/{ownerId}/pets/new", 10));
+		assertThat(petTypeQueries()).isZero();
+		try {
+			statements(post("/owners/{ownerId}/pets/new", 10).param("name", "Statement").param("type", "dog")
+					.param("birthDate", "2015-02-12"));
+			assertThat(petTypeQueries()).isZero();
+		}
+		finally {
+			jdbcTemplate.update("DELETE FROM pets WHERE name LIKE 'Statement%'");
+		}
+	}
+
+	/**
+	 * @return how many times the pet types were queried since the statistics were cleared
+	 */
+	private long petTypeQueries() {
+		return statistics.getQueryStatistics("SELECT ptype FROM PetType ptype ORDER BY ptype.name")
+				.getExecutionCount();
+	}
+
+}
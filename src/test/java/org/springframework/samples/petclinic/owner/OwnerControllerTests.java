@@ -21,22 +21,37 @@ import java.util.Collections;
 import java.util.List;
 
 import org.assertj.core.util.Lists;
-import org.hamcrest.BaseMatcher;
-import org.hamcrest.Description;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.samples.petclinic.system.TimedCacheConfiguration;
+import org.springframework.samples.petclinic.system.UnitOfWorkConfiguration;
+import org.springframework.samples.petclinic.utility.CacheMaintenanceScheduler;
+import org.springframework.samples.petclinic.utility.PetTimedCache;
+import org.springframework.samples.petclinic.utility.TimedCache;
 import org.springframework.samples.petclinic.visit.Visit;
 import org.springframework.samples.petclinic.visit.VisitRepository;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasEntry;
 import static org.hamcrest.Matchers.hasProperty;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.model;
@@ -48,7 +63,15 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
  *
  * @author Colin But
  */
-@WebMvcTest(OwnerController.class)
+@WebMvcTest(value = OwnerController.class,
+		includeFilters = {
+	@ComponentScan.Filter(value = TimedCacheConfiguration.class, type = FilterType.ASSIGNABLE_TYPE),
+	@ComponentScan.Filter(value = CacheMaintenanceScheduler.class, type = FilterType.ASSIGNABLE_TYPE),
+	@ComponentScan.Filter(value = UnitOfWorkConfiguration.class, type = FilterType.ASSIGNABLE_TYPE),
+	@ComponentScan.Filter(value = PetTimedCache.class, type = FilterType.ASSIGNABLE_TYPE),
+	@ComponentScan.Filter(value = PetTypeRegistry.class, type = FilterType.ASSIGNABLE_TYPE),
+	}
+	)
 class OwnerControllerTests {
 
 	private static final int TEST_OWNER_ID = 1;
@@ -62,10 +85,30 @@ class OwnerControllerTests {
 	@MockBean
 	private VisitRepository visits;
 
+	@MockBean
+	private PetRepository pets;
+
+	@MockBean
+	private OwnerLastNameIndex lastNames;
+
+	@MockBean
+	private OwnerSearch search;
+
+	@MockBean
+	private PlatformTransactionManager transactionManager;
+
+	@Autowired
+	private TimedCache<Integer, Owner> ownerCache;
+
+	@Autowired
+	private TimedCache<Integer, List<Visit>> visitCache;
+
 	private Owner george;
 
 	@BeforeEach
 	void setup() {
+		ownerCache.invalidateAll();
+		visitCache.invalidateAll();
 		george = new Owner();
 		george.setId(TEST_OWNER_ID);
 		george.setFirstName("George");
@@ -84,7 +127,9 @@ class OwnerControllerTests {
 		given(this.owners.findById(TEST_OWNER_ID)).willReturn(george);
 		Visit visit = new Visit();
 		visit.setDate(LocalDate.now());
-		given(this.visits.findByPetId(max.getId())).willReturn(Collections.singletonList(visit));
+		visit.setPetId(max.getId());
+		given(this.visits.findRecentByPetIdIn(Collections.singleton(max.getId()), 6))
+				.willReturn(Collections.singletonList(visit));
 	}
 
 	@Test
@@ -98,6 +143,8 @@ class OwnerControllerTests {
 		mockMvc.perform(post("/owners/new").param("firstName", "Joe").param("lastName", "Bloggs")
 				.param("address", "123 Caramel Street").param("city", "London").param("telephone", "01316761638"))
 				.andExpect(status().is3xxRedirection());
+		verify(this.lastNames).saved(argThat(owner -> "Bloggs".equals(owner.getLastName())));
+		verify(this.search).saved(argThat(owner -> "London".equals(owner.getCity())));
 	}
 
 	@Test
@@ -118,15 +165,92 @@ class OwnerControllerTests {
 
 	@Test
 	void testProcessFindFormSuccess() throws Exception {
-		given(this.owners.findByLastName("")).willReturn(Lists.newArrayList(george, new Owner()));
-		mockMvc.perform(get("/owners")).andExpect(status().isOk()).andExpect(view().name("owners/ownersList"));
+		Owner betty = owner(2, "Davis");
+		given(this.lastNames.findIds("", OwnerController.DEFAULT_PAGE_SIZE + 1))
+			.willReturn(Lists.newArrayList(2, TEST_OWNER_ID));
+		given(this.owners.findAllWithPetsById(Lists.newArrayList(2, TEST_OWNER_ID)))
+			.willReturn(Lists.newArrayList(betty, george));
+		mockMvc.perform(get("/owners")).andExpect(status().isOk()).andExpect(view().name("owners/ownersList"))
+				.andExpect(model().attribute("selections", Lists.newArrayList(betty, george)))
+				.andExpect(model().attributeDoesNotExist("previousPage", "nextPage"));
 	}
 
 	@Test
 	void testProcessFindFormByLastName() throws Exception {
-		given(this.owners.findByLastName(george.getLastName())).willReturn(Lists.newArrayList(george));
+		given(this.lastNames.findIds(george.getLastName(), OwnerController.DEFAULT_PAGE_SIZE + 1))
+			.willReturn(Lists.newArrayList(TEST_OWNER_ID));
 		mockMvc.perform(get("/owners").param("lastName", "Franklin")).andExpect(status().is3xxRedirection())
 				.andExpect(view().name("redirect:/owners/" + TEST_OWNER_ID));
+		verify(this.owners, never()).findAllWithPetsById(any());
+	}
+
+	@Test
+	void testProcessFindFormFirstPageLinksToTheNextOne() throws Exception {
+		given(this.lastNames.findIds("", 3)).willReturn(Lists.newArrayList(2, 3, 4));
+		given(this.owners.findAllWithPetsById(Lists.newArrayList(2, 3)))
+			.willReturn(Lists.newArrayList(owner(2, "Davis"), owner(3, "Davis")));
+		mockMvc.perform(get("/owners").param("size", "2")).andExpect(status().isOk())
+				.andExpect(view().name("owners/ownersList")).andExpect(model().attribute("size", 2))
+				.andExpect(model().attribute("nextPage", "3-Davis"))
+				.andExpect(model().attributeDoesNotExist("previousPage"));
+	}
+
+	@Test
+	void testProcessFindFormPagesMixedCaseNamesInTheOrderOfTheIndex() throws Exception {
+		// the index ignores case, the repository orders "Vance" before "van Dyke"
+		given(this.lastNames.findIds("", 3)).willReturn(Lists.newArrayList(1, 2, 3));
+		given(this.owners.findAllWithPetsById(Lists.newArrayList(1, 2)))
+			.willReturn(Lists.newArrayList(owner(2, "Vance"), owner(1, "van Dyke")));
+		given(this.lastNames.findIdsAfter("", "Vance", 2, 3)).willReturn(Lists.newArrayList(3));
+		given(this.owners.findAllWithPetsById(Lists.newArrayList(3)))
+			.willReturn(Lists.newArrayList(owner(3, "Vandermeer")));
+
+		String nextPage = (String) mockMvc.perform(get("/owners").param("size", "2")).andExpect(status().isOk())
+				.andExpect(model().attribute("selections",
+						contains(hasProperty("id", is(1)), hasProperty("id", is(2)))))
+				.andReturn().getModelAndView().getModel().get("nextPage");
+		assertThat(nextPage).isEqualTo("2-Vance");
+
+		mockMvc.perform(get("/owners").param("size", "2").param("after", nextPage)).andExpect(status().isOk())
+				.andExpect(model().attribute("selections", contains(hasProperty("id", is(3)))))
+				.andExpect(model().attribute("previousPage", "3-Vandermeer"))
+				.andExpect(model().attributeDoesNotExist("nextPage"));
+	}
+
+	@Test
+	void testProcessFindFormSeeksAfterTheCursor() throws Exception {
+		given(this.lastNames.findIdsAfter("", "Davis", 3, 3))
+			.willReturn(Lists.newArrayList(5, 6, 7));
+		given(this.owners.findAllWithPetsById(Lists.newArrayList(5, 6)))
+			.willReturn(Lists.newArrayList(owner(5, "Escobito"), owner(6, "Estaban")));
+		mockMvc.perform(get("/owners").param("size", "2").param("after", "3-Davis")).andExpect(status().isOk())
+				.andExpect(model().attribute("previousPage", "5-Escobito"))
+				.andExpect(model().attribute("nextPage", "6-Estaban"));
+		verify(this.lastNames, never()).findIds(any(), anyInt());
+	}
+
+	@Test
+	void testProcessFindFormSeeksBeforeTheCursor() throws Exception {
+		// closest first, as the repository returns them
+		given(this.lastNames.findIdsBefore("", "Escobito", 5, 3))
+			.willReturn(Lists.newArrayList(4, 3));
+		given(this.owners.findAllWithPetsById(Lists.newArrayList(3, 4)))
+			.willReturn(Lists.newArrayList(owner(3, "Davis"), owner(4, "Davis")));
+		mockMvc.perform(get("/owners").param("size", "2").param("before", "5-Escobito")).andExpect(status().isOk())
+				.andExpect(model().attributeDoesNotExist("previousPage"))
+				.andExpect(model().attribute("nextPage", "4-Davis"));
+	}
+
+	@Test
+	void testProcessFindFormClampsThePageSize() throws Exception {
+		mockMvc.perform(get("/owners").param("lastName", "Unknown Surname").param("size", "100000"))
+				.andExpect(status().isOk());
+		verify(this.lastNames).findIds("Unknown Surname", OwnerController.MAX_PAGE_SIZE + 1);
+	}
+
+	@Test
+	void testProcessFindFormRejectsAnInvalidCursor() throws Exception {
+		mockMvc.perform(get("/owners").param("after", "Davis")).andExpect(status().isBadRequest());
 	}
 
 	@Test
@@ -137,6 +261,18 @@ class OwnerControllerTests {
 				.andExpect(view().name("owners/findOwners"));
 	}
 
+	@Test
+	void testProcessSearchListsTheOwnersInTheOrderOfTheSearch() throws Exception {
+		given(this.search.findIds("davis madison", OwnerController.DEFAULT_PAGE_SIZE))
+			.willReturn(Lists.newArrayList(4, 2));
+		given(this.owners.findAllWithPetsById(Lists.newArrayList(4, 2)))
+			.willReturn(Lists.newArrayList(owner(2, "Davis"), owner(4, "Davis")));
+		mockMvc.perform(get("/owners/search").param("q", "davis madison")).andExpect(status().isOk())
+				.andExpect(model().attribute("selections",
+						contains(hasProperty("id", is(4)), hasProperty("id", is(2)))))
+				.andExpect(view().name("owners/ownersList"));
+	}
+
 	@Test
 	void testInitUpdateOwnerForm() throws Exception {
 		mockMvc.perform(get("/owners/{ownerId}/edit", TEST_OWNER_ID)).andExpect(status().isOk())
@@ -155,6 +291,10 @@ class OwnerControllerTests {
 				.param("lastName", "Bloggs").param("address", "123 Caramel Street").param("city", "London")
 				.param("telephone", "01616291589")).andExpect(status().is3xxRedirection())
 				.andExpect(view().name("redirect:/owners/{ownerId}"));
+		verify(this.lastNames).saved(
+				argThat(owner -> owner.getId() == TEST_OWNER_ID && "Bloggs".equals(owner.getLastName())));
+		verify(this.search)
+			.saved(argThat(owner -> owner.getId() == TEST_OWNER_ID && "London".equals(owner.getCity())));
 	}
 
 	@Test
@@ -176,24 +316,60 @@ class OwnerControllerTests {
 				.andExpect(model().attribute("owner", hasProperty("city", is("Madison"))))
 				.andExpect(model().attribute("owner", hasProperty("telephone", is("6085551023"))))
 				.andExpect(model().attribute("owner", hasProperty("pets", not(empty()))))
-				.andExpect(model().attribute("owner", hasProperty("pets", new BaseMatcher<List<Pet>>() {
-
-					@Override
-					public boolean matches(Object item) {
-						@SuppressWarnings("unchecked")
-						List<Pet> pets = (List<Pet>) item;
-						Pet pet = pets.get(0);
-						if (pet.getVisits().isEmpty()) {
-							return false;
-						}
-						return true;
-					}
-
-					@Override
-					public void describeTo(Description description) {
-						description.appendText("Max did not have any visits");
-					}
-				}))).andExpect(view().name("owners/ownerDetails"));
+				.andExpect(model().attribute("visits", hasEntry(is(1), not(empty()))))
+				.andExpect(view().name("owners/ownerDetails"));
+	}
+
+	@Test
+	void testShowOwnerDoesNotModifyTheCachedPets() throws Exception {
+		mockMvc.perform(get("/owners/{ownerId}", TEST_OWNER_ID)).andExpect(status().isOk());
+
+		assertThat(ownerCache.get(TEST_OWNER_ID).getPets().get(0).getVisits()).isEmpty();
+	}
+
+	@Test
+	void testShowOwnerTwiceHitsTheDatabaseOnce() throws Exception {
+		mockMvc.perform(get("/owners/{ownerId}", TEST_OWNER_ID)).andExpect(status().isOk());
+		mockMvc.perform(get("/owners/{ownerId}", TEST_OWNER_ID)).andExpect(status().isOk())
+				.andExpect(model().attribute("owner", hasProperty("lastName", is("Franklin"))));
+
+		verify(this.owners, times(1)).findById(TEST_OWNER_ID);
+		verify(this.visits, times(1)).findRecentByPetIdIn(Collections.singleton(1), 6);
+	}
+
+	@Test
+	void testShowOwnerShowsTheRecentVisitsAndLinksToOlderOnes() throws Exception {
+		List<Visit> recent = Lists.newArrayList();
+		for (int day = 0; day < 6; day++) {
+			Visit visit = new Visit().setDate(LocalDate.now().minusDays(day));
+			visit.setId(6 - day);
+			visit.setPetId(1);
+			recent.add(visit);
+		}
+		given(this.visits.findRecentByPetIdIn(Collections.singleton(1), 6)).willReturn(recent);
+
+		mockMvc.perform(get("/owners/{ownerId}", TEST_OWNER_ID)).andExpect(status().isOk())
+				.andExpect(model().attribute("olderVisits", contains(1)))
+				.andExpect(model().attribute("visits", hasEntry(1, recent.subList(0, 5))));
+	}
+
+	@Test
+	void testUpdateOwnerEvictsCachedOwner() throws Exception {
+		mockMvc.perform(get("/owners/{ownerId}", TEST_OWNER_ID)).andExpect(status().isOk());
+		mockMvc.perform(post("/owners/{ownerId}/edit", TEST_OWNER_ID).param("firstName", "Joe")
+				.param("lastName", "Bloggs").param("address", "123 Caramel Street").param("city", "London")
+				.param("telephone", "01616291589")).andExpect(status().is3xxRedirection());
+		mockMvc.perform(get("/owners/{ownerId}", TEST_OWNER_ID)).andExpect(status().isOk());
+
+		verify(this.owners, times(2)).findById(TEST_OWNER_ID);
+	}
+
+	private static Owner owner(int id, String lastName) {
+		Owner owner = new Owner();
+		owner.setId(id);
+		owner.setFirstName("Test");
+		owner.setLastName(lastName);
+		return owner;
 	}
 
 }
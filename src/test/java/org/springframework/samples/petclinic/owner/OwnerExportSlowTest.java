@@ -0,0 +1,133 @@
+package org.springframework.samples.petclinic.owner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.OutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Exports a clinic of one million visits and checks that the heap retained while writing
+ * stays under {@link #HEAP_CEILING_BYTES}, however much has been written. Excluded from the
+ * regular build; run with {@code ./mvnw test -Dtest=OwnerExportSlowTest}.
+ */
+@DataJpaTest(includeFilters = @ComponentScan.Filter(value = OwnerExporter.class, type = FilterType.ASSIGNABLE_TYPE))
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@DirtiesContext
+class OwnerExportSlowTest {
+
+	private static final int OWNERS = 100_000;
+
+	private static final int PETS = 2 * OWNERS;
+
+	private static final int VISITS = 1_000_000;
+
+	private static final long HEAP_CEILING_BYTES = 32L * 1024 * 1024;
+
+	/** How often the retained heap is measured. */
+	private static final long SAMPLE_BYTES = 16L * 1024 * 1024;
+
+	@Autowired
+	private OwnerExporter exporter;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Test
+	void testNdjsonExportRetainsConstantHeap() throws Exception {
+		insertClinic();
+		HeapSampler out = new HeapSampler();
+		exporter.writeNdjson(out);
+
+		assertThat(out.lines).isEqualTo(10 + OWNERS);
+		assertRetainedHeapUnderCeiling(out);
+	}
+
+	@Test
+	void testCsvExportRetainsConstantHeap() throws Exception {
+		insertClinic();
+		HeapSampler out = new HeapSampler();
+		exporter.writeCsv(out);
+
+		// the header, the sample visits and pets without visits, then the new visits
+		assertThat(out.lines).isEqualTo(1 + 15 + VISITS);
+		assertRetainedHeapUnderCeiling(out);
+	}
+
+	private void insertClinic() {
+		if (jdbcTemplate.queryForObject("SELECT COUNT(*) FROM visits", Integer.class) > VISITS) {
+			return;
+		}
+		// the identity columns number the new rows after the sample ones
+		int firstOwner = jdbcTemplate.queryForObject("SELECT MAX(id) FROM owners", Integer.class) + 1;
+		int firstPet = jdbcTemplate.queryForObject("SELECT MAX(id) FROM pets", Integer.class) + 1;
+		jdbcTemplate.update("INSERT INTO owners (first_name, last_name, address, city, telephone) "
+				+ "SELECT 'First' || x, 'Last' || x, x || ' Main St.', 'Madison', '608555' || x "
+				+ "FROM SYSTEM_RANGE(1, ?)", OWNERS);
+		jdbcTemplate.update("INSERT INTO pets (name, birth_date, type_id, owner_id) "
+				+ "SELECT 'Pet' || x, DATE '2010-01-01', MOD(x, 6) + 1, ? + (x - 1) / 2 FROM SYSTEM_RANGE(1, ?)",
+				firstOwner, PETS);
+		jdbcTemplate.update("INSERT INTO visits (pet_id, visit_date, description) "
+				+ "SELECT ? + MOD(x, ?), DATEADD('DAY', MOD(x, 3650), DATE '2013-01-01'), 'check-up ' || x "
+				+ "FROM SYSTEM_RANGE(1, ?)", firstPet, PETS, VISITS);
+	}
+
+	private static void assertRetainedHeapUnderCeiling(HeapSampler out) {
+		assertThat(out.maximumRetainedBytes).as("heap retained over %,d KB while writing %,d KB",
+				out.baselineBytes / 1024, out.bytes / 1024).isLessThan(HEAP_CEILING_BYTES);
+	}
+
+	private static long usedHeapAfterGc() {
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		Runtime runtime = Runtime.getRuntime();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	/**
+	 * Discards what is written, measuring the heap retained since it was created every
+	 * {@link #SAMPLE_BYTES}.
+	 */
+	private static class HeapSampler extends OutputStream {
+
+		final long baselineBytes = usedHeapAfterGc();
+
+		long bytes;
+
+		long lines;
+
+		long maximumRetainedBytes;
+
+		@Override
+		public void write(int b) {
+			count(b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			for (int i = off; i < off + len; i++) {
+				count(b[i]);
+			}
+		}
+
+		private void count(int b) {
+			if (b == '\n') {
+				lines++;
+			}
+			if (++bytes % SAMPLE_BYTES == 0) {
+				maximumRetainedBytes = Math.max(maximumRetainedBytes, usedHeapAfterGc() - baselineBytes);
+			}
+		}
+
+	}
+
+}
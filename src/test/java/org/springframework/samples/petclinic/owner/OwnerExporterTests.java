@@ -0,0 +1,85 @@
+package org.springframework.samples.petclinic.owner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+@DataJpaTest(includeFilters = @ComponentScan.Filter(value = OwnerExporter.class, type = FilterType.ASSIGNABLE_TYPE))
+class OwnerExporterTests {
+
+	@Autowired
+	private OwnerExporter exporter;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private DataSource dataSource;
+
+	@BeforeEach
+	void setup() {
+		// rolled back after each test
+		jdbcTemplate.update("INSERT INTO owners (id, first_name, last_name, address, city, telephone) "
+				+ "VALUES (11, 'Ann', 'O\"Neil', '1 Main St., Apt 2', 'Madison', '6085550000')");
+	}
+
+	@Test
+	void testNdjsonHasOneOwnerPerLineWithPetsAndVisits() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		exporter.writeNdjson(out);
+
+		String[] lines = out.toString(StandardCharsets.UTF_8.name()).split("\n");
+		assertThat(lines).hasSize(11);
+		assertThat(lines[5]).isEqualTo("{\"id\":6,\"firstName\":\"Jean\",\"lastName\":\"Coleman\","
+				+ "\"address\":\"105 N. Lake St.\",\"city\":\"Monona\",\"telephone\":\"6085552654\",\"pets\":["
+				+ "{\"id\":7,\"name\":\"Samantha\",\"birthDate\":\"2012-09-04\",\"type\":\"cat\",\"visits\":["
+				+ "{\"id\":1,\"date\":\"2013-01-01\",\"description\":\"rabies shot\"},"
+				+ "{\"id\":4,\"date\":\"2013-01-04\",\"description\":\"spayed\"}]},"
+				+ "{\"id\":8,\"name\":\"Max\",\"birthDate\":\"2012-09-04\",\"type\":\"cat\",\"visits\":["
+				+ "{\"id\":2,\"date\":\"2013-01-02\",\"description\":\"rabies shot\"},"
+				+ "{\"id\":3,\"date\":\"2013-01-03\",\"description\":\"neutered\"}]}]}");
+		assertThat(lines[0]).startsWith("{\"id\":1,").endsWith("\"visits\":[]}]}");
+		assertThat(lines[10]).isEqualTo("{\"id\":11,\"firstName\":\"Ann\",\"lastName\":\"O\\\"Neil\","
+				+ "\"address\":\"1 Main St., Apt 2\",\"city\":\"Madison\",\"telephone\":\"6085550000\",\"pets\":[]}");
+	}
+
+	@Test
+	void testCsvHasOneLinePerVisitPetOrOwner() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		exporter.writeCsv(out);
+
+		String[] lines = out.toString(StandardCharsets.UTF_8.name()).split("\r\n");
+		// 13 pets, two of which have two visits each, and an owner without pets
+		assertThat(lines).hasSize(1 + 15 + 1);
+		assertThat(lines[0]).isEqualTo("owner_id,first_name,last_name,address,city,telephone,pet_id,pet_name,"
+				+ "birth_date,pet_type,visit_id,visit_date,description");
+		assertThat(lines[1]).isEqualTo(
+				"1,George,Franklin,110 W. Liberty St.,Madison,6085551023,1,Leo,2010-09-07,cat,,,");
+		assertThat(lines).contains("6,Jean,Coleman,105 N. Lake St.,Monona,6085552654,8,Max,2012-09-04,cat,3,"
+				+ "2013-01-03,neutered");
+		assertThat(lines[16]).isEqualTo("11,Ann,\"O\"\"Neil\",\"1 Main St., Apt 2\",Madison,6085550000,,,,,,,");
+	}
+
+	@Test
+	void testOwnersReadInBatchesAreWrittenOnce() throws Exception {
+		ByteArrayOutputStream all = new ByteArrayOutputStream();
+		exporter.writeNdjson(all);
+		ByteArrayOutputStream batched = new ByteArrayOutputStream();
+		new OwnerExporter(dataSource, 2, 3).writeNdjson(batched);
+
+		assertThat(batched.toString(StandardCharsets.UTF_8.name()))
+			.isEqualTo(all.toString(StandardCharsets.UTF_8.name()));
+	}
+
+}
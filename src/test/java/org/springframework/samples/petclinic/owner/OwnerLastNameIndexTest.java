@@ -0,0 +1,94 @@
+package org.springframework.samples.petclinic.owner;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class OwnerLastNameIndexTest {
+
+	private final OwnerRepository owners = mock(OwnerRepository.class);
+
+	private final OwnerLastNameIndex lastNames = new OwnerLastNameIndex(owners);
+
+	@Test
+	void testLookupsQueryTheDatabaseUntilLoaded() {
+		given(owners.findIdsByLastName("Da", PageRequest.of(0, 3))).willReturn(Arrays.asList(2, 4));
+		given(owners.findIdsByLastNameAfter("Da", "Davis", 2, PageRequest.of(0, 3)))
+			.willReturn(Collections.singletonList(4));
+		given(owners.findIdsByLastNameBefore("Da", "Davis", 4, PageRequest.of(0, 3)))
+			.willReturn(Collections.singletonList(2));
+
+		assertFalse(lastNames.isLoaded());
+		assertEquals(Arrays.asList(2, 4), lastNames.findIds("Da", 3));
+		assertEquals(Collections.singletonList(4), lastNames.findIdsAfter("Da", "Davis", 2, 3));
+		assertEquals(Collections.singletonList(2), lastNames.findIdsBefore("Da", "Davis", 4, 3));
+	}
+
+	@Test
+	void testLoadedLookupsDoNotQueryTheDatabase() {
+		given(owners.findAllLastNames()).willReturn(Arrays.asList(new Object[] { 1, "Franklin" },
+				new Object[] { 2, "Davis" }, new Object[] { 4, "Davis" }, new Object[] { 6, "Coleman" }));
+		lastNames.load();
+
+		assertTrue(lastNames.isLoaded());
+		assertEquals(Arrays.asList(2, 4), lastNames.findIds("da", 3));
+		assertEquals(Arrays.asList(4, 1), lastNames.findIdsAfter("", "Davis", 2, 3));
+		assertEquals(Arrays.asList(2, 6), lastNames.findIdsBefore("", "Davis", 4, 3));
+		verify(owners, never()).findIdsByLastName(any(), any());
+	}
+
+	@Test
+	void testSavedOwnersAreIndexed() {
+		given(owners.findAllLastNames()).willReturn(Arrays.asList(new Object[] { 1, "Franklin" },
+				new Object[] { 2, "Davis" }));
+		lastNames.load();
+
+		lastNames.saved(owner(1, "Dalton"));
+		lastNames.saved(owner(11, "Daly"));
+
+		assertEquals(Arrays.asList(1, 11, 2), lastNames.findIds("Da", 10));
+		assertEquals(Collections.emptyList(), lastNames.findIds("F", 10));
+	}
+
+	@Test
+	void testOwnersSavedWhileLoadingAreIndexed() {
+		given(owners.findAllLastNames()).willAnswer(invocation -> {
+			// saved after the query read the owners
+			lastNames.saved(owner(1, "Dalton"));
+			return Arrays.asList(new Object[] { 1, "Franklin" }, new Object[] { 2, "Davis" });
+		});
+		lastNames.load();
+
+		assertEquals(Arrays.asList(1, 2), lastNames.findIds("Da", 10));
+	}
+
+	@Test
+	void testFailedLoadKeepsQueryingTheDatabase() {
+		given(owners.findAllLastNames()).willThrow(new IllegalStateException("no database"));
+		lastNames.load();
+		lastNames.saved(owner(1, "Dalton"));
+
+		assertFalse(lastNames.isLoaded());
+		lastNames.findIds("Da", 10);
+		verify(owners).findIdsByLastName("Da", PageRequest.of(0, 10));
+	}
+
+	private static Owner owner(int id, String lastName) {
+		Owner owner = new Owner();
+		owner.setId(id);
+		owner.setLastName(lastName);
+		return owner;
+	}
+
+}
@@ -0,0 +1,122 @@
+package org.springframework.samples.petclinic.owner;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class OwnerSearchTest {
+
+	private final OwnerRepository owners = mock(OwnerRepository.class);
+
+	private final PetRepository pets = mock(PetRepository.class);
+
+	private final OwnerSearch search = new OwnerSearch(owners, pets);
+
+	@Test
+	void testSearchesQueryTheDatabaseUntilLoaded() {
+		given(owners.findIdsByLastName("Davis", PageRequest.of(0, 5))).willReturn(Arrays.asList(2, 4));
+
+		assertFalse(search.isLoaded());
+		assertEquals(Arrays.asList(2, 4), search.findIds(" Davis ", 5));
+	}
+
+	@Test
+	void testLoadedSearchesMatchEveryField() {
+		load();
+
+		assertTrue(search.isLoaded());
+		assertEquals(Arrays.asList(2, 4), search.findIds("davis", 10));
+		assertEquals(Collections.singletonList(1), search.findIds("george madison", 10));
+		assertEquals(Collections.singletonList(6), search.findIds("samantha", 10));
+		assertEquals(Collections.singletonList(4), search.findIds("6085553198", 10));
+		assertEquals(Collections.singletonList(2), search.findIds("638 cardinal", 10));
+		// misspelled
+		assertEquals(Collections.singletonList(1), search.findIds("frnaklin", 10));
+		verify(owners, never()).findIdsByLastName(any(), any());
+	}
+
+	@Test
+	void testSavedOwnersKeepTheirPets() {
+		load();
+
+		search.saved(owner(6, "Jean", "Smith", "Sun Prairie"));
+		search.saved(owner(11, "Maria", "Lopez", "Madison"));
+
+		assertEquals(Collections.singletonList(6), search.findIds("smith max", 10));
+		assertEquals(Arrays.asList(1, 11), search.findIds("madison", 10));
+		assertEquals(Collections.emptyList(), search.findIds("coleman", 10));
+	}
+
+	@Test
+	void testSavedPetsReplaceTheirPreviousName() {
+		load();
+		Owner jean = owner(6, "Jean", "Coleman", "Monona");
+		Pet samantha = pet(7, "Samantha");
+		jean.setPetsInternal(new HashSet<>(Arrays.asList(samantha, pet(8, "Max"))));
+
+		search.savedPet(jean, pet(7, "Sammy"));
+		assertEquals(Collections.emptyList(), search.findIds("samantha", 10));
+		assertEquals(Collections.singletonList(6), search.findIds("sammy max coleman", 10));
+
+		// a new pet is not one of the owner's pets yet
+		samantha.setName("Sammy");
+		search.savedPet(jean, pet(20, "Rosy"));
+		assertEquals(Collections.singletonList(6), search.findIds("rosy sammy max", 10));
+	}
+
+	@Test
+	void testChangesSavedWhileLoadingAreIndexed() {
+		given(pets.findAllOwnerIdsAndNames()).willReturn(Collections.singletonList(new Object[] { 1, "Leo" }));
+		given(owners.findAllSearchFields()).willAnswer(invocation -> {
+			// saved after the query read the owners
+			search.saved(owner(1, "George", "Dalton", "Madison"));
+			return Collections.singletonList(
+					new Object[] { 1, "George", "Franklin", "110 W. Liberty St.", "Madison", "6085551023" });
+		});
+		search.load();
+
+		assertEquals(Collections.singletonList(1), search.findIds("dalton leo", 10));
+		assertEquals(Collections.emptyList(), search.findIds("franklin", 10));
+	}
+
+	private void load() {
+		given(pets.findAllOwnerIdsAndNames()).willReturn(Arrays.asList(new Object[] { 1, "Leo" },
+				new Object[] { 2, "Basil" }, new Object[] { 4, "Iggy" }, new Object[] { 6, "Samantha" },
+				new Object[] { 6, "Max" }));
+		given(owners.findAllSearchFields()).willReturn(Arrays.asList(
+				new Object[] { 1, "George", "Franklin", "110 W. Liberty St.", "Madison", "6085551023" },
+				new Object[] { 2, "Betty", "Davis", "638 Cardinal Ave.", "Sun Prairie", "6085551749" },
+				new Object[] { 4, "Harold", "Davis", "563 Friendly St.", "Windsor", "6085553198" },
+				new Object[] { 6, "Jean", "Coleman", "105 N. Lake St.", "Monona", "6085552654" }));
+		search.load();
+	}
+
+	private static Owner owner(int id, String firstName, String lastName, String city) {
+		Owner owner = new Owner();
+		owner.setId(id);
+		owner.setFirstName(firstName);
+		owner.setLastName(lastName);
+		owner.setCity(city);
+		return owner;
+	}
+
+	private static Pet pet(int id, String name) {
+		Pet pet = new Pet();
+		pet.setId(id);
+		pet.setName(name);
+		return pet;
+	}
+
+}
@@ -1,7 +1,87 @@
 package org.springframework.samples.petclinic.owner;
 
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class OwnerTest {
 
+	private static Pet pet(Integer id, String name) {
+		Pet pet = new Pet();
+		pet.setId(id);
+		pet.setName(name);
+		return pet;
+	}
+
+	private static List<String> names(List<Pet> pets) {
+		return pets.stream().map(Pet::getName).collect(Collectors.toList());
+	}
+
+	@Test
+	void testPetsAreOrderedByNameIgnoringCase() {
+		Owner owner = new Owner();
+		owner.setPetsInternal(new HashSet<>(Arrays.asList(pet(1, "Rosy"), pet(2, "basil"))));
+		owner.getPets();
+
+		owner.addPet(pet(null, "Leo"));
+
+		assertEquals(Arrays.asList("basil", "Leo", "Rosy"), names(owner.getPets()));
+	}
+
+	@Test
+	void testRenamedPetMovesAndRemovedPetDisappears() {
+		Owner owner = new Owner();
+		Pet leo = pet(null, "Leo");
+		Pet basil = pet(null, "Basil");
+		owner.addPet(leo);
+		owner.addPet(basil);
+		owner.getPets();
+
+		leo.setName("Alf");
+		owner.removePet(basil);
+
+		assertEquals(Arrays.asList("Alf"), names(owner.getPets()));
+	}
+
+	@Test
+	void testPetsFilledAfterTheViewWasBuiltAreListed() {
+		Owner owner = new Owner();
+		owner.getPets();
+
+		owner.getPetsInternal().add(pet(1, "Leo"));
+
+		assertEquals(Arrays.asList("Leo"), names(owner.getPets()));
+	}
+
+	@Test
+	void testPetsListedBeforeAChangeStayTheSame() {
+		Owner owner = new Owner();
+		owner.setPetsInternal(new HashSet<>(Arrays.asList(pet(1, "Rosy"))));
+		List<Pet> before = owner.getPets();
+
+		owner.addPet(pet(null, "Leo"));
+
+		assertEquals(Arrays.asList("Rosy"), names(before));
+		assertEquals(Arrays.asList("Leo", "Rosy"), names(owner.getPets()));
+	}
+
+	@Test
+	void testGetPetByNameAndPrefix() {
+		Owner owner = new Owner();
+		Pet leo = pet(null, "Leo");
+		owner.setPetsInternal(new HashSet<>(Arrays.asList(pet(1, "Lucky"), pet(2, "Max"))));
+		owner.addPet(leo);
+
+		assertSame(leo, owner.getPet("leo"));
+		assertNull(owner.getPet("leo", true));
+		assertEquals("Max", owner.getPet("MAX", true).getName());
+		assertNull(owner.getPet("Ma"));
+		assertEquals(Arrays.asList("Leo", "Lucky"), names(owner.getPetsByNamePrefix("l")));
+	}
+
 }
@@ -0,0 +1,53 @@
+package org.springframework.samples.petclinic.owner;
+
+import static org.mockito.BDDMockito.given;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+/**
+ * Test class for {@link OwnerTypeaheadController}
+ */
+@WebMvcTest(OwnerTypeaheadController.class)
+class OwnerTypeaheadControllerTests {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@MockBean
+	private OwnerTypeahead typeahead;
+
+	@Test
+	void testSuggestionsAreWrittenAsJson() throws Exception {
+		given(typeahead.suggest("dav", 5)).willReturn(
+				Arrays.asList(new OwnerTypeahead.Suggestion(4, "Harold Davis", "Windsor", 2),
+						new OwnerTypeahead.Suggestion(2, "Betty Davis", "Sun Prairie", 1)));
+
+		mockMvc.perform(get("/owners/typeahead").param("q", "dav").param("size", "5")).andExpect(status().isOk())
+				.andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+				.andExpect(jsonPath("$.length()").value(2)).andExpect(jsonPath("$[0].id").value(4))
+				.andExpect(jsonPath("$[0].name").value("Harold Davis"))
+				.andExpect(jsonPath("$[0].city").value("Windsor")).andExpect(jsonPath("$[0].petCount").value(2))
+				.andExpect(jsonPath("$[1].id").value(2));
+	}
+
+	@Test
+	void testSizeDefaultsToTheMost() throws Exception {
+		given(typeahead.suggest("dav", OwnerTypeahead.MAX_SIZE)).willReturn(
+				Arrays.asList(new OwnerTypeahead.Suggestion(4, "Harold Davis", "Windsor", 2)));
+
+		mockMvc.perform(get("/owners/typeahead").param("q", "dav")).andExpect(status().isOk())
+				.andExpect(jsonPath("$.length()").value(1));
+	}
+
+}
@@ -0,0 +1,163 @@
+package org.springframework.samples.petclinic.owner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.samples.petclinic.utility.CacheStats;
+import org.springframework.test.annotation.DirtiesContext;
+
+/**
+ * Sends {@link #REQUESTS_PER_SECOND} typeahead requests a second over HTTP for
+ * {@link #SECONDS} seconds, as a few clerks typing names would, while owners are saved
+ * every {@link #SAVE_INTERVAL_MILLIS}, and checks that the endpoint keeps up, that its
+ * latency stays low and that most requests are answered from the cache. Latencies are
+ * measured from when each request was due, so a slow response delays the measure of the
+ * requests queued behind it. Excluded from the regular build; run with
+ * {@code ./mvnw test -Dtest=OwnerTypeaheadSlowTest}.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@DirtiesContext
+class OwnerTypeaheadSlowTest {
+
+	private static final int OWNERS = 100_000;
+
+	private static final int REQUESTS_PER_SECOND = 2_000;
+
+	private static final int SECONDS = 10;
+
+	private static final int CLIENTS = 32;
+
+	private static final long SAVE_INTERVAL_MILLIS = 1_000;
+
+	private static final long P99_CEILING_MILLIS = 50;
+
+	/** The names typed, one letter at a time. */
+	private static final List<String> NAMES = Arrays.asList("davis", "franklin", "george f", "coleman",
+			"madison", "last42", "first7 last7", "escobar", "black", "rodriquez", "estaban", "schroeder");
+
+	@Autowired
+	private TestRestTemplate restTemplate;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private OwnerSearch search;
+
+	@Autowired
+	private OwnerTypeahead typeahead;
+
+	@Test
+	void testTypeaheadSustainsTheRequestRate() throws Exception {
+		insertOwners();
+		search.load();
+		List<String> queries = new ArrayList<>();
+		for (String name : NAMES) {
+			for (int length = 1; length <= name.length(); length++) {
+				queries.add(name.substring(0, length));
+			}
+		}
+		CacheStats before = typeahead.stats();
+
+		ExecutorService clients = Executors.newFixedThreadPool(CLIENTS + 1);
+		long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+		long end = start + TimeUnit.SECONDS.toNanos(SECONDS);
+		AtomicLong errors = new AtomicLong();
+		List<Future<long[]>> latencies = new ArrayList<>();
+		for (int client = 0; client < CLIENTS; client++) {
+			int first = client;
+			latencies.add(clients.submit(() -> send(queries, first, start, errors)));
+		}
+		Future<Integer> saves = clients.submit(() -> saveOwners(end));
+
+		long[] all = latencies.stream().flatMapToLong(future -> Arrays.stream(get(future))).sorted().toArray();
+		int saved = saves.get();
+		clients.shutdown();
+		double seconds = (System.nanoTime() - start) / 1e9;
+		long p99 = all[(int) (all.length * 0.99)];
+		long misses = typeahead.stats().getMissCount() - before.getMissCount();
+
+		assertThat(errors.get()).isZero();
+		assertThat(all.length / seconds).as("requests a second").isGreaterThan(REQUESTS_PER_SECOND * 0.95);
+		assertThat(p99).as("p99 latency in nanoseconds, max %.2f ms", all[all.length - 1] / 1e6)
+				.isLessThan(TimeUnit.MILLISECONDS.toNanos(P99_CEILING_MILLIS));
+		// every save drops the cache, then each query misses once
+		assertThat(misses).as("misses after %d saves", saved)
+				.isLessThanOrEqualTo((long) (saved + 1) * queries.size());
+	}
+
+	/**
+	 * Sends one client's share of the requests, each when it is due.
+	 * @return the latency of each request in nanoseconds
+	 */
+	private long[] send(List<String> queries, int first, long start, AtomicLong errors) throws InterruptedException {
+		long interval = TimeUnit.SECONDS.toNanos(1) * CLIENTS / REQUESTS_PER_SECOND;
+		int count = REQUESTS_PER_SECOND * SECONDS / CLIENTS;
+		// spread the clients over the interval
+		long due = start + interval * first / CLIENTS;
+		long[] latencies = new long[count];
+		for (int i = 0; i < count; i++, due += interval) {
+			long wait = due - System.nanoTime();
+			if (wait > 0) {
+				TimeUnit.NANOSECONDS.sleep(wait);
+			}
+			String query = queries.get((first * 7 + i) % queries.size());
+			ResponseEntity<String> response = restTemplate.getForEntity("/owners/typeahead?q={q}", String.class,
+					query);
+			if (response.getStatusCode() != HttpStatus.OK) {
+				errors.incrementAndGet();
+			}
+			latencies[i] = System.nanoTime() - due;
+		}
+		return latencies;
+	}
+
+	private int saveOwners(long end) throws InterruptedException {
+		int saved = 0;
+		while (System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SAVE_INTERVAL_MILLIS) < end) {
+			TimeUnit.MILLISECONDS.sleep(SAVE_INTERVAL_MILLIS);
+			int id = 1 + saved % 10;
+			Owner owner = new Owner();
+			owner.setId(id);
+			owner.setFirstName("Renamed" + saved);
+			owner.setLastName("Davis");
+			owner.setCity("Madison");
+			jdbcTemplate.update("UPDATE owners SET first_name = ?, last_name = ?, city = ? WHERE id = ?",
+					owner.getFirstName(), owner.getLastName(), owner.getCity(), id);
+			search.saved(owner);
+			saved++;
+		}
+		return saved;
+	}
+
+	private void insertOwners() {
+		jdbcTemplate.update("INSERT INTO owners (first_name, last_name, address, city, telephone) "
+				+ "SELECT 'First' || x, 'Last' || x, x || ' Main St.', 'Madison', '608555' || x "
+				+ "FROM SYSTEM_RANGE(1, ?)", OWNERS);
+	}
+
+	private static long[] get(Future<long[]> future) {
+		try {
+			return future.get();
+		}
+		catch (Exception ex) {
+			throw new IllegalStateException(ex);
+		}
+	}
+
+}
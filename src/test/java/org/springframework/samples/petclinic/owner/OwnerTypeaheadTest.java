@@ -0,0 +1,111 @@
+package org.springframework.samples.petclinic.owner;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.samples.petclinic.utility.CacheMaintenanceScheduler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class OwnerTypeaheadTest {
+
+	private final OwnerSearch search = mock(OwnerSearch.class);
+
+	private final OwnerRepository owners = mock(OwnerRepository.class);
+
+	private final OwnerTypeahead typeahead = new OwnerTypeahead(search, owners, new CacheMaintenanceScheduler(),
+			60_000, 100);
+
+	@BeforeEach
+	void setup() {
+		given(search.isLoaded()).willReturn(true);
+		given(search.findIds(any(), anyInt())).willReturn(Arrays.asList(4, 2));
+		given(owners.findSummariesById(Arrays.asList(4, 2)))
+				.willReturn(Arrays.asList(new Object[] { 2, "Betty", "Davis", "Sun Prairie", 1L },
+						new Object[] { 4, "Harold", "Davis", "Windsor", 2L }));
+	}
+
+	@AfterEach
+	void close() {
+		typeahead.close();
+	}
+
+	@Test
+	void testSuggestionsAreInTheOrderOfTheSearch() {
+		List<OwnerTypeahead.Suggestion> suggestions = typeahead.suggest("davis", 10);
+
+		assertEquals(Arrays.asList(4, 2), ids(suggestions));
+		assertEquals("Harold Davis", suggestions.get(0).getName());
+		assertEquals("Windsor", suggestions.get(0).getCity());
+		assertEquals(2, suggestions.get(0).getPetCount());
+		assertEquals(Collections.singletonList(4), ids(typeahead.suggest("davis", 1)));
+	}
+
+	@Test
+	void testQueriesSearchingTheSameWordsShareTheirSuggestions() {
+		typeahead.suggest("Davis", 10);
+		typeahead.suggest(" davis,", 5);
+		typeahead.suggest("DAVIS", 10);
+
+		verify(search, times(1)).findIds("davis", OwnerTypeahead.MAX_SIZE);
+		verify(owners, times(1)).findSummariesById(any());
+		assertEquals(2, typeahead.stats().getHitCount());
+	}
+
+	@Test
+	void testSavesDropTheCachedSuggestions() {
+		typeahead.suggest("davis", 10);
+		typeahead.suggest("dav", 10);
+		given(search.getChanges()).willReturn(1L);
+
+		typeahead.suggest("davis", 10);
+		typeahead.suggest("dav", 10);
+		typeahead.suggest("davis", 10);
+
+		verify(search, times(2)).findIds("davis", OwnerTypeahead.MAX_SIZE);
+		verify(search, times(2)).findIds("dav", OwnerTypeahead.MAX_SIZE);
+	}
+
+	@Test
+	void testOwnersNotCommittedYetAreLeftOut() {
+		given(search.findIds(any(), anyInt())).willReturn(Arrays.asList(4, 30, 2));
+		given(owners.findSummariesById(Arrays.asList(4, 30, 2)))
+				.willReturn(Collections.singletonList(new Object[] { 2, "Betty", "Davis", "Sun Prairie", 1L }));
+
+		assertEquals(Collections.singletonList(2), ids(typeahead.suggest("davis", 10)));
+	}
+
+	@Test
+	void testQueriesAreNeitherNormalizedNorCachedUntilTheSearchIsLoaded() {
+		given(search.isLoaded()).willReturn(false);
+
+		typeahead.suggest("Davis", 10);
+		typeahead.suggest("Davis", 10);
+
+		verify(search, times(2)).findIds("Davis", OwnerTypeahead.MAX_SIZE);
+		assertEquals(0, typeahead.stats().getRequestCount());
+	}
+
+	@Test
+	void testBlankQueriesSuggestNothing() {
+		assertEquals(Collections.emptyList(), typeahead.suggest(" - ", 10));
+		verify(search, never()).findIds(any(), anyInt());
+	}
+
+	private static List<Integer> ids(List<OwnerTypeahead.Suggestion> suggestions) {
+		return suggestions.stream().map(OwnerTypeahead.Suggestion::getId).collect(Collectors.toList());
+	}
+
+}
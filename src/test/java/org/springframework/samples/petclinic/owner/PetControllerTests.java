@@ -16,7 +16,13 @@
 
 package org.springframework.samples.petclinic.owner;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.model;
@@ -31,8 +37,14 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.FilterType;
+import org.springframework.samples.petclinic.system.TimedCacheConfiguration;
+import org.springframework.samples.petclinic.system.UnitOfWorkConfiguration;
+import org.springframework.samples.petclinic.utility.CacheMaintenanceScheduler;
 import org.springframework.samples.petclinic.utility.PetTimedCache;
+import org.springframework.samples.petclinic.utility.TimedCache;
+import org.springframework.samples.petclinic.visit.VisitRepository;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
 
 /**
  * Test class for the {@link PetController}
@@ -42,9 +54,13 @@ import org.springframework.test.web.servlet.MockMvc;
 @WebMvcTest(value = PetController.class,
 		includeFilters = {
 	@ComponentScan.Filter(value = PetTypeFormatter.class, type = FilterType.ASSIGNABLE_TYPE),
+	@ComponentScan.Filter(value = PetTypeRegistry.class, type = FilterType.ASSIGNABLE_TYPE),
 	@ComponentScan.Filter(value = PetService.class, type = FilterType.ASSIGNABLE_TYPE),
 	@ComponentScan.Filter(value = LoggerConfig.class, type = FilterType.ASSIGNABLE_TYPE),
 	@ComponentScan.Filter(value = PetTimedCache.class, type = FilterType.ASSIGNABLE_TYPE),
+	@ComponentScan.Filter(value = CacheMaintenanceScheduler.class, type = FilterType.ASSIGNABLE_TYPE),
+	@ComponentScan.Filter(value = UnitOfWorkConfiguration.class, type = FilterType.ASSIGNABLE_TYPE),
+	@ComponentScan.Filter(value = TimedCacheConfiguration.class, type = FilterType.ASSIGNABLE_TYPE),
 	}
 	)
 class PetControllerTests {
@@ -59,18 +75,37 @@ class PetControllerTests {
 	@MockBean
 	private PetRepository pets;
 
+	@MockBean
+	private PlatformTransactionManager transactionManager;
+
 	@MockBean
 	private OwnerRepository owners;
 
+	@MockBean
+	private VisitRepository visits;
+
+	@MockBean
+	private OwnerSearch search;
+
+	@Autowired
+	private TimedCache<Integer, Owner> ownerCache;
+
+	@Autowired
+	private PetTypeRegistry petTypes;
+
 	@BeforeEach
 	void setup() {
+		ownerCache.invalidateAll();
+		Owner owner = new Owner();
+		owner.setId(TEST_OWNER_ID);
 		PetType cat = new PetType();
 		cat.setId(3);
 		cat.setName("hamster");
 		Pet pet = new Pet();
 		pet.setId(10);
 		given(this.pets.findPetTypes()).willReturn(Lists.newArrayList(cat));
-		given(this.owners.findById(TEST_OWNER_ID)).willReturn(new Owner());
+		petTypes.load();
+		given(this.owners.findById(TEST_OWNER_ID)).willReturn(owner);
 		given(this.pets.findById(TEST_PET_ID)).willReturn(pet);
 
 	}
@@ -119,4 +154,37 @@ class PetControllerTests {
 				.andExpect(view().name("pets/createOrUpdatePetForm"));
 	}
 
+	@Test
+	void testOwnerIsLoadedOnceAndPetTypesNever() throws Exception {
+		clearInvocations(this.pets);
+		mockMvc.perform(get("/owners/{ownerId}/pets/new", TEST_OWNER_ID)).andExpect(status().isOk());
+		mockMvc.perform(get("/owners/{ownerId}/pets/{petId}/edit", TEST_OWNER_ID, TEST_PET_ID))
+				.andExpect(status().isOk());
+		mockMvc.perform(post("/owners/{ownerId}/pets/{petId}/edit", TEST_OWNER_ID, TEST_PET_ID).param("name", "Betty")
+				.param("type", "hamster").param("birthDate", "2015-02-12")).andExpect(status().is3xxRedirection());
+
+		verify(this.owners, times(1)).findById(TEST_OWNER_ID);
+		verify(this.pets, never()).findPetTypes();
+	}
+
+	@Test
+	void testFailedCreationDoesNotAddPetToCachedOwner() throws Exception {
+		mockMvc.perform(post("/owners/{ownerId}/pets/new", TEST_OWNER_ID).param("name", "Betty").param("birthDate",
+				"2015-02-12")).andExpect(model().attributeHasErrors("pet"));
+
+		assertThat(ownerCache.get(TEST_OWNER_ID).getPets()).isEmpty();
+	}
+
+	@Test
+	void testSavingPetEvictsCachedOwner() throws Exception {
+		mockMvc.perform(get("/owners/{ownerId}/pets/new", TEST_OWNER_ID)).andExpect(status().isOk());
+		mockMvc.perform(post("/owners/{ownerId}/pets/new", TEST_OWNER_ID).param("name", "Betty")
+				.param("type", "hamster").param("birthDate", "2015-02-12")).andExpect(status().is3xxRedirection());
+		mockMvc.perform(get("/owners/{ownerId}/pets/new", TEST_OWNER_ID)).andExpect(status().isOk());
+
+		verify(this.owners, times(2)).findById(TEST_OWNER_ID);
+		verify(this.search).savedPet(argThat(owner -> owner.getId() == TEST_OWNER_ID),
+				argThat(pet -> "Betty".equals(pet.getName())));
+	}
+
 }
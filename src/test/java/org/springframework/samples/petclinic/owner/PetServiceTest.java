@@ -1,11 +1,65 @@
 package org.springframework.samples.petclinic.owner;
 
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.springframework.samples.petclinic.utility.PetTimedCache;
 import org.springframework.samples.petclinic.utility.SimpleDI;
+import org.springframework.samples.petclinic.utility.TimedCache;
+import org.springframework.samples.petclinic.utility.UnitOfWork;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
 
 class PetServiceTest {
 
+	private final PetTimedCache pets = mock(PetTimedCache.class);
+
+	private final OwnerRepository ownerRepository = mock(OwnerRepository.class);
+
+	private final OwnerSearch search = mock(OwnerSearch.class);
+
+	private PetService petService;
+
+	@BeforeEach
+	void setup() throws Exception {
+		SimpleDI container = SimpleDI.newDIContainer();
+		container.provideByInstance(PetTimedCache.class, pets);
+		container.provideByInstance(Logger.class, mock(Logger.class));
+		// the caches are generic, so the service is built by a function
+		container.provideByAConstructorFunction(PetService.class,
+				() -> new PetService((PetTimedCache) container.getInstanceOf(PetTimedCache.class),
+						TimedCache.<Integer, Owner>builder("owners", ownerRepository::findById).build(),
+						new PetTypeRegistry(mock(PetRepository.class)),
+						mock(UnitOfWork.class), search, (Logger) container.getInstanceOf(Logger.class)),
+				PetTimedCache.class, Logger.class);
+		petService = (PetService) container.getInstanceOf(PetService.class);
+	}
+
+	@Test
+	void testOutsideRequestsPetsAreWrittenRightAway() {
+		Owner owner = new Owner();
+		owner.setId(1);
+		when(ownerRepository.findById(1)).thenReturn(owner);
+		assertSame(owner, petService.findOwner(1));
+		Pet pet = petService.newPet(owner);
+
+		petService.savePet(pet, owner);
+
+		assertSame(owner, pet.getOwner());
+		verify(pets).save(pet);
+		verify(search).savedPet(owner, pet);
+		// the owner was evicted
+		petService.findOwner(1);
+		verify(ownerRepository, times(2)).findById(1);
+	}
+
+	@Test
+	void testOutsideRequestsLookupsGoToTheCaches() {
+		Pet pet = new Pet();
+		when(pets.get(2)).thenReturn(pet);
+
+		assertSame(pet, petService.findPet(2));
+	}
 
 }
@@ -4,8 +4,86 @@ import org.junit.jupiter.api.Test;
 import org.springframework.samples.petclinic.visit.Visit;
 
 import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
 
 class PetTest {
 
-	// todo
+	private static Visit visit(int id, String date) {
+		Visit visit = new Visit().setDate(LocalDate.parse(date));
+		visit.setId(id);
+		return visit;
+	}
+
+	private static List<LocalDate> dates(List<Visit> visits) {
+		return visits.stream().map(Visit::getDate).collect(Collectors.toList());
+	}
+
+	@Test
+	void testVisitsAreMostRecentFirst() {
+		Pet pet = new Pet();
+		pet.setVisitsInternal(Arrays.asList(visit(1, "2013-01-01"), visit(2, "2013-03-04")));
+		pet.addVisit(visit(3, "2013-02-01"));
+
+		assertEquals(Arrays.asList(LocalDate.parse("2013-03-04"), LocalDate.parse("2013-02-01"),
+				LocalDate.parse("2013-01-01")), dates(pet.getVisits()));
+	}
+
+	@Test
+	void testVisitsBetweenExcludeBounds() {
+		Pet pet = new Pet();
+		pet.setVisitsInternal(Arrays.asList(visit(1, "2013-01-01"), visit(2, "2013-02-01"),
+				visit(3, "2013-03-01"), visit(4, "2013-04-01")));
+
+		assertEquals(Arrays.asList(LocalDate.parse("2013-03-01"), LocalDate.parse("2013-02-01")),
+				dates(pet.getVisitsBetween(LocalDate.parse("2013-01-01"), LocalDate.parse("2013-04-01"))));
+		assertTrue(pet.getVisitsBetween(LocalDate.parse("2013-04-01"), LocalDate.parse("2013-01-01")).isEmpty());
+	}
+
+	@Test
+	void testVisitsUntilAgeAreBeforeTheBirthday() {
+		Pet pet = new Pet();
+		pet.setBirthDate(LocalDate.parse("2012-03-10"));
+		pet.setVisitsInternal(Arrays.asList(visit(1, "2012-05-01"), visit(2, "2013-03-09"), visit(3, "2013-03-10"),
+				visit(4, "2014-01-01")));
+
+		assertEquals(Arrays.asList(LocalDate.parse("2013-03-09"), LocalDate.parse("2012-05-01")),
+				dates(pet.getVisitsUntilAge(1)));
+		assertEquals(4, pet.getVisitsUntilAge(2).size());
+	}
+
+	@Test
+	void testPetsBornOnFebruary29ComeOfAgeOnMarch1() {
+		Pet pet = new Pet();
+		pet.setBirthDate(LocalDate.parse("2012-02-29"));
+		pet.setVisitsInternal(Arrays.asList(visit(1, "2013-02-28"), visit(2, "2013-03-01")));
+
+		assertEquals(LocalDate.parse("2013-03-01"), pet.getDateOfAge(1));
+		assertEquals(LocalDate.parse("2016-02-29"), pet.getDateOfAge(4));
+		assertEquals(Arrays.asList(LocalDate.parse("2013-02-28")), dates(pet.getVisitsUntilAge(1)));
+	}
+
+	@Test
+	void testPetWithoutBirthDateHasNoVisitsUntilAge() {
+		Pet pet = new Pet();
+		pet.setVisitsInternal(Arrays.asList(visit(1, "2013-01-01")));
+
+		assertNull(pet.getDateOfAge(1));
+		assertTrue(pet.getVisitsUntilAge(1).isEmpty());
+	}
+
+	@Test
+	void testRemoveVisit() {
+		Pet pet = new Pet();
+		Visit visit = visit(1, "2013-01-01");
+		pet.addVisit(visit);
+
+		pet.removeVisit(visit);
+
+		assertTrue(pet.getVisits().isEmpty());
+	}
+
 }
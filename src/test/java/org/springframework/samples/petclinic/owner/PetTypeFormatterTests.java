@@ -31,6 +31,8 @@ import org.mockito.junit.jupiter.MockitoExtension;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 /**
  * Test class for {@link PetTypeFormatter}
@@ -47,7 +49,7 @@ class PetTypeFormatterTests {
 
 	@BeforeEach
 	void setup() {
-		this.petTypeFormatter = new PetTypeFormatter(pets);
+		this.petTypeFormatter = new PetTypeFormatter(new PetTypeRegistry(pets));
 	}
 
 	@Test
@@ -65,6 +67,21 @@ class PetTypeFormatterTests {
 		assertThat(petType.getName()).isEqualTo("Bird");
 	}
 
+	@Test
+	void shouldParseId() throws ParseException {
+		given(this.pets.findPetTypes()).willReturn(makePetTypes());
+		PetType petType = petTypeFormatter.parse("2", Locale.ENGLISH);
+		assertThat(petType.getName()).isEqualTo("Bird");
+	}
+
+	@Test
+	void shouldLoadThePetTypesOnce() throws ParseException {
+		given(this.pets.findPetTypes()).willReturn(makePetTypes());
+		petTypeFormatter.parse("Bird", Locale.ENGLISH);
+		petTypeFormatter.parse("Dog", Locale.ENGLISH);
+		verify(this.pets, times(1)).findPetTypes();
+	}
+
 	@Test
 	void shouldThrowParseException() throws ParseException {
 		given(this.pets.findPetTypes()).willReturn(makePetTypes());
@@ -81,11 +98,13 @@ class PetTypeFormatterTests {
 		List<PetType> petTypes = new ArrayList<>();
 		petTypes.add(new PetType() {
 			{
+				setId(1);
 				setName("Dog");
 			}
 		});
 		petTypes.add(new PetType() {
 			{
+				setId(2);
 				setName("Bird");
 			}
 		});
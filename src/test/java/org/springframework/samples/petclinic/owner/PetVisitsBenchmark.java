@@ -0,0 +1,87 @@
+package org.springframework.samples.petclinic.owner;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.samples.petclinic.visit.Visit;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Measures the date range reads of a pet with {@link #VISITS} visits, one a day, against
+ * the former filters over all the visits: a month of visits with
+ * {@link Pet#getVisitsBetween(LocalDate, LocalDate)} and the first year with
+ * {@link Pet#getVisitsUntilAge(int)}, which computed a {@link java.time.Period} per
+ * visit.
+ * <p>
+ * Run with {@code ./mvnw test-compile} followed by this class's {@code main} method on the
+ * test classpath.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PetVisitsBenchmark {
+
+	static final int VISITS = 10_000;
+
+	static final LocalDate BIRTH_DATE = LocalDate.of(2000, 1, 1);
+
+	private final Pet pet = new Pet();
+
+	private LocalDate start;
+
+	private LocalDate end;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		List<Visit> visits = new ArrayList<>(VISITS);
+		for (int id = 1; id <= VISITS; id++) {
+			Visit visit = new Visit().setDate(BIRTH_DATE.plusDays(id));
+			visit.setId(id);
+			visits.add(visit);
+		}
+		pet.setId(1);
+		pet.setBirthDate(BIRTH_DATE);
+		pet.setVisitsInternal(visits);
+		start = BIRTH_DATE.plusDays(VISITS / 2);
+		end = start.plusMonths(1);
+	}
+
+	@Benchmark
+	public List<Visit> visitsBetween() {
+		return pet.getVisitsBetween(start, end);
+	}
+
+	@Benchmark
+	public List<Visit> visitsBetweenFiltered() {
+		return pet.getVisits().stream().filter(visit -> visit.getDate().isAfter(start) && visit.getDate().isBefore(end))
+				.collect(Collectors.toList());
+	}
+
+	@Benchmark
+	public List<Visit> visitsUntilAge() {
+		return pet.getVisitsUntilAge(1);
+	}
+
+	/**
+	 * The former {@code Pet.getVisitsUntilAge(int)}.
+	 */
+	@Benchmark
+	public List<Visit> visitsUntilAgeFiltered() {
+		return pet.getVisits().stream().filter(visit -> pet.getBirthDate().until(visit.getDate()).getYears() < 1)
+				.collect(Collectors.toList());
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(PetVisitsBenchmark.class.getSimpleName()).build()).run();
+	}
+
+}
@@ -16,27 +16,53 @@
 
 package org.springframework.samples.petclinic.owner;
 
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.model;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.view;
 
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.samples.petclinic.system.TimedCacheConfiguration;
+import org.springframework.samples.petclinic.system.UnitOfWorkConfiguration;
+import org.springframework.samples.petclinic.utility.CacheMaintenanceScheduler;
+import org.springframework.samples.petclinic.utility.PetTimedCache;
+import org.springframework.samples.petclinic.utility.TimedCache;
+import org.springframework.samples.petclinic.visit.Visit;
 import org.springframework.samples.petclinic.visit.VisitRepository;
+import org.springframework.samples.petclinic.visit.VisitSummaries;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
 
 /**
  * Test class for {@link VisitController}
  *
  * @author Colin But
  */
-@WebMvcTest(VisitController.class)
+@WebMvcTest(value = VisitController.class,
+		includeFilters = {
+	@ComponentScan.Filter(value = TimedCacheConfiguration.class, type = FilterType.ASSIGNABLE_TYPE),
+	@ComponentScan.Filter(value = CacheMaintenanceScheduler.class, type = FilterType.ASSIGNABLE_TYPE),
+	@ComponentScan.Filter(value = UnitOfWorkConfiguration.class, type = FilterType.ASSIGNABLE_TYPE),
+	@ComponentScan.Filter(value = PetTimedCache.class, type = FilterType.ASSIGNABLE_TYPE),
+	@ComponentScan.Filter(value = PetTypeRegistry.class, type = FilterType.ASSIGNABLE_TYPE),
+	}
+	)
 class VisitControllerTests {
 
 	private static final int TEST_PET_ID = 1;
@@ -50,8 +76,21 @@ class VisitControllerTests {
 	@MockBean
 	private PetRepository pets;
 
+	@MockBean
+	private PlatformTransactionManager transactionManager;
+
+	@MockBean
+	private OwnerRepository owners;
+
+	@MockBean
+	private VisitSummaries summaries;
+
+	@Autowired
+	private TimedCache<Integer, List<Visit>> visitCache;
+
 	@BeforeEach
 	void init() {
+		visitCache.invalidateAll();
 		given(this.pets.findById(TEST_PET_ID)).willReturn(new Pet());
 	}
 
@@ -61,11 +100,34 @@ class VisitControllerTests {
 				.andExpect(view().name("pets/createOrUpdateVisitForm"));
 	}
 
+	@Test
+	void testInitNewVisitFormShowsTheRecentVisitsAndLinksToOlderOnes() throws Exception {
+		Owner george = new Owner();
+		george.setId(1);
+		Pet max = new Pet();
+		max.setId(TEST_PET_ID);
+		george.addPet(max);
+		given(this.pets.findById(TEST_PET_ID)).willReturn(max);
+		List<Visit> recent = new ArrayList<>();
+		for (int day = 0; day < 6; day++) {
+			Visit visit = new Visit().setDate(LocalDate.now().minusDays(day));
+			visit.setId(6 - day);
+			visit.setPetId(TEST_PET_ID);
+			recent.add(visit);
+		}
+		given(this.visits.findRecentByPetIdIn(Collections.singleton(TEST_PET_ID), 6)).willReturn(recent);
+
+		mockMvc.perform(get("/owners/*/pets/{petId}/visits/new", TEST_PET_ID)).andExpect(status().isOk())
+				.andExpect(model().attribute("previousVisits", recent.subList(0, 5)))
+				.andExpect(model().attribute("olderVisits", true));
+	}
+
 	@Test
 	void testProcessNewVisitFormSuccess() throws Exception {
 		mockMvc.perform(post("/owners/*/pets/{petId}/visits/new", TEST_PET_ID).param("name", "George")
 				.param("description", "Visit Description")).andExpect(status().is3xxRedirection())
 				.andExpect(view().name("redirect:/owners/{ownerId}"));
+		verify(this.summaries).added(argThat(visit -> "Visit Description".equals(visit.getDescription())));
 	}
 
 	@Test
@@ -75,4 +137,17 @@ class VisitControllerTests {
 				.andExpect(view().name("pets/createOrUpdateVisitForm"));
 	}
 
+	@Test
+	void testNewVisitEvictsCachedVisits() throws Exception {
+		mockMvc.perform(get("/owners/*/pets/{petId}/visits/new", TEST_PET_ID)).andExpect(status().isOk());
+		mockMvc.perform(get("/owners/*/pets/{petId}/visits/new", TEST_PET_ID)).andExpect(status().isOk());
+		verify(this.visits, times(1)).findRecentByPetIdIn(Collections.singleton(TEST_PET_ID), 6);
+
+		mockMvc.perform(post("/owners/*/pets/{petId}/visits/new", TEST_PET_ID).param("name", "George")
+				.param("description", "Visit Description")).andExpect(status().is3xxRedirection());
+		mockMvc.perform(get("/owners/*/pets/{petId}/visits/new", TEST_PET_ID)).andExpect(status().isOk());
+
+		verify(this.visits, times(2)).findRecentByPetIdIn(Collections.singleton(TEST_PET_ID), 6);
+	}
+
 }
@@ -0,0 +1,113 @@
+package org.springframework.samples.petclinic.owner;
+
+import static org.hamcrest.Matchers.contains;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.model;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.view;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.samples.petclinic.utility.PetTimedCache;
+import org.springframework.samples.petclinic.visit.Visit;
+import org.springframework.samples.petclinic.visit.VisitRepository;
+import org.springframework.test.web.servlet.MockMvc;
+
+/**
+ * Test class for {@link VisitHistoryController}
+ */
+@WebMvcTest(VisitHistoryController.class)
+class VisitHistoryControllerTests {
+
+	private static final int TEST_OWNER_ID = 1;
+
+	private static final int TEST_PET_ID = 1;
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@MockBean
+	private PetTimedCache pets;
+
+	@MockBean
+	private VisitRepository visits;
+
+	private final List<Visit> history = new ArrayList<>();
+
+	@BeforeEach
+	void setup() {
+		Owner george = new Owner();
+		george.setId(TEST_OWNER_ID);
+		Pet max = new Pet();
+		max.setId(TEST_PET_ID);
+		max.setName("Max");
+		george.addPet(max);
+		given(this.pets.get(TEST_PET_ID)).willReturn(max);
+		// ids 1 to 5, most recent first
+		for (int id = 5; id >= 1; id--) {
+			Visit visit = new Visit().setDate(LocalDate.of(2020, 1, id));
+			visit.setId(id);
+			visit.setDescription("check-up " + id);
+			history.add(visit);
+		}
+	}
+
+	@Test
+	void testTheFirstPageHasTheMostRecentVisits() throws Exception {
+		given(this.visits.findRecentByPetId(eq(TEST_PET_ID), argThat(page -> page.getPageSize() == 3)))
+				.willReturn(history.subList(0, 3));
+
+		mockMvc.perform(get("/owners/{ownerId}/pets/{petId}/visits", TEST_OWNER_ID, TEST_PET_ID).param("size", "2"))
+				.andExpect(status().isOk()).andExpect(model().attribute("visits", contains(history.get(0), history.get(1))))
+				.andExpect(model().attributeDoesNotExist("previousPage"))
+				.andExpect(model().attribute("nextPage", "4-2020-01-04")).andExpect(view().name("pets/visitHistory"));
+	}
+
+	@Test
+	void testTheNextPageSeeksPastTheLastVisit() throws Exception {
+		given(this.visits.findByPetIdOlderThan(eq(TEST_PET_ID), eq(LocalDate.of(2020, 1, 4)), eq(4),
+				argThat(page -> page.getPageSize() == 3))).willReturn(history.subList(2, 5));
+
+		mockMvc.perform(get("/owners/{ownerId}/pets/{petId}/visits", TEST_OWNER_ID, TEST_PET_ID).param("size", "2")
+				.param("after", "4-2020-01-04")).andExpect(status().isOk())
+				.andExpect(model().attribute("visits", contains(history.get(2), history.get(3))))
+				.andExpect(model().attribute("previousPage", "3-2020-01-03"))
+				.andExpect(model().attribute("nextPage", "2-2020-01-02"));
+	}
+
+	@Test
+	void testThePreviousPageSeeksBeforeTheFirstVisit() throws Exception {
+		List<Visit> newer = new ArrayList<>(Arrays.asList(history.get(1), history.get(0)));
+		given(this.visits.findByPetIdNewerThan(eq(TEST_PET_ID), eq(LocalDate.of(2020, 1, 3)), eq(3),
+				argThat(page -> page.getPageSize() == 3))).willReturn(newer);
+
+		mockMvc.perform(get("/owners/{ownerId}/pets/{petId}/visits", TEST_OWNER_ID, TEST_PET_ID).param("size", "2")
+				.param("before", "3-2020-01-03")).andExpect(status().isOk())
+				.andExpect(model().attribute("visits", contains(history.get(0), history.get(1))))
+				.andExpect(model().attributeDoesNotExist("previousPage"))
+				.andExpect(model().attribute("nextPage", "4-2020-01-04"));
+	}
+
+	@Test
+	void testInvalidCursorIsABadRequest() throws Exception {
+		mockMvc.perform(get("/owners/{ownerId}/pets/{petId}/visits", TEST_OWNER_ID, TEST_PET_ID).param("after",
+				"4-yesterday")).andExpect(status().isBadRequest());
+	}
+
+	@Test
+	void testThePetOfAnotherOwnerIsNotFound() throws Exception {
+		mockMvc.perform(get("/owners/{ownerId}/pets/{petId}/visits", 2, TEST_PET_ID)).andExpect(status().isNotFound());
+	}
+
+}
@@ -0,0 +1,51 @@
+package org.springframework.samples.petclinic.owner;
+
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.BDDMockito.given;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.time.LocalDate;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+/**
+ * Test class for {@link VisitImportController}
+ */
+@WebMvcTest(VisitImportController.class)
+class VisitImportControllerTests {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@MockBean
+	private VisitImporter importer;
+
+	@Test
+	void testVisitsAreReadAndTheReportWrittenAsJson() throws Exception {
+		VisitImporter.Report report = new VisitImporter.Report(2);
+		report.getRejected().add(new VisitImporter.Rejection(1, "pet 999 does not exist"));
+		report.getBatches().add(new VisitImporter.Batch(1, 1, null, Collections.emptyList()));
+		given(importer.importVisits(argThat(visits -> visits.size() == 2 && visits.get(0).getPetId() == 7
+				&& visits.get(0).getDate().equals(LocalDate.of(2020, 3, 1))
+				&& visits.get(0).getDescription().equals("rabies shot") && visits.get(1).getPetId() == 999)))
+						.willReturn(report);
+
+		mockMvc.perform(post("/visits/import").contentType(MediaType.APPLICATION_JSON)
+				.content("[{\"petId\": 7, \"date\": \"2020-03-01\", \"description\": \"rabies shot\"},"
+						+ " {\"petId\": 999, \"date\": \"2020-03-01\", \"description\": \"neutered\"}]"))
+				.andExpect(status().isOk()).andExpect(jsonPath("$.received").value(2))
+				.andExpect(jsonPath("$.inserted").value(1)).andExpect(jsonPath("$.failed").value(0))
+				.andExpect(jsonPath("$.rejected[0].row").value(1))
+				.andExpect(jsonPath("$.rejected[0].message").value("pet 999 does not exist"))
+				.andExpect(jsonPath("$.batches[0].size").value(1));
+	}
+
+}
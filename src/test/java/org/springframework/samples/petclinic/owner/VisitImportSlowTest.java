@@ -0,0 +1,94 @@
+package org.springframework.samples.petclinic.owner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.samples.petclinic.system.TimedCacheConfiguration;
+import org.springframework.samples.petclinic.utility.CacheMaintenanceScheduler;
+import org.springframework.samples.petclinic.visit.Visit;
+import org.springframework.samples.petclinic.visit.VisitRepository;
+import org.springframework.samples.petclinic.visit.VisitSummaries;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Inserts {@link #VISITS} visits one per transaction through the
+ * {@link VisitRepository}, as the new visit form does, then as many with the
+ * {@link VisitImporter}, and checks that the import inserts at least
+ * {@link #MINIMUM_SPEEDUP} times as many rows a second. Excluded from the regular build;
+ * run with {@code ./mvnw test -Dtest=VisitImportSlowTest}.
+ */
+@DataJpaTest(includeFilters = {
+		@ComponentScan.Filter(value = VisitImporter.class, type = FilterType.ASSIGNABLE_TYPE),
+		@ComponentScan.Filter(value = VisitSummaries.class, type = FilterType.ASSIGNABLE_TYPE),
+		@ComponentScan.Filter(value = TimedCacheConfiguration.class, type = FilterType.ASSIGNABLE_TYPE),
+		@ComponentScan.Filter(value = CacheMaintenanceScheduler.class, type = FilterType.ASSIGNABLE_TYPE) })
+@ImportAutoConfiguration(ValidationAutoConfiguration.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@DirtiesContext
+class VisitImportSlowTest {
+
+	private static final int VISITS = 50_000;
+
+	private static final int MINIMUM_SPEEDUP = 10;
+
+	@Autowired
+	private VisitImporter importer;
+
+	@Autowired
+	private VisitRepository visits;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Test
+	void testImportInsertsTenTimesFasterThanOneVisitAtATime() {
+		TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+		// warms up both paths
+		visits().subList(0, 1000).forEach(visit -> transaction.executeWithoutResult(status -> visits.save(visit)));
+		importer.importVisits(visits().subList(0, 1000));
+
+		List<Visit> oneByOne = visits();
+		long started = System.nanoTime();
+		oneByOne.forEach(visit -> transaction.executeWithoutResult(status -> visits.save(visit)));
+		double oneByOneRate = VISITS / ((System.nanoTime() - started) / 1e9);
+
+		List<Visit> imported = visits();
+		started = System.nanoTime();
+		VisitImporter.Report report = importer.importVisits(imported);
+		double importRate = VISITS / ((System.nanoTime() - started) / 1e9);
+
+		assertThat(report.getInserted()).isEqualTo(VISITS);
+		assertThat(importRate).as("visits a second imported, against %,.0f one by one", oneByOneRate)
+				.isGreaterThan(oneByOneRate * MINIMUM_SPEEDUP);
+	}
+
+	/**
+	 * @return new visits of the 13 sample pets
+	 */
+	private static List<Visit> visits() {
+		List<Visit> visits = new ArrayList<>(VISITS);
+		for (int i = 0; i < VISITS; i++) {
+			Visit visit = new Visit();
+			visit.setPetId(1 + i % 13);
+			visit.setDate(LocalDate.of(2020, 1, 1).plusDays(i % 365));
+			visit.setDescription("check-up " + i);
+			visits.add(visit);
+		}
+		return visits;
+	}
+
+}
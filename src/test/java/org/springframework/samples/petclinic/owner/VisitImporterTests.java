@@ -0,0 +1,149 @@
+package org.springframework.samples.petclinic.owner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.samples.petclinic.system.TimedCacheConfiguration;
+import org.springframework.samples.petclinic.utility.CacheMaintenanceScheduler;
+import org.springframework.samples.petclinic.utility.TimedCache;
+import org.springframework.samples.petclinic.visit.Visit;
+import org.springframework.samples.petclinic.visit.VisitSummaries;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Imports visits into the sample clinic, two visits per batch. The batches commit on
+ * their own, so the visits imported are deleted after each test.
+ */
+@DataJpaTest(includeFilters = {
+		@ComponentScan.Filter(value = VisitImporter.class, type = FilterType.ASSIGNABLE_TYPE),
+		@ComponentScan.Filter(value = TimedCacheConfiguration.class, type = FilterType.ASSIGNABLE_TYPE),
+		@ComponentScan.Filter(value = CacheMaintenanceScheduler.class, type = FilterType.ASSIGNABLE_TYPE) })
+@ImportAutoConfiguration(ValidationAutoConfiguration.class)
+@TestPropertySource(properties = "petclinic.visits.import.batch-size=2")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class VisitImporterTests {
+
+	private static final String IMPORTED = "imported ";
+
+	@Autowired
+	private VisitImporter importer;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private TimedCache<Integer, List<Visit>> visitCache;
+
+	@MockBean
+	private VisitSummaries summaries;
+
+	@AfterEach
+	void deleteImportedVisits() {
+		jdbcTemplate.update("DELETE FROM visits WHERE description LIKE ?", IMPORTED + "%");
+	}
+
+	@Test
+	void testValidVisitsAreInsertedByPetAndDate() {
+		VisitImporter.Report report = importer.importVisits(Arrays.asList(visit(8, "2020-03-02", "a"),
+				visit(1, "2020-03-01", "b"), visit(8, "2020-03-01", "c")));
+
+		assertThat(report.getReceived()).isEqualTo(3);
+		assertThat(report.getInserted()).isEqualTo(3);
+		assertThat(report.getFailed()).isZero();
+		assertThat(report.getRejected()).isEmpty();
+		assertThat(report.getBatches()).extracting(VisitImporter.Batch::getSize).containsExactly(2, 1);
+		assertThat(jdbcTemplate.queryForList("SELECT description FROM visits WHERE description LIKE ? ORDER BY id",
+				String.class, IMPORTED + "%")).containsExactly(IMPORTED + "b", IMPORTED + "c", IMPORTED + "a");
+	}
+
+	@Test
+	void testInvalidVisitsAreRejected() {
+		Visit withoutPet = visit(1, "2020-03-01", "a");
+		withoutPet.setPetId(null);
+		Visit withoutDescription = visit(1, "2020-03-01", "");
+		withoutDescription.setDescription(null);
+
+		VisitImporter.Report report = importer.importVisits(
+				Arrays.asList(visit(1, "2020-03-01", "b"), withoutPet, visit(999, "2020-03-01", "c"),
+						withoutDescription, visit(2, null, "d")));
+
+		assertThat(report.getInserted()).isEqualTo(1);
+		assertThat(report.getRejected()).extracting(VisitImporter.Rejection::getRow).containsExactly(1, 2, 3, 4);
+		assertThat(report.getRejected().get(0).getMessage()).isEqualTo("petId is required");
+		assertThat(report.getRejected().get(1).getMessage()).isEqualTo("pet 999 does not exist");
+		assertThat(report.getRejected().get(2).getMessage()).startsWith("description ");
+		assertThat(report.getRejected().get(3).getMessage()).isEqualTo("date is required");
+	}
+
+	@Test
+	void testFailedBatchesAreReportedAndTheOthersInserted() {
+		StringBuilder tooLong = new StringBuilder();
+		while (tooLong.length() <= 255) {
+			tooLong.append("long ");
+		}
+
+		VisitImporter.Report report = importer.importVisits(Arrays.asList(visit(1, "2020-03-01", "a"),
+				visit(2, "2020-03-01", "b"), visit(3, "2020-03-01", "c"), visit(4, "2020-03-01", tooLong.toString())));
+
+		assertThat(report.getInserted()).isEqualTo(2);
+		assertThat(report.getFailed()).isEqualTo(2);
+		VisitImporter.Batch failed = report.getBatches().get(1);
+		assertThat(failed.getInserted()).isZero();
+		assertThat(failed.getError()).isNotEmpty();
+		assertThat(failed.getFailedRows()).containsExactly(2, 3);
+		assertThat(report.getBatches().get(0).getError()).isNull();
+		assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM visits WHERE description LIKE ?",
+				Integer.class, IMPORTED + "%")).isEqualTo(2);
+	}
+
+	@Test
+	void testTheCachedVisitsOfThePetsAreEvicted() {
+		int before = visitCache.get(7).size();
+
+		importer.importVisits(Arrays.asList(visit(7, "2020-03-01", "a")));
+
+		assertThat(visitCache.get(7)).hasSize(before + 1);
+	}
+
+	@Test
+	void testTheVisitsOfCommittedBatchesAreSummarized() {
+		StringBuilder tooLong = new StringBuilder();
+		while (tooLong.length() <= 255) {
+			tooLong.append("long ");
+		}
+
+		importer.importVisits(Arrays.asList(visit(1, "2020-03-01", "a"), visit(2, "2020-03-01", "b"),
+				visit(3, "2020-03-01", "c"), visit(4, "2020-03-01", tooLong.toString())));
+
+		verify(summaries).added(argThat(visit -> visit.getPetId() == 1));
+		verify(summaries).added(argThat(visit -> visit.getPetId() == 2));
+		verifyNoMoreInteractions(summaries);
+	}
+
+	private static Visit visit(int petId, String date, String description) {
+		Visit visit = new Visit();
+		visit.setPetId(petId);
+		visit.setDate(date == null ? null : LocalDate.parse(date));
+		visit.setDescription(IMPORTED + description);
+		return visit;
+	}
+
+}
@@ -0,0 +1,52 @@
+package org.springframework.samples.petclinic.owner;
+
+import static org.mockito.BDDMockito.given;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.time.LocalDate;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.samples.petclinic.visit.VisitRepository;
+import org.springframework.samples.petclinic.visit.VisitSummaries;
+import org.springframework.test.web.servlet.MockMvc;
+
+/**
+ * Test class for {@link VisitSummaryController}
+ */
+@WebMvcTest(VisitSummaryController.class)
+@Import(VisitSummaries.class)
+class VisitSummaryControllerTests {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@MockBean
+	private VisitRepository visits;
+
+	@Test
+	void testSummariesAreRebuiltAndWrittenAsJson() throws Exception {
+		given(visits.findMaxPetId()).willReturn(8);
+		given(visits.countByPetIdRange(0, 8))
+				.willReturn(Collections.singletonList(new Object[] { 7, 2L, LocalDate.of(2013, 1, 4) }));
+
+		mockMvc.perform(post("/visits/summaries/rebuild")).andExpect(status().isOk())
+				.andExpect(content().string("true"));
+
+		mockMvc.perform(get("/visits/summaries").param("petId", "7", "8")).andExpect(status().isOk())
+				.andExpect(jsonPath("$.length()").value(2)).andExpect(jsonPath("$[0].petId").value(7))
+				.andExpect(jsonPath("$[0].visitCount").value(2))
+				.andExpect(jsonPath("$[0].lastVisitDate").value("2013-01-04"))
+				.andExpect(jsonPath("$[0].visitsInLastYear").value(0)).andExpect(jsonPath("$[1].petId").value(8))
+				.andExpect(jsonPath("$[1].visitCount").value(0));
+	}
+
+}
@@ -19,14 +19,21 @@ package org.springframework.samples.petclinic.service;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import java.time.LocalDate;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.FilterType;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.samples.petclinic.owner.*;
+import org.springframework.samples.petclinic.system.TimedCacheConfiguration;
+import org.springframework.samples.petclinic.system.UnitOfWorkConfiguration;
+import org.springframework.samples.petclinic.utility.CacheMaintenanceScheduler;
 import org.springframework.samples.petclinic.utility.PetTimedCache;
 import org.springframework.samples.petclinic.vet.Vet;
 import org.springframework.samples.petclinic.vet.VetRepository;
@@ -67,8 +74,13 @@ import org.springframework.transaction.annotation.Transactional;
 @DataJpaTest(includeFilters = {
 	@ComponentScan.Filter(Service.class),
 	@ComponentScan.Filter(value = PetTypeFormatter.class, type = FilterType.ASSIGNABLE_TYPE),
+	@ComponentScan.Filter(value = PetTypeRegistry.class, type = FilterType.ASSIGNABLE_TYPE),
+	@ComponentScan.Filter(value = OwnerSearch.class, type = FilterType.ASSIGNABLE_TYPE),
 	@ComponentScan.Filter(value = LoggerConfig.class, type = FilterType.ASSIGNABLE_TYPE),
-	@ComponentScan.Filter(value = PetTimedCache.class, type = FilterType.ASSIGNABLE_TYPE)
+	@ComponentScan.Filter(value = PetTimedCache.class, type = FilterType.ASSIGNABLE_TYPE),
+	@ComponentScan.Filter(value = CacheMaintenanceScheduler.class, type = FilterType.ASSIGNABLE_TYPE),
+	@ComponentScan.Filter(value = TimedCacheConfiguration.class, type = FilterType.ASSIGNABLE_TYPE),
+	@ComponentScan.Filter(value = UnitOfWorkConfiguration.class, type = FilterType.ASSIGNABLE_TYPE)
 })
 class ClinicServiceTests {
 
@@ -93,6 +105,29 @@ class ClinicServiceTests {
 		assertThat(owners).isEmpty();
 	}
 
+	@Test
+	void shouldFindOwnerIdsByLastNameIgnoringCaseAsTheIndexDoes() {
+		PageRequest limit = PageRequest.of(0, 10);
+		assertThat(this.owners.findIdsByLastName("davis", limit)).containsExactly(2, 4);
+		assertThat(this.owners.findIdsByLastName("mct", limit)).containsExactly(5);
+		assertThat(this.owners.findIdsByLastName("D_vis", limit)).isEmpty();
+		assertThat(this.owners.findIdsByLastName("%", limit)).isEmpty();
+		assertThat(this.owners.findIdsByLastNameAfter("e", "escobito", 8, limit)).containsExactly(10);
+		assertThat(this.owners.findIdsByLastNameBefore("e", "Estaban", 10, limit)).containsExactly(8);
+	}
+
+	@Test
+	@Transactional
+	void shouldFindRenamedOwnerIdsByTheNewLastNameIgnoringCase() {
+		Owner owner = this.owners.findById(1);
+		owner.setLastName("Van Dyke");
+		this.owners.save(owner);
+
+		PageRequest limit = PageRequest.of(0, 10);
+		assertThat(this.owners.findIdsByLastName("VAN d", limit)).containsExactly(1);
+		assertThat(this.owners.findIdsByLastName("franklin", limit)).isEmpty();
+	}
+
 	@Test
 	void shouldFindSingleOwnerWithPet() {
 		Owner owner = this.owners.findById(1);
@@ -191,6 +226,20 @@ class ClinicServiceTests {
 		assertThat(pet7.getName()).isEqualTo(newName);
 	}
 
+	@Test
+	@Transactional
+	void shouldUpdatePetsInOneBatch() {
+		Pet pet7 = this.pets.findById(7);
+		Pet pet8 = this.pets.findById(8);
+		pet7.setName(pet7.getName() + "X");
+		pet8.setName(pet8.getName() + "X");
+
+		this.pets.saveAll(Arrays.asList(pet7, pet8));
+
+		assertThat(this.pets.findById(7).getName()).isEqualTo(pet7.getName());
+		assertThat(this.pets.findById(8).getName()).isEqualTo(pet8.getName());
+	}
+
 	@Test
 	void shouldFindVets() {
 		Collection<Vet> vets = this.vets.findAll();
@@ -227,4 +276,23 @@ class ClinicServiceTests {
 		assertThat(visitArr[0].getPetId()).isEqualTo(7);
 	}
 
+	@Test
+	void shouldFindTheRecentVisitsOfSeveralPets() {
+		List<Visit> visits = this.visits.findRecentByPetIdIn(Arrays.asList(7, 8, 9), 1);
+		assertThat(visits).extracting(Visit::getId).containsExactlyInAnyOrder(4, 3);
+		assertThat(this.visits.findRecentByPetIdIn(Arrays.asList(7, 8), 5)).extracting(Visit::getId)
+				.containsExactly(4, 3, 2, 1);
+		assertThat(this.visits.findRecentByPetIdIn(Collections.emptyList(), 5)).isEmpty();
+	}
+
+	@Test
+	void shouldPageTheVisitsOfAPetByDate() {
+		assertThat(this.visits.findRecentByPetId(8, PageRequest.of(0, 1))).extracting(Visit::getId)
+				.containsExactly(3);
+		assertThat(this.visits.findByPetIdOlderThan(8, LocalDate.of(2013, 1, 3), 3, PageRequest.of(0, 1)))
+				.extracting(Visit::getId).containsExactly(2);
+		assertThat(this.visits.findByPetIdNewerThan(8, LocalDate.of(2013, 1, 2), 2, PageRequest.of(0, 1)))
+				.extracting(Visit::getId).containsExactly(3);
+	}
+
 }
@@ -0,0 +1,79 @@
+package org.springframework.samples.petclinic.system;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.samples.petclinic.owner.OwnerRepository;
+import org.springframework.samples.petclinic.owner.Pet;
+import org.springframework.samples.petclinic.owner.PetRepository;
+import org.springframework.samples.petclinic.owner.PetTypeRegistry;
+import org.springframework.samples.petclinic.utility.CacheMaintenanceScheduler;
+import org.springframework.samples.petclinic.utility.PetTimedCache;
+import org.springframework.samples.petclinic.utility.UnitOfWork;
+import org.springframework.samples.petclinic.visit.Visit;
+import org.springframework.samples.petclinic.visit.VisitRepository;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.*;
+
+class UnitOfWorkConfigurationTest {
+
+	private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+
+	private final PetRepository petRepository = mock(PetRepository.class);
+
+	private final VisitRepository visits = mock(VisitRepository.class);
+
+	private final PetTimedCache petCache = new PetTimedCache(petRepository, new PetTypeRegistry(petRepository),
+			new CacheMaintenanceScheduler(), 60_000, 0, 0, 0, 1, PetTimedCache.WriteMode.WRITE_BEHIND, 50,
+			60_000, 0);
+
+	private final UnitOfWork unitOfWork = new UnitOfWorkConfiguration().unitOfWork(transactionManager,
+			mock(OwnerRepository.class), petRepository, petCache, visits);
+
+	@AfterEach
+	void close() {
+		petCache.close();
+	}
+
+	private static Pet pet(String name) {
+		Pet pet = new Pet();
+		pet.setId(1);
+		pet.setName(name);
+		return pet;
+	}
+
+	@Test
+	void testPetsAreSavedInTheTransactionAndEvictedAfterTheCommit() {
+		given(petRepository.findById(1)).willReturn(pet("Leo"), pet("Basil"));
+		petCache.get(1);
+		unitOfWork.registerDirty(Pet.class, pet("Basil"));
+
+		unitOfWork.commit();
+
+		verify(petRepository).save(argThat(pet -> "Basil".equals(pet.getName())));
+		assertEquals("Basil", petCache.get(1).getName());
+		petCache.flush();
+		verify(petRepository, never()).saveAll(any());
+	}
+
+	@Test
+	void testRolledBackPetsAreNotWrittenBehindInWriteBehindMode() {
+		given(petRepository.findById(1)).willReturn(pet("Leo"));
+		petCache.get(1);
+		willThrow(new IllegalStateException()).given(visits).save(any());
+		unitOfWork.registerDirty(Pet.class, pet("Basil"));
+		unitOfWork.registerDirty(Visit.class, new Visit());
+
+		assertThrows(IllegalStateException.class, unitOfWork::commit);
+
+		verify(transactionManager).rollback(any());
+		assertEquals("Leo", petCache.get(1).getName());
+		petCache.flush();
+		verify(petRepository, never()).saveAll(any());
+	}
+
+}
@@ -0,0 +1,161 @@
+package org.springframework.samples.petclinic.utility;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.samples.petclinic.owner.PetRepository;
+import org.springframework.samples.petclinic.owner.PetTypeRegistry;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class CacheMaintenanceSchedulerTest {
+
+	private final CacheMaintenanceScheduler scheduler = new CacheMaintenanceScheduler();
+
+	@AfterEach
+	void stop() {
+		scheduler.stop();
+	}
+
+	@Test
+	void testManyCachesShareOneThread() throws Exception {
+		int before = maintenanceThreadCount();
+		PetRepository repository = mock(PetRepository.class);
+		PetTimedCache[] caches = new PetTimedCache[20];
+		for (int i = 0; i < caches.length; i++) {
+			caches[i] = new PetTimedCache(repository, new PetTypeRegistry(repository), scheduler, 100, 0, 0, 0, 1,
+					PetTimedCache.WriteMode.WRITE_THROUGH, 50, 1000, 0);
+		}
+		assertEquals(before, maintenanceThreadCount(), "no thread before the scheduler starts");
+
+		scheduler.start();
+		Set<Thread> threads = ConcurrentHashMap.newKeySet();
+		CountDownLatch ran = new CountDownLatch(10);
+		for (int i = 0; i < 10; i++) {
+			scheduler.schedule("test-" + i, () -> {
+				threads.add(Thread.currentThread());
+				ran.countDown();
+			}, 5);
+		}
+
+		assertTrue(ran.await(5, TimeUnit.SECONDS));
+		assertEquals(1, threads.size());
+		assertEquals(CacheMaintenanceScheduler.THREAD_NAME, threads.iterator().next().getName());
+		assertEquals(before + 1, maintenanceThreadCount());
+		for (PetTimedCache cache : caches) {
+			cache.close();
+		}
+	}
+
+	@Test
+	void testStopInterruptsRunningTaskAndTerminatesThread() throws Exception {
+		scheduler.start();
+		CountDownLatch started = new CountDownLatch(1);
+		AtomicReference<Thread> worker = new AtomicReference<>();
+		scheduler.schedule("slow", () -> {
+			worker.set(Thread.currentThread());
+			started.countDown();
+			try {
+				Thread.sleep(60_000);
+			}
+			catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+		}, 1);
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+
+		long start = System.nanoTime();
+		scheduler.stop();
+		worker.get().join(1000);
+
+		assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1), "stop should not wait for the task");
+		assertFalse(scheduler.isRunning());
+		assertFalse(worker.get().isAlive());
+	}
+
+	@Test
+	void testTasksScheduledBeforeStartRunOnceStarted() throws Exception {
+		CountDownLatch ran = new CountDownLatch(1);
+		scheduler.schedule("early", ran::countDown, 1);
+		assertFalse(ran.await(50, TimeUnit.MILLISECONDS));
+
+		scheduler.start();
+
+		assertTrue(ran.await(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	void testFailingTaskKeepsRunning() throws Exception {
+		scheduler.start();
+		CountDownLatch ran = new CountDownLatch(3);
+		scheduler.schedule("failing", () -> {
+			ran.countDown();
+			throw new IllegalStateException("boom");
+		}, 1);
+
+		assertTrue(ran.await(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	void testCancelledTaskStopsRunning() throws Exception {
+		scheduler.start();
+		AtomicInteger runs = new AtomicInteger();
+		CountDownLatch ran = new CountDownLatch(1);
+		CacheMaintenanceScheduler.Task task = scheduler.schedule("cancelled", () -> {
+			runs.incrementAndGet();
+			ran.countDown();
+		}, 1);
+		assertTrue(ran.await(5, TimeUnit.SECONDS));
+
+		task.cancel();
+		Thread.sleep(20);
+		int afterCancel = runs.get();
+		Thread.sleep(50);
+
+		assertEquals(afterCancel, runs.get());
+	}
+
+	@Test
+	void testLagGrowsWhileAnotherTaskHogsTheThread() throws Exception {
+		scheduler.start();
+		CountDownLatch hogging = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		CacheMaintenanceScheduler.Task starved = scheduler.schedule("starved", () -> {
+		}, 10);
+		CacheMaintenanceScheduler.Task hog = scheduler.schedule("hog", () -> {
+			hogging.countDown();
+			try {
+				release.await();
+			}
+			catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+		}, 10);
+		assertTrue(hogging.await(5, TimeUnit.SECONDS));
+
+		Thread.sleep(200);
+
+		assertTrue(starved.lagMillis() >= 100, "lag was " + starved.lagMillis());
+		release.countDown();
+		hog.cancel();
+		long deadline = System.currentTimeMillis() + 5000;
+		while (starved.lagMillis() > 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+		assertEquals(0, starved.lagMillis());
+	}
+
+	private static int maintenanceThreadCount() {
+		return (int) Thread.getAllStackTraces().keySet().stream()
+				.filter(thread -> thread.getName().equals(CacheMaintenanceScheduler.THREAD_NAME) && thread.isAlive())
+				.count();
+	}
+
+}
@@ -0,0 +1,133 @@
+package org.springframework.samples.petclinic.utility;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures searches of a {@link FullTextIndex} of {@link #OWNERS} owners indexed as the
+ * owner search indexes them, for a few kinds of queries built from random owners, and the
+ * cost of saving an owner.
+ * <p>
+ * Run with {@code ./mvnw test-compile} followed by this class's {@code main} method on the
+ * test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class FullTextIndexBenchmark {
+
+	static final int OWNERS = 1_000_000;
+
+	static final int QUERIES = 1024;
+
+	private static final String[] SYLLABLES = { "ba", "co", "da", "es", "fr", "ge", "ha", "jo", "ka", "le", "mc",
+			"no", "pa", "ro", "sc", "ta", "vi", "wa", "an", "el", "in", "on", "son", "man", "ton", "ley" };
+
+	private static final String[] FIRST_NAMES = { "George", "Betty", "Eduardo", "Harold", "Peter", "Jean", "Jeff",
+			"Maria", "David", "Carlos", "Anna", "James", "Linda", "Robert", "Susan", "Michael", "Karen", "Thomas",
+			"Nancy", "Daniel", "Lisa", "Paul", "Sandra", "Mark", "Donna", "Steven", "Carol", "Brian", "Ruth", "Kevin" };
+
+	private static final String[] CITIES = { "Madison", "Sun Prairie", "McFarland", "Windsor", "Monona", "Waunakee",
+			"Middleton", "Verona", "Fitchburg", "Stoughton", "Oregon", "Cottage Grove", "De Forest", "Mount Horeb" };
+
+	private static final String[] STREETS = { "Liberty St.", "Cardinal Ave.", "Ashley Blvd.", "Friendly St.",
+			"Lake St.", "Summer Ave.", "Spring Ave.", "Main St.", "Oak Dr.", "Maple Ln.", "Park Rd.", "Hill St." };
+
+	private static final String[] PET_NAMES = { "Leo", "Basil", "Rosy", "Jewel", "Iggy", "George", "Samantha", "Max",
+			"Lucky", "Mulligan", "Freddy", "Sly", "Bella", "Charlie", "Luna", "Daisy", "Rocky", "Milo", "Coco" };
+
+	/**
+	 * <ul>
+	 * <li>{@code lastName}: the last name of an owner;</li>
+	 * <li>{@code fullName}: the first and last names;</li>
+	 * <li>{@code misspelled}: the last name with two letters swapped;</li>
+	 * <li>{@code typing}: the first name and the first two letters of the last name;</li>
+	 * <li>{@code cityAndPet}: the city and the name of a pet, which many owners share;</li>
+	 * <li>{@code telephone}: the telephone.</li>
+	 * </ul>
+	 */
+	@Param({ "lastName", "fullName", "misspelled", "typing", "cityAndPet", "telephone" })
+	String query;
+
+	private final FullTextIndex index = new FullTextIndex(3, 2, 1.5, 1, 1, 1);
+
+	private final String[] queries = new String[QUERIES];
+
+	private String[][] owners;
+
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		Random random = new Random(42);
+		owners = new String[OWNERS + 1][];
+		for (int id = 1; id <= OWNERS; id++) {
+			StringBuilder lastName = new StringBuilder();
+			for (int syllables = 2 + random.nextInt(3); syllables > 0; syllables--) {
+				lastName.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+			}
+			lastName.setCharAt(0, Character.toUpperCase(lastName.charAt(0)));
+			StringBuilder pets = new StringBuilder(PET_NAMES[random.nextInt(PET_NAMES.length)]);
+			if (random.nextBoolean()) {
+				pets.append(' ').append(PET_NAMES[random.nextInt(PET_NAMES.length)]);
+			}
+			owners[id] = new String[] { lastName.toString(), FIRST_NAMES[random.nextInt(FIRST_NAMES.length)],
+					pets.toString(), CITIES[random.nextInt(CITIES.length)],
+					(1 + random.nextInt(9999)) + " " + STREETS[random.nextInt(STREETS.length)],
+					String.valueOf(6080000000L + random.nextInt(10_000_000)) };
+			index.put(id, owners[id]);
+		}
+		for (int i = 0; i < QUERIES; i++) {
+			String[] owner = owners[1 + random.nextInt(OWNERS)];
+			String lastName = owner[0];
+			switch (query) {
+			case "lastName":
+				queries[i] = lastName;
+				break;
+			case "fullName":
+				queries[i] = owner[1] + " " + lastName;
+				break;
+			case "misspelled":
+				int swapped = 1 + random.nextInt(lastName.length() - 2);
+				queries[i] = lastName.substring(0, swapped) + lastName.charAt(swapped + 1) + lastName.charAt(swapped)
+						+ lastName.substring(swapped + 2);
+				break;
+			case "typing":
+				queries[i] = owner[1] + " " + lastName.substring(0, 2);
+				break;
+			case "cityAndPet":
+				queries[i] = owner[3] + " " + owner[2].split(" ")[0];
+				break;
+			default:
+				queries[i] = owner[5];
+			}
+		}
+	}
+
+	@Benchmark
+	public List<FullTextIndex.Hit> search() {
+		return index.search(queries[next++ & (QUERIES - 1)], 20);
+	}
+
+	@Benchmark
+	public void saveOwner() {
+		int id = 1 + (next++ & (QUERIES - 1));
+		String[] owner = owners[id];
+		// a new city, then back to the old one
+		index.put(id, null, null, null, (next & 1) == 0 ? "Madison" : owner[3]);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(FullTextIndexBenchmark.class.getSimpleName()).build()).run();
+	}
+
+}
@@ -0,0 +1,103 @@
+package org.springframework.samples.petclinic.utility;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FullTextIndexTest {
+
+	// a name weighs twice as much as a city
+	private final FullTextIndex index = new FullTextIndex(2, 1);
+
+	@BeforeEach
+	void setup() {
+		index.put(1, "George Franklin", "Madison");
+		index.put(2, "Betty Davis", "Sun Prairie");
+		index.put(3, "Eduardo Rodriquez", "McFarland");
+		index.put(4, "Harold Davis", "Windsor");
+		index.put(6, "Jean Coleman", "Monona");
+		index.put(7, "Jeff Black", "Monona");
+		index.put(10, "Carlos Estaban", "Waunakee");
+		index.put(11, "Madison Davis", "Windsor");
+	}
+
+	@Test
+	void testEveryWordMustMatch() {
+		assertEquals(Arrays.asList(4, 11), ids("davis windsor"));
+		assertEquals(Arrays.asList(6, 7), ids("MONONA"));
+		assertEquals(Collections.emptyList(), ids("davis monona"));
+		assertEquals(Collections.emptyList(), ids(" ,. "));
+		assertEquals(8, index.size());
+	}
+
+	@Test
+	void testBetterFieldsAndRarerWordsRankFirst() {
+		// a name before a city
+		assertEquals(Arrays.asList(11, 1), ids("madison"));
+		// two documents have windsor but a single one has harold
+		List<FullTextIndex.Hit> hits = index.search("davis", 10);
+		assertEquals(Arrays.asList(2, 4, 11), hits.stream().map(FullTextIndex.Hit::getId).collect(Collectors.toList()));
+		assertEquals(hits.get(0).getScore(), hits.get(2).getScore());
+		assertTrue(index.search("harold", 1).get(0).getScore() > index.search("windsor", 1).get(0).getScore());
+		assertEquals(Collections.singletonList(2), ids("davis", 1));
+	}
+
+	@Test
+	void testTheLastWordMatchesAsAPrefix() {
+		assertEquals(Arrays.asList(6, 7), ids("mon"));
+		assertEquals(Arrays.asList(6, 7), ids("monona je"));
+		// only the last word is being typed
+		assertEquals(Collections.emptyList(), ids("je monona"));
+		// an exact match before a prefix one
+		index.put(12, "Pat Mon", "Madison");
+		assertEquals(Arrays.asList(12, 6, 7), ids("mon"));
+	}
+
+	@Test
+	void testMisspelledWordsMatchBelowExactOnes() {
+		assertEquals(Collections.singletonList(1), ids("franklyn"));
+		assertEquals(Collections.singletonList(3), ids("rodriguez"));
+		assertEquals(Arrays.asList(2, 4, 11), ids("davies"));
+		index.put(12, "David Davies", "Madison");
+		assertEquals(Arrays.asList(12, 2, 4, 11), ids("davies"));
+		assertEquals(Collections.emptyList(), ids("xyzzy"));
+	}
+
+	@Test
+	void testChangesReplaceTheGivenFieldsOnly() {
+		index.put(4, "Harold Smith", null);
+		assertEquals(Arrays.asList(2, 11), ids("davis"));
+		assertEquals(Collections.singletonList(4), ids("smith windsor"));
+
+		index.put(4, null, "Madison");
+		assertEquals(Collections.singletonList(4), ids("smith madison"));
+		assertEquals(Collections.singletonList(11), ids("windsor"));
+
+		index.remove(4);
+		index.remove(99);
+		assertEquals(Collections.emptyList(), ids("smith"));
+		// the removed term is not matched approximately either
+		assertEquals(Collections.emptyList(), ids("smitt"));
+		assertEquals(7, index.size());
+
+		index.put(4, "", "");
+		assertEquals(7, index.size());
+		index.put(100, "Harold Smith");
+		assertEquals(Collections.singletonList(100), ids("smith"));
+	}
+
+	private List<Integer> ids(String query) {
+		return ids(query, 10);
+	}
+
+	private List<Integer> ids(String query, int limit) {
+		return index.search(query, limit).stream().map(FullTextIndex.Hit::getId).collect(Collectors.toList());
+	}
+
+}
@@ -0,0 +1,156 @@
+package org.springframework.samples.petclinic.utility;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.samples.petclinic.model.BaseEntity;
+import org.springframework.samples.petclinic.owner.Pet;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link IdentityMap} with {@link #SIZE} pets: loading them all, replacing and
+ * removing {@link #BATCH} of them, and iterating, against the former list-and-set
+ * implementation where it supported the operation.
+ * <p>
+ * Run with {@code ./mvnw test-compile} followed by this class's {@code main} method on the
+ * test classpath.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IdentityMapBenchmark {
+
+	static final int SIZE = 100_000;
+
+	static final int BATCH = 1_000;
+
+	private final List<Pet> pets = new ArrayList<>();
+
+	private final List<Pet> replacements = new ArrayList<>();
+
+	private IdentityMap<Pet> map;
+
+	private LegacyIdentityMap<Pet> legacyMap;
+
+	private int nextBatch;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		for (int id = 0; id < SIZE; id++) {
+			pets.add(pet(id));
+			replacements.add(pet(id));
+		}
+		map = new IdentityMap<>();
+		map.addAll(pets);
+		legacyMap = new LegacyIdentityMap<>();
+		pets.forEach(legacyMap::add);
+	}
+
+	private static Pet pet(int id) {
+		Pet pet = new Pet();
+		pet.setId(id);
+		pet.setName("pet" + id);
+		return pet;
+	}
+
+	@Benchmark
+	public IdentityMap<Pet> load() {
+		IdentityMap<Pet> loaded = new IdentityMap<>();
+		loaded.addAll(pets);
+		return loaded;
+	}
+
+	@Benchmark
+	public LegacyIdentityMap<Pet> loadLegacy() {
+		LegacyIdentityMap<Pet> loaded = new LegacyIdentityMap<>();
+		pets.forEach(loaded::add);
+		return loaded;
+	}
+
+	@Benchmark
+	public void replace() {
+		int from = nextFrom();
+		for (int id = from; id < from + BATCH; id++) {
+			map.add(replacements.get(id));
+			map.add(pets.get(id));
+		}
+	}
+
+	@Benchmark
+	public void removeAndAdd() {
+		int from = nextFrom();
+		for (int id = from; id < from + BATCH; id++) {
+			map.remove(pets.get(id));
+			map.add(pets.get(id));
+		}
+	}
+
+	@Benchmark
+	public void removeAndAddLegacy() {
+		int from = nextFrom();
+		for (int id = from; id < from + BATCH; id++) {
+			legacyMap.remove(pets.get(id));
+			legacyMap.add(pets.get(id));
+		}
+	}
+
+	@Benchmark
+	public void iterate(Blackhole blackhole) {
+		for (Pet pet : map) {
+			blackhole.consume(pet);
+		}
+	}
+
+	private int nextFrom() {
+		int from = nextBatch * BATCH;
+		nextBatch = (nextBatch + 1) % (SIZE / BATCH);
+		return from;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(IdentityMapBenchmark.class.getSimpleName()).build()).run();
+	}
+
+	/**
+	 * The former implementation, reduced to the operations it supported.
+	 */
+	static class LegacyIdentityMap<Entity extends BaseEntity> {
+
+		private final ArrayList<Entity> entities = new ArrayList<>();
+
+		private final Set<Integer> ids = new HashSet<>();
+
+		boolean add(Entity entity) {
+			if (!ids.contains(entity)) {
+				ids.add(entity.getId());
+				entities.add(entity);
+			}
+			else {
+				entities.removeIf(entity::sameId);
+				this.add(entity);
+			}
+			return true;
+		}
+
+		boolean remove(Object object) {
+			if (object instanceof BaseEntity) {
+				if (ids.remove(((BaseEntity) object).getId())) {
+					return entities.removeIf(((BaseEntity) object)::sameId);
+				}
+			}
+			return false;
+		}
+
+	}
+
+}
@@ -0,0 +1,150 @@
+package org.springframework.samples.petclinic.utility;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.samples.petclinic.owner.Pet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdentityMapTest {
+
+	private final IdentityMap<Pet> map = new IdentityMap<>();
+
+	private static Pet pet(int id, String name) {
+		Pet pet = new Pet();
+		pet.setId(id);
+		pet.setName(name);
+		return pet;
+	}
+
+	private List<String> names() {
+		List<String> names = new ArrayList<>();
+		map.forEach(pet -> names.add(pet.getName()));
+		return names;
+	}
+
+	@Test
+	void testAddReplacesEntityWithSameIdInPlace() {
+		map.add(pet(1, "Leo"));
+		map.add(pet(2, "Basil"));
+		Pet rosy = pet(1, "Rosy");
+
+		assertTrue(map.add(rosy));
+		assertFalse(map.add(rosy));
+
+		assertEquals(2, map.size());
+		assertEquals(Arrays.asList("Rosy", "Basil"), names());
+		assertSame(rosy, map.get(1));
+	}
+
+	@Test
+	void testContainsAndRemoveMatchById() {
+		map.add(pet(1, "Leo"));
+
+		assertTrue(map.contains(pet(1, "Other")));
+		assertFalse(map.contains(pet(2, "Leo")));
+		assertFalse(map.contains("Leo"));
+		assertTrue(map.remove(pet(1, "Other")));
+		assertFalse(map.remove(pet(1, "Other")));
+		assertTrue(map.isEmpty());
+	}
+
+	@Test
+	void testIterationKeepsInsertionOrderAcrossRemovalsAndCompaction() {
+		List<String> expected = new ArrayList<>();
+		for (int id = 0; id < 100; id++) {
+			map.add(pet(id, "pet" + id));
+		}
+		for (int id = 0; id < 100; id++) {
+			if (id % 3 != 0) {
+				map.remove(pet(id, null));
+			}
+			else {
+				expected.add("pet" + id);
+			}
+		}
+		for (int id = 100; id < 200; id++) {
+			map.add(pet(id, "pet" + id));
+			expected.add("pet" + id);
+		}
+
+		assertEquals(expected, names());
+		assertEquals(expected.size(), map.size());
+		assertEquals("pet99", map.get(99).getName());
+	}
+
+	@Test
+	void testCollectionOperations() {
+		Pet leo = pet(1, "Leo");
+		Pet basil = pet(2, "Basil");
+		Pet rosy = pet(3, "Rosy");
+		map.addAll(Arrays.asList(leo, basil, rosy));
+
+		assertArrayEquals(new Object[] { leo, basil, rosy }, map.toArray());
+		assertArrayEquals(new Pet[] { leo, basil, rosy }, map.toArray(new Pet[0]));
+		assertTrue(map.retainAll(Arrays.asList(leo, rosy)));
+		assertEquals(Arrays.asList("Leo", "Rosy"), names());
+		assertTrue(map.containsAll(Collections.singletonList(rosy)));
+		assertTrue(map.removeAll(Collections.singletonList(leo)));
+		assertEquals(Collections.singletonList("Rosy"), names());
+
+		map.clear();
+
+		assertTrue(map.isEmpty());
+		assertFalse(map.iterator().hasNext());
+		assertNull(map.get(3));
+	}
+
+	@Test
+	void testIteratorRemove() {
+		map.add(pet(1, "Leo"));
+		map.add(pet(2, "Basil"));
+		Iterator<Pet> iterator = map.iterator();
+		iterator.next();
+
+		iterator.remove();
+
+		assertThrows(IllegalStateException.class, iterator::remove);
+		assertEquals("Basil", iterator.next().getName());
+		assertFalse(map.contains(pet(1, null)));
+	}
+
+	@Test
+	void testIteratorFailsFast() {
+		map.add(pet(1, "Leo"));
+		map.add(pet(2, "Basil"));
+		Iterator<Pet> iterator = map.iterator();
+		iterator.next();
+
+		map.add(pet(3, "Rosy"));
+
+		assertThrows(ConcurrentModificationException.class, iterator::next);
+	}
+
+	@Test
+	void testSort() {
+		map.add(pet(1, "Leo"));
+		map.add(pet(2, "Basil"));
+		map.add(pet(3, "Rosy"));
+		map.remove(pet(3, null));
+
+		map.sort(Comparator.comparing(Pet::getName));
+
+		assertEquals(Arrays.asList("Basil", "Leo"), names());
+		assertEquals("Leo", map.get(1).getName());
+	}
+
+	@Test
+	void testEntitiesNeedAnId() {
+		assertThrows(IllegalArgumentException.class, () -> map.add(new Pet()));
+		assertFalse(map.contains(new Pet()));
+	}
+
+}
@@ -0,0 +1,205 @@
+package org.springframework.samples.petclinic.utility;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.samples.petclinic.owner.Owner;
+import org.springframework.samples.petclinic.owner.Pet;
+import org.springframework.samples.petclinic.owner.PetType;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapStoreTest {
+
+	private static final OffHeapStore.Codec<String> UTF_8 = new OffHeapStore.Codec<String>() {
+
+		@Override
+		public byte[] encode(String value) {
+			return value.getBytes(StandardCharsets.UTF_8);
+		}
+
+		@Override
+		public String decode(byte[] bytes) {
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+
+	};
+
+	private static CacheEntry<Integer, String> entry(int key, String value, long expiresAt) {
+		return new CacheEntry<>(key, value, expiresAt - 100, expiresAt, expiresAt + 100);
+	}
+
+	@Test
+	void testTakeReturnsStoredEntryOnce() {
+		OffHeapStore<String> store = new OffHeapStore<>(UTF_8, 1024, 1024);
+		store.store(entry(7, "Leo", 1000));
+
+		CacheEntry<Integer, String> taken = store.take(7, 500);
+
+		assertEquals("Leo", taken.value);
+		assertEquals(900, taken.refreshAt);
+		assertEquals(1000, taken.expiresAt);
+		assertEquals(1100, taken.deadline);
+		assertNull(store.take(7, 500));
+		assertEquals(0, store.size());
+	}
+
+	@Test
+	void testExpiredEntriesAreNotTaken() {
+		OffHeapStore<String> store = new OffHeapStore<>(UTF_8, 1024, 1024);
+		store.store(entry(7, "Leo", 1000));
+
+		assertNull(store.take(7, 1000));
+	}
+
+	@Test
+	void testStoreReplacesPreviousEntry() {
+		OffHeapStore<String> store = new OffHeapStore<>(UTF_8, 1024, 1024);
+		store.store(entry(7, "Leo", 1000));
+		store.store(entry(7, "Basil", 2000));
+
+		assertEquals(1, store.size());
+		assertEquals("Basil", store.take(7, 0).value);
+	}
+
+	@Test
+	void testRemove() {
+		OffHeapStore<String> store = new OffHeapStore<>(UTF_8, 1024, 1024);
+		store.store(entry(7, "Leo", 1000));
+
+		store.remove(7);
+
+		assertNull(store.take(7, 0));
+	}
+
+	@Test
+	void testOldestSlabIsRecycledWhenFull() {
+		// each record takes 32 + 8 bytes, so a 100 byte slab holds two of them
+		OffHeapStore<String> store = new OffHeapStore<>(UTF_8, 200, 100);
+		for (int key = 1; key <= 5; key++) {
+			store.store(entry(key, "pet-000" + key, 1000));
+		}
+
+		assertEquals(200, store.allocatedBytes());
+		assertEquals(3, store.size());
+		assertNull(store.take(1, 0));
+		assertNull(store.take(2, 0));
+		assertEquals("pet-0003", store.take(3, 0).value);
+		assertEquals("pet-0005", store.take(5, 0).value);
+	}
+
+	@Test
+	void testRecyclingKeepsEntriesRewrittenIntoNewerSlabs() {
+		OffHeapStore<String> store = new OffHeapStore<>(UTF_8, 200, 100);
+		store.store(entry(1, "pet-0001", 1000));
+		store.store(entry(2, "pet-0002", 1000));
+		store.store(entry(1, "pet-0001", 2000));
+		store.store(entry(3, "pet-0003", 1000));
+		store.store(entry(4, "pet-0004", 1000));
+
+		assertNull(store.take(2, 0));
+		assertEquals(2000, store.take(1, 0).expiresAt);
+	}
+
+	@Test
+	void testRecordsLargerThanASlabAreDropped() {
+		OffHeapStore<String> store = new OffHeapStore<>(UTF_8, 100, 40);
+		store.store(entry(7, "Leo", 1000));
+		store.store(entry(8, "Leonardo da Vinci", 1000));
+
+		assertEquals(1, store.size());
+		assertNull(store.take(8, 0));
+	}
+
+	@Test
+	void testClear() {
+		OffHeapStore<String> store = new OffHeapStore<>(UTF_8, 1024, 1024);
+		store.store(entry(7, "Leo", 1000));
+
+		store.clear();
+
+		assertEquals(0, store.size());
+		assertNull(store.take(7, 0));
+	}
+
+	@Test
+	void testPetCodecRoundTrip() {
+		PetType cat = new PetType();
+		cat.setId(1);
+		cat.setName("cat");
+		Owner owner = new Owner();
+		owner.setId(3);
+		owner.setFirstName("Eduardo");
+		owner.setLastName("Rodriquez");
+		owner.setAddress("2693 Commerce St.");
+		owner.setCity("McFarland");
+		owner.setTelephone("6085558763");
+		Pet pet = new Pet();
+		pet.setId(7);
+		pet.setName("Jewel");
+		pet.setBirthDate(LocalDate.of(2010, 3, 7));
+		pet.setType(cat);
+		owner.addPet(pet);
+		PetCodec codec = new PetCodec(id -> null);
+
+		Pet decoded = codec.decode(codec.encode(pet));
+
+		assertEquals(7, decoded.getId());
+		assertEquals("Jewel", decoded.getName());
+		assertEquals(LocalDate.of(2010, 3, 7), decoded.getBirthDate());
+		assertEquals("cat", decoded.getType().getName());
+		assertEquals("Rodriquez", decoded.getOwner().getLastName());
+		assertEquals(Collections.singletonList(decoded), decoded.getOwner().getPets());
+		assertEquals("6085558763", decoded.getOwner().getTelephone());
+	}
+
+	@Test
+	void testPetCodecResolvesTheCurrentType() {
+		PetType cat = new PetType();
+		cat.setId(1);
+		cat.setName("cat");
+		PetType renamed = new PetType();
+		renamed.setId(1);
+		renamed.setName("kitten");
+		Pet pet = new Pet();
+		pet.setType(cat);
+		PetCodec codec = new PetCodec(id -> id == 1 ? renamed : null);
+
+		assertSame(renamed, codec.decode(codec.encode(pet)).getType());
+	}
+
+	@Test
+	void testPetCodecKeepsMissingFields() {
+		Pet pet = new Pet();
+		PetCodec codec = new PetCodec(id -> null);
+
+		Pet decoded = codec.decode(codec.encode(pet));
+
+		assertNull(decoded.getId());
+		assertNull(decoded.getName());
+		assertNull(decoded.getBirthDate());
+		assertNull(decoded.getType());
+		assertNull(decoded.getOwner());
+	}
+
+	@Test
+	void testIntLongHashMapSurvivesResizeAndRemovals() {
+		IntLongHashMap map = new IntLongHashMap(4);
+		for (int key = -500; key < 500; key++) {
+			assertEquals(IntLongHashMap.MISSING, map.put(key, key * 10L));
+		}
+		for (int key = -500; key < 500; key += 2) {
+			assertEquals(key * 10L, map.remove(key));
+		}
+
+		assertEquals(500, map.size());
+		for (int key = -500; key < 500; key++) {
+			assertEquals(key % 2 == 0 ? IntLongHashMap.MISSING : key * 10L, map.get(key));
+		}
+		assertEquals(-4990, map.put(-499, 1));
+		assertThrows(IllegalArgumentException.class, () -> map.put(Integer.MIN_VALUE, 1));
+	}
+
+}
@@ -0,0 +1,166 @@
+package org.springframework.samples.petclinic.utility;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.LoggerFactory;
+import org.springframework.samples.petclinic.owner.Pet;
+import org.springframework.samples.petclinic.owner.PetRepository;
+import org.springframework.samples.petclinic.owner.PetType;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the cost of an expiry pass of {@link PetTimedCache} against the full scan of
+ * the former {@code timeMap}/{@code actualMap} implementation.
+ * <p>
+ * Both caches hold {@code size} pets loaded one millisecond apart with an expiry of
+ * {@code size} milliseconds, so every operation (load {@link #BATCH} new pets, then clean)
+ * keeps the cache at a steady size while expiring {@link #BATCH} old entries.
+ * <p>
+ * Run with {@code ./mvnw test-compile} followed by this class's {@code main} method on the
+ * test classpath.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PetTimedCacheExpiryBenchmark {
+
+	static final int BATCH = 100;
+
+	@Param({ "10000", "100000", "1000000" })
+	int size;
+
+	private long now;
+
+	private int nextId;
+
+	private PetTimedCache wheelCache;
+
+	private LegacyScanCache scanCache;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		// keep per-entry logging out of the measurement
+		((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(PetTimedCache.class))
+				.setLevel(ch.qos.logback.classic.Level.WARN);
+		now = 0;
+		nextId = 0;
+		wheelCache = new PetTimedCache(size, 0, 0, 0, new SyntheticPetRepository(), () -> now, null, null);
+		scanCache = new LegacyScanCache(size);
+		for (int i = 0; i < size; i++) {
+			load();
+		}
+	}
+
+	@Benchmark
+	public int timingWheel() {
+		for (int i = 0; i < BATCH; i++) {
+			now++;
+			wheelCache.get(nextId++);
+		}
+		return wheelCache.cleanUp();
+	}
+
+	@Benchmark
+	public int legacyScan() {
+		for (int i = 0; i < BATCH; i++) {
+			load();
+		}
+		return scanCache.cleanMap(now);
+	}
+
+	private void load() {
+		now++;
+		int id = nextId++;
+		wheelCache.get(id);
+		scanCache.put(SyntheticPetRepository.pet(id), now);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(PetTimedCacheExpiryBenchmark.class.getSimpleName()).build()).run();
+	}
+
+	/**
+	 * The pre-timing-wheel expiry strategy: parallel maps of deadlines and values, cleaned
+	 * by visiting every key.
+	 */
+	static class LegacyScanCache {
+
+		private final Map<Integer, Long> timeMap = new ConcurrentHashMap<>();
+
+		private final Map<Integer, Pet> actualMap = new ConcurrentHashMap<>();
+
+		private final long expiryInMillis;
+
+		LegacyScanCache(long expiryInMillis) {
+			this.expiryInMillis = expiryInMillis;
+		}
+
+		void put(Pet pet, long now) {
+			timeMap.put(pet.getId(), now);
+			actualMap.put(pet.getId(), pet);
+		}
+
+		int cleanMap(long currentTime) {
+			int removed = 0;
+			for (Integer key : timeMap.keySet()) {
+				if (currentTime > (timeMap.get(key) + expiryInMillis)) {
+					actualMap.remove(key);
+					timeMap.remove(key);
+					removed++;
+				}
+			}
+			return removed;
+		}
+	}
+
+	static class SyntheticPetRepository implements PetRepository {
+
+		private static final PetType TYPE = new PetType();
+
+		static Pet pet(int id) {
+			Pet pet = new Pet();
+			pet.setId(id);
+			pet.setName("pet" + id);
+			pet.setType(TYPE);
+			return pet;
+		}
+
+		@Override
+		public List<PetType> findPetTypes() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Pet findById(Integer id) {
+			return pet(id);
+		}
+
+		@Override
+		public List<Object[]> findAllOwnerIdsAndNames() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public List<Integer> findExistingIds(Collection<Integer> ids) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void save(Pet pet) {
+		}
+
+		@Override
+		public void saveAll(Iterable<Pet> pets) {
+		}
+	}
+}
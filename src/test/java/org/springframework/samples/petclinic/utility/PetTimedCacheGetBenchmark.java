@@ -0,0 +1,62 @@
+package org.springframework.samples.petclinic.utility;
+
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.core.helpers.NOPAppender;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.LoggerFactory;
+import org.springframework.samples.petclinic.utility.PetTimedCacheExpiryBenchmark.SyntheticPetRepository;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of {@link PetTimedCache#get(Integer)} cache hits from several
+ * threads, with logging configured as in production (INFO) but writing to a no-op
+ * appender so that only the cost of producing the log events is measured.
+ * <p>
+ * Run with {@code ./mvnw test-compile} followed by this class's {@code main} method on the
+ * test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class PetTimedCacheGetBenchmark {
+
+	private static final int SIZE = 10_000;
+
+	private PetTimedCache cache;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+		ch.qos.logback.classic.Logger root = context.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME);
+		root.detachAndStopAllAppenders();
+		NOPAppender<ch.qos.logback.classic.spi.ILoggingEvent> nop = new NOPAppender<>();
+		nop.setContext(context);
+		nop.start();
+		root.addAppender(nop);
+		root.setLevel(ch.qos.logback.classic.Level.INFO);
+
+		cache = new PetTimedCache(TimeUnit.HOURS.toMillis(1), 0, 0, 0, new SyntheticPetRepository(),
+				System::currentTimeMillis, null, null);
+		for (int id = 0; id < SIZE; id++) {
+			cache.get(id);
+		}
+	}
+
+	@Benchmark
+	public Object hit() {
+		return cache.get(ThreadLocalRandom.current().nextInt(SIZE));
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(PetTimedCacheGetBenchmark.class.getSimpleName()).build()).run();
+	}
+}
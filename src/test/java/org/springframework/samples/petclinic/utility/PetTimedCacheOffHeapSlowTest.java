@@ -0,0 +1,146 @@
+package org.springframework.samples.petclinic.utility;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.samples.petclinic.owner.Owner;
+import org.springframework.samples.petclinic.owner.Pet;
+import org.springframework.samples.petclinic.owner.PetType;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares the heap footprint and the garbage collection work of one million cached pets
+ * kept on the heap with the same pets kept in a 10,000 pet heap tier over an
+ * {@link OffHeapStore}. Excluded from the regular build; run with
+ * {@code ./mvnw test -Dtest=PetTimedCacheOffHeapSlowTest} and a heap of at least 1 GB.
+ */
+class PetTimedCacheOffHeapSlowTest {
+
+	private static final int PETS = 1_000_000;
+
+	private static final int HEAP_TIER_SIZE = 10_000;
+
+	private static final long OFF_HEAP_BYTES = 256L * 1024 * 1024;
+
+	private static final int READS = 2_000_000;
+
+	private static final PetType CAT = new PetType();
+
+	static {
+		CAT.setId(1);
+		CAT.setName("cat");
+	}
+
+	@Test
+	void testOffHeapTierShrinksHeapAndGcWork() {
+		Measurement onHeap = measure(TimedCache.<Integer, Pet>builder("pets", PetTimedCacheOffHeapSlowTest::pet)
+				.expireAfterWrite(TimeUnit.HOURS.toMillis(1)).build());
+		Measurement offHeap = measure(TimedCache.<Integer, Pet>builder("pets", PetTimedCacheOffHeapSlowTest::pet)
+				.expireAfterWrite(TimeUnit.HOURS.toMillis(1)).maximumSize(HEAP_TIER_SIZE)
+				.evictionTier(PetTimedCache.offHeapStore(OFF_HEAP_BYTES, id -> CAT)).build());
+
+		String measurements = "on-heap: " + onHeap + ", off-heap: " + offHeap;
+		assertTrue(offHeap.retainedBytes < onHeap.retainedBytes / 4,
+				() -> "the off-heap tier keeps pets off the heap; " + measurements);
+		assertTrue(offHeap.fullCollectionMillis < onHeap.fullCollectionMillis,
+				() -> "full collections have fewer pets to trace; " + measurements);
+	}
+
+	private static Measurement measure(TimedCache<Integer, Pet> cache) {
+		long before = usedHeapAfterGc();
+		for (int id = 0; id < PETS; id++) {
+			cache.get(id);
+		}
+		Measurement measurement = new Measurement();
+		measurement.retainedBytes = usedHeapAfterGc() - before;
+		long gcCount = gcCount();
+		long gcMillis = gcMillis();
+		long started = System.nanoTime();
+		for (int i = 0; i < READS; i++) {
+			// a hot set of 5,000 pets takes most reads, the rest are spread over all pets
+			ThreadLocalRandom random = ThreadLocalRandom.current();
+			cache.get(random.nextInt(10) < 8 ? random.nextInt(5_000) : random.nextInt(PETS));
+		}
+		measurement.readNanos = (System.nanoTime() - started) / READS;
+		measurement.collections = gcCount() - gcCount;
+		measurement.collectionMillis = gcMillis() - gcMillis;
+		measurement.fullCollectionMillis = fullGc();
+		measurement.loads = cache.stats().getLoadSuccessCount();
+		cache.close();
+		return measurement;
+	}
+
+	private static Pet pet(Integer id) {
+		Owner owner = new Owner();
+		owner.setId(id / 2);
+		owner.setFirstName("George");
+		owner.setLastName("Franklin" + id / 2);
+		owner.setAddress("110 W. Liberty St.");
+		owner.setCity("Madison");
+		owner.setTelephone("6085551023");
+		Pet pet = new Pet();
+		pet.setName("Leo" + id);
+		pet.setBirthDate(LocalDate.of(2010, 9, 7).plusDays(id % 3650));
+		pet.setType(CAT);
+		owner.addPet(pet);
+		pet.setId(id);
+		return pet;
+	}
+
+	private static long usedHeapAfterGc() {
+		fullGc();
+		Runtime runtime = Runtime.getRuntime();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	/**
+	 * @return how long the explicit collections took, in milliseconds
+	 */
+	private static long fullGc() {
+		long millis = gcMillis();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return gcMillis() - millis;
+	}
+
+	private static long gcCount() {
+		return ManagementFactory.getGarbageCollectorMXBeans().stream()
+				.mapToLong(GarbageCollectorMXBean::getCollectionCount).sum();
+	}
+
+	private static long gcMillis() {
+		return ManagementFactory.getGarbageCollectorMXBeans().stream()
+				.mapToLong(GarbageCollectorMXBean::getCollectionTime).sum();
+	}
+
+	private static class Measurement {
+
+		long retainedBytes;
+
+		long readNanos;
+
+		long collections;
+
+		long collectionMillis;
+
+		long fullCollectionMillis;
+
+		long loads;
+
+		@Override
+		public String toString() {
+			return String.format(
+					"retained heap %,d KB, %d ns/read, %d collections taking %d ms while reading, "
+							+ "%d ms for 3 full collections, %,d loads",
+					retainedBytes / 1024, readNanos, collections, collectionMillis, fullCollectionMillis, loads);
+		}
+
+	}
+
+}
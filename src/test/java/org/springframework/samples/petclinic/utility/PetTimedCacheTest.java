@@ -1,7 +1,535 @@
 package org.springframework.samples.petclinic.utility;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.samples.petclinic.owner.Pet;
+import org.springframework.samples.petclinic.owner.PetRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.intThat;
+import static org.mockito.Mockito.*;
 
-// todo
 class PetTimedCacheTest {
+
+	private static final long EXPIRY = 1000;
+
+	private final AtomicLong now = new AtomicLong(1_000_000);
+
+	private PetRepository repository;
+
+	private PetTimedCache cache;
+
+	@BeforeEach
+	void setup() {
+		repository = mock(PetRepository.class);
+		for (int id = 1; id <= 3; id++) {
+			when(repository.findById(id)).thenReturn(pet(id));
+		}
+		when(repository.findById(intThat(id -> id > 3))).then(invocation -> pet(invocation.getArgument(0)));
+		cache = newCache(0);
+	}
+
+	private PetTimedCache newCache(long maximumSize) {
+		return new PetTimedCache(EXPIRY, maximumSize, 0, 0, repository, now::get, null, null);
+	}
+
+	@Test
+	void testGetLoadsOnceWhileFresh() {
+		Pet first = cache.get(1);
+		now.addAndGet(EXPIRY - 1);
+		assertSame(first, cache.get(1));
+		verify(repository, times(1)).findById(1);
+	}
+
+	@Test
+	void testExpiredEntryIsReloaded() {
+		cache.get(1);
+		now.addAndGet(EXPIRY);
+		cache.get(1);
+		verify(repository, times(2)).findById(1);
+	}
+
+	@Test
+	void testMissingPetIsNotCached() {
+		when(repository.findById(42)).thenReturn(null);
+		assertNull(cache.get(42));
+		assertNull(cache.get(42));
+		verify(repository, times(2)).findById(42);
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	void testCleanUpRemovesOnlyExpiredEntries() {
+		cache.get(1);
+		now.addAndGet(EXPIRY / 2);
+		cache.get(2);
+		now.addAndGet(EXPIRY / 2 + 100);
+
+		assertEquals(1, cache.cleanUp());
+		assertEquals(1, cache.size());
+		assertEquals(0, cache.cleanUp());
+
+		now.addAndGet(EXPIRY);
+		assertEquals(1, cache.cleanUp());
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	void testReloadedEntryIsNotRemovedByItsPreviousDeadline() {
+		cache.get(1);
+		now.addAndGet(EXPIRY);
+		cache.get(1);
+		now.addAndGet(EXPIRY / 2);
+
+		assertEquals(0, cache.cleanUp());
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	void testCleanUpAfterLongPause() {
+		cache.get(1);
+		cache.get(2);
+		cache.get(3);
+		now.addAndGet(EXPIRY * 100);
+
+		assertEquals(3, cache.cleanUp());
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	void testWritesExpireEntriesWithoutMaintenanceThread() {
+		cache.get(1);
+		cache.get(2);
+		now.addAndGet(EXPIRY * 2);
+
+		cache.get(3);
+
+		assertEquals(1, cache.size());
+		assertEquals(0, cache.cleanUp());
+	}
+
+	@Test
+	void testMaximumSizeIsNeverExceeded() {
+		cache = newCache(100);
+		for (int id = 1; id <= 1000; id++) {
+			cache.get(id);
+			assertTrue(cache.size() <= 100);
+		}
+		assertEquals(100, cache.size());
+		assertEquals(900, cache.stats().getEvictionCount());
+	}
+
+	@Test
+	void testScanDoesNotFlushFrequentlyUsedPets() {
+		cache = newCache(100);
+		for (int round = 0; round < 5; round++) {
+			for (int id = 1; id <= 50; id++) {
+				cache.get(id);
+			}
+		}
+		for (int id = 1000; id < 3000; id++) {
+			cache.get(id);
+			if (id % 10 == 0) {
+				cache.get(1 + (id / 10) % 50);
+			}
+		}
+		for (int id = 1; id <= 50; id++) {
+			cache.get(id);
+			verify(repository, times(1)).findById(id);
+		}
+		assertTrue(cache.stats().getAdmissionRejectionCount() > 0);
+	}
+
+	@Test
+	void testStats() {
+		cache = newCache(2);
+		cache.get(1);
+		cache.get(1);
+		cache.get(2);
+		cache.get(3);
+
+		CacheStats stats = cache.stats();
+		assertEquals(1, stats.getHitCount());
+		assertEquals(3, stats.getMissCount());
+		assertEquals(0.25, stats.getHitRatio());
+		assertEquals(1, stats.getEvictionCount());
+	}
+
+	@Test
+	void testMetrics() {
+		MeterRegistry registry = new SimpleMeterRegistry();
+		cache.bindTo(registry);
+		cache.get(1);
+		cache.get(1);
+
+		assertEquals(1, registry.get("cache.gets").tags("cache", "pets", "result", "hit").functionCounter().count());
+		assertEquals(1, registry.get("cache.gets").tags("cache", "pets", "result", "miss").functionCounter().count());
+		assertEquals(0.5, registry.get("cache.hit.ratio").gauge().value());
+		assertEquals(1, registry.get("cache.size").gauge().value());
+	}
+
+	@Test
+	void testLoadsAreCountedAndTimed() {
+		MeterRegistry registry = new SimpleMeterRegistry();
+		cache.bindTo(registry);
+		when(repository.findById(7)).thenThrow(new IllegalStateException("database down"));
+		cache.get(1);
+		cache.get(2);
+		assertThrows(IllegalStateException.class, () -> cache.get(7));
+
+		CacheStats stats = cache.stats();
+		assertEquals(2, stats.getLoadSuccessCount());
+		assertEquals(1, stats.getLoadFailureCount());
+		assertTrue(stats.getTotalLoadTime() > 0);
+		assertEquals(2, registry.get("cache.load").tags("cache", "pets", "result", "success").timer().count());
+		assertEquals(1, registry.get("cache.load").tags("cache", "pets", "result", "failure").timer().count());
+	}
+
+	@Test
+	void testConcurrentMissesOnSamePetLoadOnce() throws Exception {
+		PetRepository slowRepository = slowRepository();
+		PetTimedCache shared = new PetTimedCache(60_000, 0, 0, 0, slowRepository, System::currentTimeMillis, null, null);
+
+		List<Pet> results = hammer(300, thread -> shared.get(1));
+
+		verify(slowRepository, times(1)).findById(1);
+		assertEquals(300, results.size());
+		results.forEach(pet -> assertSame(results.get(0), pet));
+	}
+
+	@Test
+	void testConcurrentMissesOnDifferentPetsLoadOncePerPet() throws Exception {
+		PetRepository slowRepository = slowRepository();
+		PetTimedCache shared = new PetTimedCache(60_000, 0, 0, 0, slowRepository, System::currentTimeMillis, null, null);
+
+		List<Pet> results = hammer(400, thread -> shared.get(1 + thread % 20));
+
+		for (int id = 1; id <= 20; id++) {
+			verify(slowRepository, times(1)).findById(id);
+		}
+		results.forEach(pet -> assertNotNull(pet));
+		assertEquals(20, shared.size());
+	}
+
+	@Test
+	void testFailedLoadIsRethrownAndRetried() {
+		when(repository.findById(7)).thenThrow(new IllegalStateException("database down")).thenReturn(pet(7));
+
+		assertThrows(IllegalStateException.class, () -> cache.get(7));
+		assertEquals(7, cache.get(7).getId());
+		verify(repository, times(2)).findById(7);
+	}
+
+	@Test
+	void testRefreshAheadReloadsInBackground() {
+		List<Runnable> refreshes = new ArrayList<>();
+		cache = newRefreshingCache(0.2, 0, refreshes::add);
+		Pet reloaded = pet(1);
+		when(repository.findById(1)).thenReturn(pet(1), reloaded);
+
+		Pet first = cache.get(1);
+		now.addAndGet(EXPIRY * 7 / 10);
+		assertSame(first, cache.get(1));
+		assertTrue(refreshes.isEmpty());
+
+		now.addAndGet(EXPIRY / 10 + 1);
+		assertSame(first, cache.get(1));
+		assertSame(first, cache.get(1));
+		assertEquals(1, refreshes.size());
+
+		refreshes.get(0).run();
+		now.addAndGet(EXPIRY / 2);
+		assertSame(reloaded, cache.get(1));
+		verify(repository, times(2)).findById(1);
+	}
+
+	@Test
+	void testStaleWhileRevalidateServesStalePetDuringReload() {
+		List<Runnable> refreshes = new ArrayList<>();
+		cache = newRefreshingCache(0, 500, refreshes::add);
+		Pet reloaded = pet(1);
+		when(repository.findById(1)).thenReturn(pet(1), reloaded);
+
+		Pet first = cache.get(1);
+		now.addAndGet(EXPIRY + 100);
+		assertSame(first, cache.get(1));
+		assertSame(first, cache.get(1));
+		assertEquals(1, refreshes.size());
+		verify(repository, times(1)).findById(1);
+
+		refreshes.get(0).run();
+		assertSame(reloaded, cache.get(1));
+		assertEquals(3, cache.stats().getHitCount());
+	}
+
+	@Test
+	void testStalePetIsNotServedPastTheRevalidationWindow() {
+		cache = newRefreshingCache(0, 500, runnable -> {
+		});
+		cache.get(1);
+		now.addAndGet(EXPIRY + 500);
+
+		cache.get(1);
+		verify(repository, times(2)).findById(1);
+	}
+
+	@Test
+	void testRefreshOfDeletedPetInvalidatesIt() {
+		List<Runnable> refreshes = new ArrayList<>();
+		cache = newRefreshingCache(0, 500, refreshes::add);
+		when(repository.findById(1)).thenReturn(pet(1), (Pet) null);
+
+		cache.get(1);
+		now.addAndGet(EXPIRY);
+		cache.get(1);
+		refreshes.get(0).run();
+
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	void testRejectedRefreshKeepsServingCachedPet() {
+		cache = newRefreshingCache(0.5, 0, runnable -> {
+			throw new RejectedExecutionException();
+		});
+		Pet first = cache.get(1);
+		now.addAndGet(EXPIRY * 3 / 4);
+
+		assertSame(first, cache.get(1));
+		assertSame(first, cache.get(1));
+		verify(repository, times(1)).findById(1);
+	}
+
+	@Test
+	void testWriteThroughCachesSavedPet() {
+		cache.get(1);
+		Pet renamed = pet(1);
+		renamed.setName("renamed");
+
+		cache.save(renamed);
+
+		verify(repository).save(renamed);
+		assertSame(renamed, cache.get(1));
+		verify(repository, times(1)).findById(1);
+	}
+
+	@Test
+	void testWriteThroughCachesNewPetUnderItsGeneratedId() {
+		Pet created = new Pet();
+		doAnswer(invocation -> {
+			created.setId(99);
+			return null;
+		}).when(repository).save(created);
+
+		cache.save(created);
+
+		assertSame(created, cache.get(99));
+		verify(repository, never()).findById(99);
+	}
+
+	@Test
+	void testFailedWriteThroughInvalidatesPet() {
+		cache.get(1);
+		Pet renamed = pet(1);
+		doThrow(new IllegalStateException("database down")).when(repository).save(renamed);
+
+		assertThrows(IllegalStateException.class, () -> cache.save(renamed));
+
+		assertNotSame(renamed, cache.get(1));
+		verify(repository, times(2)).findById(1);
+	}
+
+	@Test
+	void testLoadRacingWithSaveDoesNotOverwriteSavedPet() {
+		Pet saved = pet(1);
+		when(repository.findById(1)).then(invocation -> {
+			Pet stale = pet(1);
+			cache.save(saved); // a save commits while the row is being read
+			return stale;
+		});
+
+		cache.get(1);
+
+		assertSame(saved, cache.get(1));
+	}
+
+	@Test
+	void testWriteBehindFlushesWhenBatchIsFull() {
+		List<List<Pet>> batches = new ArrayList<>();
+		cache = newWriteBehindCache(3, batches);
+
+		cache.save(pet(1));
+		cache.save(pet(2));
+		assertTrue(batches.isEmpty());
+		cache.save(pet(3));
+
+		assertEquals(1, batches.size());
+		assertEquals(3, batches.get(0).size());
+		verify(repository, never()).save(any());
+	}
+
+	@Test
+	void testWriteBehindServesAndCoalescesPendingSaves() {
+		List<List<Pet>> batches = new ArrayList<>();
+		cache = newWriteBehindCache(10, batches);
+		Pet first = pet(1);
+		Pet second = pet(1);
+
+		cache.save(first);
+		cache.save(second);
+
+		assertSame(second, cache.get(1));
+		verify(repository, never()).findById(1);
+		cache.flush();
+		assertEquals(1, batches.size());
+		assertEquals(1, batches.get(0).size());
+		assertSame(second, batches.get(0).get(0));
+	}
+
+	@Test
+	void testWriteBehindReloadsAPendingSaveFromTheBuffer() {
+		List<List<Pet>> batches = new ArrayList<>();
+		cache = newWriteBehindCache(10, batches);
+		Pet saved = pet(1);
+
+		cache.save(saved);
+		now.addAndGet(EXPIRY);
+		assertSame(saved, cache.get(1));
+		cache.invalidate(1);
+		assertSame(saved, cache.get(1));
+
+		verify(repository, never()).findById(1);
+		cache.flush();
+		cache.invalidate(1);
+		assertNotSame(saved, cache.get(1));
+		verify(repository).findById(1);
+	}
+
+	@Test
+	void testWriteBehindFlushesAfterInterval() {
+		List<List<Pet>> batches = new ArrayList<>();
+		WriteBehindQueue<Integer, Pet> queue = new WriteBehindQueue<>(batches::add, 10, 500);
+		cache = newWriteBehindCache(queue);
+
+		cache.save(pet(1));
+		now.addAndGet(499);
+		queue.flushIfDue(now.get());
+		assertTrue(batches.isEmpty());
+
+		now.addAndGet(1);
+		queue.flushIfDue(now.get());
+		assertEquals(1, batches.size());
+		assertEquals(0, queue.pendingCount());
+	}
+
+	@Test
+	void testWriteBehindRetriesFailedBatch() {
+		List<List<Pet>> batches = new ArrayList<>();
+		AtomicBoolean fail = new AtomicBoolean(true);
+		WriteBehindQueue<Integer, Pet> queue = new WriteBehindQueue<>(pets -> {
+			if (fail.get()) {
+				throw new IllegalStateException("database down");
+			}
+			batches.add(pets);
+		}, 10, 500);
+		cache = newWriteBehindCache(queue);
+		Pet newer = pet(2);
+
+		cache.save(pet(1));
+		cache.save(pet(2));
+		assertThrows(IllegalStateException.class, cache::flush);
+		assertEquals(2, queue.pendingCount());
+
+		cache.save(newer);
+		fail.set(false);
+		cache.flush();
+		assertEquals(1, batches.size());
+		assertEquals(2, batches.get(0).size());
+		assertTrue(batches.get(0).contains(newer));
+	}
+
+	@Test
+	void testWriteBehindWritesNewPetsThrough() {
+		List<List<Pet>> batches = new ArrayList<>();
+		cache = newWriteBehindCache(10, batches);
+		Pet created = new Pet();
+
+		cache.save(created);
+
+		verify(repository).save(created);
+		cache.flush();
+		assertTrue(batches.isEmpty());
+	}
+
+	private PetTimedCache newWriteBehindCache(int batchSize, List<List<Pet>> batches) {
+		return newWriteBehindCache(new WriteBehindQueue<>(batches::add, batchSize, 1000));
+	}
+
+	private PetTimedCache newWriteBehindCache(WriteBehindQueue<Integer, Pet> queue) {
+		return new PetTimedCache(EXPIRY, 0, 0, 0, repository, now::get, null, queue);
+	}
+
+	private PetTimedCache newRefreshingCache(double refreshAheadFraction, long staleMillis, Executor executor) {
+		return new PetTimedCache(EXPIRY, 0, refreshAheadFraction, staleMillis, repository, now::get, executor, null);
+	}
+
+	private static PetRepository slowRepository() {
+		PetRepository slowRepository = mock(PetRepository.class);
+		when(slowRepository.findById(anyInt())).then(invocation -> {
+			Thread.sleep(50);
+			return pet(invocation.getArgument(0));
+		});
+		return slowRepository;
+	}
+
+	/**
+	 * Runs {@code task} from {@code threads} threads released at the same instant.
+	 */
+	private static List<Pet> hammer(int threads, IntFunction<Pet> task) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			CountDownLatch start = new CountDownLatch(1);
+			List<Future<Pet>> futures = new ArrayList<>();
+			for (int i = 0; i < threads; i++) {
+				int thread = i;
+				futures.add(executor.submit(() -> {
+					start.await();
+					return task.apply(thread);
+				}));
+			}
+			start.countDown();
+			List<Pet> results = new ArrayList<>();
+			for (Future<Pet> future : futures) {
+				results.add(future.get(10, TimeUnit.SECONDS));
+			}
+			return results;
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static Pet pet(int id) {
+		Pet pet = new Pet();
+		pet.setId(id);
+		pet.setName("pet" + id);
+		return pet;
+	}
 }
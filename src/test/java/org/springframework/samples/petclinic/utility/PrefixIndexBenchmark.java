@@ -0,0 +1,137 @@
+package org.springframework.samples.petclinic.utility;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the first page of owners whose last name starts with a prefix of
+ * {@link #prefixLength} characters among {@link #OWNERS} owners, with a
+ * {@link PrefixIndex} against the {@code LIKE} query on the
+ * {@code (last_name_lower, id)} index of an embedded H2 database, and the cost of saving
+ * an owner in the index.
+ * <p>
+ * Run with {@code ./mvnw test-compile} followed by this class's {@code main} method on the
+ * test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PrefixIndexBenchmark {
+
+	static final int OWNERS = 1_000_000;
+
+	static final int PAGE = 21;
+
+	private static final String[] SYLLABLES = { "ba", "co", "da", "es", "fr", "ge", "ha", "jo", "ka", "le", "mc",
+			"no", "pa", "ro", "sc", "ta", "vi", "wa", "an", "el", "in", "on", "son", "man", "ton", "ley" };
+
+	@Param({ "1", "2", "3" })
+	int prefixLength;
+
+	private final List<String> lastNames = new ArrayList<>(OWNERS);
+
+	private final PrefixIndex index = new PrefixIndex();
+
+	private Connection connection;
+
+	private PreparedStatement query;
+
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setup() throws SQLException {
+		Random random = new Random(42);
+		Map<Integer, String> byId = new HashMap<>();
+		for (int id = 1; id <= OWNERS; id++) {
+			StringBuilder lastName = new StringBuilder();
+			for (int syllables = 2 + random.nextInt(3); syllables > 0; syllables--) {
+				lastName.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+			}
+			lastName.setCharAt(0, Character.toUpperCase(lastName.charAt(0)));
+			lastNames.add(lastName.toString());
+			byId.put(id, lastName.toString());
+		}
+		index.replaceAll(byId);
+
+		connection = DriverManager.getConnection("jdbc:h2:mem:prefix-index-benchmark");
+		try (Statement statement = connection.createStatement()) {
+			statement.execute("CREATE TABLE owners (id INTEGER PRIMARY KEY, last_name VARCHAR_IGNORECASE(30), "
+					+ "last_name_lower VARCHAR(30) GENERATED ALWAYS AS (LOWER(last_name)))");
+		}
+		try (PreparedStatement insert = connection.prepareStatement("INSERT INTO owners (id, last_name) VALUES (?, ?)")) {
+			for (int id = 1; id <= OWNERS; id++) {
+				insert.setInt(1, id);
+				insert.setString(2, lastNames.get(id - 1));
+				insert.addBatch();
+				if (id % 10_000 == 0) {
+					insert.executeBatch();
+				}
+			}
+		}
+		try (Statement statement = connection.createStatement()) {
+			statement.execute("CREATE INDEX owners_last_name_lower ON owners (last_name_lower, id)");
+		}
+		query = connection.prepareStatement(
+				"SELECT id FROM owners WHERE last_name_lower LIKE ? ORDER BY last_name_lower, id LIMIT " + PAGE);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws SQLException {
+		connection.close();
+	}
+
+	@Benchmark
+	public int[] index() {
+		return index.startingWith(prefix(), PAGE);
+	}
+
+	@Benchmark
+	public List<Integer> database() throws SQLException {
+		query.setString(1, prefix().toLowerCase(Locale.ROOT) + "%");
+		List<Integer> ids = new ArrayList<>(PAGE);
+		try (ResultSet rs = query.executeQuery()) {
+			while (rs.next()) {
+				ids.add(rs.getInt(1));
+			}
+		}
+		return ids;
+	}
+
+	/**
+	 * Renames an owner, as saving the owner form does.
+	 */
+	@Benchmark
+	public void save() {
+		int id = 1 + next++ % OWNERS;
+		index.put(id, prefix() + lastNames.get(id - 1));
+	}
+
+	private String prefix() {
+		String lastName = lastNames.get(next++ % OWNERS);
+		return lastName.substring(0, Math.min(prefixLength, lastName.length()));
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(PrefixIndexBenchmark.class.getSimpleName()).build()).run();
+	}
+
+}
@@ -0,0 +1,87 @@
+package org.springframework.samples.petclinic.utility;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrefixIndexTest {
+
+	private final PrefixIndex index = new PrefixIndex();
+
+	@BeforeEach
+	void setup() {
+		Map<Integer, String> lastNames = new HashMap<>();
+		lastNames.put(1, "Franklin");
+		lastNames.put(2, "Davis");
+		lastNames.put(3, "Rodriquez");
+		lastNames.put(4, "Davis");
+		lastNames.put(5, "McTavish");
+		lastNames.put(6, "Coleman");
+		lastNames.put(7, "Black");
+		lastNames.put(8, "Escobito");
+		lastNames.put(9, null);
+		lastNames.put(10, "Estaban");
+		index.replaceAll(lastNames);
+	}
+
+	@Test
+	void testPrefixMatchesAreOrderedByKeyThenId() {
+		assertArrayEquals(new int[] { 7, 6, 2, 4, 8, 10, 1, 5, 3 }, index.startingWith("", 100));
+		assertArrayEquals(new int[] { 8, 10 }, index.startingWith("es", 100));
+		assertArrayEquals(new int[] { 2, 4 }, index.startingWith("DAVIS", 100));
+		assertArrayEquals(new int[] { 2 }, index.startingWith("d", 1));
+		assertArrayEquals(new int[0], index.startingWith("Davison", 100));
+		assertArrayEquals(new int[0], index.startingWith("Zed", 100));
+		assertEquals(9, index.size());
+	}
+
+	@Test
+	void testAfterSeeksPastTheEntry() {
+		assertArrayEquals(new int[] { 4, 8, 10 }, index.startingWithAfter("", "Davis", 2, 3));
+		assertArrayEquals(new int[] { 8, 10, 1 }, index.startingWithAfter("", "Davis", 4, 3));
+		assertArrayEquals(new int[] { 10 }, index.startingWithAfter("E", "Escobito", 8, 3));
+		assertArrayEquals(new int[0], index.startingWithAfter("E", "Estaban", 10, 3));
+		// entries before or after the matches only limit the scan
+		assertArrayEquals(new int[] { 8, 10 }, index.startingWithAfter("E", "Black", 7, 3));
+		assertArrayEquals(new int[0], index.startingWithAfter("E", "Zed", 1, 3));
+	}
+
+	@Test
+	void testBeforeSeeksBackFromTheEntryClosestFirst() {
+		assertArrayEquals(new int[] { 2, 6 }, index.startingWithBefore("", "Davis", 4, 2));
+		assertArrayEquals(new int[] { 4, 2, 6, 7 }, index.startingWithBefore("", "Escobito", 8, 10));
+		assertArrayEquals(new int[] { 8 }, index.startingWithBefore("E", "Estaban", 10, 3));
+		assertArrayEquals(new int[] { 10, 8 }, index.startingWithBefore("E", "Zed", 1, 3));
+		assertArrayEquals(new int[0], index.startingWithBefore("E", "Black", 7, 3));
+	}
+
+	@Test
+	void testPutMovesEntriesBothWays() {
+		index.put(7, "Estes");
+		assertArrayEquals(new int[] { 6, 2, 4, 8, 10, 7, 1, 5, 3 }, index.startingWith("", 100));
+		index.put(3, "Able");
+		assertArrayEquals(new int[] { 3, 6, 2, 4, 8, 10, 7, 1, 5 }, index.startingWith("", 100));
+		index.put(2, "Davis");
+		index.put(4, "davis");
+		assertArrayEquals(new int[] { 2, 4 }, index.startingWith("Davis", 100));
+	}
+
+	@Test
+	void testPutAddsMovesAndRemoves() {
+		index.put(11, "davies");
+		index.put(1, "Daly");
+		index.put(8, null);
+		index.remove(10);
+		index.remove(42);
+
+		assertArrayEquals(new int[] { 1, 11, 2, 4 }, index.startingWith("Da", 100));
+		assertArrayEquals(new int[0], index.startingWith("E", 100));
+		assertArrayEquals(new int[0], index.startingWith("Franklin", 100));
+		assertEquals(8, index.size());
+	}
+
+}
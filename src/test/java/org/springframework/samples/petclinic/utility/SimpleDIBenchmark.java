@@ -0,0 +1,134 @@
+package org.springframework.samples.petclinic.utility;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.context.support.GenericApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link SimpleDI#getInstanceOf(Class)} from {@link #THREADS} threads against
+ * {@code getBean} of a Spring context, and the time to start a container of six
+ * constructor-injected components and get the top one against bootstrapping the
+ * equivalent Spring context.
+ * <p>
+ * Run with {@code ./mvnw test-compile} followed by this class's {@code main} method on the
+ * test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SimpleDIBenchmark {
+
+	static final int THREADS = 8;
+
+	private static final Class<?>[] COMPONENTS = { Repository.class, Cache.class, Formatter.class, Service.class,
+			Validator.class, Controller.class };
+
+	private SimpleDI container;
+
+	private GenericApplicationContext context;
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		container = startSimpleDI();
+		context = startSpring();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		context.close();
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@Threads(THREADS)
+	public Object getInstanceOf() throws Exception {
+		return container.getInstanceOf(Service.class);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@Threads(THREADS)
+	public Object getBean() {
+		return context.getBean(Service.class);
+	}
+
+	@Benchmark
+	public Object startup() throws Exception {
+		return startSimpleDI().getInstanceOf(Controller.class);
+	}
+
+	@Benchmark
+	public Object startupSpring() {
+		try (GenericApplicationContext context = startSpring()) {
+			return context.getBean(Controller.class);
+		}
+	}
+
+	private static SimpleDI startSimpleDI() {
+		SimpleDI container = SimpleDI.newDIContainer();
+		for (Class<?> component : COMPONENTS) {
+			container.provideByConstructor(component, component);
+		}
+		return container;
+	}
+
+	private static GenericApplicationContext startSpring() {
+		GenericApplicationContext context = new GenericApplicationContext();
+		for (Class<?> component : COMPONENTS) {
+			context.registerBean(component);
+		}
+		context.refresh();
+		return context;
+	}
+
+	public static class Repository {
+
+	}
+
+	public static class Cache {
+
+		public Cache(Repository repository) {
+		}
+
+	}
+
+	public static class Formatter {
+
+		public Formatter(Cache cache) {
+		}
+
+	}
+
+	public static class Service {
+
+		public Service(Cache cache, Repository repository) {
+		}
+
+	}
+
+	public static class Validator {
+
+		public Validator(Formatter formatter) {
+		}
+
+	}
+
+	public static class Controller {
+
+		public Controller(Service service, Formatter formatter, Validator validator) {
+		}
+
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(SimpleDIBenchmark.class.getSimpleName()).build()).run();
+	}
+
+}
@@ -1,18 +1,64 @@
 package org.springframework.samples.petclinic.utility;
 
-import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 import org.springframework.samples.petclinic.owner.PetRepository;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.mock;
 
-// todo pass these tests
-@Disabled
 class SimpleDITest {
 
+	public static class Repository {
+
+	}
+
+	public static class Service {
+
+		final Repository repository;
+
+		public Service(Repository repository) {
+			this.repository = repository;
+		}
+
+	}
+
+	public static class Controller {
+
+		final Service service;
+
+		final Repository repository;
+
+		public Controller(Service service, Repository repository) {
+			this.service = service;
+			this.repository = repository;
+		}
+
+	}
+
+	public static class TwoConstructors {
+
+		public TwoConstructors() {
+		}
+
+		public TwoConstructors(Repository repository) {
+		}
+
+	}
+
 	@Test
 	public void testProvideByInstance() throws Exception {
 		SimpleDI diContainer = SimpleDI.getDIContainer();
@@ -33,4 +79,204 @@ class SimpleDITest {
 		});
 		assertNotNull(simpleDi.getInstanceOf(PetRepository.class));
 	}
+
+	@Test
+	void testGetDIContainerReturnsTheSameContainer() {
+		assertSame(SimpleDI.getDIContainer(), SimpleDI.getDIContainer());
+		assertNotSame(SimpleDI.newDIContainer(), SimpleDI.newDIContainer());
+	}
+
+	@Test
+	void testFunctionIsCalledOnceAfterItsDependencies() throws Exception {
+		SimpleDI container = SimpleDI.newDIContainer();
+		AtomicInteger calls = new AtomicInteger();
+		container.provideByAConstructorFunction(Service.class, () -> {
+			calls.incrementAndGet();
+			return new Service((Repository) container.getInstanceOf(Repository.class));
+		}, Repository.class);
+		container.provideByConstructor(Repository.class, Repository.class);
+
+		Service service = (Service) container.getInstanceOf(Service.class);
+
+		assertSame(service, container.getInstanceOf(Service.class));
+		assertSame(container.getInstanceOf(Repository.class), service.repository);
+		assertEquals(1, calls.get());
+	}
+
+	@Test
+	void testProvideByConstructorInjectsParameters() throws Exception {
+		SimpleDI container = SimpleDI.newDIContainer();
+		container.provideByConstructor(Controller.class, Controller.class);
+		container.provideByConstructor(Service.class, Service.class);
+		Repository repository = new Repository();
+		container.provideByInstance(Repository.class, repository);
+
+		Controller controller = (Controller) container.getInstanceOf(Controller.class);
+
+		assertSame(repository, controller.repository);
+		assertSame(repository, controller.service.repository);
+		assertSame(controller.service, container.getInstanceOf(Service.class));
+	}
+
+	@Test
+	void testInvalidRegistrationsAreRejected() {
+		SimpleDI container = SimpleDI.newDIContainer();
+
+		assertThrows(IllegalArgumentException.class, () -> container.provideByInstance(Service.class, "service"));
+		assertThrows(IllegalArgumentException.class,
+				() -> container.provideByConstructor(Service.class, Repository.class));
+		assertThrows(IllegalArgumentException.class,
+				() -> container.provideByConstructor(TwoConstructors.class, TwoConstructors.class));
+		assertThrows(IllegalArgumentException.class, () -> container.getInstanceOf(Service.class));
+	}
+
+	@Test
+	void testCircularDependencyIsRejectedWhenRegistered() throws Exception {
+		SimpleDI container = SimpleDI.newDIContainer();
+		container.provideByConstructor(Controller.class, Controller.class);
+		container.provideByConstructor(Service.class, Service.class);
+
+		IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+				() -> container.provideByAConstructorFunction(Repository.class, Repository::new, Controller.class));
+
+		assertEquals("Circular dependency: " + Repository.class.getName() + " -> " + Controller.class.getName()
+				+ " -> " + Service.class.getName() + " -> " + Repository.class.getName(), ex.getMessage());
+		container.provideByAConstructorFunction(Repository.class, Repository::new);
+		assertNotNull(container.getInstanceOf(Controller.class));
+	}
+
+	@Test
+	void testUndeclaredCircularDependencyIsReportedWhenResolved() {
+		SimpleDI container = SimpleDI.newDIContainer();
+		container.provideByAConstructorFunction(Repository.class, () -> container.getInstanceOf(Service.class));
+		container.provideByConstructor(Service.class, Service.class);
+
+		IllegalStateException ex = assertThrows(IllegalStateException.class,
+				() -> container.getInstanceOf(Service.class));
+
+		assertEquals("Circular dependency: " + Service.class.getName() + " -> " + Repository.class.getName()
+				+ " -> " + Service.class.getName(), ex.getMessage());
+	}
+
+	@Test
+	void testFunctionReturningAnotherTypeFails() {
+		SimpleDI container = SimpleDI.newDIContainer();
+		container.provideByAConstructorFunction(Repository.class, () -> null);
+
+		assertThrows(IllegalStateException.class, () -> container.getInstanceOf(Repository.class));
+	}
+
+	@Test
+	void testConcurrentFirstLookupsShareOneInstance() throws Exception {
+		SimpleDI container = SimpleDI.newDIContainer();
+		AtomicInteger calls = new AtomicInteger();
+		CountDownLatch start = new CountDownLatch(1);
+		container.provideByAConstructorFunction(Repository.class, () -> {
+			calls.incrementAndGet();
+			return new Repository();
+		});
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<Object>> lookups = IntStream.range(0, 8).mapToObj(i -> executor.submit(() -> {
+				start.await();
+				return container.getInstanceOf(Repository.class);
+			})).collect(Collectors.toList());
+			start.countDown();
+
+			Object first = lookups.get(0).get();
+			for (Future<Object> lookup : lookups) {
+				assertSame(first, lookup.get());
+			}
+			assertEquals(1, calls.get());
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	void testStartCreatesIndependentProvidersInParallel() throws Exception {
+		SimpleDI container = SimpleDI.newDIContainer();
+		// each of the two providers only returns once the other one runs too
+		CyclicBarrier bothRunning = new CyclicBarrier(2);
+		container.provideByAConstructorFunction(Repository.class, () -> {
+			bothRunning.await(5, TimeUnit.SECONDS);
+			Thread.sleep(50);
+			return new Repository();
+		});
+		container.provideByAConstructorFunction(Formatter.class, () -> {
+			bothRunning.await(5, TimeUnit.SECONDS);
+			return new Formatter();
+		});
+		container.provideByConstructor(Service.class, Service.class);
+		container.provideByConstructor(Controller.class, Controller.class);
+
+		ForkJoinPool pool = new ForkJoinPool(4);
+		SimpleDI.StartupReport report;
+		try {
+			report = container.start(pool);
+		}
+		finally {
+			pool.shutdown();
+		}
+
+		assertEquals(4, report.getTimings().size());
+		List<Class<?>> criticalPath = report.getCriticalPath().stream().map(SimpleDI.Timing::getType)
+			.collect(Collectors.toList());
+		// the controller waits for the service, which waits for the repository
+		assertEquals(Arrays.asList(Repository.class, Service.class, Controller.class), criticalPath);
+		for (int i = 1; i < report.getCriticalPath().size(); i++) {
+			assertTrue(report.getCriticalPath().get(i).getStartNanos() >= report.getCriticalPath().get(i - 1)
+				.getEndNanos());
+		}
+		assertTrue(report.toString().startsWith("Started 4 providers in "), report::toString);
+		Controller controller = (Controller) container.getInstanceOf(Controller.class);
+		assertSame(container.getInstanceOf(Repository.class), controller.repository);
+	}
+
+	@Test
+	void testStartFailsBeforeCreatingAnythingWhenADependencyHasNoProvider() {
+		SimpleDI container = SimpleDI.newDIContainer();
+		AtomicInteger calls = new AtomicInteger();
+		container.provideByAConstructorFunction(Repository.class, () -> {
+			calls.incrementAndGet();
+			return new Repository();
+		});
+		container.provideByConstructor(Service.class, Service.class);
+		container.provideByConstructor(Controller.class, Controller.class);
+		container.provideByAConstructorFunction(Formatter.class, Formatter::new, Validator.class);
+
+		IllegalStateException ex = assertThrows(IllegalStateException.class, container::start);
+
+		assertEquals(Formatter.class.getName() + " depends on " + Validator.class.getName()
+				+ ", which has no provider", ex.getMessage());
+		assertEquals(0, calls.get());
+	}
+
+	@Test
+	void testStartStopsAtTheFirstFailingProvider() {
+		SimpleDI container = SimpleDI.newDIContainer();
+		AtomicInteger calls = new AtomicInteger();
+		container.provideByAConstructorFunction(Repository.class, () -> {
+			throw new IllegalStateException("no database");
+		});
+		container.provideByAConstructorFunction(Service.class, () -> {
+			calls.incrementAndGet();
+			return new Service(null);
+		}, Repository.class);
+
+		IllegalStateException ex = assertThrows(IllegalStateException.class, container::start);
+
+		assertEquals("no database", ex.getMessage());
+		assertEquals(0, calls.get());
+	}
+
+	public static class Formatter {
+
+	}
+
+	public static class Validator {
+
+	}
+
 }
@@ -0,0 +1,130 @@
+package org.springframework.samples.petclinic.utility;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.beans.support.MutableSortDefinition;
+import org.springframework.beans.support.PropertyComparator;
+import org.springframework.samples.petclinic.owner.Pet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures ordered reads of {@link #size} pets interleaved with inserts, one insert every
+ * {@link #readsPerInsert} reads, with {@link SortedIdentityMap} against the former
+ * set-and-sort-on-read getters. Also measures a name prefix query against filtering the
+ * sorted list.
+ * <p>
+ * Run with {@code ./mvnw test-compile} followed by this class's {@code main} method on the
+ * test classpath.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SortedIdentityMapBenchmark {
+
+	static final int OPERATIONS = 1_000;
+
+	@Param({ "10", "100", "1000" })
+	int size;
+
+	@Param({ "1", "10", "100" })
+	int readsPerInsert;
+
+	private final List<Pet> pets = new ArrayList<>();
+
+	private final List<Pet> inserts = new ArrayList<>();
+
+	@Setup(Level.Trial)
+	public void setup() {
+		Random random = new Random(42);
+		for (int id = 0; id < size + OPERATIONS; id++) {
+			Pet pet = new Pet();
+			pet.setId(id);
+			pet.setName(Integer.toString(random.nextInt(Integer.MAX_VALUE), 36));
+			(id < size ? pets : inserts).add(pet);
+		}
+	}
+
+	@Benchmark
+	public void orderedReads(Blackhole blackhole) {
+		SortedIdentityMap<String, Pet> map = new SortedIdentityMap<>(Pet::getName, String.CASE_INSENSITIVE_ORDER,
+				pets);
+		for (int operation = 0; operation < OPERATIONS; operation++) {
+			if (operation % readsPerInsert == 0) {
+				map.add(inserts.get(operation));
+			}
+			blackhole.consume(map.asList().get(0));
+		}
+	}
+
+	@Benchmark
+	public void orderedReadsLegacy(Blackhole blackhole) {
+		Set<Pet> set = new HashSet<>(pets);
+		for (int operation = 0; operation < OPERATIONS; operation++) {
+			if (operation % readsPerInsert == 0) {
+				set.add(inserts.get(operation));
+			}
+			blackhole.consume(sorted(set).get(0));
+		}
+	}
+
+	@Benchmark
+	public void prefixQueries(Blackhole blackhole) {
+		SortedIdentityMap<String, Pet> map = new SortedIdentityMap<>(Pet::getName, String.CASE_INSENSITIVE_ORDER,
+				pets);
+		for (int operation = 0; operation < OPERATIONS; operation++) {
+			if (operation % readsPerInsert == 0) {
+				map.add(inserts.get(operation));
+			}
+			blackhole.consume(map.withPrefix(prefix(operation)));
+		}
+	}
+
+	@Benchmark
+	public void prefixQueriesLegacy(Blackhole blackhole) {
+		Set<Pet> set = new HashSet<>(pets);
+		for (int operation = 0; operation < OPERATIONS; operation++) {
+			if (operation % readsPerInsert == 0) {
+				set.add(inserts.get(operation));
+			}
+			String prefix = prefix(operation);
+			List<Pet> matches = new ArrayList<>();
+			for (Pet pet : sorted(set)) {
+				if (pet.getName().regionMatches(true, 0, prefix, 0, prefix.length())) {
+					matches.add(pet);
+				}
+			}
+			blackhole.consume(matches);
+		}
+	}
+
+	private String prefix(int operation) {
+		return inserts.get(operation).getName().substring(0, 2);
+	}
+
+	/**
+	 * The former {@code Owner.getPets()}.
+	 */
+	private static List<Pet> sorted(Set<Pet> pets) {
+		List<Pet> sortedPets = new ArrayList<>(pets);
+		PropertyComparator.sort(sortedPets, new MutableSortDefinition("name", true, true));
+		return Collections.unmodifiableList(sortedPets);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(SortedIdentityMapBenchmark.class.getSimpleName()).build()).run();
+	}
+
+}
@@ -0,0 +1,159 @@
+package org.springframework.samples.petclinic.utility;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.samples.petclinic.owner.Pet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SortedIdentityMapTest {
+
+	private final SortedIdentityMap<String, Pet> map = new SortedIdentityMap<>(Pet::getName,
+			String.CASE_INSENSITIVE_ORDER);
+
+	private static Pet pet(Integer id, String name) {
+		Pet pet = new Pet();
+		pet.setId(id);
+		pet.setName(name);
+		return pet;
+	}
+
+	private static List<String> names(Iterable<Pet> pets) {
+		List<String> names = new ArrayList<>();
+		pets.forEach(pet -> names.add(pet.getName()));
+		return names;
+	}
+
+	@Test
+	void testEntitiesAreKeptInKeyOrder() {
+		map.addAll(Arrays.asList(pet(1, "Leo"), pet(2, "basil"), pet(3, null), pet(4, "Rosy"), pet(5, "Jewel")));
+
+		assertEquals(Arrays.asList("basil", "Jewel", "Leo", "Rosy", null), names(map));
+		assertEquals(names(map), names(map.asList()));
+	}
+
+	@Test
+	void testEqualKeysKeepInsertionOrder() {
+		map.add(pet(1, "Leo"));
+		map.add(pet(2, "leo"));
+		map.add(pet(3, "LEO"));
+
+		assertEquals(Arrays.asList("Leo", "leo", "LEO"), names(map));
+	}
+
+	@Test
+	void testAddReplacesEntityWithSameIdAndRepositionsRenamedEntity() {
+		Pet leo = pet(1, "Leo");
+		map.add(leo);
+		map.add(pet(2, "Basil"));
+
+		assertFalse(map.add(leo));
+		leo.setName("Alf");
+		assertTrue(map.add(leo));
+		assertTrue(map.add(pet(2, "Zed")));
+
+		assertEquals(Arrays.asList("Alf", "Zed"), names(map));
+		assertEquals("Zed", map.get(2).getName());
+		assertEquals(2, map.size());
+	}
+
+	@Test
+	void testEntitiesWithoutIdAreToldApartByIdentity() {
+		Pet first = pet(null, "Leo");
+		Pet second = pet(null, "Leo");
+		map.add(first);
+		map.add(second);
+
+		assertEquals(2, map.size());
+		assertTrue(map.remove(first));
+		assertFalse(map.contains(first));
+		assertTrue(map.contains(second));
+	}
+
+	@Test
+	void testEntityAddedBeforeItGotItsId() {
+		Pet leo = pet(null, "Leo");
+		map.add(leo);
+		leo.setId(1);
+
+		assertTrue(map.contains(leo));
+		map.add(leo);
+		assertEquals(1, map.size());
+		assertSame(leo, map.get(1));
+		assertTrue(map.remove(pet(1, null)));
+		assertTrue(map.isEmpty());
+	}
+
+	@Test
+	void testSnapshotIsReusedUntilNextChange() {
+		map.add(pet(1, "Leo"));
+		List<Pet> snapshot = map.asList();
+
+		assertSame(snapshot, map.asList());
+		assertThrows(UnsupportedOperationException.class, () -> snapshot.add(pet(2, "Basil")));
+		map.add(pet(2, "Basil"));
+		assertNotSame(snapshot, map.asList());
+		assertEquals(Arrays.asList("Basil", "Leo"), names(map.asList()));
+	}
+
+	@Test
+	void testRange() {
+		for (String name : Arrays.asList("Basil", "Jewel", "Leo", "Lucky", "Max", "Rosy")) {
+			map.add(pet(map.size(), name));
+		}
+
+		assertEquals(Arrays.asList("Jewel", "Leo", "Lucky"), names(map.range("jewel", true, "lucky", true)));
+		assertEquals(Collections.singletonList("Leo"), names(map.range("Jewel", false, "Lucky", false)));
+		assertEquals(Arrays.asList("Leo", "Lucky"), names(map.range("K", true, "M", false)));
+		assertEquals(Collections.singletonList("Max"), names(map.range("max", true, "max", true)));
+		assertTrue(map.range("Max", false, "Max", false).isEmpty());
+		assertTrue(map.range("Rosy", true, "Basil", true).isEmpty());
+	}
+
+	@Test
+	void testWithPrefix() {
+		for (String name : Arrays.asList("Basil", "Lucky", "Leo", "lulu", "Luna", "Max")) {
+			map.add(pet(map.size(), name));
+		}
+
+		assertEquals(Arrays.asList("Lucky", "lulu", "Luna"), names(map.withPrefix("LU")));
+		assertEquals(Arrays.asList("Leo", "Lucky", "lulu", "Luna"), names(map.withPrefix("l")));
+		assertEquals(map.size(), map.withPrefix("").size());
+		assertTrue(map.withPrefix("Lux").isEmpty());
+	}
+
+	@Test
+	void testIteratorRemove() {
+		map.add(pet(1, "Leo"));
+		map.add(pet(2, "Basil"));
+		List<Pet> snapshot = map.asList();
+		Iterator<Pet> iterator = map.iterator();
+		iterator.next();
+
+		iterator.remove();
+
+		assertThrows(IllegalStateException.class, iterator::remove);
+		assertEquals("Leo", iterator.next().getName());
+		assertFalse(map.contains(pet(2, null)));
+		assertNull(map.get(2));
+		assertEquals(Collections.singletonList("Leo"), names(map.asList()));
+		assertEquals(2, snapshot.size());
+	}
+
+	@Test
+	void testClear() {
+		map.add(pet(1, "Leo"));
+
+		map.clear();
+
+		assertTrue(map.isEmpty());
+		assertTrue(map.asList().isEmpty());
+		assertNull(map.get(1));
+	}
+
+}
@@ -0,0 +1,221 @@
+package org.springframework.samples.petclinic.utility;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimedCacheTest {
+
+	private final AtomicLong now = new AtomicLong(1_000_000);
+
+	private final AtomicInteger loads = new AtomicInteger();
+
+	private final TimedCache<String, String> cache = TimedCache.<String, String>builder("names", key -> {
+		loads.incrementAndGet();
+		return key.toUpperCase();
+	}).expireAfterWrite(1000).clock(now::get).build();
+
+	@Test
+	void testGetLoadsOnceWhileFresh() {
+		assertEquals("REX", cache.get("rex"));
+		assertEquals("REX", cache.get("rex"));
+		assertEquals(1, loads.get());
+
+		now.addAndGet(1000);
+
+		assertEquals("REX", cache.get("rex"));
+		assertEquals(2, loads.get());
+	}
+
+	@Test
+	void testGetAllLoadsMissesWithOneBulkLoad() {
+		List<Set<String>> bulkLoads = new ArrayList<>();
+		TimedCache<String, String> bulk = TimedCache.<String, String>builder("names", key -> {
+			throw new AssertionError("loaded " + key);
+		}).bulkLoader(keys -> {
+			bulkLoads.add(keys);
+			Map<String, String> values = new HashMap<>();
+			keys.stream().filter(key -> !key.isEmpty()).forEach(key -> values.put(key, key.toUpperCase()));
+			return values;
+		}).clock(now::get).build();
+		bulk.put("tom", "Tom");
+
+		Map<String, String> values = bulk.getAll(Arrays.asList("rex", "tom", "", "rex", "leo"));
+
+		assertEquals(Arrays.asList("rex", "tom", "leo"), new ArrayList<>(values.keySet()));
+		assertEquals(Arrays.asList("REX", "Tom", "LEO"), new ArrayList<>(values.values()));
+		assertEquals(Collections.singletonList(new HashSet<>(Arrays.asList("rex", "", "leo"))), bulkLoads);
+		assertEquals("LEO", bulk.get("leo"));
+		assertEquals(3, bulk.getAll(Arrays.asList("rex", "tom", "leo")).size());
+		assertEquals(1, bulkLoads.size());
+		assertEquals(5, bulk.stats().getHitCount());
+		assertEquals(3, bulk.stats().getMissCount());
+	}
+
+	@Test
+	void testGetAllWithoutBulkLoaderLoadsOneByOne() {
+		cache.get("tom");
+
+		assertEquals(Arrays.asList("TOM", "REX"), new ArrayList<>(cache.getAll(Arrays.asList("tom", "rex")).values()));
+		assertEquals(2, loads.get());
+	}
+
+	@Test
+	void testInvalidateAll() {
+		cache.get("rex");
+		cache.get("tom");
+
+		cache.invalidateAll();
+
+		assertEquals(0, cache.size());
+		cache.get("rex");
+		assertEquals(3, loads.get());
+	}
+
+	@Test
+	void testLoadInvalidatedMeanwhileIsNotCached() {
+		AtomicReference<TimedCache<String, String>> self = new AtomicReference<>();
+		TimedCache<String, String> invalidated = TimedCache.<String, String>builder("names", key -> {
+			// a save of the key commits while the first load reads it
+			if (loads.incrementAndGet() == 1) {
+				self.get().invalidate(key);
+			}
+			return key.toUpperCase();
+		}).clock(now::get).build();
+		self.set(invalidated);
+
+		assertEquals("REX", invalidated.get("rex"));
+		assertEquals(0, invalidated.size());
+		assertEquals("REX", invalidated.get("rex"));
+		assertEquals("REX", invalidated.get("rex"));
+		assertEquals(2, loads.get());
+	}
+
+	@Test
+	void testReadersWaitingForAFailedRefreshGetTheCachedValue() throws Exception {
+		CountDownLatch refreshing = new CountDownLatch(1);
+		CountDownLatch fail = new CountDownLatch(1);
+		TimedCache<String, String> refreshed = TimedCache.<String, String>builder("names", key -> {
+			if (loads.incrementAndGet() == 1) {
+				return key.toUpperCase();
+			}
+			refreshing.countDown();
+			try {
+				fail.await();
+			}
+			catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+			throw new IllegalStateException("database down");
+		}).expireAfterWrite(1000).staleWhileRevalidate(500).clock(now::get).build();
+		refreshed.get("rex");
+		now.addAndGet(1000);
+		assertEquals("REX", refreshed.get("rex"));
+		refreshing.await();
+
+		now.addAndGet(500);
+		AtomicReference<Object> read = new AtomicReference<>();
+		Thread reader = new Thread(() -> {
+			try {
+				read.set(refreshed.get("rex"));
+			}
+			catch (RuntimeException ex) {
+				read.set(ex);
+			}
+		});
+		reader.start();
+		while (reader.getState() != Thread.State.WAITING) {
+			Thread.yield();
+		}
+		fail.countDown();
+		reader.join();
+
+		assertEquals("REX", read.get());
+		refreshed.close();
+	}
+
+	@Test
+	void testWriteCachesWrittenValue() {
+		List<String> written = new ArrayList<>();
+		TimedCache<String, String> writable = TimedCache.<String, String>builder("names", String::toUpperCase)
+				.writer(written::add).build();
+
+		writable.write("rex", "Rex");
+
+		assertEquals(Collections.singletonList("Rex"), written);
+		assertEquals("Rex", writable.get("rex"));
+	}
+
+	@Test
+	void testWriteWithoutWriterFails() {
+		assertThrows(IllegalStateException.class, () -> cache.write("rex", "Rex"));
+	}
+
+	@Test
+	void testEvictedValuesArePromotedFromTheEvictionTier() {
+		OffHeapStore<String> tier = new OffHeapStore<>(new OffHeapStore.Codec<String>() {
+
+			@Override
+			public byte[] encode(String value) {
+				return value.getBytes(StandardCharsets.UTF_8);
+			}
+
+			@Override
+			public String decode(byte[] bytes) {
+				return new String(bytes, StandardCharsets.UTF_8);
+			}
+
+		}, 1024, 1024);
+		AtomicInteger loaded = new AtomicInteger();
+		TimedCache<Integer, String> tiered = TimedCache.<Integer, String>builder("names", key -> {
+			loaded.incrementAndGet();
+			return "pet-" + key;
+		}).expireAfterWrite(1000).maximumSize(1).evictionTier(tier).clock(now::get).build();
+		MeterRegistry registry = new SimpleMeterRegistry();
+		tiered.bindTo(registry);
+
+		tiered.get(1);
+		tiered.get(2);
+		assertEquals(1, tiered.size());
+		assertEquals(1, tier.size());
+		loaded.set(0);
+
+		assertEquals("pet-1", tiered.get(1));
+		assertEquals("pet-2", tiered.get(2));
+		assertEquals(0, loaded.get(), "the evicted value is served from the tier");
+		assertTrue(registry.get("cache.tier.promotions").functionCounter().count() >= 1);
+
+		now.addAndGet(1000);
+
+		tiered.get(1);
+		tiered.get(2);
+		assertEquals(2, loaded.get(), "a promoted value keeps its original expiry");
+	}
+
+	@Test
+	void testMetricsAreTaggedWithTheCacheName() {
+		MeterRegistry registry = new SimpleMeterRegistry();
+		cache.bindTo(registry);
+		cache.get("rex");
+
+		assertEquals(1, registry.get("cache.gets").tags("cache", "names", "result", "miss").functionCounter().count());
+		assertEquals(1, registry.get("cache.load").tags("cache", "names", "result", "success").timer().count());
+	}
+
+}
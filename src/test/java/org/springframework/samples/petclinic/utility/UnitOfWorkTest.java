@@ -0,0 +1,136 @@
+package org.springframework.samples.petclinic.utility;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.samples.petclinic.owner.Owner;
+import org.springframework.samples.petclinic.owner.Pet;
+import org.springframework.samples.petclinic.visit.Visit;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class UnitOfWorkTest {
+
+	private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+
+	private final List<String> written = new ArrayList<>();
+
+	private final List<Pet> discarded = new ArrayList<>();
+
+	private final List<String> committed = new ArrayList<>();
+
+	private final UnitOfWork unitOfWork = UnitOfWork.builder(transactionManager)
+			.writer(Owner.class, owners -> owners.forEach(owner -> written.add("owner " + owner.getLastName())))
+			.writer(Pet.class, new UnitOfWork.Writer<Pet>() {
+
+				@Override
+				public void write(List<Pet> pets) {
+					for (Pet pet : pets) {
+						if ("Fail".equals(pet.getName())) {
+							throw new IllegalStateException();
+						}
+						written.add("pet " + pet.getName());
+					}
+				}
+
+				@Override
+				public void discard(List<Pet> pets) {
+					discarded.addAll(pets);
+				}
+
+				@Override
+				public void committed(List<Pet> pets) {
+					pets.forEach(pet -> committed.add("pet " + pet.getName()));
+				}
+
+			}).build();
+
+	private static Pet pet(Integer id, String name) {
+		Pet pet = new Pet();
+		pet.setId(id);
+		pet.setName(name);
+		return pet;
+	}
+
+	@Test
+	void testFindLoadsEachIdOnce() {
+		AtomicInteger loads = new AtomicInteger();
+
+		Pet first = unitOfWork.find(Pet.class, 1, id -> {
+			loads.incrementAndGet();
+			return pet(id, "Leo");
+		});
+		Pet second = unitOfWork.find(Pet.class, 1, id -> pet(id, "Other"));
+
+		assertSame(first, second);
+		assertEquals(1, loads.get());
+		assertNull(unitOfWork.find(Pet.class, 2, id -> null));
+	}
+
+	@Test
+	void testRegisteredEntitiesAreFound() {
+		Pet leo = pet(1, "Leo");
+
+		unitOfWork.register(Pet.class, leo);
+
+		assertSame(leo, unitOfWork.find(Pet.class, 1, id -> fail("loaded")));
+	}
+
+	@Test
+	void testCommitWritesTypesInWriterOrderInOneTransaction() {
+		Owner owner = new Owner();
+		owner.setLastName("Franklin");
+		unitOfWork.registerDirty(Pet.class, pet(1, "Leo"));
+		unitOfWork.registerDirty(Pet.class, pet(1, "Basil"));
+		unitOfWork.registerDirty(Owner.class, owner);
+		unitOfWork.registerDirty(Owner.class, owner);
+		List<String> callbacks = new ArrayList<>();
+		unitOfWork.afterCommit(() -> callbacks.add("evict " + written.size()));
+
+		unitOfWork.commit();
+
+		assertEquals(Arrays.asList("owner Franklin", "pet Basil"), written);
+		assertEquals(Collections.singletonList("pet Basil"), committed);
+		assertEquals(Collections.singletonList("evict 2"), callbacks);
+		verify(transactionManager, times(1)).getTransaction(any());
+		verify(transactionManager, times(1)).commit(any());
+		assertEquals("Basil", unitOfWork.find(Pet.class, 1, id -> fail("loaded")).getName());
+		assertFalse(unitOfWork.isDirty());
+	}
+
+	@Test
+	void testCommitWithoutChangesStartsNoTransaction() {
+		unitOfWork.find(Pet.class, 1, id -> pet(id, "Leo"));
+
+		unitOfWork.commit();
+
+		verifyNoInteractions(transactionManager);
+	}
+
+	@Test
+	void testFailedCommitRollsBackAndDiscards() {
+		Pet fail = pet(2, "Fail");
+		unitOfWork.registerDirty(Pet.class, fail);
+		unitOfWork.afterCommit(() -> fail("called"));
+
+		assertThrows(IllegalStateException.class, unitOfWork::commit);
+
+		verify(transactionManager).rollback(any());
+		assertEquals(Collections.singletonList(fail), discarded);
+		assertTrue(committed.isEmpty());
+		assertTrue(unitOfWork.isDirty());
+	}
+
+	@Test
+	void testTypesNeedAWriter() {
+		assertThrows(IllegalArgumentException.class, () -> unitOfWork.registerDirty(Visit.class, new Visit()));
+	}
+
+}
@@ -0,0 +1,69 @@
+package org.springframework.samples.petclinic.visit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+/**
+ * Summarizes the visits of the sample clinic, three pets per chunk on two threads.
+ */
+@DataJpaTest
+class VisitSummariesTests {
+
+	@Autowired
+	private VisitRepository visits;
+
+	@Test
+	void testSummariesAreReadFromTheDatabaseUntilRebuilt() {
+		VisitSummaries summaries = new VisitSummaries(visits, 3, 2);
+
+		assertThat(summaries.isLoaded()).isFalse();
+		assertSummary(summaries.get(7), 2, LocalDate.of(2013, 1, 4), 0);
+	}
+
+	@Test
+	void testSummariesAreRebuiltInChunks() {
+		VisitSummaries summaries = new VisitSummaries(visits, 3, 2);
+
+		assertThat(summaries.rebuild()).isTrue();
+
+		assertThat(summaries.isLoaded()).isTrue();
+		assertSummary(summaries.get(7), 2, LocalDate.of(2013, 1, 4), 0);
+		assertSummary(summaries.get(8), 2, LocalDate.of(2013, 1, 3), 0);
+		assertSummary(summaries.get(1), 0, null, 0);
+		assertThat(summaries.getAll(Arrays.asList(8, 7))).extracting(VisitSummaries.Summary::getPetId)
+				.containsExactly(8, 7);
+	}
+
+	@Test
+	void testAddedVisitsAreCounted() {
+		VisitSummaries summaries = new VisitSummaries(visits, 3, 2);
+		summaries.rebuild();
+
+		summaries.added(visit(7, LocalDate.now().minusYears(2)));
+		summaries.added(visit(7, LocalDate.now().minusMonths(1)));
+		summaries.added(visit(1, LocalDate.now()));
+
+		assertSummary(summaries.get(7), 4, LocalDate.now().minusMonths(1), 1);
+		assertSummary(summaries.get(1), 1, LocalDate.now(), 1);
+	}
+
+	private static Visit visit(int petId, LocalDate date) {
+		Visit visit = new Visit().setDate(date);
+		visit.setPetId(petId);
+		return visit;
+	}
+
+	private static void assertSummary(VisitSummaries.Summary summary, int visitCount, LocalDate lastVisitDate,
+			int visitsInLastYear) {
+		assertThat(summary.getVisitCount()).isEqualTo(visitCount);
+		assertThat(summary.getLastVisitDate()).isEqualTo(lastVisitDate);
+		assertThat(summary.getVisitsInLastYear()).isEqualTo(visitsInLastYear);
+	}
+
+}
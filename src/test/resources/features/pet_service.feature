@@ -13,7 +13,7 @@ Feature: Pet Service Feature
     Given There is a pet owner with id 2
     When Request for a new pet arrives
     Then The new pet is returned successfully
-    And The new pet is saved in owners pets correctly
+    And The new pet belongs to the owner until it is saved
 
 
   Scenario: Pet is found using pet id